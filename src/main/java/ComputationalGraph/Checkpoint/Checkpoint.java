@@ -0,0 +1,358 @@
+package ComputationalGraph.Checkpoint;
+
+import ComputationalGraph.ExecutionPlan;
+import ComputationalGraph.Precision;
+import ComputationalGraph.Node.*;
+import Math.Tensor;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+
+public class Checkpoint {
+
+    public static final int MAGIC = 0x4B434743;
+    public static final int VERSION = 1;
+    public static final int STRUCTURE = 1;
+    public static final int PARAMETERS = 2;
+
+    private static final int HEADER_SIZE = 16;
+    private static final int SECTION_HEADER_SIZE = 16;
+
+    private Checkpoint() {
+    }
+
+    /**
+     * Writes the structure of the graph and the values of its learnable nodes into a checkpoint file. The file
+     * starts with a header of the magic number, the format version and the number of sections, followed by the
+     * sections. Every section starts with its tag and the length of its payload, and every payload is padded to
+     * a multiple of eight bytes, so that the weights are aligned. All numbers are little-endian.
+     * <ul>
+     * <li>The structure section holds the kind, the flags and the parent indices of every node of the execution
+     * plan, so that a checkpoint can only be loaded into a graph of the same topology.</li>
+     * <li>The parameter section holds the precision of the values, and for every learnable node, its index in the
+     * execution plan as its stable id, its shape and its values as raw doubles or floats.</li>
+     * </ul>
+     * @param plan Execution plan of the graph.
+     * @param fileName Name of the checkpoint file.
+     * @throws IOException If the file can not be written.
+     */
+    public static void save(ExecutionPlan plan, String fileName) throws IOException {
+        save(plan, fileName, new HashMap<>());
+    }
+
+    /**
+     * Writes a checkpoint with additional sections.
+     * @param plan Execution plan of the graph.
+     * @param fileName Name of the checkpoint file.
+     * @param sections Payloads of the additional sections, keyed by their tags.
+     * @throws IOException If the file can not be written.
+     */
+    public static void save(ExecutionPlan plan, String fileName, HashMap<Integer, ByteBuffer> sections) throws IOException {
+        save(plan, values(plan), fileName, sections);
+    }
+
+    /**
+     * Writes a checkpoint of the current values of the learnable nodes in the given precision.
+     * @param plan Execution plan of the graph.
+     * @param fileName Name of the checkpoint file.
+     * @param precision Precision of the stored values.
+     * @throws IOException If the file can not be written.
+     */
+    public static void save(ExecutionPlan plan, String fileName, Precision precision) throws IOException {
+        save(plan, values(plan), fileName, new HashMap<>(), precision);
+    }
+
+    private static Tensor[] values(ExecutionPlan plan) {
+        Tensor[] values = new Tensor[plan.learnableSize()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = plan.getLearnableNode(i).getValue();
+        }
+        return values;
+    }
+
+    /**
+     * Writes a checkpoint of the given values of the learnable nodes, which may be a snapshot taken earlier.
+     * @param plan Execution plan of the graph.
+     * @param values Values of the learnable nodes, in the order of the plan.
+     * @param fileName Name of the checkpoint file.
+     * @param sections Payloads of the additional sections, keyed by their tags.
+     * @throws IOException If the file can not be written.
+     */
+    public static void save(ExecutionPlan plan, Tensor[] values, String fileName, HashMap<Integer, ByteBuffer> sections) throws IOException {
+        save(plan, values, fileName, sections, Precision.DOUBLE);
+    }
+
+    /**
+     * Writes a checkpoint of the given values of the learnable nodes in the given precision. In float precision,
+     * the values are rounded and the parameter section takes half the space.
+     * @param plan Execution plan of the graph.
+     * @param values Values of the learnable nodes, in the order of the plan.
+     * @param fileName Name of the checkpoint file.
+     * @param sections Payloads of the additional sections, keyed by their tags.
+     * @param precision Precision of the stored values.
+     * @throws IOException If the file can not be written.
+     */
+    public static void save(ExecutionPlan plan, Tensor[] values, String fileName, HashMap<Integer, ByteBuffer> sections, Precision precision) throws IOException {
+        if (precision.isHalf()) {
+            throw new IllegalArgumentException("Checkpoints are not written in " + precision + " precision.");
+        }
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "rw"); FileChannel channel = file.getChannel()) {
+            channel.truncate(0);
+            ByteBuffer header = allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(2 + sections.size());
+            header.putInt(0);
+            header.flip();
+            write(channel, header);
+            writeSection(channel, STRUCTURE, structure(plan));
+            writeSection(channel, PARAMETERS, parameters(plan, values, precision));
+            for (Integer tag : sections.keySet()) {
+                writeSection(channel, tag, sections.get(tag));
+            }
+        }
+    }
+
+    /**
+     * Opens a checkpoint by mapping it into memory and copies the values of the learnable nodes into the graph
+     * with bulk reads from the mapping. The structure stored in the checkpoint must match the given plan.
+     * @param plan Execution plan of the graph.
+     * @param fileName Name of the checkpoint file.
+     * @return Payloads of all sections of the checkpoint, keyed by their tags. They are views of the mapping.
+     * @throws IOException If the file can not be read, or if it is not a checkpoint of the graph.
+     */
+    public static HashMap<Integer, ByteBuffer> load(ExecutionPlan plan, String fileName) throws IOException {
+        HashMap<Integer, ByteBuffer> sections = read(fileName);
+        if (!sections.containsKey(STRUCTURE) || !sections.containsKey(PARAMETERS)) {
+            throw new IOException("Checkpoint has no structure or no parameters.");
+        }
+        if (!sections.get(STRUCTURE).equals(structure(plan))) {
+            throw new IOException("Checkpoint was saved from a graph of a different structure.");
+        }
+        ByteBuffer parameters = sections.get(PARAMETERS).duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int count = parameters.getInt();
+        Precision precision = precision(parameters.getInt());
+        if (count != plan.learnableSize()) {
+            throw new IOException("Checkpoint has " + count + " parameters instead of " + plan.learnableSize() + ".");
+        }
+        Tensor[] values = new Tensor[count];
+        for (int i = 0; i < count; i++) {
+            int id = parameters.getInt();
+            if (id != plan.getLearnableIndex(i)) {
+                throw new IOException("Parameter " + id + " does not belong to the graph.");
+            }
+            int[] shape = new int[parameters.getInt()];
+            long length = 1;
+            for (int j = 0; j < shape.length; j++) {
+                shape[j] = parameters.getInt();
+                length *= shape[j];
+            }
+            double[] data = new double[(int) length];
+            readValues(parameters, data, precision);
+            values[i] = new Tensor(data, shape);
+        }
+        for (int i = 0; i < count; i++) {
+            plan.getLearnableNode(i).setValue(values[i]);
+        }
+        return sections;
+    }
+
+    /**
+     * Maps a checkpoint into memory and splits it into its sections.
+     * @param fileName Name of the checkpoint file.
+     * @return Payloads of the sections, keyed by their tags.
+     * @throws IOException If the file can not be read or is not a checkpoint.
+     */
+    public static HashMap<Integer, ByteBuffer> read(String fileName) throws IOException {
+        MappedByteBuffer buffer;
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "r"); FileChannel channel = file.getChannel()) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException("File is not a checkpoint.");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported checkpoint version " + version + ".");
+        }
+        int count = buffer.getInt();
+        buffer.getInt();
+        HashMap<Integer, ByteBuffer> sections = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            if (buffer.remaining() < SECTION_HEADER_SIZE) {
+                throw new IOException("Checkpoint is truncated.");
+            }
+            int tag = buffer.getInt();
+            buffer.getInt();
+            long length = buffer.getLong();
+            if (length < 0 || length > buffer.remaining()) {
+                throw new IOException("Checkpoint is truncated.");
+            }
+            ByteBuffer payload = buffer.slice();
+            payload.limit((int) length);
+            sections.put(tag, payload.order(ByteOrder.LITTLE_ENDIAN));
+            buffer.position(buffer.position() + (int) padded(length));
+        }
+        return sections;
+    }
+
+    /**
+     * @return Code of the kind of the node, as stored in the structure section.
+     */
+    private static int kind(ComputationalNode node) {
+        if (node instanceof FunctionNode) {
+            return 1;
+        } else if (node instanceof MultiplicationNode) {
+            return ((MultiplicationNode) node).isHadamard() ? 3 : 2;
+        } else if (node instanceof ConcatenatedNode) {
+            return 4;
+        } else if (node instanceof SoftmaxCrossEntropyNode) {
+            return 5;
+        } else if (node instanceof BiasAddNode) {
+            return 6;
+        } else if (node instanceof LinearNode) {
+            return 7;
+        } else if (node instanceof EmbeddingNode) {
+            return 8;
+        }
+        return 0;
+    }
+
+    private static ByteBuffer structure(ExecutionPlan plan) {
+        int size = 4;
+        for (int i = 0; i < plan.size(); i++) {
+            size += 12 + 4 * plan.parentsSize(i);
+        }
+        ByteBuffer buffer = allocate(size);
+        buffer.putInt(plan.size());
+        for (int i = 0; i < plan.size(); i++) {
+            ComputationalNode node = plan.getNode(i);
+            buffer.putInt(kind(node));
+            buffer.putInt((node.isLearnable() ? 1 : 0) | (node.isBiased() ? 2 : 0));
+            buffer.putInt(plan.parentsSize(i));
+            for (int j = 0; j < plan.parentsSize(i); j++) {
+                buffer.putInt(plan.getParentIndex(i, j));
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static ByteBuffer parameters(ExecutionPlan plan, Tensor[] values, Precision precision) {
+        long size = 8;
+        for (Tensor value : values) {
+            size += padded(8 + 4L * value.getShape().length) + valuesSize(value.getData().length, precision);
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Parameters do not fit in a single section.");
+        }
+        ByteBuffer buffer = allocate((int) size);
+        buffer.putInt(values.length);
+        buffer.putInt(precision.ordinal());
+        for (int i = 0; i < values.length; i++) {
+            int[] shape = values[i].getShape();
+            buffer.putInt(plan.getLearnableIndex(i));
+            buffer.putInt(shape.length);
+            for (int dimension : shape) {
+                buffer.putInt(dimension);
+            }
+            writeValues(buffer, values[i].getData(), precision);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * @param code Code of a precision, as stored in a checkpoint. Checkpoints written before the precision was
+     *             stored hold zero, which is the code of double precision.
+     * @return The precision.
+     * @throws IOException If the code is unknown.
+     */
+    public static Precision precision(int code) throws IOException {
+        if (code < 0 || code >= Precision.values().length || Precision.values()[code].isHalf()) {
+            throw new IOException("Unsupported precision " + code + ".");
+        }
+        return Precision.values()[code];
+    }
+
+    /**
+     * Aligns the buffer to eight bytes and writes the values in the given precision, followed by padding to eight
+     * bytes.
+     */
+    static void writeValues(ByteBuffer buffer, double[] values, Precision precision) {
+        align(buffer);
+        if (precision == Precision.FLOAT) {
+            for (double value : values) {
+                buffer.putFloat((float) value);
+            }
+            align(buffer);
+        } else {
+            buffer.asDoubleBuffer().put(values);
+            buffer.position(buffer.position() + 8 * values.length);
+        }
+    }
+
+    /**
+     * Aligns the buffer to eight bytes and reads values written by
+     * {@link #writeValues(ByteBuffer, double[], Precision)} with bulk reads.
+     */
+    static void readValues(ByteBuffer buffer, double[] values, Precision precision) {
+        align(buffer);
+        if (precision == Precision.FLOAT) {
+            float[] floats = new float[values.length];
+            buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(floats);
+            for (int i = 0; i < floats.length; i++) {
+                values[i] = floats[i];
+            }
+            buffer.position(buffer.position() + 4 * floats.length);
+            align(buffer);
+        } else {
+            buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(values);
+            buffer.position(buffer.position() + 8 * values.length);
+        }
+    }
+
+    /**
+     * @return Size of values written by {@link #writeValues(ByteBuffer, double[], Precision)} from an aligned
+     * position.
+     */
+    static long valuesSize(int length, Precision precision) {
+        return padded((long) precision.getSize() * length);
+    }
+
+    private static ByteBuffer allocate(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static long padded(long length) {
+        return (length + 7) & ~7L;
+    }
+
+    private static void align(ByteBuffer buffer) {
+        buffer.position((int) padded(buffer.position()));
+    }
+
+    private static void writeSection(FileChannel channel, int tag, ByteBuffer payload) throws IOException {
+        ByteBuffer header = allocate(SECTION_HEADER_SIZE);
+        header.putInt(tag);
+        header.putInt(0);
+        header.putLong(payload.remaining());
+        header.flip();
+        write(channel, header);
+        long padding = padded(payload.remaining()) - payload.remaining();
+        write(channel, payload.duplicate());
+        write(channel, allocate((int) padding));
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
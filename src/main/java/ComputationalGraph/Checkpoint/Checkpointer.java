@@ -0,0 +1,457 @@
+package ComputationalGraph.Checkpoint;
+
+import ComputationalGraph.Data.DataLoader;
+import ComputationalGraph.ExecutionPlan;
+import ComputationalGraph.Function.Dropout;
+import ComputationalGraph.Node.ComputationalNode;
+import ComputationalGraph.Node.FunctionNode;
+import ComputationalGraph.Optimizer.Optimizer;
+import ComputationalGraph.Precision;
+import ComputationalGraph.Pruning.Pruning;
+import Math.Tensor;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class Checkpointer {
+
+    public static final int OPTIMIZER = 3;
+    public static final int TRAINING = 4;
+    public static final int RANDOM = 5;
+
+    private static final int LOADER = -1;
+
+    private final String fileName;
+    private final int stepInterval;
+    private final int epochInterval;
+    private ExecutorService writer;
+    private Future<?> pending;
+    private DataLoader loader;
+    private long step;
+
+    /**
+     * Creates a checkpointer that periodically writes the complete training state: the weights, the state of the
+     * optimizer, the random number generators of the dropout functions, the number of steps, the steps and masks
+     * of a pruning set on the optimizer and, while the graph is fitted on a data loader, the data order of the
+     * loader: its random number generator, its permutation and the position in the current epoch. The state is
+     * copied on the training thread, which only takes a memory copy, and written on a background thread. Each
+     * checkpoint is first written to a temporary file that replaces the previous checkpoint once complete, so a
+     * crash during a write never destroys the last checkpoint. The weights are always written in double
+     * precision, so that the training resumes exactly; the moments of an optimizer in float precision are written
+     * as floats.
+     * @param fileName Name of the checkpoint file.
+     * @param stepInterval Number of steps between two checkpoints, 0 to not checkpoint on steps.
+     * @param epochInterval Number of epochs between two checkpoints, 0 to not checkpoint on epochs.
+     */
+    public Checkpointer(String fileName, int stepInterval, int epochInterval) {
+        this.fileName = fileName;
+        this.stepInterval = stepInterval;
+        this.epochInterval = epochInterval;
+        this.step = 0;
+    }
+
+    /**
+     * @return Number of optimizer steps taken so far, including the steps restored from a checkpoint.
+     */
+    public long getStep() {
+        return step;
+    }
+
+    public void setStep(long step) {
+        this.step = step;
+    }
+
+    /**
+     * Sets the data loader whose data order is checkpointed, null if the training does not read from a loader.
+     * Without a loader, the order in which the instances are served is left to the training loop, so a run only
+     * resumes exactly if the loop restores that order itself.
+     * @param loader The data loader.
+     */
+    public void setLoader(DataLoader loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * Counts an optimizer step and writes a checkpoint if the step interval has passed.
+     * @param plan Execution plan of the graph.
+     * @param optimizer Optimizer of the graph.
+     */
+    public void afterStep(ExecutionPlan plan, Optimizer optimizer) {
+        step++;
+        if (stepInterval > 0 && step % stepInterval == 0) {
+            save(plan, optimizer, loader != null ? loader.getPosition() : 0);
+        }
+    }
+
+    /**
+     * Writes a checkpoint if the epoch interval has passed. Must be called after the epoch of the optimizer has
+     * been incremented.
+     * @param plan Execution plan of the graph.
+     * @param optimizer Optimizer of the graph.
+     */
+    public void afterEpoch(ExecutionPlan plan, Optimizer optimizer) {
+        if (epochInterval > 0 && optimizer.getEpoch() % epochInterval == 0) {
+            save(plan, optimizer, 0);
+        }
+    }
+
+    /**
+     * Takes a snapshot of the training state between two steps of an epoch and writes it in the background. If
+     * the previous checkpoint is still being written, the method waits for it first, so at most one snapshot is
+     * held in memory.
+     * @param plan Execution plan of the graph.
+     * @param optimizer Optimizer of the graph.
+     */
+    public void save(ExecutionPlan plan, Optimizer optimizer) {
+        save(plan, optimizer, loader != null ? loader.getPosition() : 0);
+    }
+
+    /**
+     * Takes a snapshot of the training state and writes it in the background.
+     * @param plan Execution plan of the graph.
+     * @param optimizer Optimizer of the graph.
+     * @param position Number of instances of the current epoch of the loader that have been trained on, 0 at the
+     *                 end of an epoch.
+     */
+    private void save(ExecutionPlan plan, Optimizer optimizer, int position) {
+        Tensor[] values = new Tensor[plan.learnableSize()];
+        for (int i = 0; i < values.length; i++) {
+            Tensor value = plan.getLearnableNode(i).getValue();
+            values[i] = new Tensor(value.getData().clone(), value.getShape());
+        }
+        HashMap<Integer, ByteBuffer> sections = new HashMap<>();
+        sections.put(OPTIMIZER, encode(optimizer.getState(plan), optimizer.getStatePrecision()));
+        sections.put(RANDOM, encodeRandoms(plan, loader));
+        sections.put(TRAINING, encodeTraining(plan, step, loader, position, optimizer.getPruning()));
+        awaitPending();
+        pending = getWriter().submit(() -> {
+            Path target = Paths.get(fileName);
+            Path temporary = Paths.get(fileName + ".tmp");
+            Checkpoint.save(plan, values, temporary.toString(), sections);
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return null;
+        });
+    }
+
+    /**
+     * Waits until the last checkpoint has been written.
+     * @throws IOException If the last checkpoint could not be written.
+     */
+    public void await() throws IOException {
+        if (pending == null) {
+            return;
+        }
+        try {
+            pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the checkpoint.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Checkpoint could not be written.", e.getCause());
+        } finally {
+            pending = null;
+        }
+    }
+
+    /**
+     * Waits for the pending checkpoint and stops the background thread.
+     * @throws IOException If the last checkpoint could not be written.
+     */
+    public void shutdown() throws IOException {
+        try {
+            await();
+        } finally {
+            if (writer != null) {
+                writer.shutdown();
+                writer = null;
+            }
+        }
+    }
+
+    /**
+     * Restores the complete training state of a checkpoint written by a checkpointer, except for the data order.
+     * @param plan Execution plan of the graph, built with the same topology as the checkpointed graph.
+     * @param optimizer Optimizer of the graph, of the same type as the checkpointed one.
+     * @param fileName Name of the checkpoint file.
+     * @return Number of steps taken before the checkpoint.
+     * @throws IOException If the checkpoint can not be read or does not match the graph.
+     */
+    public static long restore(ExecutionPlan plan, Optimizer optimizer, String fileName) throws IOException {
+        return restore(plan, optimizer, null, fileName);
+    }
+
+    /**
+     * Restores the complete training state of a checkpoint written by a checkpointer, so that the training
+     * continues exactly as if it had not been interrupted. The pruning of the optimizer, if the checkpointed run
+     * pruned during the training, continues with its steps and masks, and the loader continues with the data
+     * order of the checkpointed loader, from the position of the checkpoint within its epoch.
+     * @param plan Execution plan of the graph, built with the same topology as the checkpointed graph.
+     * @param optimizer Optimizer of the graph, of the same type as the checkpointed one.
+     * @param loader Loader over the same dataset as the checkpointed one, null to not restore the data order.
+     * @param fileName Name of the checkpoint file.
+     * @return Number of steps taken before the checkpoint.
+     * @throws IOException If the checkpoint can not be read or does not match the graph, or if a loader is given
+     * and the checkpoint has no data order.
+     */
+    public static long restore(ExecutionPlan plan, Optimizer optimizer, DataLoader loader, String fileName) throws IOException {
+        HashMap<Integer, ByteBuffer> sections = Checkpoint.load(plan, fileName);
+        if (!sections.containsKey(OPTIMIZER) || !sections.containsKey(TRAINING)) {
+            throw new IOException("Checkpoint has no training state.");
+        }
+        try {
+            optimizer.setState(plan, decode(sections.get(OPTIMIZER)));
+        } catch (RuntimeException e) {
+            throw new IOException("Checkpoint was saved with a different optimizer.", e);
+        }
+        Random loaderRandom = null;
+        if (sections.containsKey(RANDOM)) {
+            loaderRandom = decodeRandoms(plan, sections.get(RANDOM));
+        }
+        ByteBuffer training = sections.get(TRAINING).duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        long step = training.getLong();
+        int position = -1;
+        int[] permutation = null;
+        if (training.hasRemaining()) {
+            position = training.getInt();
+            permutation = new int[training.getInt()];
+            training.asIntBuffer().get(permutation);
+            training.position(training.position() + 4 * permutation.length);
+            decodePruning(plan, optimizer.getPruning(), training);
+        }
+        if (loader != null) {
+            if (position < 0 || loaderRandom == null) {
+                throw new IOException("Checkpoint has no data order.");
+            }
+            try {
+                loader.restore(loaderRandom, permutation, position);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Checkpoint was saved with a loader over a different dataset.", e);
+            }
+        }
+        return step;
+    }
+
+    private void awaitPending() {
+        try {
+            await();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private synchronized ExecutorService getWriter() {
+        if (writer == null) {
+            writer = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "Checkpointer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return writer;
+    }
+
+    /**
+     * Encodes a list of arrays as the number of arrays, followed by the length, the precision and the values of
+     * every array. An array is stored in float precision if float precision is requested and all of its values
+     * are floats, such as the moments of an optimizer in float precision, so that no value is rounded.
+     */
+    private static ByteBuffer encode(ArrayList<double[]> arrays, Precision precision) {
+        Precision[] precisions = new Precision[arrays.size()];
+        long size = 8;
+        for (int i = 0; i < precisions.length; i++) {
+            precisions[i] = precision == Precision.FLOAT && isFloat(arrays.get(i)) ? Precision.FLOAT : Precision.DOUBLE;
+            size += 8 + Checkpoint.valuesSize(arrays.get(i).length, precisions[i]);
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Optimizer state does not fit in a single section.");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putLong(arrays.size());
+        for (int i = 0; i < precisions.length; i++) {
+            buffer.putInt(arrays.get(i).length);
+            buffer.putInt(precisions[i].ordinal());
+            Checkpoint.writeValues(buffer, arrays.get(i), precisions[i]);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static boolean isFloat(double[] array) {
+        for (double value : array) {
+            if ((float) value != value) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ArrayList<double[]> decode(ByteBuffer payload) throws IOException {
+        ByteBuffer buffer = payload.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int count = (int) buffer.getLong();
+        ArrayList<double[]> arrays = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            double[] array = new double[buffer.getInt()];
+            Checkpoint.readValues(buffer, array, Checkpoint.precision(buffer.getInt()));
+            arrays.add(array);
+        }
+        return arrays;
+    }
+
+    /**
+     * Encodes the counters and the data order of the training: the number of steps; the position of the loader in
+     * its epoch, -1 without a loader, and its permutation; the number of steps of the pruning, -1 without a
+     * pruning, and its masks, each as the plan index of its node, its length and its bits.
+     */
+    private static ByteBuffer encodeTraining(ExecutionPlan plan, long step, DataLoader loader, int position, Pruning pruning) {
+        int[] permutation = loader != null ? loader.getPermutation() : new int[0];
+        ArrayList<Integer> indices = new ArrayList<>();
+        ArrayList<boolean[]> masks = new ArrayList<>();
+        long size = 8 + 8 + 4L * permutation.length + 12;
+        if (pruning != null) {
+            for (int i = 0; i < plan.learnableSize(); i++) {
+                boolean[] mask = pruning.getMask(plan.getLearnableNode(i));
+                if (mask != null) {
+                    indices.add(plan.getLearnableIndex(i));
+                    masks.add(mask);
+                    size += 12 + 8L * ((mask.length + 63) / 64);
+                }
+            }
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Training state does not fit in a single section.");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putLong(step);
+        buffer.putInt(loader != null ? position : -1);
+        buffer.putInt(permutation.length);
+        for (int index : permutation) {
+            buffer.putInt(index);
+        }
+        buffer.putLong(pruning != null ? pruning.getStep() : -1);
+        buffer.putInt(masks.size());
+        for (int i = 0; i < masks.size(); i++) {
+            boolean[] mask = masks.get(i);
+            BitSet bits = new BitSet(mask.length);
+            for (int j = 0; j < mask.length; j++) {
+                bits.set(j, mask[j]);
+            }
+            long[] words = Arrays.copyOf(bits.toLongArray(), (mask.length + 63) / 64);
+            buffer.putInt(indices.get(i));
+            buffer.putInt(mask.length);
+            buffer.putInt(words.length);
+            for (long word : words) {
+                buffer.putLong(word);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void decodePruning(ExecutionPlan plan, Pruning pruning, ByteBuffer buffer) throws IOException {
+        long pruningStep = buffer.getLong();
+        int count = buffer.getInt();
+        if (pruningStep < 0) {
+            return;
+        }
+        if (pruning == null) {
+            throw new IOException("Checkpoint was saved with a pruning, but the optimizer has none.");
+        }
+        pruning.setStep(pruningStep);
+        for (int i = 0; i < count; i++) {
+            int index = buffer.getInt();
+            boolean[] mask = new boolean[buffer.getInt()];
+            long[] words = new long[buffer.getInt()];
+            for (int j = 0; j < words.length; j++) {
+                words[j] = buffer.getLong();
+            }
+            ComputationalNode node = index >= 0 && index < plan.size() ? plan.getNode(index) : null;
+            if (node == null || !node.isLearnable() || node.getValue().getData().length != mask.length) {
+                throw new IOException("Checkpoint has a pruning mask for a node that is not a weight of the graph.");
+            }
+            BitSet bits = BitSet.valueOf(words);
+            for (int j = 0; j < mask.length; j++) {
+                mask[j] = bits.get(j);
+            }
+            pruning.setMask(node, mask);
+        }
+    }
+
+    /**
+     * Encodes the random number generators of the dropout nodes, as the plan index of each node followed by its
+     * serialized generator, and the generator of the loader under the index -1.
+     */
+    private static ByteBuffer encodeRandoms(ExecutionPlan plan, DataLoader loader) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            for (int i = 0; i < plan.size(); i++) {
+                ComputationalNode node = plan.getNode(i);
+                if (node instanceof FunctionNode && ((FunctionNode) node).isDropout()) {
+                    writeRandom(output, i, ((Dropout) ((FunctionNode) node).getFunction()).getRandom());
+                }
+            }
+            if (loader != null) {
+                writeRandom(output, LOADER, loader.getRandom());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    private static void writeRandom(DataOutputStream output, int index, Random generator) throws IOException {
+        ByteArrayOutputStream random = new ByteArrayOutputStream();
+        try (ObjectOutputStream stream = new ObjectOutputStream(random)) {
+            stream.writeObject(generator);
+        }
+        output.writeInt(index);
+        output.writeInt(random.size());
+        random.writeTo(output);
+    }
+
+    /**
+     * Restores the random number generators of the dropout nodes.
+     * @return The random number generator of the loader, null if the checkpoint has none.
+     */
+    private static Random decodeRandoms(ExecutionPlan plan, ByteBuffer payload) throws IOException {
+        ByteBuffer buffer = payload.duplicate().order(ByteOrder.BIG_ENDIAN);
+        Random loaderRandom = null;
+        while (buffer.hasRemaining()) {
+            int index = buffer.getInt();
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            Random random;
+            try (ObjectInputStream stream = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                random = (Random) stream.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e);
+            }
+            if (index == LOADER) {
+                loaderRandom = random;
+                continue;
+            }
+            ComputationalNode node = index >= 0 && index < plan.size() ? plan.getNode(index) : null;
+            if (!(node instanceof FunctionNode) || !((FunctionNode) node).isDropout()) {
+                throw new IOException("Checkpoint has a random number generator for a node that is not a dropout.");
+            }
+            ((Dropout) ((FunctionNode) node).getFunction()).setRandom(random);
+        }
+        return loaderRandom;
+    }
+}
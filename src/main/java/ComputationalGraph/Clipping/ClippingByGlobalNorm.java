@@ -0,0 +1,110 @@
+package ComputationalGraph.Clipping;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.stream.IntStream;
+
+import ComputationalGraph.Memory.ParameterStore;
+import Math.Tensor;
+
+public class ClippingByGlobalNorm extends GradientClipping implements Serializable {
+
+    private static final int CHUNK_SIZE = 1 << 14;
+
+    private final boolean isParallel;
+
+    public ClippingByGlobalNorm(double factor) {
+        this(factor, false);
+    }
+
+    /**
+     * @param factor Threshold of the norm of all gradients.
+     * @param isParallel If true, the norm is reduced and the gradients are scaled on the common fork-join pool.
+     *                   The partial sums are combined in a fixed order, so the result does not depend on the
+     *                   scheduling of the threads.
+     */
+    public ClippingByGlobalNorm(double factor, boolean isParallel) {
+        super(factor);
+        this.isParallel = isParallel;
+    }
+
+    /**
+     * Clips the gradient values of a single tensor, whose norm is the global norm if it is the only gradient.
+     * @param backward The tensor representing the gradients to be clipped.
+     * @return A tensor with clipped gradient values if the norm exceeded the threshold, or the original tensor if not.
+     */
+    @Override
+    public Tensor clip(Tensor backward) {
+        double[] gradient = backward.getData().clone();
+        clip(gradient, 0, gradient.length);
+        return new Tensor(gradient, backward.getShape());
+    }
+
+    @Override
+    public void clip(double[] gradients, int offset, int length) {
+        double norm = Math.sqrt(squaredNorm(gradients, offset, length));
+        if (norm > getFactor()) {
+            double scale = getFactor() / norm;
+            for (int i = offset; i < offset + length; i++) {
+                gradients[i] *= scale;
+            }
+        }
+    }
+
+    /**
+     * Scales the gradients of all nodes by the same factor, so that the norm of all gradients together does not
+     * exceed the threshold. The norm is computed by a single reduction over the gathered segments of the store,
+     * only reading the rows held by a row sparse gradient, and the gradients are scaled in place.
+     * @param store The parameter store.
+     */
+    @Override
+    public void clip(ParameterStore store) {
+        double[] gradients = store.getGradients();
+        ArrayList<int[]> chunks = chunks(store);
+        double[] sums = new double[chunks.size()];
+        if (isParallel && chunks.size() > 1) {
+            IntStream.range(0, sums.length).parallel().forEach(i -> sums[i] = squaredNorm(gradients, chunks.get(i)[0], chunks.get(i)[1]));
+        } else {
+            for (int i = 0; i < sums.length; i++) {
+                sums[i] = squaredNorm(gradients, chunks.get(i)[0], chunks.get(i)[1]);
+            }
+        }
+        double sum = 0.0;
+        for (double partial : sums) {
+            sum += partial;
+        }
+        double norm = Math.sqrt(sum);
+        if (norm > getFactor()) {
+            double scale = getFactor() / norm;
+            if (isParallel && chunks.size() > 1) {
+                IntStream.range(0, chunks.size()).parallel().forEach(i -> scale(gradients, chunks.get(i), scale));
+            } else {
+                for (int[] chunk : chunks) {
+                    scale(gradients, chunk, scale);
+                }
+            }
+        }
+    }
+
+    private static void scale(double[] gradients, int[] chunk, double scale) {
+        for (int i = chunk[0]; i < chunk[0] + chunk[1]; i++) {
+            gradients[i] *= scale;
+        }
+    }
+
+    /**
+     * Splits the ranges of the store that hold a gathered gradient into chunks of at most {@link #CHUNK_SIZE}
+     * values. The ranges are merged when adjacent, so that the chunks only depend on the store.
+     * @return Offsets and lengths of the chunks.
+     */
+    private static ArrayList<int[]> chunks(ParameterStore store) {
+        ArrayList<int[]> chunks = new ArrayList<>();
+        for (int[] range : store.getGradientRanges()) {
+            int end = range[0] + range[1];
+            for (int offset = range[0]; offset < end; offset += CHUNK_SIZE) {
+                chunks.add(new int[]{offset, Math.min(CHUNK_SIZE, end - offset)});
+            }
+        }
+        return chunks;
+    }
+}
@@ -20,11 +20,7 @@ public class ClippingByNorm extends GradientClipping implements Serializable {
     @Override
     public Tensor clip(Tensor backward) {
         double[] backwardValues = backward.getData();
-        double norm = 0.0;
-        for (Double backwardValue : backwardValues) {
-            norm += Math.pow(backwardValue, 2);
-        }
-        norm = Math.sqrt(norm);
+        double norm = Math.sqrt(squaredNorm(backwardValues, 0, backwardValues.length));
         double factor = getFactor();
         if (norm > factor) {
             double[] gradient = new double[backwardValues.length];
@@ -35,4 +31,21 @@ public class ClippingByNorm extends GradientClipping implements Serializable {
         }
         return backward;
     }
+
+    /**
+     * Scales a segment of a gradient array in place, so that its norm does not exceed the threshold.
+     * @param gradients Array holding the gradients.
+     * @param offset Position of the first gradient of the segment.
+     * @param length Number of gradients in the segment.
+     */
+    @Override
+    public void clip(double[] gradients, int offset, int length) {
+        double norm = Math.sqrt(squaredNorm(gradients, offset, length));
+        double factor = getFactor();
+        if (norm > factor) {
+            for (int i = offset; i < offset + length; i++) {
+                gradients[i] = (gradients[i] / norm) * factor;
+            }
+        }
+    }
 }
@@ -27,4 +27,18 @@ public class ClippingByValue extends GradientClipping implements Serializable {
         }
         return new Tensor(gradient, backward.getShape());
     }
+
+    /**
+     * Clips a segment of a gradient array to the range [-factor, factor] in place.
+     * @param gradients Array holding the gradients.
+     * @param offset Position of the first gradient of the segment.
+     * @param length Number of gradients in the segment.
+     */
+    @Override
+    public void clip(double[] gradients, int offset, int length) {
+        double factor = getFactor();
+        for (int i = offset; i < offset + length; i++) {
+            gradients[i] = Math.max(-factor, Math.min(factor, gradients[i]));
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package ComputationalGraph.Clipping;
 
 import java.io.Serializable;
+import ComputationalGraph.Memory.ParameterStore;
 import Math.Tensor;
 
 public abstract class GradientClipping implements Serializable {
@@ -19,4 +20,56 @@ public abstract class GradientClipping implements Serializable {
     }
 
     public abstract Tensor clip(Tensor backward);
+
+    /**
+     * Clips a segment of a gradient array in place.
+     * @param gradients Array holding the gradients.
+     * @param offset Position of the first gradient of the segment.
+     * @param length Number of gradients in the segment.
+     */
+    public void clip(double[] gradients, int offset, int length) {
+        double[] segment = new double[length];
+        System.arraycopy(gradients, offset, segment, 0, length);
+        System.arraycopy(clip(new Tensor(segment, new int[]{length})).getData(), 0, gradients, offset, length);
+    }
+
+    /**
+     * Clips the gradients gathered in the parameter store, after the gradients of all nodes have been gathered
+     * and before any of them updates a value. By default, the gradient of every node is clipped on its own. The
+     * rows held by a row sparse gradient are clipped together, without reading the other rows, which are zero.
+     * @param store The parameter store.
+     */
+    public void clip(ParameterStore store) {
+        double[] gradients = store.getGradients();
+        for (int i = 0; i < store.count(); i++) {
+            if (!store.hasGradient(i)) {
+                continue;
+            }
+            int[] rows = store.getRows(i);
+            if (rows == null) {
+                clip(gradients, store.getOffset(i), store.getLength(i));
+                continue;
+            }
+            int rowLength = store.getRowLength(i);
+            double[] packed = new double[rows.length * rowLength];
+            for (int k = 0; k < rows.length; k++) {
+                System.arraycopy(gradients, store.getOffset(i) + rows[k] * rowLength, packed, k * rowLength, rowLength);
+            }
+            clip(packed, 0, packed.length);
+            for (int k = 0; k < rows.length; k++) {
+                System.arraycopy(packed, k * rowLength, gradients, store.getOffset(i) + rows[k] * rowLength, rowLength);
+            }
+        }
+    }
+
+    /**
+     * @return Sum of the squares of a segment of an array.
+     */
+    protected static double squaredNorm(double[] values, int offset, int length) {
+        double sum = 0.0;
+        for (int i = offset; i < offset + length; i++) {
+            sum += values[i] * values[i];
+        }
+        return sum;
+    }
 }
@@ -0,0 +1,81 @@
+package ComputationalGraph.Compression;
+
+import ComputationalGraph.Node.ComputationalNode;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.HashSet;
+
+public class CompressedModel implements Serializable {
+
+    private final HashMap<ComputationalNode, CompressedProduct> products;
+    private final HashSet<ComputationalNode> fusedNodes;
+    private final HashSet<ComputationalNode> droppedNodes;
+
+    /**
+     * Holds the compressed state of an inference graph: the compressed product, quantized or sparse, of every
+     * compressed matrix multiplication and dense layer node, the function nodes whose function is applied by the
+     * product they follow, and the weight nodes whose double values have been dropped since only compressed
+     * products read them.
+     */
+    public CompressedModel() {
+        this.products = new HashMap<>();
+        this.fusedNodes = new HashSet<>();
+        this.droppedNodes = new HashSet<>();
+    }
+
+    public void addProduct(ComputationalNode node, CompressedProduct product) {
+        products.put(node, product);
+    }
+
+    /**
+     * @param node Node of the graph.
+     * @return The compressed product computed by the node, null if the node is not compressed.
+     */
+    public CompressedProduct getProduct(ComputationalNode node) {
+        return products.get(node);
+    }
+
+    /**
+     * Marks a function node whose function is applied by the compressed product of its parent, so that its value
+     * is the value of its parent.
+     * @param node Function node.
+     */
+    public void addFusedNode(ComputationalNode node) {
+        fusedNodes.add(node);
+    }
+
+    public boolean isFused(ComputationalNode node) {
+        return fusedNodes.contains(node);
+    }
+
+    public void addDroppedNode(ComputationalNode node) {
+        droppedNodes.add(node);
+    }
+
+    /**
+     * @param node Node of the graph.
+     * @return True if the node is a weight node whose double values have been replaced by compressed products.
+     */
+    public boolean isDropped(ComputationalNode node) {
+        return droppedNodes.contains(node);
+    }
+
+    /**
+     * @return Number of compressed products.
+     */
+    public int size() {
+        return products.size();
+    }
+
+    /**
+     * @return Number of bytes held by the compressed weights.
+     */
+    public long getMemory() {
+        long memory = 0;
+        for (CompressedProduct product : products.values()) {
+            memory += product.getMemory();
+        }
+        return memory;
+    }
+}
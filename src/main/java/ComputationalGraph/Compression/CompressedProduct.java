@@ -0,0 +1,34 @@
+package ComputationalGraph.Compression;
+
+import ComputationalGraph.Function.ElementwiseFunction;
+import Math.Tensor;
+
+import java.io.Serializable;
+
+public interface CompressedProduct extends Serializable {
+
+    /**
+     * @param input Input of the product.
+     * @return Number of elements of the product.
+     */
+    int resultLength(Tensor input);
+
+    /**
+     * Computes x W from the compressed weights W, adds the bias and applies the activation of the product.
+     * @param input Input x, whose last dimension is the number of rows of the weights.
+     * @param bias Bias with one element per column, or null if no bias is added.
+     * @param values Buffer that receives the result, or null to allocate a new one.
+     * @return The result.
+     */
+    Tensor multiply(Tensor input, double[] bias, double[] values);
+
+    /**
+     * @return Element-wise function applied to the product, null if none.
+     */
+    ElementwiseFunction getActivation();
+
+    /**
+     * @return Number of bytes held by the compressed weights.
+     */
+    long getMemory();
+}
@@ -0,0 +1,136 @@
+package ComputationalGraph.Compression;
+
+import ComputationalGraph.Function.ElementwiseFunction;
+import ComputationalGraph.Kernel.QuantizedMatrixMultiplication;
+import Math.Tensor;
+
+public class QuantizedProduct implements CompressedProduct {
+
+    private final byte[] weights;
+    private final int inner;
+    private final int columns;
+    private final double[] weightScales;
+    private final double inputScale;
+    private final double[] scales;
+    private final ElementwiseFunction activation;
+
+    /**
+     * Quantizes the weights of a product x W to int8 with one scale per output channel, the largest absolute
+     * weight of the column divided by 127, and fixes the scale of the input from its range observed on a
+     * calibration set. Inputs outside of that range are clamped.
+     * @param weights Weights W, a matrix.
+     * @param inputRange Largest absolute value of the input observed during calibration.
+     * @param activation Element-wise function applied to the dequantized product, or null for none.
+     */
+    public QuantizedProduct(Tensor weights, double inputRange, ElementwiseFunction activation) {
+        int[] shape = weights.getShape();
+        if (shape.length != 2) {
+            throw new IllegalArgumentException("Only matrices of weights can be quantized.");
+        }
+        this.inner = shape[0];
+        this.columns = shape[1];
+        this.activation = activation;
+        double[] values = weights.getData();
+        this.weights = new byte[values.length];
+        this.weightScales = new double[columns];
+        for (int t = 0; t < inner; t++) {
+            for (int j = 0; j < columns; j++) {
+                weightScales[j] = Math.max(weightScales[j], Math.abs(values[t * columns + j]));
+            }
+        }
+        for (int j = 0; j < columns; j++) {
+            weightScales[j] /= 127;
+        }
+        for (int t = 0; t < inner; t++) {
+            for (int j = 0; j < columns; j++) {
+                this.weights[t * columns + j] = quantize(values[t * columns + j], weightScales[j]);
+            }
+        }
+        this.inputScale = inputRange > 0 ? inputRange / 127 : 1.0;
+        this.scales = new double[columns];
+        for (int j = 0; j < columns; j++) {
+            scales[j] = inputScale * weightScales[j];
+        }
+    }
+
+    /**
+     * @param value Value to quantize.
+     * @param scale Scale of the quantized values.
+     * @return The value divided by the scale, rounded to the nearest integer and clamped to [-127, 127].
+     */
+    public static byte quantize(double value, double scale) {
+        if (scale == 0) {
+            return 0;
+        }
+        long quantized = Math.round(value / scale);
+        return (byte) Math.max(-127, Math.min(127, quantized));
+    }
+
+    /**
+     * @param input Input of the product.
+     * @return Number of elements of the product.
+     */
+    @Override
+    public int resultLength(Tensor input) {
+        return input.getData().length / inner * columns;
+    }
+
+    /**
+     * Quantizes the input and computes the product with the int8 kernel, which dequantizes the result, adds the
+     * bias and applies the activation while the result is still in the cache.
+     * @param input Input x, whose last dimension is the number of rows of the weights.
+     * @param bias Bias with one element per column, or null if no bias is added.
+     * @param values Buffer that receives the result, or null to allocate a new one.
+     * @return The dequantized result.
+     */
+    @Override
+    public Tensor multiply(Tensor input, double[] bias, double[] values) {
+        int[] shape = input.getShape().clone();
+        if (shape[shape.length - 1] != inner) {
+            throw new IllegalArgumentException("Inner dimensions of the operands do not match");
+        }
+        shape[shape.length - 1] = columns;
+        double[] inputValues = input.getData();
+        byte[] quantized = new byte[inputValues.length];
+        double inverse = 1.0 / inputScale;
+        for (int i = 0; i < inputValues.length; i++) {
+            long value = Math.round(inputValues[i] * inverse);
+            quantized[i] = (byte) Math.max(-127, Math.min(127, value));
+        }
+        if (values == null) {
+            values = new double[resultLength(input)];
+        }
+        QuantizedMatrixMultiplication.multiply(quantized, weights, inputValues.length / inner, inner, columns, scales, bias, activation, values);
+        return new Tensor(values, shape);
+    }
+
+    /**
+     * @return The quantized weights multiplied back by their scales.
+     */
+    public Tensor dequantizeWeights() {
+        double[] values = new double[weights.length];
+        for (int t = 0; t < inner; t++) {
+            for (int j = 0; j < columns; j++) {
+                values[t * columns + j] = weights[t * columns + j] * weightScales[j];
+            }
+        }
+        return new Tensor(values, new int[]{inner, columns});
+    }
+
+    @Override
+    public ElementwiseFunction getActivation() {
+        return activation;
+    }
+
+    public double getInputScale() {
+        return inputScale;
+    }
+
+    /**
+     * @return Number of bytes held by the quantized weights and their scales.
+     */
+    @Override
+    public long getMemory() {
+        return weights.length + 8L * (2 * columns + 1);
+    }
+}
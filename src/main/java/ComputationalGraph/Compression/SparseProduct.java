@@ -0,0 +1,98 @@
+package ComputationalGraph.Compression;
+
+import ComputationalGraph.Function.ElementwiseFunction;
+import ComputationalGraph.Kernel.SparseMatrixMultiplication;
+import ComputationalGraph.Sparse.BlockSparseMatrix;
+import ComputationalGraph.Sparse.CsrMatrix;
+import Math.Tensor;
+
+public class SparseProduct implements CompressedProduct {
+
+    private final CsrMatrix matrix;
+    private final BlockSparseMatrix blocks;
+    private final ElementwiseFunction activation;
+
+    /**
+     * Stores the non-zeros of the weights of a product x W, such as weights zeroed by a pruning, so that the
+     * product and the stored weights scale with the number of non-zeros. Single values are stored in compressed
+     * sparse row form, larger blocks in block sparse row form.
+     * @param weights Weights W, a matrix.
+     * @param blockRows Number of rows of a block, one to store single values.
+     * @param blockColumns Number of columns of a block, one to store single values.
+     * @param activation Element-wise function applied to the product, or null for none.
+     */
+    public SparseProduct(Tensor weights, int blockRows, int blockColumns, ElementwiseFunction activation) {
+        int[] shape = weights.getShape();
+        if (shape.length != 2) {
+            throw new IllegalArgumentException("Only matrices of weights can be stored sparse.");
+        }
+        if (blockRows == 1 && blockColumns == 1) {
+            this.matrix = CsrMatrix.fromDense(weights.getData(), shape[0], shape[1]);
+            this.blocks = null;
+        } else {
+            this.matrix = null;
+            this.blocks = BlockSparseMatrix.fromDense(weights.getData(), shape[0], shape[1], blockRows, blockColumns);
+        }
+        this.activation = activation;
+    }
+
+    private int getRows() {
+        return matrix != null ? matrix.getRows() : blocks.getRows();
+    }
+
+    private int getColumns() {
+        return matrix != null ? matrix.getColumns() : blocks.getColumns();
+    }
+
+    @Override
+    public int resultLength(Tensor input) {
+        return input.getData().length / getRows() * getColumns();
+    }
+
+    /**
+     * Computes the product with the sparse kernel, which adds the bias and applies the activation to every row
+     * as soon as it is complete.
+     * @param input Input x, whose last dimension is the number of rows of the weights.
+     * @param bias Bias with one element per column, or null if no bias is added.
+     * @param values Buffer that receives the result, or null to allocate a new one.
+     * @return The result.
+     */
+    @Override
+    public Tensor multiply(Tensor input, double[] bias, double[] values) {
+        int[] shape = input.getShape().clone();
+        if (shape[shape.length - 1] != getRows()) {
+            throw new IllegalArgumentException("Inner dimensions of the operands do not match");
+        }
+        shape[shape.length - 1] = getColumns();
+        if (values == null) {
+            values = new double[resultLength(input)];
+        }
+        int rows = input.getData().length / getRows();
+        if (matrix != null) {
+            SparseMatrixMultiplication.multiply(input.getData(), rows, matrix, bias, activation, values);
+        } else {
+            SparseMatrixMultiplication.multiply(input.getData(), rows, blocks, bias, activation, values);
+        }
+        return new Tensor(values, shape);
+    }
+
+    /**
+     * @return The weights as a dense matrix.
+     */
+    public Tensor toDense() {
+        if (matrix != null) {
+            return new Tensor(matrix.toDense(), new int[]{getRows(), getColumns()});
+        }
+        return new Tensor(blocks.toDense(), new int[]{getRows(), getColumns()});
+    }
+
+    @Override
+    public ElementwiseFunction getActivation() {
+        return activation;
+    }
+
+    @Override
+    public long getMemory() {
+        return matrix != null ? matrix.getMemory() : blocks.getMemory();
+    }
+}
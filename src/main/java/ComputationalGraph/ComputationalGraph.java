@@ -1,31 +1,100 @@
 package ComputationalGraph;
 
 import Classification.Performance.ClassificationPerformance;
+import ComputationalGraph.Checkpoint.Checkpoint;
+import ComputationalGraph.Checkpoint.Checkpointer;
+import ComputationalGraph.Compression.CompressedModel;
+import ComputationalGraph.Compression.CompressedProduct;
+import ComputationalGraph.Compression.QuantizedProduct;
+import ComputationalGraph.Compression.SparseProduct;
+import ComputationalGraph.Data.Batch;
+import ComputationalGraph.Data.DataLoader;
 import ComputationalGraph.Function.*;
+import ComputationalGraph.Kernel.MatrixMultiplication;
+import ComputationalGraph.Kernel.SparseMatrixMultiplication;
+import ComputationalGraph.Memory.BufferArena;
+import ComputationalGraph.Memory.HeapArena;
+import ComputationalGraph.Memory.MemoryPlan;
 import ComputationalGraph.Node.*;
+import ComputationalGraph.Pruning.Pruning;
+import ComputationalGraph.Sparse.CsrMatrix;
+import ComputationalGraph.Sparse.RowSparseMatrix;
 import Math.Tensor;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 public abstract class ComputationalGraph implements Serializable {
 
     private ComputationalNode outputNode;
+    private ComputationalNode lossNode;
     private final ArrayList<ComputationalNode> inputNodes;
-    private ArrayList<ComputationalNode> leafNodes;
+    private final HashSet<ComputationalNode> frozenNodes;
+    private ExecutionPlan plan;
+    private CompressedModel compressedModel;
+    private boolean isLazySparseInput;
+    private transient ExecutionContext context;
+    private transient ConcurrentLinkedQueue<ExecutionContext> inferenceContexts;
+    private transient ParallelExecutor executor;
+    private transient Checkpointer checkpointer;
     protected final NeuralNetworkParameter parameters;
 
     public ComputationalGraph(NeuralNetworkParameter parameters) {
         this.inputNodes = new ArrayList<>();
+        this.frozenNodes = new HashSet<>();
         this.parameters = parameters;
     }
 
     /**
-     * Trains the computational graph using the given training set and parameters.
+     * Trains the computational graph using the given training set and parameters. The implementation owns the
+     * order in which the instances are served, so a checkpoint taken during the training only resumes exactly if
+     * the implementation restores that order itself; {@link #fit(DataLoader)} checkpoints and restores it.
      * @param trainSet The training set.
      */
     public abstract void train(ArrayList<Tensor> trainSet);
 
+    /**
+     * Trains the computational graph on the mini-batches of the given loader from the current epoch of the
+     * optimizer up to the number of epochs in the parameters. The inputs of each batch are fed into the first
+     * input node and its labels into the second one, while the loader assembles the next batches in the
+     * background. If a checkpointer is set, its checkpoints include the data order of the loader, so that
+     * {@link #resume(String, DataLoader)} continues from the middle of the restored epoch and a resumed run
+     * trains exactly as many epochs as an uninterrupted one.
+     * @param loader The loader serving the training set.
+     */
+    public void fit(DataLoader loader) {
+        if (checkpointer != null) {
+            checkpointer.setLoader(loader);
+        }
+        try {
+            for (int i = parameters.getOptimizer().getEpoch(); i < parameters.getEpoch(); i++) {
+                for (Batch batch : loader) {
+                    getInputNode(0).setValue(batch.getInput());
+                    getInputNode(1).setValue(batch.getLabels());
+                    forwardCalculation();
+                    backpropagation();
+                }
+                endEpoch();
+            }
+        } finally {
+            if (checkpointer != null) {
+                checkpointer.setLoader(null);
+            }
+        }
+    }
+
+    /**
+     * Ends an epoch of the training by moving the optimizer to the next epoch and, if a checkpointer is set,
+     * writing a checkpoint when its epoch interval has passed.
+     */
+    protected void endEpoch() {
+        parameters.getOptimizer().incrementEpoch();
+        if (checkpointer != null) {
+            checkpointer.afterEpoch(plan, parameters.getOptimizer());
+        }
+    }
+
     /**
      * Tests the computational graph on the given test set.
      * @param testSet The test set.
@@ -107,33 +176,212 @@ public abstract class ComputationalGraph implements Serializable {
 
     /**
      * Adds a loss to the computational graph based on the provided output node.
-     * Initializes a class label node for use in the loss computation and determines all leaf nodes
-     * in the subgraph stemming from the loss node.
+     * Initializes a class label node for use in the loss computation and compiles the subgraph stemming
+     * from the loss node into an execution plan.
      * @param outputNode The output node of the computational graph, for which loss needs to be added.
      * @return The class label node associated with the added loss.
      */
     protected ComputationalNode addLoss(ComputationalNode outputNode) {
         ComputationalNode classLabelNode = new ComputationalNode();
         this.outputNode = outputNode;
-        ComputationalNode lossNode = parameters.getLossFunction().addLoss(outputNode, classLabelNode, parameters.getBatchDimension());
-        this.leafNodes = new ArrayList<>();
-        ArrayList<ComputationalNode> queue = new ArrayList<>();
+        this.lossNode = parameters.getLossFunction().addLoss(outputNode, classLabelNode, parameters.getBatchDimension());
+        compile();
+        return classLabelNode;
+    }
+
+    /**
+     * Freezes the current topology of the graph into an execution plan. The plan is compiled automatically by
+     * {@link #addLoss(ComputationalNode)}; subclasses that add edges after the loss must call this method again.
+     */
+    protected void compile() {
+        this.plan = new ExecutionPlan(lossNode, outputNode, frozenNodes);
+        this.context = null;
+        this.inferenceContexts = null;
+    }
+
+    /**
+     * Freezes a learnable node: its value is no longer updated, and the backward pass skips every gradient
+     * that can only reach frozen nodes.
+     * @param node The learnable node to be frozen.
+     */
+    public void freeze(ComputationalNode node) {
+        if (!node.isLearnable()) {
+            throw new IllegalArgumentException("Only learnable nodes can be frozen.");
+        }
+        frozenNodes.add(node);
+        if (plan != null) {
+            compile();
+        }
+    }
+
+    /**
+     * Trains a frozen learnable node again.
+     * @param node The learnable node to be unfrozen.
+     */
+    public void unfreeze(ComputationalNode node) {
+        frozenNodes.remove(node);
+        if (plan != null) {
+            compile();
+        }
+    }
+
+    public boolean isFrozen(ComputationalNode node) {
+        return frozenNodes.contains(node);
+    }
+
+    /**
+     * Rewrites every chain of element-wise function nodes, in which each node except the last one has a single
+     * child, into a single node computing the composed function, and recompiles the execution plan. The last
+     * node of a chain keeps its identity and takes over the composed function, the other nodes are removed
+     * from the graph. Input, output and loss nodes only end chains, and biased nodes can not be fused into
+     * their children.
+     * @return Number of nodes removed from the graph.
+     */
+    protected int fuseElementwiseFunctions() {
+        if (plan == null) return 0;
         HashSet<ComputationalNode> visited = new HashSet<>();
-        queue.add(lossNode);
-        while (!queue.isEmpty()) {
-            ComputationalNode currentNode = queue.remove(0);
-            if (currentNode.parentsSize() == 0) {
-                leafNodes.add(currentNode);
-            }
-            for (int i = 0; i < currentNode.parentsSize(); i++) {
-                ComputationalNode parent = currentNode.getParent(i);
-                if (!visited.contains(parent)) {
-                    visited.add(parent);
-                    queue.add(parent);
-                }
+        int removed = 0;
+        for (int i = plan.size() - 1; i >= 0; i--) {
+            ComputationalNode node = plan.getNode(i);
+            if (visited.contains(node) || !isElementwise(node)) {
+                continue;
+            }
+            LinkedList<FunctionNode> chain = new LinkedList<>();
+            ComputationalNode parent = node.getParent(0);
+            while (isElementwise(parent) && !parent.isBiased() && parent.childrenSize() == 1 && parent != outputNode && parent != lossNode && !inputNodes.contains(parent)) {
+                chain.addFirst((FunctionNode) parent);
+                visited.add(parent);
+                parent = parent.getParent(0);
+            }
+            if (!chain.isEmpty()) {
+                ((FunctionNode) node).fuse(chain);
+                removed += chain.size();
             }
         }
-        return classLabelNode;
+        if (removed > 0) {
+            compile();
+        }
+        return removed;
+    }
+
+    /**
+     * @return True if the node applies an element-wise function to a single parent.
+     */
+    private boolean isElementwise(ComputationalNode node) {
+        return node instanceof FunctionNode && !node.isLearnable() && node.parentsSize() == 1 && ((FunctionNode) node).getFunction() instanceof ElementwiseFunction;
+    }
+
+    /**
+     * @return The execution plan of the graph, null if no loss has been added yet.
+     */
+    protected ExecutionPlan getExecutionPlan() {
+        return plan;
+    }
+
+    /**
+     * Creates a new execution context for the graph. Every context holds its own values and gradients, while
+     * the learnable weights are shared, so that each thread can run inference with its own context at the
+     * same time.
+     * @return A new execution context.
+     */
+    protected ExecutionContext createExecutionContext() {
+        return new ExecutionContext(plan, createBufferArena());
+    }
+
+    /**
+     * Sets the precision in which the activations read by the backward pass are kept during a training step.
+     * With {@link Precision#FLOAT}, {@link Precision#BFLOAT16} or {@link Precision#HALF}, the values and function
+     * contexts are packed into four or two bytes per value right after they are computed, and the memory plan
+     * reuses their buffers during the forward pass. The forward and backward passes still compute in double
+     * precision, and the weights, the gradients and the optimizer state keep their own precision. With
+     * {@link Precision#HALF}, whose range is small, a loss scaler should be set on the optimizer.
+     * @param precision {@link Precision#DOUBLE}, {@link Precision#FLOAT}, {@link Precision#BFLOAT16} or
+     *                  {@link Precision#HALF}.
+     */
+    public void setActivationPrecision(Precision precision) {
+        getContext().setActivationPrecision(precision);
+    }
+
+    /**
+     * Sets whether the learnable weights multiplied by a sparse input receive a row sparse gradient, which only
+     * holds the rows of the columns the batch uses. The optimizer then updates those rows and their moments
+     * lazily, as for an embedding table: the other rows keep their values and moments, so optimizers with
+     * moments or weight decay train differently than on the same input fed dense, while a step costs time in
+     * proportion to the rows used instead of the whole weight matrix. By default the gradient is dense and the
+     * update matches the one of a dense input.
+     * @param isLazySparseInput True to update only the rows a sparse input uses.
+     */
+    public void setLazySparseInput(boolean isLazySparseInput) {
+        this.isLazySparseInput = isLazySparseInput;
+    }
+
+    /**
+     * Sets the executor that runs independent nodes of the forward and backward passes in parallel. Passing
+     * null restores the sequential execution.
+     * @param executor The parallel executor.
+     */
+    public void setExecutor(ParallelExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Creates the arena that provides the reusable buffers of an execution context. Subclasses can override
+     * this method to plug in a different arena.
+     * @return A new buffer arena.
+     */
+    protected BufferArena createBufferArena() {
+        return new HeapArena();
+    }
+
+    /**
+     * Returns the memory plan of the last training step, which reports the planned and the naive peak bytes
+     * of the intermediate values and gradients.
+     * @return The memory plan, null if no training step has been completed yet.
+     */
+    protected MemoryPlan getMemoryPlan() {
+        return getContext().getMemoryPlan(true);
+    }
+
+    /**
+     * @return The execution context used by training and by {@link #predict()}.
+     */
+    private synchronized ExecutionContext getContext() {
+        if (context == null) {
+            context = createExecutionContext();
+        }
+        return context;
+    }
+
+    private synchronized ConcurrentLinkedQueue<ExecutionContext> getInferenceContexts() {
+        if (inferenceContexts == null) {
+            inferenceContexts = new ConcurrentLinkedQueue<>();
+        }
+        return inferenceContexts;
+    }
+
+    /**
+     * Takes an idle inference context or creates a new one, so that every inference call running at the same
+     * time has a context of its own.
+     * @return An execution context that no other call uses until it is released.
+     */
+    private ExecutionContext acquireInferenceContext() {
+        ExecutionContext inferenceContext = getInferenceContexts().poll();
+        if (inferenceContext == null) {
+            return createExecutionContext();
+        }
+        return inferenceContext;
+    }
+
+    /**
+     * Clears a context taken by {@link #acquireInferenceContext()} and makes it available to the next inference
+     * call, which reuses its memory plan and arena buffers. Contexts of a replaced execution plan are dropped.
+     * @param inferenceContext Context of a finished inference call.
+     */
+    private void releaseInferenceContext(ExecutionContext inferenceContext) {
+        inferenceContext.clear();
+        if (inferenceContext.getPlan() == plan) {
+            getInferenceContexts().offer(inferenceContext);
+        }
     }
 
     protected ComputationalNode addEdge(ComputationalNode first, ComputationalNode second, boolean isBiased, boolean isHadamard) {
@@ -143,6 +391,36 @@ public abstract class ComputationalGraph implements Serializable {
         return newNode;
     }
 
+    /**
+     * Adds a learnable bias to every row of the given node. Unlike a biased node, which appends a column of ones
+     * to its value so that the bias becomes the last row of the next weight matrix, the bias is kept in its own
+     * node, is added in place where possible and receives its gradient already summed over the rows.
+     * @param first The node to which the bias is added.
+     * @param bias Learnable node holding the bias, with as many elements as the last dimension of the first node.
+     * @return A new node holding the sum.
+     */
+    protected ComputationalNode addBiasEdge(ComputationalNode first, ComputationalNode bias) {
+        ComputationalNode newNode = new BiasAddNode();
+        first.add(newNode);
+        bias.add(newNode);
+        return newNode;
+    }
+
+    /**
+     * Looks up the rows of an embedding table. The gradient of the table only holds the rows that have been
+     * looked up, and the optimizer only updates these rows and their moments, so that a training step costs the
+     * number of ids instead of the size of the table.
+     * @param ids Node holding integer ids, stored as doubles.
+     * @param table Learnable node holding the table, a matrix with one row per id.
+     * @return A new node holding the row of every id, of the shape of the ids followed by the size of a row.
+     */
+    protected ComputationalNode addEmbeddingEdge(ComputationalNode ids, ComputationalNode table) {
+        ComputationalNode newNode = new EmbeddingNode();
+        ids.add(newNode);
+        table.add(newNode);
+        return newNode;
+    }
+
     protected ComputationalNode addAdditionEdge(ComputationalNode first, ComputationalNode second, boolean isBiased) {
         ComputationalNode newNode = new ComputationalNode(false, isBiased);
         first.add(newNode);
@@ -166,113 +444,141 @@ public abstract class ComputationalGraph implements Serializable {
     }
 
     /**
-     * Recursive helper function to perform depth-first search for topological sorting.
-     * @param node The current node being processed.
-     * @param visited A set of visited nodes.
-     * @return A list representing the partial topological order.
-     */
-    private LinkedList<ComputationalNode> sortRecursive(ComputationalNode node, HashSet<ComputationalNode> visited) {
-        LinkedList<ComputationalNode> queue = new LinkedList<>();
-        visited.add(node);
-        for (int i = 0; i < node.childrenSize(); i++) {
-            ComputationalNode child = node.getChild(i);
-            if (!visited.contains(child)) {
-                queue.addAll(sortRecursive(child, visited));
-            }
-        }
-        queue.offer(node);
-        return queue;
-    }
-
-    /**
-     * Performs topological sorting on the computational graph.
-     * @return A list representing the topological order of the nodes.
-     */
-    private LinkedList<ComputationalNode> topologicalSort() {
-        LinkedList<ComputationalNode> sortedList = new LinkedList<>();
-        HashSet<ComputationalNode> visited = new HashSet<>();
-        for (ComputationalNode node : leafNodes) {
-            if (!visited.contains(node)) {
-                LinkedList<ComputationalNode> queue = sortRecursive(node, visited);
-                while (!queue.isEmpty()) {
-                    sortedList.offerLast(queue.pollFirst());
-                }
-            }
-        }
-        return sortedList;
-    }
-
-    /**
-     * Recursive helper function to clear the values and gradients of nodes.
+     * Clears the state of the default execution context together with the values of the input nodes and the
+     * gradients of the learnable nodes.
      */
-    private void clearRecursive(HashSet<ComputationalNode> visited, ComputationalNode node) {
-        visited.add(node);
-        if (!node.isLearnable()) {
-            node.setValue(null);
-        }
-        node.setBackward(null);
-        for (int i = 0; i < node.childrenSize(); i++) {
-            ComputationalNode child = node.getChild(i);
-            if (!visited.contains(child)) {
-                clearRecursive(visited, child);
+    private void clear() {
+        getContext().clear();
+        for (int i = 0; i < plan.size(); i++) {
+            ComputationalNode node = plan.getNode(i);
+            if (!node.isLearnable()) {
+                node.setValue(null);
             }
+            node.setBackward(null);
+            node.setSparseBackward(null);
         }
     }
 
     /**
-     * Clears the values and gradients of all nodes in the graph.
+     * Computes the derivative of a matrix product with respect to one of its operands. The transposed operand
+     * is read in place by the kernel instead of being copied.
+     * @param context Execution context providing the buffer.
+     * @param node Index of the node whose derivative is computed.
+     * @param left Left factor.
+     * @param transposeLeft True if the left factor is to be transposed.
+     * @param right Right factor.
+     * @param transposeRight True if the right factor is to be transposed.
+     * @return The derivative.
      */
-    private void clear() {
-        HashSet<ComputationalNode> visited = new HashSet<>();
-        for (ComputationalNode node : leafNodes) {
-            if (!visited.contains(node)) {
-                clearRecursive(visited, node);
-            }
+    private Tensor multiplyDerivative(ExecutionContext context, int node, Tensor left, boolean transposeLeft, Tensor right, boolean transposeRight) {
+        double[] values = null;
+        if (plan.childrenSize(node) == 1) {
+            values = context.allocateBackward(node, MatrixMultiplication.resultLength(left, transposeLeft, right, transposeRight));
         }
+        return MatrixMultiplication.multiply(left, transposeLeft, right, transposeRight, values);
     }
 
     /**
-     * Swaps the last two dimensions of the Tensor.
-     * @param length dimension size.
+     * Computes the derivative of a product of a sparse value and a matrix with respect to the matrix, in time
+     * proportional to the non-zeros of the sparse value.
+     * @param context Execution context providing the buffer.
+     * @param node Index of the matrix.
+     * @param left Sparse left factor.
+     * @param backward Gradient of the product.
+     * @return The derivative.
      */
-    private int[] transposeAxes(int length) {
-        int[] axes = new int[length];
-        for (int i = 0; i < axes.length - 2; i++) {
-            axes[i] = i;
+    private Tensor sparseDerivative(ExecutionContext context, int node, CsrMatrix left, Tensor backward) {
+        int columns = backward.getShape()[backward.getShape().length - 1];
+        double[] values;
+        if (plan.childrenSize(node) == 1) {
+            values = context.allocateBackward(node, left.getColumns() * columns);
+        } else {
+            values = new double[left.getColumns() * columns];
         }
-        axes[axes.length - 1] = axes.length - 2;
-        axes[axes.length - 2] = axes.length - 1;
-        return axes;
+        SparseMatrixMultiplication.multiplyTransposed(left, backward.getData(), columns, values);
+        return new Tensor(values, new int[]{left.getColumns(), columns});
     }
 
     /**
      * Calculates the derivative of the child node with respect to the parent node.
-     * @param node Parent node.
-     * @param child Child node.
+     * @param context Execution context holding the values and gradients.
+     * @param node Index of the parent node.
+     * @param child Index of the child node.
      * @return The gradient tensor.
      */
-    private Tensor calculateDerivative(ComputationalNode node, ComputationalNode child) {
-        if (child.parentsSize() == 0) {
-            return null;
-        }
-        if (child instanceof FunctionNode) {
-            return ((FunctionNode) child).derivative();
+    private Tensor calculateDerivative(ExecutionContext context, int node, int child) {
+        ComputationalNode childNode = plan.getNode(child);
+        if (childNode instanceof SoftmaxCrossEntropyNode) {
+            if (plan.getParentIndex(child, 0) != node) {
+                return null;
+            }
+            Tensor probabilities = context.getContext(child);
+            double[] values;
+            if (plan.childrenSize(node) == 1) {
+                values = context.allocateBackward(node, probabilities.getData().length);
+            } else {
+                values = new double[probabilities.getData().length];
+            }
+            return ((SoftmaxCrossEntropyNode) childNode).derivative(probabilities, context.getValue(plan.getParentIndex(child, 1)), context.getBackward(child), values);
+        } else if (childNode instanceof LinearNode) {
+            Tensor gradient = context.getContext(child);
+            int input = plan.getParentIndex(child, 0);
+            int weights = plan.getParentIndex(child, 1);
+            if (input == node) {
+                return multiplyDerivative(context, node, gradient, false, context.getValue(weights), true);
+            }
+            if (weights == node) {
+                CsrMatrix sparseValue = context.getSparseValue(input);
+                if (sparseValue != null) {
+                    return sparseDerivative(context, node, sparseValue, gradient);
+                }
+                return multiplyDerivative(context, node, context.getValue(input), true, gradient, false);
+            }
+            Tensor bias = context.getValue(node);
+            double[] values;
+            if (plan.childrenSize(node) == 1) {
+                values = context.allocateBackward(node, bias.getData().length);
+            } else {
+                values = new double[bias.getData().length];
+            }
+            return BiasAddNode.biasDerivative(gradient, bias, values);
+        } else if (childNode instanceof BiasAddNode) {
+            if (plan.getParentIndex(child, 0) == node) {
+                return context.getBackward(child);
+            }
+            Tensor bias = context.getValue(node);
+            double[] values;
+            if (plan.childrenSize(node) == 1) {
+                values = context.allocateBackward(node, bias.getData().length);
+            } else {
+                values = new double[bias.getData().length];
+            }
+            return BiasAddNode.biasDerivative(context.getBackward(child), bias, values);
+        } else if (childNode instanceof FunctionNode) {
+            int length = context.getValueLength(node);
+            double[] values;
+            if (plan.childrenSize(node) == 1) {
+                values = context.allocateBackward(node, length);
+            } else {
+                values = new double[length];
+            }
+            return ((FunctionNode) childNode).derivative(context.getValue(child), context.getContext(child), context.getBackward(child), values);
         } else {
             Tensor backward;
-            if (child.isBiased()) {
-                backward = ComputationalNode.getBiasedPartial(child.getBackward());
+            if (childNode.isBiased()) {
+                backward = ComputationalNode.getBiasedPartial(context.getBackward(child));
             } else {
-                backward = child.getBackward();
+                backward = context.getBackward(child);
             }
-            if (child instanceof ConcatenatedNode) {
-                int index = ((ConcatenatedNode) child).getIndex(node);
-                int blockSize = backward.getShape()[((ConcatenatedNode) child).getDimension()] / child.parentsSize();
+            if (childNode instanceof ConcatenatedNode) {
+                int index = ((ConcatenatedNode) childNode).getIndex(plan.getNode(node));
+                int blockSize = backward.getShape()[((ConcatenatedNode) childNode).getDimension()] / plan.parentsSize(child);
                 int dimensions = blockSize;
                 int[] shape = new int[backward.getShape().length];
                 for (int i = 0; i < backward.getShape().length; i++) {
-                    if (((ConcatenatedNode) child).getDimension() > i) {
+                    if (((ConcatenatedNode) childNode).getDimension() > i) {
                         shape[i] = backward.getShape()[i];
-                    } else if (((ConcatenatedNode) child).getDimension() < i) {
+                    } else if (((ConcatenatedNode) childNode).getDimension() < i) {
                         dimensions *= backward.getShape()[i];
                         shape[i] = backward.getShape()[i];
                     } else {
@@ -280,32 +586,41 @@ public abstract class ComputationalGraph implements Serializable {
                     }
                 }
                 double[] childValues = backward.getData();
-                ArrayList<Double> newValues = new ArrayList<>();
-                int i = index * dimensions;
+                int length = childValues.length / plan.parentsSize(child);
+                double[] newValues;
+                if (plan.childrenSize(node) == 1) {
+                    newValues = context.allocateBackward(node, length);
+                } else {
+                    newValues = new double[length];
+                }
+                int i = index * dimensions, j = 0;
                 while (i < childValues.length) {
-                    for (int k = 0; k < dimensions; k++) {
-                        newValues.add(childValues[i + k]);
-                    }
-                    i += child.parentsSize() * dimensions;
+                    System.arraycopy(childValues, i, newValues, j, dimensions);
+                    j += dimensions;
+                    i += plan.parentsSize(child) * dimensions;
                 }
                 return new Tensor(newValues, shape);
             } else {
-                if (child instanceof MultiplicationNode) {
-                    ComputationalNode left = child.getParent(0);
-                    ComputationalNode right = child.getParent(1);
+                if (childNode instanceof MultiplicationNode) {
+                    int left = plan.getParentIndex(child, 0);
+                    int right = plan.getParentIndex(child, 1);
                     if (left == node) {
-                        Tensor rightValue = right.getValue();
-                        if (((MultiplicationNode) child).isHadamard()) {
+                        Tensor rightValue = context.getValue(right);
+                        if (((MultiplicationNode) childNode).isHadamard()) {
                             return rightValue.hadamardProduct(backward);
                         }
-                        return backward.multiply(rightValue.transpose(transposeAxes(rightValue.getShape().length)));
+                        return multiplyDerivative(context, node, backward, false, rightValue, true);
+                    }
+                    CsrMatrix sparseValue = context.getSparseValue(left);
+                    if (sparseValue != null && !((MultiplicationNode) childNode).isHadamard()) {
+                        return sparseDerivative(context, node, sparseValue, backward);
                     }
-                    Tensor leftValue = left.getValue();
-                    if (((MultiplicationNode) child).isHadamard()) {
+                    Tensor leftValue = context.getValue(left);
+                    if (((MultiplicationNode) childNode).isHadamard()) {
                         return leftValue.hadamardProduct(backward);
                     }
                     if (leftValue != null && backward != null) {
-                        return leftValue.transpose(transposeAxes(leftValue.getShape().length)).multiply(backward);
+                        return multiplyDerivative(context, node, leftValue, true, backward, false);
                     }
                     throw new NullPointerException("Backward and/or left child values are null.");
                 }
@@ -315,156 +630,860 @@ public abstract class ComputationalGraph implements Serializable {
     }
 
     /**
-     * Performs backpropagation on the computational graph.
+     * Performs backpropagation on the computational graph by walking the execution plan in backward order.
+     * Nodes whose gradient can not reach a learnable node that is not frozen are skipped. The gradients of the
+     * learnable nodes are handed over to the nodes, so that the optimizer can update them.
      */
     protected void backpropagation() {
-        LinkedList<ComputationalNode> sortedNodes = topologicalSort();
-        if (sortedNodes.isEmpty()) return;
-        ComputationalNode outputNode = sortedNodes.remove(0);
-        double[] backward = new double[outputNode.getValue().getData().length];
-        Arrays.fill(backward, 1.0);
-        outputNode.setBackward(new Tensor(backward, outputNode.getValue().getShape()));
-        while (!sortedNodes.isEmpty()) {
-            ComputationalNode node = sortedNodes.remove(0);
-            if (node.childrenSize() > 0) {
-                for (int i = 0; i < node.childrenSize(); i++) {
-                    ComputationalNode child = node.getChild(i);
-                    Tensor derivative = calculateDerivative(node, child);
-                    if (derivative != null) {
-                        if (node.getBackward() == null) {
-                            node.setBackward(derivative);
-                        } else {
-                            node.setBackward(node.getBackward().add(derivative));
-                        }
-                    }
+        if (plan == null) return;
+        ExecutionContext context = getContext();
+        int lossIndex = plan.getLossIndex();
+        Tensor lossValue = context.getValue(lossIndex);
+        double[] backward = context.allocateBackward(lossIndex, lossValue.getData().length);
+        Arrays.fill(backward, this.parameters.getOptimizer().getLossScale());
+        context.setBackward(lossIndex, new Tensor(backward, lossValue.getShape()));
+        if (executor != null) {
+            executor.backward(this, context);
+        } else {
+            for (int i = lossIndex - 1; i >= 0; i--) {
+                if (plan.requiresGradient(i)) {
+                    calculateBackward(context, i);
                 }
             }
         }
-        this.parameters.getOptimizer().updateValues(this.leafNodes);
+        for (int i = 0; i < plan.learnableSize(); i++) {
+            plan.getLearnableNode(i).setBackward(context.getBackward(plan.getLearnableIndex(i)));
+            plan.getLearnableNode(i).setSparseBackward(context.getSparseBackward(plan.getLearnableIndex(i)));
+        }
+        this.parameters.getOptimizer().updateValues(plan);
+        if (checkpointer != null) {
+            checkpointer.afterStep(plan, parameters.getOptimizer());
+        }
         clear();
     }
 
     /**
-     * Add a bias term to the node's value by appending a column of ones.
-     * @param tensor The node whose value needs to be biased.
+     * Computes the gradient of a single node from the gradients of its children. Since the plan is
+     * topologically sorted, the gradients of the children have already been computed. Children without a
+     * gradient, such as an output node the loss does not depend on, are skipped. The gradient of a dense layer
+     * node is taken back through its activation right away and kept as its context, so that the gradients of
+     * its parents are computed from it without passing through the activation again. The gradient an embedding
+     * table receives from its lookups, and with {@link #setLazySparseInput(boolean)} the gradient the learnable
+     * weights of a matrix multiplication or a dense layer receive from a sparse input, only hold the rows looked
+     * up or the rows of the columns the input uses, and are added to the dense gradient only if the node also
+     * has other children.
+     * @param context Execution context holding the values and gradients.
+     * @param index Index of the node in the execution plan.
      */
-    private void getBiased(ComputationalNode tensor) {
-        int lastDimensionSize = tensor.getValue().getShape()[tensor.getValue().getShape().length - 1];
-        ArrayList<Double> values = new ArrayList<>();
-        double[] oldValues = tensor.getValue().getData();
-        for (int i = 0; i < oldValues.length; i++) {
-            values.add(oldValues[i]);
-            if ((i + 1) % lastDimensionSize == 0) {
-                values.add(1.0);
+    void calculateBackward(ExecutionContext context, int index) {
+        int contributions = 0;
+        for (int t = 0; t < plan.childrenSize(index); t++) {
+            int child = plan.getChildIndex(index, t);
+            if (context.getBackward(child) == null) {
+                continue;
+            }
+            if (plan.getNode(child) instanceof EmbeddingNode) {
+                if (plan.getParentIndex(child, 1) == index) {
+                    RowSparseMatrix derivative = EmbeddingNode.derivative(context.getValue(plan.getParentIndex(child, 0)), context.getBackward(child), context.getValue(index));
+                    RowSparseMatrix sparseBackward = context.getSparseBackward(index);
+                    context.setSparseBackward(index, sparseBackward == null ? derivative : sparseBackward.add(derivative));
+                }
+                continue;
+            }
+            CsrMatrix sparseInput = sparseInput(context, index, child);
+            if (sparseInput != null) {
+                Tensor gradient = plan.getNode(child) instanceof LinearNode ? context.getContext(child) : context.getBackward(child);
+                int columns = gradient.getShape()[gradient.getShape().length - 1];
+                RowSparseMatrix derivative = SparseMatrixMultiplication.multiplyTransposedRows(sparseInput, gradient.getData(), columns);
+                RowSparseMatrix sparseBackward = context.getSparseBackward(index);
+                context.setSparseBackward(index, sparseBackward == null ? derivative : sparseBackward.add(derivative));
+                continue;
+            }
+            Tensor derivative = calculateDerivative(context, index, child);
+            if (derivative != null) {
+                contributions++;
+                if (contributions == 1) {
+                    context.setBackward(index, derivative);
+                } else {
+                    context.setBackward(index, accumulate(context, index, context.getBackward(index), derivative, contributions == 2));
+                }
             }
         }
-        int[] shape = new int[tensor.getValue().getShape().length];
-        for (int i = 0; i < shape.length; i++) {
-            if (i == shape.length - 1) {
-                shape[i] = tensor.getValue().getShape()[i] + 1;
-            } else {
-                shape[i] = tensor.getValue().getShape()[i];
+        if (contributions > 0 && context.getSparseBackward(index) != null) {
+            Tensor backward = context.getBackward(index);
+            double[] values = backward.getData().clone();
+            context.getSparseBackward(index).addTo(values);
+            context.setBackward(index, new Tensor(values, backward.getShape()));
+            context.setSparseBackward(index, null);
+        }
+        if (plan.getNode(index) instanceof LinearNode && contributions > 0) {
+            context.setContext(index, ((LinearNode) plan.getNode(index)).gradient(context.getValue(index), context.getContext(index), context.getBackward(index)));
+        }
+    }
+
+    /**
+     * Returns the sparse input of a child that multiplies it by the given learnable node, the weights of a matrix
+     * multiplication that is not a Hadamard product or of a dense layer, so that the gradient of the weights can
+     * be kept row sparse if lazy updates are set.
+     * @param context Execution context holding the values.
+     * @param index Index of the learnable node.
+     * @param child Index of the child.
+     * @return Sparse value of the first parent of the child, or null if the gradient is computed dense.
+     */
+    private CsrMatrix sparseInput(ExecutionContext context, int index, int child) {
+        if (!isLazySparseInput) {
+            return null;
+        }
+        ComputationalNode childNode = plan.getNode(child);
+        boolean isProduct = childNode instanceof LinearNode || (childNode instanceof MultiplicationNode && !((MultiplicationNode) childNode).isHadamard());
+        if (!plan.getNode(index).isLearnable() || !isProduct || plan.getParentIndex(child, 1) != index) {
+            return null;
+        }
+        return context.getSparseValue(plan.getParentIndex(child, 0));
+    }
+
+    /**
+     * Adds a derivative to the gradient of a node. The second contribution is summed into the arena buffer of
+     * the gradient, every further contribution is added to that buffer in place.
+     * @param context Execution context providing the buffer.
+     * @param index Index of the node.
+     * @param backward Gradient accumulated so far.
+     * @param derivative Derivative to be added.
+     * @param isFirstSum True if the gradient does not live in the buffer of the node yet.
+     * @return The accumulated gradient.
+     */
+    private Tensor accumulate(ExecutionContext context, int index, Tensor backward, Tensor derivative, boolean isFirstSum) {
+        double[] backwardValues = backward.getData();
+        double[] derivativeValues = derivative.getData();
+        if (isFirstSum) {
+            double[] values = context.allocateBackward(index, backwardValues.length);
+            for (int i = 0; i < values.length; i++) {
+                values[i] = backwardValues[i] + derivativeValues[i];
+            }
+            return new Tensor(values, backward.getShape());
+        }
+        for (int i = 0; i < backwardValues.length; i++) {
+            backwardValues[i] += derivativeValues[i];
+        }
+        return backward;
+    }
+
+    /**
+     * Add a bias term to the tensor by appending a column of ones.
+     * @param context Execution context providing the buffer of the biased value.
+     * @param index Index of the biased node.
+     * @param tensor The tensor that needs to be biased.
+     * @return The biased tensor.
+     */
+    private Tensor getBiased(ExecutionContext context, int index, Tensor tensor) {
+        int lastDimensionSize = tensor.getShape()[tensor.getShape().length - 1];
+        double[] oldValues = tensor.getData();
+        double[] values = context.allocateValue(index, oldValues.length + oldValues.length / lastDimensionSize);
+        int k = 0;
+        for (int i = 0; i < oldValues.length; i++) {
+            values[k++] = oldValues[i];
+            if ((i + 1) % lastDimensionSize == 0) {
+                values[k++] = 1.0;
             }
         }
-        Tensor biasedValue = new Tensor(values, shape);
-        tensor.setValue(biasedValue);
+        int[] shape = tensor.getShape().clone();
+        shape[shape.length - 1]++;
+        return new Tensor(values, shape);
     }
 
     /**
-     * Perform a forward pass and return predicted class indices.
+     * Perform a forward pass and return predicted class indices. The pass reads the input values stored in the
+     * input nodes and runs in the default execution context, so calls are serialized; threads that predict at
+     * the same time should use {@link #predictInstance(Tensor)} or {@link #predictBatch(List)} instead.
      * @return A list of predicted class indices.
      */
-    protected ArrayList<Double> predict() {
-        ArrayList<Double> classLabels = forwardCalculation(false);
+    protected synchronized ArrayList<Double> predict() {
+        ArrayList<Double> classLabels = forwardCalculation(getContext(), false);
         clear();
         return classLabels;
     }
 
+    /**
+     * Perform a forward pass for the given value of the first input node and return predicted class indices.
+     * The value is only set in an execution context of the call, so several threads can call this method at
+     * the same time.
+     * @param input Value of the first input node.
+     * @return A list of predicted class indices.
+     */
+    protected ArrayList<Double> predictInstance(Tensor input) {
+        ExecutionContext inferenceContext = acquireInferenceContext();
+        try {
+            inferenceContext.setValue(getInputNode(0), input);
+            return forwardCalculation(inferenceContext, false);
+        } finally {
+            releaseInferenceContext(inferenceContext);
+        }
+    }
+
+    /**
+     * Perform a forward pass with the given execution context and return predicted class indices. The values
+     * of the input nodes must be set in the context. As the pass only reads the learnable weights, several
+     * threads can call this method at the same time, each with its own context.
+     * @param context Execution context of the calling thread.
+     * @return A list of predicted class indices.
+     */
+    protected ArrayList<Double> predict(ExecutionContext context) {
+        ArrayList<Double> classLabels = forwardCalculation(context, false);
+        context.clear();
+        return classLabels;
+    }
+
+    /**
+     * Returns the dimension along which instances are stacked into a batch. If the parameters do not define a
+     * batch dimension, the first dimension is used.
+     * @return The batch dimension.
+     */
+    private int stackDimension() {
+        if (parameters.getBatchDimension() == -1) {
+            return 0;
+        }
+        return parameters.getBatchDimension();
+    }
+
+    /**
+     * Stacks the given tensors along the given dimension. All tensors must have the same size in every other
+     * dimension.
+     * @param tensors Tensors to be stacked.
+     * @param dimension Dimension along which the tensors are stacked.
+     * @return A single tensor containing all given tensors.
+     */
+    private Tensor stack(List<Tensor> tensors, int dimension) {
+        int total = 0;
+        for (Tensor tensor : tensors) {
+            total += tensor.getData().length;
+        }
+        return concat(tensors.toArray(new Tensor[0]), dimension, new double[total]);
+    }
+
+    /**
+     * Runs a single inference pass on the given batch, which is fed into the first input node, and splits the
+     * output along the batch dimension. The pass runs in an inference context of its own, hence it is thread
+     * safe.
+     * @param batch The batch to be fed into the first input node.
+     * @param sizes Number of rows each instance occupies along the batch dimension.
+     * @return Output values of each instance computed by {@link #getOutputValue(Tensor)}.
+     */
+    private ArrayList<ArrayList<Double>> predictBatch(Tensor batch, int[] sizes) {
+        ExecutionContext inferenceContext = acquireInferenceContext();
+        try {
+            inferenceContext.setValue(getInputNode(0), batch);
+            return predictBatch(inferenceContext, sizes);
+        } finally {
+            releaseInferenceContext(inferenceContext);
+        }
+    }
+
+    /**
+     * Runs a single inference pass in the given context, whose input values have been set, and splits the output
+     * along the batch dimension. The context is cleared by the caller, once the outputs have been read.
+     * @param context Execution context of the pass.
+     * @param sizes Number of rows each instance occupies along the batch dimension.
+     * @return Output values of each instance computed by {@link #getOutputValue(Tensor)}.
+     */
+    private ArrayList<ArrayList<Double>> predictBatch(ExecutionContext context, int[] sizes) {
+        int dimension = stackDimension();
+        forwardCalculation(context, false);
+        Tensor output = context.getValue(plan.getOutputIndex());
+        ArrayList<ArrayList<Double>> outputs = new ArrayList<>();
+        int[] startIndexes = new int[output.getShape().length];
+        int[] endIndexes = output.getShape().clone();
+        for (int size : sizes) {
+            endIndexes[dimension] = startIndexes[dimension] + size;
+            outputs.add(getOutputValue(output.partial(startIndexes, endIndexes)));
+            startIndexes[dimension] = endIndexes[dimension];
+        }
+        return outputs;
+    }
+
+    /**
+     * Stacks the given instances along the batch dimension, runs a single forward pass for all of them and
+     * returns the output values of each instance.
+     * @param instances Input values of the first input node, one tensor per instance.
+     * @return Output values of each instance computed by {@link #getOutputValue(Tensor)}.
+     */
+    protected ArrayList<ArrayList<Double>> predictBatch(List<Tensor> instances) {
+        if (instances.isEmpty()) {
+            return new ArrayList<>();
+        }
+        int dimension = stackDimension();
+        int[] sizes = new int[instances.size()];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = instances.get(i).getShape()[dimension];
+        }
+        return predictBatch(stack(instances, dimension), sizes);
+    }
+
+    /**
+     * Runs a single forward pass for an already stacked batch, where every index along the batch dimension
+     * is a separate instance, and returns the output values of each instance.
+     * @param batch Input value of the first input node.
+     * @return Output values of each instance computed by {@link #getOutputValue(Tensor)}.
+     */
+    protected ArrayList<ArrayList<Double>> predictBatch(Tensor batch) {
+        int[] sizes = new int[batch.getShape()[stackDimension()]];
+        Arrays.fill(sizes, 1);
+        return predictBatch(batch, sizes);
+    }
+
+    /**
+     * Runs a single forward pass for a batch of sparse inputs, such as bag-of-words or one-hot features, where
+     * every row is a separate instance, and returns the output values of each instance.
+     * @param batch Sparse input value of the first input node.
+     * @return Output values of each instance computed by {@link #getOutputValue(Tensor)}.
+     */
+    protected ArrayList<ArrayList<Double>> predictBatch(CsrMatrix batch) {
+        int[] sizes = new int[batch.getRows()];
+        Arrays.fill(sizes, 1);
+        ExecutionContext inferenceContext = acquireInferenceContext();
+        try {
+            inferenceContext.setSparseValue(getInputNode(0), batch);
+            return predictBatch(inferenceContext, sizes);
+        } finally {
+            releaseInferenceContext(inferenceContext);
+        }
+    }
+
+    /**
+     * Sets a sparse value of an input node, one row per instance, for the next training step or prediction.
+     * The first layer, a matrix multiplication or a dense layer, then multiplies the input, and computes the
+     * gradient of its weights, in time proportional to the non-zeros of the input instead of its number of
+     * columns. The gradient of the weights stays dense, so the optimizer updates them exactly as for the same
+     * input fed dense, unless {@link #setLazySparseInput(boolean)} is set. A compressed product made by
+     * {@link #quantize(List)} or
+     * {@link #sparsify(double)} reads the input densified. Every other node reading a sparse value, such as a
+     * Hadamard product or a function node, throws an {@link IllegalStateException}. Unlike a dense value, which
+     * is kept by the node, the sparse value is cleared at the end of the step.
+     * @param node Input node of the graph.
+     * @param value Sparse value of the input node.
+     */
+    protected void setSparseValue(ComputationalNode node, CsrMatrix value) {
+        getContext().setSparseValue(node, value);
+    }
+
     /**
      * Perform a forward pass for the training phase.
      * @return A list of predicted class indices.
      */
     protected ArrayList<Double> forwardCalculation() {
-        return forwardCalculation(true);
+        return forwardCalculation(getContext(), true);
     }
 
     /**
-     * Perform a forward pass through the computational graph.
+     * Perform a forward pass through the computational graph. A training pass computes every node of the
+     * execution plan, an inference pass only computes the nodes the output node depends on.
+     * @param context Execution context in which the values are stored.
      * @param isTraining indicates whether the forward pass is for training or inference.
      * @return A list of predicted class indices.
      */
-    private ArrayList<Double> forwardCalculation(boolean isTraining) {
-        LinkedList<ComputationalNode> sortedNodes = topologicalSort();
-        if (sortedNodes.isEmpty()) return new ArrayList<>();
-        HashMap<ComputationalNode, ComputationalNode[]> concatenatedNodeMap = new HashMap<>();
-        HashMap<ComputationalNode, Integer> counterMap = new HashMap<>();
-        while (sortedNodes.size() > 1) {
-            ComputationalNode currentNode = sortedNodes.removeLast();
-            if (currentNode.isBiased()) {
-                getBiased(currentNode);
-            }
-            if (currentNode.getValue() == null) {
+    private ArrayList<Double> forwardCalculation(ExecutionContext context, boolean isTraining) {
+        if (plan == null) return new ArrayList<>();
+        if (isTraining && compressedModel != null) {
+            throw new IllegalStateException("Compressed graphs can only run inference.");
+        }
+        context.begin(isTraining, executor == null);
+        if (executor != null) {
+            executor.forward(this, context, isTraining);
+            if (isTraining) {
+                for (int i = 0; i < plan.size(); i++) {
+                    context.release(i);
+                }
+            }
+        } else if (isTraining) {
+            for (int i = 0; i < plan.size(); i++) {
+                calculateNode(context, i, true);
+                context.release(i);
+            }
+        } else {
+            for (int i = 0; i < plan.inferenceSize(); i++) {
+                calculateNode(context, plan.getInferenceIndex(i), false);
+            }
+        }
+        return getOutputValue(context.getValue(plan.getOutputIndex()));
+    }
+
+    /**
+     * Computes the value of a single node from the values of its parents. Since the plan is topologically
+     * sorted, the parents of the node have already been computed.
+     * @param context Execution context in which the values are stored.
+     * @param index Index of the node in the execution plan.
+     * @param isTraining indicates whether the forward pass is for training or inference.
+     */
+    void calculateNode(ExecutionContext context, int index, boolean isTraining) {
+        ComputationalNode node = plan.getNode(index);
+        if (plan.parentsSize(index) == 0) {
+            CsrMatrix sparseValue = context.getSparseValue(index);
+            if (sparseValue != null) {
+                if (node.isBiased()) {
+                    context.setSparseValue(index, sparseValue.appendColumn(1.0));
+                }
+                return;
+            }
+            if (context.getValue(index) == null && (compressedModel == null || !compressedModel.isDropped(node))) {
                 throw new IllegalArgumentException("leaf node's value must be initialized first.");
             }
-            if (currentNode.childrenSize() > 0) {
-                if (currentNode.equals(outputNode) && !isTraining) {
-                    break;
+        } else if (compressedModel != null && compressedModel.isFused(node)) {
+            Tensor currentValue = context.getValue(plan.getParentIndex(index, 0));
+            context.setValue(index, new Tensor(currentValue.getData(), currentValue.getShape()));
+        } else if (compressedModel != null && compressedModel.getProduct(node) != null) {
+            CompressedProduct product = compressedModel.getProduct(node);
+            CsrMatrix sparseInput = context.getSparseValue(plan.getParentIndex(index, 0));
+            Tensor input;
+            if (sparseInput != null) {
+                input = new Tensor(sparseInput.toDense(), new int[]{sparseInput.getRows(), sparseInput.getColumns()});
+            } else {
+                input = context.getValue(plan.getParentIndex(index, 0));
+            }
+            Tensor bias = node instanceof LinearNode && plan.parentsSize(index) > 2 ? context.getValue(plan.getParentIndex(index, 2)) : null;
+            double[] values = null;
+            if (!node.isBiased()) {
+                values = context.allocateValue(index, product.resultLength(input));
+            }
+            context.setValue(index, product.multiply(input, bias != null ? bias.getData() : null, values));
+        } else if (node instanceof FunctionNode) {
+            Tensor currentValue = context.getValue(plan.getParentIndex(index, 0));
+            if (((FunctionNode) node).isDropout() && !isTraining) {
+                context.setValue(index, new Tensor(currentValue.getData(), currentValue.getShape()));
+            } else {
+                double[] values;
+                if (node.isBiased()) {
+                    values = new double[currentValue.getData().length];
+                } else {
+                    values = context.allocateValue(index, currentValue.getData().length);
                 }
-                for (int t = 0; t < currentNode.childrenSize(); t++) {
-                    ComputationalNode child = currentNode.getChild(t);
-                    if (child.getValue() == null) {
-                        if (child instanceof FunctionNode) {
-                            Tensor currentValue = currentNode.getValue();
-                            if (((FunctionNode) child).isDropout()) {
-                                if (isTraining) {
-                                    ((FunctionNode) child).calculate(currentValue);
-                                } else {
-                                    child.setValue(new Tensor(currentValue.getData(), currentValue.getShape()));
-                                }
-                            } else {
-                                ((FunctionNode) child).calculate(currentValue);
-                            }
-                        } else {
-                            if (child instanceof ConcatenatedNode) {
-                                if (!concatenatedNodeMap.containsKey(child)) {
-                                    concatenatedNodeMap.put(child, new ComputationalNode[child.parentsSize()]);
-                                }
-                                concatenatedNodeMap.get(child)[((ConcatenatedNode) child).getIndex(currentNode)] = currentNode;
-                                if (!counterMap.containsKey(child)) {
-                                    counterMap.put(child, 0);
-                                }
-                                counterMap.put(child, counterMap.get(child) + 1);
-                                if (child.parentsSize() == counterMap.get(child)) {
-                                    child.setValue(concatenatedNodeMap.get(child)[0].getValue());
-                                    for (int i = 1; i < concatenatedNodeMap.get(child).length; i++) {
-                                        child.setValue(child.getValue().concat(concatenatedNodeMap.get(child)[i].getValue(), ((ConcatenatedNode) child).getDimension()));
-                                    }
-                                }
-                            } else {
-                                child.setValue(currentNode.getValue());
-                            }
-                        }
-                    } else {
-                        if (child instanceof MultiplicationNode) {
-                            Tensor childValue = child.getValue();
-                            Tensor currentValue = currentNode.getValue();
-                            if (((MultiplicationNode) child).isHadamard()) {
-                                child.setValue(childValue.hadamardProduct(currentValue));
-                            } else if (!((MultiplicationNode) child).getPriorityNode().equals(currentNode)) {
-                                child.setValue(childValue.multiply(currentValue));
-                            } else {
-                                child.setValue(currentValue.multiply(childValue));
-                            }
-                        } else {
-                            Tensor result = child.getValue();
-                            Tensor currentValue = currentNode.getValue();
-                            child.setValue(result.add(currentValue));
-                        }
-                    }
+                FunctionResults results = ((FunctionNode) node).calculate(currentValue, values);
+                context.setValue(index, results.output());
+                context.setContext(index, results.context());
+            }
+        } else if (node instanceof SoftmaxCrossEntropyNode) {
+            Tensor logits = context.getValue(plan.getParentIndex(index, 0));
+            Tensor labels = context.getValue(plan.getParentIndex(index, 1));
+            int length = logits.getData().length;
+            FunctionResults results = ((SoftmaxCrossEntropyNode) node).calculate(logits, labels, context.allocateValue(index, length), context.allocateContext(index, length));
+            context.setValue(index, results.output());
+            context.setContext(index, results.context());
+        } else if (node instanceof LinearNode) {
+            CsrMatrix sparseInput = context.getSparseValue(plan.getParentIndex(index, 0));
+            Tensor weights = context.getValue(plan.getParentIndex(index, 1));
+            Tensor bias = plan.parentsSize(index) > 2 ? context.getValue(plan.getParentIndex(index, 2)) : null;
+            FunctionResults results;
+            if (sparseInput != null) {
+                double[] values = null;
+                if (!node.isBiased()) {
+                    values = context.allocateValue(index, sparseInput.getRows() * weights.getShape()[weights.getShape().length - 1]);
+                }
+                results = ((LinearNode) node).calculate(sparseInput, weights, bias, values);
+            } else {
+                Tensor input = context.getValue(plan.getParentIndex(index, 0));
+                double[] values = null;
+                if (!node.isBiased()) {
+                    values = context.allocateValue(index, MatrixMultiplication.resultLength(input, false, weights, false));
+                }
+                results = ((LinearNode) node).calculate(input, weights, bias, values);
+            }
+            context.setValue(index, results.output());
+            context.setContext(index, results.context());
+        } else if (node instanceof EmbeddingNode) {
+            Tensor ids = context.getValue(plan.getParentIndex(index, 0));
+            Tensor table = context.getValue(plan.getParentIndex(index, 1));
+            double[] values = context.allocateValue(index, ids.getData().length * table.getShape()[table.getShape().length - 1]);
+            context.setValue(index, ((EmbeddingNode) node).calculate(ids, table, values));
+        } else if (node instanceof BiasAddNode) {
+            Tensor input = context.getValue(plan.getParentIndex(index, 0));
+            double[] values;
+            if (plan.isInPlace(index)) {
+                values = input.getData();
+            } else {
+                values = context.allocateValue(index, input.getData().length);
+            }
+            context.setValue(index, ((BiasAddNode) node).calculate(input, context.getValue(plan.getParentIndex(index, 1)), values));
+        } else if (node instanceof ConcatenatedNode) {
+            Tensor[] parents = new Tensor[plan.parentsSize(index)];
+            for (int i = 0; i < parents.length; i++) {
+                int parent = plan.getParentIndex(index, i);
+                parents[((ConcatenatedNode) node).getIndex(plan.getNode(parent))] = context.getValue(parent);
+            }
+            context.setValue(index, concat(context, index, parents, ((ConcatenatedNode) node).getDimension()));
+        } else if (node instanceof MultiplicationNode && context.getSparseValue(plan.getParentIndex(index, 0)) != null && !((MultiplicationNode) node).isHadamard()) {
+            CsrMatrix leftValue = context.getSparseValue(plan.getParentIndex(index, 0));
+            Tensor rightValue = context.getValue(plan.getParentIndex(index, 1));
+            int columns = rightValue.getShape()[rightValue.getShape().length - 1];
+            if (rightValue.getData().length != leftValue.getColumns() * columns) {
+                throw new IllegalArgumentException("Inner dimensions of the operands do not match");
+            }
+            double[] values;
+            if (node.isBiased()) {
+                values = new double[leftValue.getRows() * columns];
+            } else {
+                values = context.allocateValue(index, leftValue.getRows() * columns);
+            }
+            SparseMatrixMultiplication.multiply(leftValue, rightValue.getData(), columns, values);
+            context.setValue(index, new Tensor(values, new int[]{leftValue.getRows(), columns}));
+        } else if (node instanceof MultiplicationNode) {
+            Tensor leftValue = context.getValue(plan.getParentIndex(index, 0));
+            Tensor rightValue = context.getValue(plan.getParentIndex(index, 1));
+            if (((MultiplicationNode) node).isHadamard()) {
+                context.setValue(index, leftValue.hadamardProduct(rightValue));
+            } else {
+                double[] values = null;
+                if (!node.isBiased()) {
+                    values = context.allocateValue(index, MatrixMultiplication.resultLength(leftValue, false, rightValue, false));
                 }
+                context.setValue(index, MatrixMultiplication.multiply(leftValue, false, rightValue, false, values));
+            }
+        } else {
+            Tensor value = context.getValue(plan.getParentIndex(index, 0));
+            for (int i = 1; i < plan.parentsSize(index); i++) {
+                value = value.add(context.getValue(plan.getParentIndex(index, i)));
+            }
+            context.setValue(index, value);
+        }
+        if (node.isBiased()) {
+            context.setValue(index, getBiased(context, index, context.getValue(index)));
+        }
+    }
+
+    /**
+     * Concatenates the given tensors along the given dimension into a buffer of the execution context.
+     * @param context Execution context providing the buffer.
+     * @param index Index of the concatenated node.
+     * @param tensors Tensors to be concatenated, in order.
+     * @param dimension Dimension along which the tensors are concatenated.
+     * @return The concatenated tensor.
+     */
+    private Tensor concat(ExecutionContext context, int index, Tensor[] tensors, int dimension) {
+        int total = 0;
+        for (Tensor tensor : tensors) {
+            total += tensor.getData().length;
+        }
+        double[] values = context.allocateValue(index, total);
+        return concat(tensors, dimension, values);
+    }
+
+    /**
+     * Copies the given tensors, concatenated along the given dimension, into the given buffer. All tensors must
+     * have the same size in every other dimension.
+     * @param tensors Tensors to be concatenated, in order.
+     * @param dimension Dimension along which the tensors are concatenated.
+     * @param values Buffer that receives the concatenated values.
+     * @return The concatenated tensor.
+     */
+    private static Tensor concat(Tensor[] tensors, int dimension, double[] values) {
+        int[] shape = tensors[0].getShape().clone();
+        int outer = 1;
+        for (int i = 0; i < dimension; i++) {
+            outer *= shape[i];
+        }
+        shape[dimension] = 0;
+        for (Tensor tensor : tensors) {
+            shape[dimension] += tensor.getShape()[dimension];
+        }
+        int offset = 0;
+        for (int i = 0; i < outer; i++) {
+            for (Tensor tensor : tensors) {
+                int blockSize = tensor.getData().length / outer;
+                System.arraycopy(tensor.getData(), i * blockSize, values, offset, blockSize);
+                offset += blockSize;
             }
         }
-        return getOutputValue(this.outputNode.getValue());
+        return new Tensor(values, shape);
+    }
+
+    /**
+     * Writes the learnable weights of the graph into a binary checkpoint. Unlike {@link #save(String)}, only the
+     * topology and the raw weights are stored, and failures are reported. The weights are stored in double
+     * precision, whatever the precision of the optimizer state.
+     * @param fileName File name.
+     * @throws IOException If the checkpoint can not be written.
+     */
+    public void saveCheckpoint(String fileName) throws IOException {
+        saveCheckpoint(fileName, Precision.DOUBLE);
+    }
+
+    /**
+     * Writes the learnable weights of the graph into a binary checkpoint in the given precision. In float
+     * precision, the weights are rounded when they are written and the file takes half the space; the weights of
+     * the graph itself are not changed.
+     * @param fileName File name.
+     * @param precision {@link Precision#DOUBLE} or {@link Precision#FLOAT}.
+     * @throws IOException If the checkpoint can not be written.
+     */
+    public void saveCheckpoint(String fileName, Precision precision) throws IOException {
+        Checkpoint.save(plan, fileName, precision);
+    }
+
+    /**
+     * Loads the learnable weights of a binary checkpoint into the graph, which must have been built with the
+     * same topology as the graph the checkpoint was saved from.
+     * @param fileName File name.
+     * @throws IOException If the checkpoint can not be read or does not match the graph.
+     */
+    public void loadCheckpoint(String fileName) throws IOException {
+        Checkpoint.load(plan, fileName);
+    }
+
+    /**
+     * Sets the checkpointer that periodically writes the training state in the background, null to stop
+     * checkpointing.
+     * @param checkpointer The checkpointer.
+     */
+    public void setCheckpointer(Checkpointer checkpointer) {
+        this.checkpointer = checkpointer;
+    }
+
+    /**
+     * Restores the weights, the optimizer state, the pruning state and the dropout random number generators of a
+     * checkpoint written by a {@link Checkpointer}. The optimizer continues from the epoch of the checkpoint; the
+     * caller trains for the remaining epochs, in the data order of the checkpointed run.
+     * @param fileName File name.
+     * @return Number of optimizer steps taken before the checkpoint.
+     * @throws IOException If the checkpoint can not be read or does not match the graph.
+     */
+    public long resume(String fileName) throws IOException {
+        long step = Checkpointer.restore(plan, parameters.getOptimizer(), fileName);
+        if (checkpointer != null) {
+            checkpointer.setStep(step);
+        }
+        return step;
+    }
+
+    /**
+     * Restores a checkpoint written while the graph was fitted on a data loader, including the data order of the
+     * loader, so that {@link #fit(DataLoader)} on the given loader continues exactly where the checkpointed run
+     * stopped, even in the middle of an epoch.
+     * @param fileName File name.
+     * @param loader Loader over the same dataset, with the same batch size, as the checkpointed one.
+     * @return Number of optimizer steps taken before the checkpoint.
+     * @throws IOException If the checkpoint can not be read, does not match the graph or has no data order.
+     */
+    public long resume(String fileName, DataLoader loader) throws IOException {
+        long step = Checkpointer.restore(plan, parameters.getOptimizer(), loader, fileName);
+        if (checkpointer != null) {
+            checkpointer.setStep(step);
+        }
+        return step;
+    }
+
+    /**
+     * Creates an int8 copy of the graph for inference. Every matrix multiplication with a learnable matrix of
+     * weights, and every dense layer node, is replaced by a quantized product: the weights are quantized with one
+     * scale per output channel, and the input with a single scale fixed from the largest absolute input observed
+     * on the calibration set. The product is accumulated in ints and dequantized by the kernel, which also applies
+     * the bias and activation of a dense layer, or the element-wise function node that is the only child of a
+     * multiplication. The double values of weights only read by quantized products are dropped from the copy,
+     * which can not be trained. This graph is left unchanged.
+     * @param calibrationSet Input values of the first input node, one tensor per instance, such as a small sample
+     *                       of the training set.
+     * @return The quantized copy, of the same class as this graph.
+     */
+    public ComputationalGraph quantize(List<Tensor> calibrationSet) {
+        checkCompressible();
+        ComputationalGraph copy = copy();
+        double[] ranges = copy.calibrate(calibrationSet);
+        copy.compress((index, weights, activation) -> new QuantizedProduct(weights, ranges[index], activation));
+        return copy;
+    }
+
+    /**
+     * Zeroes a fraction of the weights of every weight matrix of the trained graph. The pruned graph can be
+     * fine-tuned, with the same pruning set on the optimizer to keep the pruned weights zero, and stored sparse
+     * with {@link #sparsify(double)}.
+     * @param pruning Pruning that chooses the weights to zero.
+     */
+    public void prune(Pruning pruning) {
+        if (plan == null) {
+            throw new IllegalStateException("Graph has no execution plan.");
+        }
+        pruning.prune(plan);
+    }
+
+    /**
+     * Creates a copy of the graph for inference in which every matrix multiplication with a learnable matrix of
+     * weights, and every dense layer node, whose weights are sparse enough, such as after a pruning, is replaced
+     * by a product with the weights in compressed sparse row form, as {@link #quantize(List)} does with int8
+     * products. The product costs one multiplication per non-zero weight and input row.
+     * @param maxDensity Largest fraction of non-zero weights of a matrix stored sparse.
+     * @return The sparse copy, of the same class as this graph.
+     */
+    public ComputationalGraph sparsify(double maxDensity) {
+        return sparsify(maxDensity, 1, 1);
+    }
+
+    /**
+     * Creates a copy of the graph for inference in which the sparse enough matrices of weights are stored in
+     * block sparse row form, which suits weights pruned by a {@link ComputationalGraph.Pruning.BlockPruning} of
+     * the same block size: a block is stored if any of its weights is not zero, and its rows are multiplied as
+     * dense vectors.
+     * @param maxDensity Largest fraction of non-zero weights of a matrix stored sparse.
+     * @param blockRows Number of rows of a block.
+     * @param blockColumns Number of columns of a block.
+     * @return The sparse copy, of the same class as this graph.
+     */
+    public ComputationalGraph sparsify(double maxDensity, int blockRows, int blockColumns) {
+        if (blockRows <= 0 || blockColumns <= 0) {
+            throw new IllegalArgumentException("Block sizes must be positive");
+        }
+        checkCompressible();
+        ComputationalGraph copy = copy();
+        copy.compress((index, weights, activation) -> density(weights) <= maxDensity ? new SparseProduct(weights, blockRows, blockColumns, activation) : null);
+        return copy;
+    }
+
+    private void checkCompressible() {
+        if (plan == null) {
+            throw new IllegalStateException("Graph has no execution plan.");
+        }
+        if (compressedModel != null) {
+            throw new IllegalStateException("Graph is already compressed.");
+        }
+    }
+
+    /**
+     * @return Fraction of the values of the tensor that are not zero.
+     */
+    private static double density(Tensor tensor) {
+        int nonZeros = 0;
+        for (double value : tensor.getData()) {
+            if (value != 0) {
+                nonZeros++;
+            }
+        }
+        return tensor.getData().length == 0 ? 0.0 : nonZeros / (double) tensor.getData().length;
+    }
+
+    /**
+     * @return A deep copy of the graph, made by serializing it in memory.
+     */
+    private ComputationalGraph copy() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(this);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (ComputationalGraph) input.readObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Observes the largest absolute input of every compressible product on the calibration set.
+     * @param calibrationSet Input values of the first input node, one tensor per instance.
+     * @return The largest absolute input of every node of the plan, zero for the nodes that are not products.
+     */
+    private double[] calibrate(List<Tensor> calibrationSet) {
+        double[] ranges = new double[plan.size()];
+        if (calibrationSet.isEmpty()) {
+            return ranges;
+        }
+        ExecutionContext context = createExecutionContext();
+        context.setValue(getInputNode(0), stack(calibrationSet, stackDimension()));
+        forwardCalculation(context, false);
+        for (int index = 0; index < plan.size(); index++) {
+            Tensor input = isCompressible(index) ? context.getValue(plan.getParentIndex(index, 0)) : null;
+            if (input != null) {
+                for (double value : input.getData()) {
+                    ranges[index] = Math.max(ranges[index], Math.abs(value));
+                }
+            }
+        }
+        context.clear();
+        return ranges;
+    }
+
+    /**
+     * Creates a compressed product for a product of the graph.
+     */
+    private interface ProductFactory {
+        /**
+         * @param index Index of the product in the execution plan.
+         * @param weights Weights of the product.
+         * @param activation Element-wise function applied to the product, or null for none.
+         * @return The compressed product, or null to keep the product uncompressed.
+         */
+        CompressedProduct create(int index, Tensor weights, ElementwiseFunction activation);
+    }
+
+    /**
+     * Replaces the compressible products of this graph in place by the compressed products of the factory. The
+     * element-wise function node that is the only child of a compressed multiplication is fused into it, and the
+     * weights only read by compressed products are dropped.
+     * @param factory Factory of the compressed products.
+     */
+    private void compress(ProductFactory factory) {
+        CompressedModel model = new CompressedModel();
+        ArrayList<Integer> products = new ArrayList<>();
+        for (int index = 0; index < plan.size(); index++) {
+            if (!isCompressible(index)) {
+                continue;
+            }
+            ComputationalNode node = plan.getNode(index);
+            ElementwiseFunction activation = null;
+            ComputationalNode fused = null;
+            if (node instanceof LinearNode) {
+                activation = ((LinearNode) node).getActivation();
+            } else if (!node.isBiased() && plan.childrenSize(index) == 1 && index != plan.getOutputIndex()) {
+                ComputationalNode child = plan.getNode(plan.getChildIndex(index, 0));
+                if (isElementwise(child) && !((FunctionNode) child).isDropout()) {
+                    activation = (ElementwiseFunction) ((FunctionNode) child).getFunction();
+                    fused = child;
+                }
+            }
+            CompressedProduct product = factory.create(index, plan.getNode(plan.getParentIndex(index, 1)).getValue(), activation);
+            if (product != null) {
+                model.addProduct(node, product);
+                if (fused != null) {
+                    model.addFusedNode(fused);
+                }
+                products.add(index);
+            }
+        }
+        for (int index : products) {
+            ComputationalNode weights = plan.getNode(plan.getParentIndex(index, 1));
+            boolean isDropped = weights.getValue() != null;
+            for (int t = 0; t < weights.childrenSize(); t++) {
+                isDropped &= model.getProduct(weights.getChild(t)) != null;
+            }
+            if (isDropped) {
+                weights.setValue(null);
+                model.addDroppedNode(weights);
+            }
+        }
+        this.compressedModel = model;
+        this.context = null;
+        this.inferenceContexts = null;
+    }
+
+    /**
+     * @return True if the node multiplies its input by a learnable matrix of weights.
+     */
+    private boolean isCompressible(int index) {
+        ComputationalNode node = plan.getNode(index);
+        if (node instanceof MultiplicationNode) {
+            if (((MultiplicationNode) node).isHadamard() || plan.parentsSize(index) != 2) {
+                return false;
+            }
+        } else if (!(node instanceof LinearNode)) {
+            return false;
+        }
+        int weights = plan.getParentIndex(index, 1);
+        ComputationalNode weightNode = plan.getNode(weights);
+        return plan.parentsSize(weights) == 0 && weightNode.isLearnable() && weightNode.getValue() != null && weightNode.getValue().getShape().length == 2;
+    }
+
+    /**
+     * @return The compressed state of the graph, null if the graph has not been quantized or made sparse.
+     */
+    public CompressedModel getCompressedModel() {
+        return compressedModel;
     }
 
     /**
@@ -0,0 +1,38 @@
+package ComputationalGraph.Data;
+
+import Math.Tensor;
+
+public class Batch {
+
+    private final Tensor input;
+    private final Tensor labels;
+    private final int size;
+
+    public Batch(Tensor input, Tensor labels, int size) {
+        this.input = input;
+        this.labels = labels;
+        this.size = size;
+    }
+
+    /**
+     * @return Features of the instances, stacked along the batch dimension.
+     */
+    public Tensor getInput() {
+        return input;
+    }
+
+    /**
+     * @return One-hot encoded class labels, or the targets if the loader has no classes, stacked along the batch
+     * dimension.
+     */
+    public Tensor getLabels() {
+        return labels;
+    }
+
+    /**
+     * @return Number of instances in the batch.
+     */
+    public int size() {
+        return size;
+    }
+}
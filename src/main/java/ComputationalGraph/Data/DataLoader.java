@@ -0,0 +1,261 @@
+package ComputationalGraph.Data;
+
+import ComputationalGraph.NeuralNetworkParameter;
+import Math.Tensor;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class DataLoader implements Iterable<Batch> {
+
+    private final Dataset dataset;
+    private final int batchSize;
+    private final int classCount;
+    private final int batchDimension;
+    private final int prefetch;
+    private final boolean shuffle;
+    private Random random;
+    private final int[] permutation;
+    private int position;
+    private int resumePosition;
+    private ExecutorService worker;
+
+    /**
+     * Creates a loader that serves the instances of a dataset in mini-batches. Every call to {@link #iterator()}
+     * is an epoch: the indices of the instances are shuffled, the dataset itself is never reordered, and the
+     * batches are assembled in that order. The shuffling is seeded with the seed of the parameters, so that
+     * the same sequence of epochs yields the same batches.
+     * @param dataset Dataset whose instances are served.
+     * @param batchSize Maximum number of instances in a batch. The last batch of an epoch may be smaller.
+     * @param classCount Number of classes, if the targets are class indices that are one-hot encoded, or 0 if
+     *                   the targets are served as they are.
+     * @param parameters Parameters providing the seed and the batch dimension.
+     * @param prefetch Number of batches assembled ahead on a worker thread, 0 to assemble every batch on the
+     *                 calling thread when it is requested.
+     * @param shuffle True if the instances are shuffled in every epoch.
+     */
+    public DataLoader(Dataset dataset, int batchSize, int classCount, NeuralNetworkParameter parameters, int prefetch, boolean shuffle) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive.");
+        }
+        if (parameters.getBatchDimension() > 1) {
+            throw new IllegalArgumentException("Batches can only be stacked along the first or the second dimension.");
+        }
+        this.dataset = dataset;
+        this.batchSize = batchSize;
+        this.classCount = classCount;
+        this.batchDimension = Math.max(parameters.getBatchDimension(), 0);
+        this.prefetch = prefetch;
+        this.shuffle = shuffle;
+        this.random = new Random(parameters.getSeed());
+        this.permutation = new int[dataset.size()];
+        for (int i = 0; i < permutation.length; i++) {
+            permutation[i] = i;
+        }
+    }
+
+    public DataLoader(Dataset dataset, int batchSize, int classCount, NeuralNetworkParameter parameters, int prefetch) {
+        this(dataset, batchSize, classCount, parameters, prefetch, true);
+    }
+
+    public int batchCount() {
+        return (dataset.size() + batchSize - 1) / batchSize;
+    }
+
+    /**
+     * @return The random number generator that shuffles the permutation.
+     */
+    public synchronized Random getRandom() {
+        return random;
+    }
+
+    /**
+     * @return A copy of the order of the instances in the current epoch.
+     */
+    public synchronized int[] getPermutation() {
+        return permutation.clone();
+    }
+
+    /**
+     * @return Number of instances of the current epoch that have been served so far.
+     */
+    public synchronized int getPosition() {
+        return position;
+    }
+
+    /**
+     * Restores the data order of a checkpointed run. The next call to {@link #iterator()} does not shuffle but
+     * continues the epoch of the checkpoint with the batch that starts at the given position, so that the
+     * remaining batches of the epoch, and the orders of the following epochs, are those of the checkpointed run.
+     * @param random The random number generator that shuffles the permutation.
+     * @param permutation Order of the instances in the epoch of the checkpoint.
+     * @param position Number of instances of that epoch that had been served, 0 to start a new epoch.
+     */
+    public synchronized void restore(Random random, int[] permutation, int position) {
+        if (permutation.length != this.permutation.length || position < 0 || position > permutation.length) {
+            throw new IllegalArgumentException("Data order does not match the dataset.");
+        }
+        this.random = random;
+        System.arraycopy(permutation, 0, this.permutation, 0, permutation.length);
+        this.position = position;
+        this.resumePosition = position;
+    }
+
+    /**
+     * Starts a new epoch. The permutation is shuffled on the calling thread before any batch of the epoch is
+     * assembled, so the order does not depend on the timing of the worker. After a {@link #restore}, the epoch
+     * of the checkpoint is continued instead.
+     * @return Iterator over the batches of the epoch.
+     */
+    @Override
+    public Iterator<Batch> iterator() {
+        int[] order;
+        int start;
+        synchronized (this) {
+            start = resumePosition;
+            resumePosition = 0;
+            if (shuffle && start == 0) {
+                for (int i = permutation.length - 1; i > 0; i--) {
+                    int j = random.nextInt(i + 1);
+                    int tmp = permutation[i];
+                    permutation[i] = permutation[j];
+                    permutation[j] = tmp;
+                }
+            }
+            order = permutation.clone();
+            position = start;
+        }
+        return new Epoch(order, start);
+    }
+
+    /**
+     * Stops the worker thread. The loader can still be used afterwards, a new worker is started on demand.
+     */
+    public synchronized void shutdown() {
+        if (worker != null) {
+            worker.shutdownNow();
+            worker = null;
+        }
+    }
+
+    private synchronized ExecutorService getWorker() {
+        if (worker == null) {
+            worker = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "DataLoader");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return worker;
+    }
+
+    /**
+     * Assembles a batch from consecutive entries of the order. The features of each instance become a row of
+     * the input, or a column if the batch dimension is 1, and its target becomes the corresponding row or
+     * column of the labels.
+     * @param order Indices of the instances of the epoch.
+     * @param start Position of the first instance of the batch in the order.
+     * @return The batch.
+     */
+    Batch assemble(int[] order, int start) {
+        int size = Math.min(batchSize, order.length - start);
+        int rowLength = dataset.rowLength();
+        int featureCount = rowLength - 1;
+        int labelCount = classCount > 0 ? classCount : 1;
+        double[] row = new double[rowLength];
+        double[] input = new double[size * featureCount];
+        double[] labels = new double[size * labelCount];
+        for (int i = 0; i < size; i++) {
+            dataset.readRow(order[start + i], row, 0);
+            double target = row[featureCount];
+            if (batchDimension == 0) {
+                System.arraycopy(row, 0, input, i * featureCount, featureCount);
+                if (classCount > 0) {
+                    labels[i * labelCount + (int) target] = 1.0;
+                } else {
+                    labels[i] = target;
+                }
+            } else {
+                for (int j = 0; j < featureCount; j++) {
+                    input[j * size + i] = row[j];
+                }
+                if (classCount > 0) {
+                    labels[(int) target * size + i] = 1.0;
+                } else {
+                    labels[i] = target;
+                }
+            }
+        }
+        if (batchDimension == 0) {
+            return new Batch(new Tensor(input, new int[]{size, featureCount}), new Tensor(labels, new int[]{size, labelCount}), size);
+        }
+        return new Batch(new Tensor(input, new int[]{featureCount, size}), new Tensor(labels, new int[]{labelCount, size}), size);
+    }
+
+    /**
+     * Batches of a single epoch. Up to prefetch batches are assembled ahead on the worker thread; whenever a
+     * batch is taken, the assembly of the next one is submitted.
+     */
+    private class Epoch implements Iterator<Batch> {
+
+        private final int[] order;
+        private final ArrayDeque<Future<Batch>> pending;
+        private int next;
+        private int served;
+
+        Epoch(int[] order, int start) {
+            this.order = order;
+            this.pending = new ArrayDeque<>();
+            this.next = start;
+            this.served = start;
+            for (int i = 0; i < prefetch; i++) {
+                submit();
+            }
+        }
+
+        private void submit() {
+            if (next < order.length) {
+                int start = next;
+                pending.add(getWorker().submit(() -> assemble(order, start)));
+                next += batchSize;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return served < order.length;
+        }
+
+        @Override
+        public Batch next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Batch batch;
+            if (prefetch == 0) {
+                batch = assemble(order, served);
+            } else {
+                try {
+                    batch = pending.remove().get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for a batch.", e);
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Batch could not be assembled.", e.getCause());
+                }
+                submit();
+            }
+            served += batch.size();
+            synchronized (DataLoader.this) {
+                position = served;
+            }
+            return batch;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package ComputationalGraph.Data;
+
+public interface Dataset {
+
+    /**
+     * @return Number of instances in the dataset.
+     */
+    int size();
+
+    /**
+     * @return Number of values of each instance. The last value of an instance is its target, the other ones
+     * are its features.
+     */
+    int rowLength();
+
+    /**
+     * Copies the values of an instance into the given buffer.
+     * @param index Index of the instance.
+     * @param target Buffer that receives the values.
+     * @param offset Position of the first value in the buffer.
+     */
+    void readRow(int index, double[] target, int offset);
+}
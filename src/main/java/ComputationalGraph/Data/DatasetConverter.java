@@ -0,0 +1,123 @@
+package ComputationalGraph.Data;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.regex.Pattern;
+
+public class DatasetConverter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private DatasetConverter() {
+    }
+
+    /**
+     * Converts a delimited text file, with one instance per line, into the binary format read by
+     * {@link MappedDataset}. The file is streamed, so it does not have to fit in the heap. Every column but the
+     * last one holds a feature; the last one holds the target. If the target of the first instance is not a
+     * number, the targets are treated as class names and replaced by class indices in the order in which the
+     * classes first appear. Empty lines are skipped; lines are numbered in the text file, empty lines included.
+     * @param textFile Name of the text file.
+     * @param delimiter Delimiter between the columns.
+     * @param binaryFile Name of the dataset file to be written.
+     * @param dataType Data type of the values, {@link MappedDataset#FLOAT64} or {@link MappedDataset#FLOAT32}.
+     * @return Class indices of the class names, empty if the targets are numbers.
+     * @throws IOException If a file can not be read or written, if the lines have different numbers of columns,
+     * or if a feature, or a target when the targets are numbers, is not a number.
+     */
+    public static HashMap<String, Integer> convert(String textFile, String delimiter, String binaryFile, int dataType) throws IOException {
+        HashMap<String, Integer> classMap = new HashMap<>();
+        Pattern pattern = Pattern.compile(Pattern.quote(delimiter));
+        int elementSize = MappedDataset.elementSize(dataType);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(textFile), StandardCharsets.UTF_8));
+             RandomAccessFile file = new RandomAccessFile(binaryFile, "rw");
+             FileChannel channel = file.getChannel()) {
+            channel.truncate(0);
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            channel.position(MappedDataset.HEADER_SIZE);
+            int rowLength = -1;
+            long rowCount = 0;
+            long lineNumber = 0;
+            boolean isNumeric = true;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                String[] columns = pattern.split(line.trim());
+                if (rowLength == -1) {
+                    rowLength = columns.length;
+                    isNumeric = isNumber(columns[rowLength - 1]);
+                } else if (columns.length != rowLength) {
+                    throw new IOException("Line " + lineNumber + " has " + columns.length + " columns instead of " + rowLength + ".");
+                }
+                if (buffer.remaining() < rowLength * elementSize) {
+                    flush(channel, buffer);
+                    if (buffer.capacity() < rowLength * elementSize) {
+                        buffer = ByteBuffer.allocate(rowLength * elementSize).order(ByteOrder.LITTLE_ENDIAN);
+                    }
+                }
+                for (int i = 0; i < rowLength; i++) {
+                    double value;
+                    if (i == rowLength - 1 && !isNumeric) {
+                        if (!classMap.containsKey(columns[i])) {
+                            classMap.put(columns[i], classMap.size());
+                        }
+                        value = classMap.get(columns[i]);
+                    } else {
+                        try {
+                            value = Double.parseDouble(columns[i]);
+                        } catch (NumberFormatException e) {
+                            throw new IOException("Line " + lineNumber + " has the value \"" + columns[i] + "\" in column " + (i + 1) + ", which is not a number.", e);
+                        }
+                    }
+                    if (dataType == MappedDataset.FLOAT32) {
+                        buffer.putFloat((float) value);
+                    } else {
+                        buffer.putDouble(value);
+                    }
+                }
+                rowCount++;
+            }
+            flush(channel, buffer);
+            ByteBuffer header = ByteBuffer.allocate(MappedDataset.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MappedDataset.MAGIC);
+            header.putInt(MappedDataset.VERSION);
+            header.putInt(dataType);
+            header.putInt(Math.max(rowLength, 0));
+            header.putLong(rowCount);
+            header.rewind();
+            channel.position(0);
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+        }
+        return classMap;
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static boolean isNumber(String value) {
+        try {
+            Double.parseDouble(value);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
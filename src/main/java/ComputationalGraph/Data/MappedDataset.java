@@ -0,0 +1,151 @@
+package ComputationalGraph.Data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+public class MappedDataset implements Dataset, Closeable {
+
+    public static final int MAGIC = 0x53444743;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+    public static final int FLOAT64 = 0;
+    public static final int FLOAT32 = 1;
+
+    private final int dataType;
+    private final int rowLength;
+    private final long rowCount;
+    private final int rowBytes;
+    private final int rowsPerSegment;
+    private MappedByteBuffer[] segments;
+
+    /**
+     * Opens a binary dataset by mapping it into memory, so that the rows are read from the page cache on
+     * demand and the dataset does not have to fit in the heap. The file starts with a little-endian header of
+     * {@link #HEADER_SIZE} bytes: the magic number, the format version, the data type ({@link #FLOAT64} or
+     * {@link #FLOAT32}), the number of values per row as ints and the number of rows as a long. The rows follow
+     * contiguously, each holding the features and then the target. Files larger than 2 GB are mapped in
+     * several segments, each of which holds whole rows. The file is closed once it is mapped; the mapping itself
+     * is released by {@link #close()}.
+     * @param fileName Name of the dataset file.
+     * @throws IOException If the file can not be read or is not a dataset file.
+     */
+    public MappedDataset(String fileName) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "r"); FileChannel channel = file.getChannel()) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    throw new IOException("File is too short to be a dataset file.");
+                }
+            }
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException("File is not a dataset file.");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported dataset version " + version + ".");
+            }
+            this.dataType = header.getInt();
+            if (dataType != FLOAT64 && dataType != FLOAT32) {
+                throw new IOException("Unsupported data type " + dataType + ".");
+            }
+            this.rowLength = header.getInt();
+            this.rowCount = header.getLong();
+            this.rowBytes = rowLength * elementSize(dataType);
+            if (rowCount < 0 || (rowCount > 0 && rowBytes <= 0) || HEADER_SIZE + rowCount * rowBytes > channel.size()) {
+                throw new IOException("Dataset file is truncated.");
+            }
+            this.rowsPerSegment = Integer.MAX_VALUE / Math.max(rowBytes, 1);
+            int segmentCount = (int) ((rowCount + rowsPerSegment - 1) / rowsPerSegment);
+            this.segments = new MappedByteBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                long first = (long) i * rowsPerSegment;
+                long rows = Math.min(rowsPerSegment, rowCount - first);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * rowBytes, rows * rowBytes);
+                segments[i].order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+    }
+
+    /**
+     * Releases the mapped segments; the dataset can not be read afterwards. Java 8 has no API to unmap a file
+     * explicitly, so the memory and the file handle held by the mapping are freed when the garbage collector
+     * reclaims the segments, which is possible as soon as no reader refers to them any longer.
+     */
+    @Override
+    public void close() {
+        segments = null;
+    }
+
+    /**
+     * @param dataType Data type of a dataset file.
+     * @return Number of bytes of a single value.
+     */
+    public static int elementSize(int dataType) {
+        return dataType == FLOAT32 ? 4 : 8;
+    }
+
+    public int getDataType() {
+        return dataType;
+    }
+
+    public long rowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int size() {
+        if (rowCount > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Dataset has more rows than can be indexed.");
+        }
+        return (int) rowCount;
+    }
+
+    @Override
+    public int rowLength() {
+        return rowLength;
+    }
+
+    @Override
+    public void readRow(int index, double[] target, int offset) {
+        readRows(index, 1, target, offset);
+    }
+
+    /**
+     * Copies consecutive rows straight from the mapped file into the given buffer. The reads are absolute, so
+     * several threads can read from the same dataset at the same time.
+     * @param first Index of the first row.
+     * @param count Number of rows.
+     * @param target Buffer that receives the values, row after row.
+     * @param offset Position of the first value in the buffer.
+     */
+    public void readRows(long first, int count, double[] target, int offset) {
+        MappedByteBuffer[] segments = this.segments;
+        if (segments == null) {
+            throw new IllegalStateException("Dataset is closed.");
+        }
+        if (first < 0 || first + count > rowCount) {
+            throw new IndexOutOfBoundsException("Rows " + first + " to " + (first + count) + " are out of range.");
+        }
+        for (int i = 0; i < count; i++) {
+            long row = first + i;
+            ByteBuffer segment = segments[(int) (row / rowsPerSegment)];
+            int position = (int) (row % rowsPerSegment) * rowBytes;
+            int start = offset + i * rowLength;
+            if (dataType == FLOAT64) {
+                for (int j = 0; j < rowLength; j++) {
+                    target[start + j] = segment.getDouble(position + 8 * j);
+                }
+            } else {
+                for (int j = 0; j < rowLength; j++) {
+                    target[start + j] = segment.getFloat(position + 4 * j);
+                }
+            }
+        }
+    }
+}
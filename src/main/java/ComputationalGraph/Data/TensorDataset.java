@@ -0,0 +1,38 @@
+package ComputationalGraph.Data;
+
+import Math.Tensor;
+
+import java.util.List;
+
+public class TensorDataset implements Dataset {
+
+    private final List<Tensor> instances;
+
+    /**
+     * Wraps a list of instances, each of which is a one dimensional tensor holding the features followed by the
+     * target, as the training sets of the graphs are given.
+     * @param instances Instances of the dataset. The list is not copied and not modified.
+     */
+    public TensorDataset(List<Tensor> instances) {
+        this.instances = instances;
+    }
+
+    @Override
+    public int size() {
+        return instances.size();
+    }
+
+    @Override
+    public int rowLength() {
+        if (instances.isEmpty()) {
+            return 0;
+        }
+        return instances.get(0).getData().length;
+    }
+
+    @Override
+    public void readRow(int index, double[] target, int offset) {
+        double[] values = instances.get(index).getData();
+        System.arraycopy(values, 0, target, offset, values.length);
+    }
+}
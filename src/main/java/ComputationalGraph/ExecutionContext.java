@@ -0,0 +1,366 @@
+package ComputationalGraph;
+
+import ComputationalGraph.Memory.BufferArena;
+import ComputationalGraph.Memory.MemoryPlan;
+import ComputationalGraph.Memory.PackedTensor;
+import ComputationalGraph.Node.ComputationalNode;
+import ComputationalGraph.Sparse.CsrMatrix;
+import ComputationalGraph.Sparse.RowSparseMatrix;
+import Math.Tensor;
+
+import java.util.Arrays;
+
+public class ExecutionContext {
+
+    private final ExecutionPlan plan;
+    private final BufferArena arena;
+    private final Tensor[] values;
+    private final Tensor[] backwards;
+    private final Tensor[] contexts;
+    private final double[][] contextBuffers;
+    private final CsrMatrix[] sparseValues;
+    private final RowSparseMatrix[] sparseBackwards;
+    private final int[] valueSizes;
+    private final int[] backwardSizes;
+    private final PackedTensor[] packedValues;
+    private final PackedTensor[] packedContexts;
+    private final boolean[] isPackable;
+    private final int[] lastConsumers;
+    private Precision activationPrecision = Precision.DOUBLE;
+    private MemoryPlan trainingMemoryPlan;
+    private MemoryPlan inferenceMemoryPlan;
+    private boolean isTraining;
+    private boolean isSequential;
+
+    /**
+     * Creates the per-run state of an execution plan. The context stores the values, gradients and function
+     * contexts of the nodes, so that several contexts can run the same plan at the same time while sharing
+     * the learnable weights stored in the nodes themselves.
+     * @param plan Execution plan whose state is stored.
+     * @param arena Arena that provides the buffers of the planned tensors.
+     */
+    public ExecutionContext(ExecutionPlan plan, BufferArena arena) {
+        this.plan = plan;
+        this.arena = arena;
+        this.values = new Tensor[plan.size()];
+        this.backwards = new Tensor[plan.size()];
+        this.contexts = new Tensor[plan.size()];
+        this.contextBuffers = new double[plan.size()][];
+        this.sparseValues = new CsrMatrix[plan.size()];
+        this.sparseBackwards = new RowSparseMatrix[plan.size()];
+        this.valueSizes = new int[plan.size()];
+        this.backwardSizes = new int[plan.size()];
+        this.packedValues = new PackedTensor[plan.size()];
+        this.packedContexts = new PackedTensor[plan.size()];
+        this.isPackable = new boolean[plan.size()];
+        this.lastConsumers = new int[plan.size()];
+        for (int i = 0; i < plan.size(); i++) {
+            isPackable[i] = plan.parentsSize(i) > 0 && i != plan.getLossIndex() && i != plan.getOutputIndex()
+                    && MemoryPlan.isValueReadInBackward(plan, i);
+            lastConsumers[i] = i;
+            for (int t = 0; t < plan.childrenSize(i); t++) {
+                lastConsumers[i] = Math.max(lastConsumers[i], plan.getChildIndex(i, t));
+            }
+        }
+    }
+
+    public ExecutionPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * Starts a forward pass.
+     * @param isTraining True if the pass is followed by a backward pass.
+     * @param isSequential True if the nodes are computed one after another in plan order. Arena slots are only
+     *                     shared when they are, since the lifetimes of the memory plan assume that order.
+     */
+    public void begin(boolean isTraining, boolean isSequential) {
+        this.isTraining = isTraining;
+        this.isSequential = isSequential;
+    }
+
+    public Precision getActivationPrecision() {
+        return activationPrecision;
+    }
+
+    /**
+     * Sets the precision in which the values and the function contexts read by the backward pass are kept
+     * between the forward and the backward pass of a training step. In {@link Precision#FLOAT},
+     * {@link Precision#BFLOAT16} or {@link Precision#HALF}, they are packed into four or two bytes per value by
+     * {@link #release(int)} and unpacked when the backward pass reads them, while the forward pass still computes
+     * in double precision.
+     * @param activationPrecision {@link Precision#DOUBLE} to keep the activations as they are computed, or the
+     *                            precision they are packed in.
+     */
+    public void setActivationPrecision(Precision activationPrecision) {
+        if (activationPrecision != this.activationPrecision) {
+            this.activationPrecision = activationPrecision;
+            this.trainingMemoryPlan = null;
+        }
+    }
+
+    private boolean isPacking() {
+        return isTraining && activationPrecision != Precision.DOUBLE;
+    }
+
+    /**
+     * Called once the value of a node has been computed in a training pass. If activations are packed, the
+     * context of the node and, if the backward pass reads it, its value are packed. The values of the node and of
+     * the parents it is the last consumer of are then dropped, so that their buffers can be reused by the
+     * following nodes and the backward pass reads the packed copies.
+     * @param index Index of the node in the execution plan.
+     */
+    public void release(int index) {
+        if (!isPacking()) {
+            return;
+        }
+        if (contexts[index] != null) {
+            packedContexts[index] = new PackedTensor(contexts[index], activationPrecision);
+            contexts[index] = null;
+        }
+        if (isPackable[index] && values[index] != null) {
+            packedValues[index] = new PackedTensor(values[index], activationPrecision);
+        }
+        if (lastConsumers[index] == index) {
+            drop(index);
+        }
+        for (int k = 0; k < plan.parentsSize(index); k++) {
+            int parent = plan.getParentIndex(index, k);
+            if (lastConsumers[parent] == index) {
+                drop(parent);
+            }
+        }
+    }
+
+    private void drop(int index) {
+        if (packedValues[index] != null) {
+            values[index] = null;
+        }
+    }
+
+    /**
+     * Returns the value of the node at the given index. Nodes without parents whose value has not been set in
+     * this context fall back to the value stored in the node, which is how learnable weights are shared.
+     * @param index Index of the node in the execution plan.
+     * @return The value of the node.
+     */
+    public Tensor getValue(int index) {
+        if (sparseValues[index] != null) {
+            throw new IllegalStateException("Node has a sparse value, which only a matrix multiplication can read.");
+        }
+        if (values[index] == null) {
+            if (plan.parentsSize(index) == 0) {
+                return plan.getNode(index).getValue();
+            }
+            if (packedValues[index] != null) {
+                return packedValues[index].unpack();
+            }
+        }
+        return values[index];
+    }
+
+    /**
+     * @param index Index of the node in the execution plan.
+     * @return Number of elements of the value of the node, without unpacking it.
+     */
+    public int getValueLength(int index) {
+        if (values[index] == null && packedValues[index] != null) {
+            return packedValues[index].size();
+        }
+        return getValue(index).getData().length;
+    }
+
+    public void setValue(int index, Tensor value) {
+        values[index] = value;
+        packedValues[index] = null;
+        if (value != null) {
+            valueSizes[index] = value.getData().length;
+        }
+    }
+
+    /**
+     * Sets the value of an input node for this context only.
+     * @param node Input node of the graph.
+     * @param value Value of the input node.
+     */
+    public void setValue(ComputationalNode node, Tensor value) {
+        int index = plan.indexOf(node);
+        if (index == -1) {
+            throw new IllegalArgumentException("Node is not part of the execution plan.");
+        }
+        setValue(index, value);
+    }
+
+    /**
+     * @param index Index of the node in the execution plan.
+     * @return The sparse value of the node, null if the node has a dense value.
+     */
+    public CsrMatrix getSparseValue(int index) {
+        return sparseValues[index];
+    }
+
+    public void setSparseValue(int index, CsrMatrix value) {
+        sparseValues[index] = value;
+    }
+
+    /**
+     * Sets a sparse value of an input node for this context only, one row per instance, such as a batch of
+     * bag-of-words or one-hot features. The value can only be read by matrix multiplications, which multiply it
+     * in time proportional to its non-zeros. Like the other values of the context, it is cleared at the end of
+     * the step.
+     * @param node Input node of the graph.
+     * @param value Sparse value of the input node.
+     */
+    public void setSparseValue(ComputationalNode node, CsrMatrix value) {
+        int index = plan.indexOf(node);
+        if (index == -1) {
+            throw new IllegalArgumentException("Node is not part of the execution plan.");
+        }
+        setSparseValue(index, value);
+    }
+
+    public Tensor getBackward(int index) {
+        return backwards[index];
+    }
+
+    public void setBackward(int index, Tensor backward) {
+        backwards[index] = backward;
+        if (backward != null) {
+            backwardSizes[index] = backward.getData().length;
+        }
+    }
+
+    /**
+     * @param index Index of the node in the execution plan.
+     * @return The gradient of the node that only holds its used rows, such as the gradient of an embedding
+     * table, null if the node has a dense gradient or none.
+     */
+    public RowSparseMatrix getSparseBackward(int index) {
+        return sparseBackwards[index];
+    }
+
+    public void setSparseBackward(int index, RowSparseMatrix backward) {
+        sparseBackwards[index] = backward;
+    }
+
+    /**
+     * @param index Index of the node in the execution plan.
+     * @return The context of the node, unpacked if it has been packed.
+     */
+    public Tensor getContext(int index) {
+        if (contexts[index] == null && packedContexts[index] != null) {
+            return packedContexts[index].unpack();
+        }
+        return contexts[index];
+    }
+
+    public void setContext(int index, Tensor context) {
+        contexts[index] = context;
+        packedContexts[index] = null;
+    }
+
+    /**
+     * @return Number of bytes held by the packed values and contexts.
+     */
+    public long getPackedBytes() {
+        long bytes = 0;
+        for (int i = 0; i < plan.size(); i++) {
+            if (packedValues[i] != null) {
+                bytes += packedValues[i].getMemory();
+            }
+            if (packedContexts[i] != null) {
+                bytes += packedContexts[i].getMemory();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return The memory plan of the current pass, null until a pass of the same kind has completed.
+     */
+    public MemoryPlan getMemoryPlan() {
+        return getMemoryPlan(isTraining);
+    }
+
+    /**
+     * @param isTraining True for the plan of training steps, false for the plan of inference passes.
+     * @return The memory plan of the given kind of pass, null until such a pass has completed.
+     */
+    public MemoryPlan getMemoryPlan(boolean isTraining) {
+        if (isTraining) {
+            return trainingMemoryPlan;
+        }
+        return inferenceMemoryPlan;
+    }
+
+    /**
+     * Returns a buffer for the value of the given node. The buffer comes from the arena slot assigned by the
+     * memory plan and is only valid until the end of the current step.
+     * @param index Index of the node in the execution plan.
+     * @param length Number of elements required.
+     * @return A buffer of the given length with undefined content.
+     */
+    public double[] allocateValue(int index, int length) {
+        MemoryPlan memoryPlan = getMemoryPlan();
+        if (!isSequential || memoryPlan == null || memoryPlan.getValueSlot(index) == -1) {
+            return new double[length];
+        }
+        return arena.acquire(memoryPlan.getValueSlot(index), length);
+    }
+
+    /**
+     * Returns a buffer for the gradient of the given node. The buffer comes from the arena slot assigned by the
+     * memory plan and is only valid until the end of the current step.
+     * @param index Index of the node in the execution plan.
+     * @param length Number of elements required.
+     * @return A buffer of the given length with undefined content.
+     */
+    public double[] allocateBackward(int index, int length) {
+        MemoryPlan memoryPlan = getMemoryPlan();
+        if (!isSequential || memoryPlan == null || memoryPlan.getBackwardSlot(index) == -1) {
+            return new double[length];
+        }
+        return arena.acquire(memoryPlan.getBackwardSlot(index), length);
+    }
+
+    /**
+     * Returns a buffer for the context of the given node. Contexts are read by the backward pass and are not
+     * part of the memory plan, so every node keeps its own buffer from step to step, which is only replaced when
+     * the length changes.
+     * @param index Index of the node in the execution plan.
+     * @param length Number of elements required.
+     * @return A buffer of the given length with undefined content.
+     */
+    public double[] allocateContext(int index, int length) {
+        if (contextBuffers[index] == null || contextBuffers[index].length != length) {
+            contextBuffers[index] = new double[length];
+        }
+        return contextBuffers[index];
+    }
+
+    /**
+     * Ends the current step: the memory plan of the pass is recomputed if the observed tensor sizes changed,
+     * the arena is reset and the values, gradients and function contexts are cleared.
+     */
+    public void clear() {
+        MemoryPlan memoryPlan = getMemoryPlan();
+        if (memoryPlan == null || !memoryPlan.matches(valueSizes, backwardSizes) || memoryPlan.isPacked() != isPacking()) {
+            memoryPlan = new MemoryPlan(plan, valueSizes, backwardSizes, isTraining, isPacking());
+            if (isTraining) {
+                trainingMemoryPlan = memoryPlan;
+            } else {
+                inferenceMemoryPlan = memoryPlan;
+            }
+        }
+        arena.reset();
+        Arrays.fill(values, null);
+        Arrays.fill(backwards, null);
+        Arrays.fill(contexts, null);
+        Arrays.fill(sparseValues, null);
+        Arrays.fill(sparseBackwards, null);
+        Arrays.fill(packedValues, null);
+        Arrays.fill(packedContexts, null);
+        Arrays.fill(valueSizes, 0);
+        Arrays.fill(backwardSizes, 0);
+    }
+}
@@ -0,0 +1,294 @@
+package ComputationalGraph;
+
+import ComputationalGraph.Node.BiasAddNode;
+import ComputationalGraph.Node.ComputationalNode;
+import ComputationalGraph.Node.MultiplicationNode;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+public class ExecutionPlan implements Serializable {
+
+    private final ComputationalNode[] nodes;
+    private final HashMap<ComputationalNode, Integer> indexMap;
+    private final int[][] parentIndices;
+    private final int[][] childIndices;
+    private final int[] leafIndices;
+    private final int[] learnableIndices;
+    private final int[] inferenceIndices;
+    private final boolean[] frozen;
+    private final boolean[] requiresGradient;
+    private final int lossIndex;
+    private final int outputIndex;
+
+    /**
+     * Compiles the subgraph that the loss node depends on into an immutable, array indexed plan. Nodes are
+     * stored in topological order, so that walking the indices in increasing order visits every parent before
+     * its children (forward order) and walking them in decreasing order visits every child before its parents
+     * (backward order). If the output node is not an ancestor of the loss node, as with a loss computed from
+     * the logits below the output, the ancestors of the output node that the loss does not depend on are
+     * placed after the loss node. They are computed in the forward pass but take no part in the backward pass.
+     * @param lossNode The node on which the backward pass starts.
+     * @param outputNode The node whose value is returned by an inference pass.
+     */
+    public ExecutionPlan(ComputationalNode lossNode, ComputationalNode outputNode) {
+        this(lossNode, outputNode, new HashSet<>());
+    }
+
+    /**
+     * Compiles the plan as above. Learnable nodes in the given set are frozen: they receive no gradient and
+     * are not updated. Only the nodes that depend on a learnable node that is not frozen require a gradient,
+     * the backward pass skips every other node.
+     * @param lossNode The node on which the backward pass starts.
+     * @param outputNode The node whose value is returned by an inference pass.
+     * @param frozenNodes Learnable nodes that are not trained.
+     */
+    public ExecutionPlan(ComputationalNode lossNode, ComputationalNode outputNode, Set<ComputationalNode> frozenNodes) {
+        ArrayList<ComputationalNode> sorted = new ArrayList<>();
+        HashSet<ComputationalNode> visited = new HashSet<>();
+        sort(lossNode, visited, sorted);
+        if (!visited.contains(outputNode)) {
+            sort(outputNode, visited, sorted);
+        }
+        this.nodes = sorted.toArray(new ComputationalNode[0]);
+        this.indexMap = new HashMap<>();
+        for (int i = 0; i < nodes.length; i++) {
+            indexMap.put(nodes[i], i);
+        }
+        this.parentIndices = new int[nodes.length][];
+        this.childIndices = new int[nodes.length][];
+        ArrayList<Integer> leaves = new ArrayList<>();
+        ArrayList<Integer> learnables = new ArrayList<>();
+        for (int i = 0; i < nodes.length; i++) {
+            ComputationalNode node = nodes[i];
+            parentIndices[i] = new int[node.parentsSize()];
+            for (int j = 0; j < node.parentsSize(); j++) {
+                parentIndices[i][j] = indexMap.get(node.getParent(j));
+            }
+            ArrayList<Integer> children = new ArrayList<>();
+            for (int j = 0; j < node.childrenSize(); j++) {
+                Integer childIndex = indexMap.get(node.getChild(j));
+                if (childIndex != null) {
+                    children.add(childIndex);
+                }
+            }
+            childIndices[i] = toArray(children);
+            if (node.parentsSize() == 0) {
+                leaves.add(i);
+            }
+            if (node.isLearnable()) {
+                learnables.add(i);
+            }
+        }
+        this.leafIndices = toArray(leaves);
+        this.learnableIndices = toArray(learnables);
+        this.lossIndex = indexMap.get(lossNode);
+        this.outputIndex = indexMap.get(outputNode);
+        this.inferenceIndices = ancestors(outputIndex);
+        this.frozen = new boolean[nodes.length];
+        this.requiresGradient = new boolean[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            frozen[i] = nodes[i].isLearnable() && frozenNodes.contains(nodes[i]);
+            requiresGradient[i] = nodes[i].isLearnable() && !frozen[i];
+            for (int parent : parentIndices[i]) {
+                if (requiresGradient[parent]) {
+                    requiresGradient[i] = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends the ancestors of the given node that have not been visited yet, the node itself included, so that
+     * every parent comes before its children. The depth-first search uses an explicit stack, hence deep graphs
+     * do not overflow the call stack.
+     * @param root The node whose ancestors are to be sorted.
+     * @param visited Nodes that have already been sorted.
+     * @param sorted The nodes in topological order.
+     */
+    private void sort(ComputationalNode root, HashSet<ComputationalNode> visited, ArrayList<ComputationalNode> sorted) {
+        ArrayList<ComputationalNode> stack = new ArrayList<>();
+        ArrayList<Integer> nextParent = new ArrayList<>();
+        stack.add(root);
+        nextParent.add(0);
+        visited.add(root);
+        while (!stack.isEmpty()) {
+            int top = stack.size() - 1;
+            ComputationalNode node = stack.get(top);
+            int next = nextParent.get(top);
+            if (next < node.parentsSize()) {
+                nextParent.set(top, next + 1);
+                ComputationalNode parent = node.getParent(next);
+                if (!visited.contains(parent)) {
+                    visited.add(parent);
+                    stack.add(parent);
+                    nextParent.add(0);
+                }
+            } else {
+                stack.remove(top);
+                nextParent.remove(top);
+                sorted.add(node);
+            }
+        }
+    }
+
+    /**
+     * Collects the indices of the given node and all of its ancestors in forward order.
+     * @param index Index of the node.
+     * @return Sorted indices of the node and its ancestors.
+     */
+    private int[] ancestors(int index) {
+        boolean[] needed = new boolean[nodes.length];
+        needed[index] = true;
+        int count = 0;
+        for (int i = index; i >= 0; i--) {
+            if (needed[i]) {
+                count++;
+                for (int parent : parentIndices[i]) {
+                    needed[parent] = true;
+                }
+            }
+        }
+        int[] result = new int[count];
+        int k = 0;
+        for (int i = 0; i <= index; i++) {
+            if (needed[i]) {
+                result[k++] = i;
+            }
+        }
+        return result;
+    }
+
+    private static int[] toArray(ArrayList<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    public int size() {
+        return nodes.length;
+    }
+
+    public ComputationalNode getNode(int index) {
+        return nodes[index];
+    }
+
+    /**
+     * @param node A node of the graph.
+     * @return Index of the node in the plan, -1 if the node is not part of the plan.
+     */
+    public int indexOf(ComputationalNode node) {
+        Integer index = indexMap.get(node);
+        if (index == null) {
+            return -1;
+        }
+        return index;
+    }
+
+    public int[] getParentIndices(int index) {
+        return parentIndices[index].clone();
+    }
+
+    public int parentsSize(int index) {
+        return parentIndices[index].length;
+    }
+
+    public int getParentIndex(int index, int parent) {
+        return parentIndices[index][parent];
+    }
+
+    public int childrenSize(int index) {
+        return childIndices[index].length;
+    }
+
+    public int getChildIndex(int index, int child) {
+        return childIndices[index][child];
+    }
+
+    /**
+     * @return Indices of the nodes without parents, in forward order.
+     */
+    public int[] getLeafIndices() {
+        return leafIndices.clone();
+    }
+
+    /**
+     * @return Indices of the learnable nodes, in forward order.
+     */
+    public int[] getLearnableIndices() {
+        return learnableIndices.clone();
+    }
+
+    /**
+     * @return Indices of the nodes required to compute the output node, in forward order.
+     */
+    public int[] getInferenceIndices() {
+        return inferenceIndices.clone();
+    }
+
+    public int learnableSize() {
+        return learnableIndices.length;
+    }
+
+    public int getLearnableIndex(int index) {
+        return learnableIndices[index];
+    }
+
+    public ComputationalNode getLearnableNode(int index) {
+        return nodes[learnableIndices[index]];
+    }
+
+    public int inferenceSize() {
+        return inferenceIndices.length;
+    }
+
+    public int getInferenceIndex(int index) {
+        return inferenceIndices[index];
+    }
+
+    /**
+     * @param index Index of the node.
+     * @return True if the node is a learnable node that is frozen.
+     */
+    public boolean isFrozen(int index) {
+        return frozen[index];
+    }
+
+    /**
+     * @param index Index of the node.
+     * @return True if the gradient of the node can reach a learnable node that is not frozen, so that the
+     * backward pass has to compute it.
+     */
+    public boolean requiresGradient(int index) {
+        return requiresGradient[index];
+    }
+
+    /**
+     * @param index Index of the node.
+     * @return True if the node is a bias node that adds the bias into the value of its first parent in place.
+     * This is the case if the parent is a matrix product whose value is read by no other node, neither in the
+     * forward nor in the backward pass.
+     */
+    public boolean isInPlace(int index) {
+        if (!(nodes[index] instanceof BiasAddNode)) {
+            return false;
+        }
+        int parent = parentIndices[index][0];
+        ComputationalNode node = nodes[parent];
+        return node instanceof MultiplicationNode && !((MultiplicationNode) node).isHadamard() && !node.isBiased()
+                && parentIndices[parent].length > 0 && childIndices[parent].length == 1 && parent != outputIndex;
+    }
+
+    public int getLossIndex() {
+        return lossIndex;
+    }
+
+    public int getOutputIndex() {
+        return outputIndex;
+    }
+}
@@ -4,7 +4,7 @@ import java.io.Serializable;
 
 import Math.Tensor;
 
-public class AdditionByConstant implements Function, Serializable {
+public class AdditionByConstant implements ElementwiseFunction, Serializable {
 
     private final double constant;
 
@@ -19,14 +19,24 @@ public class AdditionByConstant implements Function, Serializable {
      */
     @Override
     public FunctionResults calculate(Tensor tensor) {
+        double[] values = new double[tensor.getData().length];
+        Tensor context = calculateInto(tensor, values);
+        return new FunctionResults(new Tensor(values, tensor.getShape()), context);
+    }
+
+    /**
+     * Computes the sum of each element and the constant into the given buffer.
+     * @param tensor The input tensor.
+     * @param output Buffer that receives the output.
+     * @return null, since the derivative is computed from the output.
+     */
+    @Override
+    public Tensor calculateInto(Tensor tensor, double[] output) {
         double[] tensorValues = tensor.getData();
-        double[] values = new double[tensorValues.length];
         for (int i = 0; i < tensorValues.length; i++) {
-            double val = tensorValues[i];
-            double newVal = constant + val;
-            values[i] = newVal;
+            output[i] = constant + tensorValues[i];
         }
-        return new FunctionResults(new Tensor(values, tensor.getShape()));
+        return null;
     }
 
     /**
@@ -37,6 +47,40 @@ public class AdditionByConstant implements Function, Serializable {
      */
     @Override
     public Tensor derivative(Tensor value, Tensor backward) {
+        double[] values = new double[backward.getData().length];
+        derivativeInto(value, backward, values);
+        return new Tensor(values, backward.getShape());
+    }
+
+    /**
+     * Computes the gradient of the input into the given buffer.
+     * @param value The output tensor of the function.
+     * @param backward Backward tensor.
+     * @param gradient Buffer that receives the gradient of the input.
+     */
+    @Override
+    public void derivativeInto(Tensor value, Tensor backward, double[] gradient) {
+        double[] backwardValues = backward.getData();
+        System.arraycopy(backwardValues, 0, gradient, 0, backwardValues.length);
+    }
+
+    @Override
+    public double calculate(double value) {
+        return constant + value;
+    }
+
+    /**
+     * @param value output of the function.
+     * @param backward Gradient of the output.
+     * @return Gradient of the input.
+     */
+    @Override
+    public double derivative(double value, double backward) {
         return backward;
     }
+
+    @Override
+    public boolean isInputContext() {
+        return false;
+    }
 }
@@ -4,7 +4,7 @@ import java.io.Serializable;
 
 import Math.Tensor;
 
-public class DELU implements Function, Serializable {
+public class DELU implements ElementwiseFunction, Serializable {
 
     private final double a;
     private final double b;
@@ -27,17 +27,24 @@ public class DELU implements Function, Serializable {
      */
     @Override
     public FunctionResults calculate(Tensor value) {
+        double[] values = new double[value.getData().length];
+        Tensor context = calculateInto(value, values);
+        return new FunctionResults(new Tensor(values, value.getShape()), context);
+    }
+
+    /**
+     * Computes DELU(x) into the given buffer.
+     * @param value The input tensor.
+     * @param output Buffer that receives the output.
+     * @return null, since the derivative is computed from the output.
+     */
+    @Override
+    public Tensor calculateInto(Tensor value, double[] output) {
         double[] oldValues = value.getData();
-        double[] values = new double[oldValues.length];
         for (int i = 0; i < oldValues.length; i++) {
-            double oldValue = oldValues[i];
-            if (oldValue > this.xc) {
-                values[i] = oldValue;
-            } else {
-                values[i] = (Math.exp(this.a * oldValue) - 1) / this.b;
-            }
+            output[i] = calculate(oldValues[i]);
         }
-        return new FunctionResults(new Tensor(values, value.getShape()));
+        return null;
     }
 
     /**
@@ -48,18 +55,49 @@ public class DELU implements Function, Serializable {
      */
     @Override
     public Tensor derivative(Tensor value, Tensor backward) {
+        double[] values = new double[backward.getData().length];
+        derivativeInto(value, backward, values);
+        return new Tensor(values, value.getShape());
+    }
+
+    /**
+     * Computes the gradient of the input into the given buffer.
+     * @param value output of the DELU(x).
+     * @param backward Backward tensor.
+     * @param gradient Buffer that receives the gradient of the input.
+     */
+    @Override
+    public void derivativeInto(Tensor value, Tensor backward, double[] gradient) {
         double[] oldValues = value.getData();
         double[] backwardValues = backward.getData();
-        double[] values = new double[oldValues.length];
         for (int i = 0; i < oldValues.length; i++) {
-            double backwardValue = backwardValues[i];
-            double oldValue = oldValues[i];
-            if (oldValue > this.xc) {
-                values[i] = backwardValue;
-            } else {
-                values[i] = backwardValue * ((oldValue * this.b + 1) * (this.a / this.b));
-            }
+            gradient[i] = derivative(oldValues[i], backwardValues[i]);
         }
-        return new Tensor(values, value.getShape());
+    }
+
+    @Override
+    public double calculate(double value) {
+        if (value > this.xc) {
+            return value;
+        }
+        return (Math.exp(this.a * value) - 1) / this.b;
+    }
+
+    /**
+     * @param value output of the function.
+     * @param backward Gradient of the output.
+     * @return Gradient of the input.
+     */
+    @Override
+    public double derivative(double value, double backward) {
+        if (value > this.xc) {
+            return backward;
+        }
+        return backward * ((value * this.b + 1) * (this.a / this.b));
+    }
+
+    @Override
+    public boolean isInputContext() {
+        return false;
     }
 }
@@ -23,14 +23,29 @@ public class DivideByDimensionSize implements Function, Serializable {
         if (dimension == -1) {
             return new FunctionResults(value);
         }
+        double[] values = new double[value.getData().length];
+        Tensor context = calculateInto(value, values);
+        return new FunctionResults(new Tensor(values, value.getShape()), context);
+    }
+
+    /**
+     * Computes the divided values into the given buffer.
+     * @param value The input tensor.
+     * @param output Buffer that receives the output.
+     * @return null, since the derivative is computed from the output.
+     */
+    @Override
+    public Tensor calculateInto(Tensor value, double[] output) {
         double[] tensorValues = value.getData();
-        double[] values = new double[tensorValues.length];
+        if (dimension == -1) {
+            System.arraycopy(tensorValues, 0, output, 0, tensorValues.length);
+            return null;
+        }
         int size = value.getShape()[dimension];
         for (int i = 0; i < tensorValues.length; i++) {
-            double val = tensorValues[i];
-            values[i] = (1.0 / size) * (val);
+            output[i] = (1.0 / size) * (tensorValues[i]);
         }
-        return new FunctionResults(new Tensor(values, value.getShape()));
+        return null;
     }
 
     /**
@@ -46,14 +61,27 @@ public class DivideByDimensionSize implements Function, Serializable {
         if (dimension == -1) {
             return backward;
         }
+        double[] values = new double[backward.getData().length];
+        derivativeInto(value, backward, values);
+        return new Tensor(values, value.getShape());
+    }
+
+    /**
+     * Computes the gradient of the input into the given buffer.
+     * @param value The output tensor of the forward pass.
+     * @param backward Backward tensor.
+     * @param gradient Buffer that receives the gradient of the input.
+     */
+    @Override
+    public void derivativeInto(Tensor value, Tensor backward, double[] gradient) {
         double[] backwardValues = backward.getData();
-        double[] values = new double[backwardValues.length];
+        if (dimension == -1) {
+            System.arraycopy(backwardValues, 0, gradient, 0, backwardValues.length);
+            return;
+        }
         int size = value.getShape()[dimension];
         for (int i = 0; i < backwardValues.length; i++) {
-            double backwardValue = backwardValues[i];
-            double derivative = (1.0 / size);
-            values[i] = derivative * backwardValue;
+            gradient[i] = (1.0 / size) * backwardValues[i];
         }
-        return new Tensor(values, value.getShape());
     }
 }
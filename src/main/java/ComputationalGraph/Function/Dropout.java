@@ -8,13 +8,26 @@ import java.util.Random;
 public class Dropout implements Function, Serializable {
 
     private final double p;
-    private final Random random;
+    private Random random;
 
     public Dropout(double p, Random random) {
         this.p = p;
         this.random = random;
     }
 
+    public Random getRandom() {
+        return random;
+    }
+
+    /**
+     * Replaces the random number generator, e.g. with the one restored from a checkpoint, so that the masks
+     * continue the sequence of the checkpointed run.
+     * @param random The random number generator.
+     */
+    public void setRandom(Random random) {
+        this.random = random;
+    }
+
     /**
      * Computes the dropout values for the given value tensor.
      * @param value The tensor whose values are to be computed.
@@ -22,22 +35,33 @@ public class Dropout implements Function, Serializable {
      */
     @Override
     public FunctionResults calculate(Tensor value) {
+        double[] values = new double[value.getData().length];
+        Tensor context = calculateInto(value, values);
+        return new FunctionResults(new Tensor(values, value.getShape()), context);
+    }
+
+    /**
+     * Computes Dropout(x) into the given buffer.
+     * @param value The input tensor.
+     * @param output Buffer that receives the output.
+     * @return The mask of the dropout, from which the derivative is computed.
+     */
+    @Override
+    public Tensor calculateInto(Tensor value, double[] output) {
         double multiplier = 1.0 / (1 - p);
         double[] oldValues = value.getData();
-        double[] values = new double[oldValues.length];
         double[] mask = new double[oldValues.length];
         for (int i = 0; i < oldValues.length; i++) {
-            double oldValue = oldValues[i];
             double r = random.nextDouble();
             if (r > p) {
                 mask[i] = multiplier;
-                values[i] = oldValue * multiplier;
+                output[i] = oldValues[i] * multiplier;
             } else {
                 mask[i] = 0.0;
-                values[i] = 0.0;
+                output[i] = 0.0;
             }
         }
-        return new FunctionResults(new Tensor(values, value.getShape()), new Tensor(mask, value.getShape()));
+        return new Tensor(mask, value.getShape());
     }
 
     /**
@@ -48,6 +72,23 @@ public class Dropout implements Function, Serializable {
      */
     @Override
     public Tensor derivative(Tensor value, Tensor backward) {
-        return backward.hadamardProduct(value);
+        double[] values = new double[backward.getData().length];
+        derivativeInto(value, backward, values);
+        return new Tensor(values, backward.getShape());
+    }
+
+    /**
+     * Computes the gradient of the input into the given buffer.
+     * @param value mask of the dropout.
+     * @param backward Backward tensor.
+     * @param gradient Buffer that receives the gradient of the input.
+     */
+    @Override
+    public void derivativeInto(Tensor value, Tensor backward, double[] gradient) {
+        double[] maskValues = value.getData();
+        double[] backwardValues = backward.getData();
+        for (int i = 0; i < backwardValues.length; i++) {
+            gradient[i] = backwardValues[i] * maskValues[i];
+        }
     }
 }
@@ -4,7 +4,7 @@ import java.io.Serializable;
 
 import Math.Tensor;
 
-public class ELU implements Function, Serializable {
+public class ELU implements ElementwiseFunction, Serializable {
 
     private final double a;
 
@@ -23,17 +23,24 @@ public class ELU implements Function, Serializable {
      */
     @Override
     public FunctionResults calculate(Tensor value) {
+        double[] values = new double[value.getData().length];
+        Tensor context = calculateInto(value, values);
+        return new FunctionResults(new Tensor(values, value.getShape()), context);
+    }
+
+    /**
+     * Computes ELU(x) into the given buffer.
+     * @param value The input tensor.
+     * @param output Buffer that receives the output.
+     * @return null, since the derivative is computed from the output.
+     */
+    @Override
+    public Tensor calculateInto(Tensor value, double[] output) {
         double[] oldValues = value.getData();
-        double[] values = new double[oldValues.length];
         for (int i = 0; i < oldValues.length; i++) {
-            double oldValue = oldValues[i];
-            if (oldValue < 0) {
-                values[i] = a * (Math.exp(oldValue) - 1);
-            } else {
-                values[i] = oldValue;
-            }
+            output[i] = calculate(oldValues[i]);
         }
-        return new FunctionResults(new Tensor(values, value.getShape()));
+        return null;
     }
 
     /**
@@ -44,18 +51,49 @@ public class ELU implements Function, Serializable {
      */
     @Override
     public Tensor derivative(Tensor value, Tensor backward) {
+        double[] values = new double[backward.getData().length];
+        derivativeInto(value, backward, values);
+        return new Tensor(values, value.getShape());
+    }
+
+    /**
+     * Computes the gradient of the input into the given buffer.
+     * @param value output of the ELU(x).
+     * @param backward Backward tensor.
+     * @param gradient Buffer that receives the gradient of the input.
+     */
+    @Override
+    public void derivativeInto(Tensor value, Tensor backward, double[] gradient) {
         double[] oldValues = value.getData();
         double[] backwardValues = backward.getData();
-        double[] values = new double[oldValues.length];
         for (int i = 0; i < oldValues.length; i++) {
-            double oldValue = oldValues[i];
-            double backwardValue = backwardValues[i];
-            if (oldValue < 0) {
-                values[i] = (oldValue + a) * backwardValue;
-            } else {
-                values[i] = backwardValue;
-            }
+            gradient[i] = derivative(oldValues[i], backwardValues[i]);
         }
-        return new Tensor(values, value.getShape());
+    }
+
+    @Override
+    public double calculate(double value) {
+        if (value < 0) {
+            return a * (Math.exp(value) - 1);
+        }
+        return value;
+    }
+
+    /**
+     * @param value output of the function.
+     * @param backward Gradient of the output.
+     * @return Gradient of the input.
+     */
+    @Override
+    public double derivative(double value, double backward) {
+        if (value < 0) {
+            return (value + a) * backward;
+        }
+        return backward;
+    }
+
+    @Override
+    public boolean isInputContext() {
+        return false;
     }
 }
@@ -0,0 +1,25 @@
+package ComputationalGraph.Function;
+
+public interface ElementwiseFunction extends Function {
+
+    /**
+     * Applies the function to a single element.
+     * @param value Element of the input.
+     * @return Element of the output.
+     */
+    double calculate(double value);
+
+    /**
+     * Computes the gradient of a single element of the input.
+     * @param value Element of the input if the function returns its input as context, element of the output
+     *              otherwise.
+     * @param backward Gradient of the element of the output.
+     * @return Gradient of the element of the input.
+     */
+    double derivative(double value, double backward);
+
+    /**
+     * @return True if the derivative is computed from the input of the function instead of its output.
+     */
+    boolean isInputContext();
+}
@@ -5,4 +5,32 @@ import Math.Tensor;
 public interface Function {
     FunctionResults calculate(Tensor matrix);
     Tensor derivative(Tensor value, Tensor backward);
+
+    /**
+     * Applies the function to the input and writes the result into a buffer supplied by the caller, so that
+     * the output does not have to be allocated. The default implementation adapts {@link #calculate(Tensor)}.
+     * @param input Input of the function.
+     * @param output Buffer with as many elements as the output, which receives the output. It must not be the
+     *               buffer of the input.
+     * @return Context of the derivative, null if the derivative is computed from the output.
+     */
+    default Tensor calculateInto(Tensor input, double[] output) {
+        FunctionResults results = calculate(input);
+        double[] values = results.output().getData();
+        System.arraycopy(values, 0, output, 0, values.length);
+        return results.context();
+    }
+
+    /**
+     * Computes the gradient of the input and writes it into a buffer supplied by the caller. The default
+     * implementation adapts {@link #derivative(Tensor, Tensor)}.
+     * @param value Context returned by the forward pass, or the output if there is no context.
+     * @param backward Gradient of the output.
+     * @param gradient Buffer with as many elements as the input, which receives the gradient of the input. It
+     *                 must not be the buffer of the backward tensor.
+     */
+    default void derivativeInto(Tensor value, Tensor backward, double[] gradient) {
+        double[] values = derivative(value, backward).getData();
+        System.arraycopy(values, 0, gradient, 0, values.length);
+    }
 }
@@ -0,0 +1,103 @@
+package ComputationalGraph.Function;
+
+import Math.Tensor;
+
+import java.io.Serializable;
+
+public class FusedFunction implements Function, Serializable {
+
+    private final ElementwiseFunction[] functions;
+
+    /**
+     * Composes a chain of element-wise functions into a single function, so that the chain is computed in one
+     * loop over the elements without intermediate tensors.
+     * @param functions Functions of the chain, in the order they are applied.
+     */
+    public FusedFunction(ElementwiseFunction[] functions) {
+        this.functions = functions.clone();
+    }
+
+    public int size() {
+        return functions.length;
+    }
+
+    public ElementwiseFunction getFunction(int index) {
+        return functions[index];
+    }
+
+    /**
+     * Applies the functions of the chain one after another to each element.
+     * @param tensor Input of the first function.
+     * @return Output of the last function and the input tensor, from which the intermediate values are
+     * recomputed in the backward pass.
+     */
+    @Override
+    public FunctionResults calculate(Tensor tensor) {
+        double[] values = new double[tensor.getData().length];
+        Tensor context = calculateInto(tensor, values);
+        return new FunctionResults(new Tensor(values, tensor.getShape()), context);
+    }
+
+    /**
+     * Applies the functions of the chain one after another to each element, writing the output of the last
+     * function into the given buffer.
+     * @param tensor Input of the first function.
+     * @param output Buffer that receives the output.
+     * @return The input tensor, from which the intermediate values are recomputed in the backward pass.
+     */
+    @Override
+    public Tensor calculateInto(Tensor tensor, double[] output) {
+        double[] tensorValues = tensor.getData();
+        for (int i = 0; i < tensorValues.length; i++) {
+            double value = tensorValues[i];
+            for (ElementwiseFunction function : functions) {
+                value = function.calculate(value);
+            }
+            output[i] = value;
+        }
+        return new Tensor(tensorValues, tensor.getShape());
+    }
+
+    /**
+     * Computes the gradient of the composed function. For each element, the intermediate values of the chain
+     * are recomputed from the input and the gradient is passed through the derivatives of the functions in
+     * reverse order, exactly as the unfused nodes would compute it.
+     * @param value Input of the first function.
+     * @param backward Gradient of the output of the last function.
+     * @return Gradient of the input.
+     */
+    @Override
+    public Tensor derivative(Tensor value, Tensor backward) {
+        double[] values = new double[value.getData().length];
+        derivativeInto(value, backward, values);
+        return new Tensor(values, value.getShape());
+    }
+
+    /**
+     * Computes the gradient of the composed function into the given buffer.
+     * @param value Input of the first function.
+     * @param backward Gradient of the output of the last function.
+     * @param gradient Buffer that receives the gradient of the input.
+     */
+    @Override
+    public void derivativeInto(Tensor value, Tensor backward, double[] gradient) {
+        double[] tensorValues = value.getData();
+        double[] backwardValues = backward.getData();
+        double[] intermediate = new double[functions.length + 1];
+        for (int i = 0; i < tensorValues.length; i++) {
+            intermediate[0] = tensorValues[i];
+            for (int j = 0; j < functions.length; j++) {
+                intermediate[j + 1] = functions[j].calculate(intermediate[j]);
+            }
+            double current = backwardValues[i];
+            for (int j = functions.length - 1; j >= 0; j--) {
+                if (functions[j].isInputContext()) {
+                    current = functions[j].derivative(intermediate[j], current);
+                } else {
+                    current = functions[j].derivative(intermediate[j + 1], current);
+                }
+            }
+            gradient[i] = current;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package ComputationalGraph.Function;
+
+import ComputationalGraph.Node.ComputationalNode;
+import ComputationalGraph.Node.LinearNode;
+
+import java.io.Serializable;
+
+public class Linear implements FunctionCombiner, Serializable {
+
+    private final ComputationalNode weights;
+    private final ComputationalNode bias;
+    private final ElementwiseFunction activation;
+
+    /**
+     * Describes a dense layer f(x W + b), which is added to the graph as a single node.
+     * @param weights Learnable node holding the weights.
+     * @param bias Learnable node holding the bias, with one element per column of the weights, or null for none.
+     * @param activation Element-wise activation applied to the output, or null for none.
+     */
+    public Linear(ComputationalNode weights, ComputationalNode bias, ElementwiseFunction activation) {
+        this.weights = weights;
+        this.bias = bias;
+        this.activation = activation;
+    }
+
+    public Linear(ComputationalNode weights, ElementwiseFunction activation) {
+        this(weights, null, activation);
+    }
+
+    public Linear(ComputationalNode weights) {
+        this(weights, null, null);
+    }
+
+    /**
+     * Adds a single node computing the layer to the given input node.
+     * @param inputNode The input computational node of the layer.
+     * @param isBiased Indicates whether a column of ones is appended to the output of the layer.
+     * @return The computational node computing the layer.
+     */
+    @Override
+    public ComputationalNode addEdge(ComputationalNode inputNode, boolean isBiased) {
+        ComputationalNode linear = new LinearNode(isBiased, activation);
+        inputNode.add(linear);
+        weights.add(linear);
+        if (bias != null) {
+            bias.add(linear);
+        }
+        return linear;
+    }
+}
@@ -4,7 +4,7 @@ import java.io.Serializable;
 
 import Math.Tensor;
 
-public class Logarithm implements Function, Serializable {
+public class Logarithm implements ElementwiseFunction, Serializable {
 
     /**
      * Applies the natural logarithm function to each element of the input tensor.
@@ -13,16 +13,24 @@ public class Logarithm implements Function, Serializable {
      */
     @Override
     public FunctionResults calculate(Tensor value) {
+        double[] values = new double[value.getData().length];
+        Tensor context = calculateInto(value, values);
+        return new FunctionResults(new Tensor(values, value.getShape()), context);
+    }
+
+    /**
+     * Computes log(x) into the given buffer.
+     * @param value The input tensor.
+     * @param output Buffer that receives the output.
+     * @return The input tensor, from which the derivative is computed.
+     */
+    @Override
+    public Tensor calculateInto(Tensor value, double[] output) {
         double[] oldValues = value.getData();
-        double[] values = new double[oldValues.length];
         for (int i = 0; i < oldValues.length; i++) {
-            double oldValue = oldValues[i];
-            if (oldValue <= 0) {
-                throw new IllegalArgumentException("Logarithm function input must be strictly positive. Found: " + oldValue);
-            }
-            values[i] = Math.log(oldValue);
+            output[i] = calculate(oldValues[i]);
         }
-        return new FunctionResults(new Tensor(values, value.getShape()), new Tensor(oldValues, value.getShape()));
+        return value;
     }
 
     /**
@@ -33,15 +41,46 @@ public class Logarithm implements Function, Serializable {
      */
     @Override
     public Tensor derivative(Tensor value, Tensor backward) {
-        double[] tensorValues = value.getData();
+        double[] values = new double[backward.getData().length];
+        derivativeInto(value, backward, values);
+        return new Tensor(values, value.getShape());
+    }
+
+    /**
+     * Computes the gradient of the input into the given buffer.
+     * @param value input of the Logarithm(x).
+     * @param backward Backward tensor.
+     * @param gradient Buffer that receives the gradient of the input.
+     */
+    @Override
+    public void derivativeInto(Tensor value, Tensor backward, double[] gradient) {
+        double[] oldValues = value.getData();
         double[] backwardValues = backward.getData();
-        double[] values = new double[tensorValues.length];
-        for (int i = 0; i < tensorValues.length; i++) {
-            double val = tensorValues[i];
-            double derivative = 1.0 / val;
-            double backwardValue = backwardValues[i];
-            values[i] = derivative * backwardValue;
+        for (int i = 0; i < oldValues.length; i++) {
+            gradient[i] = derivative(oldValues[i], backwardValues[i]);
         }
-        return new Tensor(values, value.getShape());
+    }
+
+    @Override
+    public double calculate(double value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("Logarithm function input must be strictly positive. Found: " + value);
+        }
+        return Math.log(value);
+    }
+
+    /**
+     * @param value input of the function.
+     * @param backward Gradient of the output.
+     * @return Gradient of the input.
+     */
+    @Override
+    public double derivative(double value, double backward) {
+        return (1.0 / value) * backward;
+    }
+
+    @Override
+    public boolean isInputContext() {
+        return true;
     }
 }
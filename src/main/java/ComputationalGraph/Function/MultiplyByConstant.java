@@ -3,7 +3,7 @@ package ComputationalGraph.Function;
 import java.io.Serializable;
 import Math.Tensor;
 
-public class MultiplyByConstant implements Function, Serializable {
+public class MultiplyByConstant implements ElementwiseFunction, Serializable {
 
     private final double constant;
 
@@ -21,14 +21,24 @@ public class MultiplyByConstant implements Function, Serializable {
      */
     @Override
     public FunctionResults calculate(Tensor tensor) {
+        double[] values = new double[tensor.getData().length];
+        Tensor context = calculateInto(tensor, values);
+        return new FunctionResults(new Tensor(values, tensor.getShape()), context);
+    }
+
+    /**
+     * Computes the scaled values into the given buffer.
+     * @param tensor The input tensor.
+     * @param output Buffer that receives the output.
+     * @return null, since the derivative is computed from the output.
+     */
+    @Override
+    public Tensor calculateInto(Tensor tensor, double[] output) {
         double[] tensorValues = tensor.getData();
-        double[] values = new double[tensorValues.length];
         for (int i = 0; i < tensorValues.length; i++) {
-            double val = tensorValues[i];
-            double newVal = constant * val;
-            values[i] = newVal;
+            output[i] = constant * tensorValues[i];
         }
-        return new FunctionResults(new Tensor(values, tensor.getShape()));
+        return null;
     }
 
     /**
@@ -43,12 +53,42 @@ public class MultiplyByConstant implements Function, Serializable {
      */
     @Override
     public Tensor derivative(Tensor value, Tensor backward) {
+        double[] values = new double[backward.getData().length];
+        derivativeInto(value, backward, values);
+        return new Tensor(values, value.getShape());
+    }
+
+    /**
+     * Computes the gradient of the input into the given buffer.
+     * @param value The input tensor from the forward pass.
+     * @param backward Backward tensor.
+     * @param gradient Buffer that receives the gradient of the input.
+     */
+    @Override
+    public void derivativeInto(Tensor value, Tensor backward, double[] gradient) {
         double[] backwardValues = backward.getData();
-        double[] values = new double[backwardValues.length];
         for (int i = 0; i < backwardValues.length; i++) {
-            double backwardValue = backwardValues[i];
-            values[i] = constant * backwardValue;
+            gradient[i] = constant * backwardValues[i];
         }
-        return new Tensor(values, value.getShape());
+    }
+
+    @Override
+    public double calculate(double value) {
+        return constant * value;
+    }
+
+    /**
+     * @param value output of the function.
+     * @param backward Gradient of the output.
+     * @return Gradient of the input.
+     */
+    @Override
+    public double derivative(double value, double backward) {
+        return constant * backward;
+    }
+
+    @Override
+    public boolean isInputContext() {
+        return false;
     }
 }
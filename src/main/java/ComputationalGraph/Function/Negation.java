@@ -4,7 +4,7 @@ import java.io.Serializable;
 
 import Math.*;
 
-public class Negation implements Function, Serializable {
+public class Negation implements ElementwiseFunction, Serializable {
 
     /**
      * Negates the values of the given tensor.
@@ -13,12 +13,24 @@ public class Negation implements Function, Serializable {
      */
     @Override
     public FunctionResults calculate(Tensor value) {
+        double[] values = new double[value.getData().length];
+        Tensor context = calculateInto(value, values);
+        return new FunctionResults(new Tensor(values, value.getShape()), context);
+    }
+
+    /**
+     * Computes the negated values into the given buffer.
+     * @param value The input tensor.
+     * @param output Buffer that receives the output.
+     * @return null, since the derivative is computed from the output.
+     */
+    @Override
+    public Tensor calculateInto(Tensor value, double[] output) {
         double[] oldValues = value.getData();
-        double[] values = new double[oldValues.length];
         for (int i = 0; i < oldValues.length; i++) {
-            values[i] = -oldValues[i];
+            output[i] = calculate(oldValues[i]);
         }
-        return new FunctionResults(new Tensor(values, value.getShape()));
+        return null;
     }
 
     /**
@@ -29,11 +41,43 @@ public class Negation implements Function, Serializable {
      */
     @Override
     public Tensor derivative(Tensor value, Tensor backward) {
+        double[] values = new double[backward.getData().length];
+        derivativeInto(value, backward, values);
+        return new Tensor(values, value.getShape());
+    }
+
+    /**
+     * Computes the gradient of the input into the given buffer.
+     * @param value output of the Negation function.
+     * @param backward Backward tensor.
+     * @param gradient Buffer that receives the gradient of the input.
+     */
+    @Override
+    public void derivativeInto(Tensor value, Tensor backward, double[] gradient) {
+        double[] oldValues = value.getData();
         double[] backwardValues = backward.getData();
-        double[] values = new double[backwardValues.length];
-        for (int i = 0; i < backwardValues.length; i++) {
-            values[i] = -backwardValues[i];
+        for (int i = 0; i < oldValues.length; i++) {
+            gradient[i] = derivative(oldValues[i], backwardValues[i]);
         }
-        return new Tensor(values, value.getShape());
+    }
+
+    @Override
+    public double calculate(double value) {
+        return -value;
+    }
+
+    /**
+     * @param value output of the function.
+     * @param backward Gradient of the output.
+     * @return Gradient of the input.
+     */
+    @Override
+    public double derivative(double value, double backward) {
+        return -backward;
+    }
+
+    @Override
+    public boolean isInputContext() {
+        return false;
     }
 }
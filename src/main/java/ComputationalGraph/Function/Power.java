@@ -4,7 +4,7 @@ import java.io.Serializable;
 
 import Math.Tensor;
 
-public class Power implements Function, Serializable {
+public class Power implements ElementwiseFunction, Serializable {
 
     private final int n;
 
@@ -23,13 +23,24 @@ public class Power implements Function, Serializable {
      */
     @Override
     public FunctionResults calculate(Tensor value) {
-        double[] tensorValues = value.getData();
-        double[] values = new double[tensorValues.length];
-        for (int i = 0; i < tensorValues.length; i++) {
-            double val = tensorValues[i];
-            values[i] = Math.pow(val, n);
+        double[] values = new double[value.getData().length];
+        Tensor context = calculateInto(value, values);
+        return new FunctionResults(new Tensor(values, value.getShape()), context);
+    }
+
+    /**
+     * Computes pow(x) into the given buffer.
+     * @param value The input tensor.
+     * @param output Buffer that receives the output.
+     * @return The input tensor, from which the derivative is computed.
+     */
+    @Override
+    public Tensor calculateInto(Tensor value, double[] output) {
+        double[] oldValues = value.getData();
+        for (int i = 0; i < oldValues.length; i++) {
+            output[i] = calculate(oldValues[i]);
         }
-        return new FunctionResults(new Tensor(values, value.getShape()), new Tensor(tensorValues, value.getShape()));
+        return value;
     }
 
     /**
@@ -40,15 +51,43 @@ public class Power implements Function, Serializable {
      */
     @Override
     public Tensor derivative(Tensor value, Tensor backward) {
-        double[] tensorValues = value.getData();
+        double[] values = new double[backward.getData().length];
+        derivativeInto(value, backward, values);
+        return new Tensor(values, value.getShape());
+    }
+
+    /**
+     * Computes the gradient of the input into the given buffer.
+     * @param value input of the Power(x).
+     * @param backward Backward tensor.
+     * @param gradient Buffer that receives the gradient of the input.
+     */
+    @Override
+    public void derivativeInto(Tensor value, Tensor backward, double[] gradient) {
+        double[] oldValues = value.getData();
         double[] backwardValues = backward.getData();
-        double[] values = new double[tensorValues.length];
-        for (int i = 0; i < tensorValues.length; i++) {
-            double val = tensorValues[i];
-            double derivative = n * Math.pow(val, n - 1);
-            double backwardValue = backwardValues[i];
-            values[i] = derivative * backwardValue;
+        for (int i = 0; i < oldValues.length; i++) {
+            gradient[i] = derivative(oldValues[i], backwardValues[i]);
         }
-        return new Tensor(values, value.getShape());
+    }
+
+    @Override
+    public double calculate(double value) {
+        return Math.pow(value, n);
+    }
+
+    /**
+     * @param value input of the function.
+     * @param backward Gradient of the output.
+     * @return Gradient of the input.
+     */
+    @Override
+    public double derivative(double value, double backward) {
+        return (n * Math.pow(value, n - 1)) * backward;
+    }
+
+    @Override
+    public boolean isInputContext() {
+        return true;
     }
 }
@@ -4,7 +4,7 @@ import Math.Tensor;
 
 import java.io.Serializable;
 
-public class ReLU implements Function, Serializable {
+public class ReLU implements ElementwiseFunction, Serializable {
 
     /**
      * Computes the ReLU activation for the given tensor.
@@ -13,13 +13,24 @@ public class ReLU implements Function, Serializable {
      */
     @Override
     public FunctionResults calculate(Tensor value) {
+        double[] values = new double[value.getData().length];
+        Tensor context = calculateInto(value, values);
+        return new FunctionResults(new Tensor(values, value.getShape()), context);
+    }
+
+    /**
+     * Computes ReLU(x) into the given buffer.
+     * @param value The input tensor.
+     * @param output Buffer that receives the output.
+     * @return null, since the derivative is computed from the output.
+     */
+    @Override
+    public Tensor calculateInto(Tensor value, double[] output) {
         double[] oldValues = value.getData();
-        double[] values = new double[oldValues.length];
         for (int i = 0; i < oldValues.length; i++) {
-            double oldValue = oldValues[i];
-            values[i] = Math.max(oldValue, 0);
+            output[i] = calculate(oldValues[i]);
         }
-        return new FunctionResults(new Tensor(values, value.getShape()));
+        return null;
     }
 
     /**
@@ -30,18 +41,46 @@ public class ReLU implements Function, Serializable {
      */
     @Override
     public Tensor derivative(Tensor value, Tensor backward) {
+        double[] values = new double[backward.getData().length];
+        derivativeInto(value, backward, values);
+        return new Tensor(values, value.getShape());
+    }
+
+    /**
+     * Computes the gradient of the input into the given buffer.
+     * @param value output of the ReLU(x).
+     * @param backward Backward tensor.
+     * @param gradient Buffer that receives the gradient of the input.
+     */
+    @Override
+    public void derivativeInto(Tensor value, Tensor backward, double[] gradient) {
         double[] oldValues = value.getData();
         double[] backwardValues = backward.getData();
-        double[] values = new double[oldValues.length];
         for (int i = 0; i < oldValues.length; i++) {
-            double oldValue = oldValues[i];
-            double backwardValue = backwardValues[i];
-            if (oldValue > 0) {
-                values[i] = backwardValue;
-            } else {
-                values[i] = 0.0;
-            }
+            gradient[i] = derivative(oldValues[i], backwardValues[i]);
         }
-        return new Tensor(values, value.getShape());
+    }
+
+    @Override
+    public double calculate(double value) {
+        return Math.max(value, 0);
+    }
+
+    /**
+     * @param value output of the function.
+     * @param backward Gradient of the output.
+     * @return Gradient of the input.
+     */
+    @Override
+    public double derivative(double value, double backward) {
+        if (value > 0) {
+            return backward;
+        }
+        return 0.0;
+    }
+
+    @Override
+    public boolean isInputContext() {
+        return false;
     }
 }
@@ -4,7 +4,7 @@ import Math.Tensor;
 
 import java.io.Serializable;
 
-public class Sigmoid implements Function, Serializable {
+public class Sigmoid implements ElementwiseFunction, Serializable {
 
     /**
      * Computes the Sigmoid activation for the given tensor.
@@ -13,14 +13,24 @@ public class Sigmoid implements Function, Serializable {
      */
     @Override
     public FunctionResults calculate(Tensor value) {
-        double[] tensorValues = value.getData();
-        double[] values = new double[tensorValues.length];
-        for (int i = 0; i < tensorValues.length; i++) {
-            double val = tensorValues[i];
-            double sigmoid = 1.0 / (1.0 + Math.exp(-val));
-            values[i] = sigmoid;
+        double[] values = new double[value.getData().length];
+        Tensor context = calculateInto(value, values);
+        return new FunctionResults(new Tensor(values, value.getShape()), context);
+    }
+
+    /**
+     * Computes Sigmoid(x) into the given buffer.
+     * @param value The input tensor.
+     * @param output Buffer that receives the output.
+     * @return null, since the derivative is computed from the output.
+     */
+    @Override
+    public Tensor calculateInto(Tensor value, double[] output) {
+        double[] oldValues = value.getData();
+        for (int i = 0; i < oldValues.length; i++) {
+            output[i] = calculate(oldValues[i]);
         }
-        return new FunctionResults(new Tensor(values, value.getShape()));
+        return null;
     }
 
     /**
@@ -31,15 +41,43 @@ public class Sigmoid implements Function, Serializable {
      */
     @Override
     public Tensor derivative(Tensor value, Tensor backward) {
-        double[] tensorValues = value.getData();
+        double[] values = new double[backward.getData().length];
+        derivativeInto(value, backward, values);
+        return new Tensor(values, value.getShape());
+    }
+
+    /**
+     * Computes the gradient of the input into the given buffer.
+     * @param value output of the Sigmoid(x).
+     * @param backward Backward tensor.
+     * @param gradient Buffer that receives the gradient of the input.
+     */
+    @Override
+    public void derivativeInto(Tensor value, Tensor backward, double[] gradient) {
+        double[] oldValues = value.getData();
         double[] backwardValues = backward.getData();
-        double[] values = new double[tensorValues.length];
-        for (int i = 0; i < tensorValues.length; i++) {
-            double val = tensorValues[i];
-            double derivative = val * (1 - val);
-            double backwardValue = backwardValues[i];
-            values[i] = derivative * backwardValue;
+        for (int i = 0; i < oldValues.length; i++) {
+            gradient[i] = derivative(oldValues[i], backwardValues[i]);
         }
-        return new Tensor(values, value.getShape());
+    }
+
+    @Override
+    public double calculate(double value) {
+        return 1.0 / (1.0 + Math.exp(-value));
+    }
+
+    /**
+     * @param value output of the function.
+     * @param backward Gradient of the output.
+     * @return Gradient of the input.
+     */
+    @Override
+    public double derivative(double value, double backward) {
+        return (value * (1 - value)) * backward;
+    }
+
+    @Override
+    public boolean isInputContext() {
+        return false;
     }
 }
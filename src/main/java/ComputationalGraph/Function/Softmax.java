@@ -3,7 +3,6 @@ package ComputationalGraph.Function;
 import Math.Tensor;
 
 import java.io.Serializable;
-import java.util.ArrayList;
 
 public class Softmax implements Function, Serializable {
 
@@ -14,22 +13,33 @@ public class Softmax implements Function, Serializable {
      */
     @Override
     public FunctionResults calculate(Tensor tensor) {
+        double[] values = new double[tensor.getData().length];
+        Tensor context = calculateInto(tensor, values);
+        return new FunctionResults(new Tensor(values, tensor.getShape()), context);
+    }
+
+    /**
+     * Computes Softmax(x) into the given buffer.
+     * @param tensor The input tensor.
+     * @param output Buffer that receives the output.
+     * @return null, since the derivative is computed from the output.
+     */
+    @Override
+    public Tensor calculateInto(Tensor tensor, double[] output) {
         double[] oldValues = tensor.getData();
-        double[] values = new double[oldValues.length];
         int lastDimensionSize = tensor.getShape()[tensor.getShape().length - 1];
         double sum = 0.0;
-        ArrayList<Double> sumList = new ArrayList<>();
         for (int i = 0; i < oldValues.length; i++) {
-            sum += Math.exp(oldValues[i]);
+            output[i] = Math.exp(oldValues[i]);
+            sum += output[i];
             if ((i + 1) % lastDimensionSize == 0) {
-                sumList.add(sum);
+                for (int j = i + 1 - lastDimensionSize; j <= i; j++) {
+                    output[j] /= sum;
+                }
                 sum = 0.0;
             }
         }
-        for (int i = 0; i < oldValues.length; i++) {
-            values[i] = Math.exp(oldValues[i]) / sumList.get(i / lastDimensionSize);
-        }
-        return new FunctionResults(new Tensor(values, tensor.getShape()));
+        return null;
     }
 
     /**
@@ -40,21 +50,31 @@ public class Softmax implements Function, Serializable {
      */
     @Override
     public Tensor derivative(Tensor tensor, Tensor backward) {
+        double[] values = new double[backward.getData().length];
+        derivativeInto(tensor, backward, values);
+        return new Tensor(values, tensor.getShape());
+    }
+
+    /**
+     * Computes the gradient of the input into the given buffer.
+     * @param tensor output of the Softmax(x).
+     * @param backward Backward tensor.
+     * @param gradient Buffer that receives the gradient of the input.
+     */
+    @Override
+    public void derivativeInto(Tensor tensor, Tensor backward, double[] gradient) {
         int lastDimensionSize = tensor.getShape()[tensor.getShape().length - 1];
-        ArrayList<Double> values = new ArrayList<>();
         double[] oldValuesTensor = tensor.getData();
         double[] oldValuesBackward = backward.getData();
         double total = 0.0;
         for (int i = 0; i < oldValuesTensor.length; i++) {
             total += oldValuesTensor[i] * oldValuesBackward[i];
             if ((i + 1) % lastDimensionSize == 0) {
-                int startIndex = i / lastDimensionSize;
-                for (int j = 0; j < lastDimensionSize; j++) {
-                    values.add(oldValuesBackward[startIndex * lastDimensionSize + j] - total);
+                for (int j = i + 1 - lastDimensionSize; j <= i; j++) {
+                    gradient[j] = oldValuesTensor[j] * (oldValuesBackward[j] - total);
                 }
                 total = 0.0;
             }
         }
-        return tensor.hadamardProduct(new Tensor(values, tensor.getShape()));
     }
 }
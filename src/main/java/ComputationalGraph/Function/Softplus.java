@@ -4,7 +4,7 @@ import java.io.Serializable;
 
 import Math.Tensor;
 
-public class Softplus implements Function, Serializable {
+public class Softplus implements ElementwiseFunction, Serializable {
 
     /**
      * Computes the Softplus activation function for the given tensor.
@@ -14,13 +14,24 @@ public class Softplus implements Function, Serializable {
      */
     @Override
     public FunctionResults calculate(Tensor value) {
-        double[] tensorValues = value.getData();
-        double[] values = new double[tensorValues.length];
-        for (int i = 0; i < tensorValues.length; i++) {
-            double val = tensorValues[i];
-            values[i] = Math.log(1.0 + Math.exp(val));
+        double[] values = new double[value.getData().length];
+        Tensor context = calculateInto(value, values);
+        return new FunctionResults(new Tensor(values, value.getShape()), context);
+    }
+
+    /**
+     * Computes Softplus(x) into the given buffer.
+     * @param value The input tensor.
+     * @param output Buffer that receives the output.
+     * @return null, since the derivative is computed from the output.
+     */
+    @Override
+    public Tensor calculateInto(Tensor value, double[] output) {
+        double[] oldValues = value.getData();
+        for (int i = 0; i < oldValues.length; i++) {
+            output[i] = calculate(oldValues[i]);
         }
-        return new FunctionResults(new Tensor(values, value.getShape()));
+        return null;
     }
 
     /**
@@ -31,14 +42,43 @@ public class Softplus implements Function, Serializable {
      */
     @Override
     public Tensor derivative(Tensor value, Tensor backward) {
-        double[] tensorValues = value.getData();
+        double[] values = new double[backward.getData().length];
+        derivativeInto(value, backward, values);
+        return new Tensor(values, value.getShape());
+    }
+
+    /**
+     * Computes the gradient of the input into the given buffer.
+     * @param value The output tensor of the Softplus activation.
+     * @param backward Backward tensor.
+     * @param gradient Buffer that receives the gradient of the input.
+     */
+    @Override
+    public void derivativeInto(Tensor value, Tensor backward, double[] gradient) {
+        double[] oldValues = value.getData();
         double[] backwardValues = backward.getData();
-        double[] values = new double[tensorValues.length];
-        for (int i = 0; i < tensorValues.length; i++) {
-            double val = tensorValues[i];
-            double backwardValue = backwardValues[i];
-            values[i] = (1 - Math.exp(-val)) * backwardValue;
+        for (int i = 0; i < oldValues.length; i++) {
+            gradient[i] = derivative(oldValues[i], backwardValues[i]);
         }
-        return new Tensor(values, value.getShape());
+    }
+
+    @Override
+    public double calculate(double value) {
+        return Math.log(1.0 + Math.exp(value));
+    }
+
+    /**
+     * @param value output of the function.
+     * @param backward Gradient of the output.
+     * @return Gradient of the input.
+     */
+    @Override
+    public double derivative(double value, double backward) {
+        return (1 - Math.exp(-value)) * backward;
+    }
+
+    @Override
+    public boolean isInputContext() {
+        return false;
     }
 }
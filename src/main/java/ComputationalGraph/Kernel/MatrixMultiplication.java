@@ -0,0 +1,332 @@
+package ComputationalGraph.Kernel;
+
+import ComputationalGraph.Function.ElementwiseFunction;
+import Math.Tensor;
+
+import java.util.concurrent.RecursiveAction;
+
+public class MatrixMultiplication {
+
+    private static final int ROW_BLOCK = 32;
+    private static final int COLUMN_BLOCK = 256;
+    private static final int INNER_BLOCK = 256;
+    private static final long PARALLEL_THRESHOLD = 1L << 18;
+
+    private MatrixMultiplication() {
+    }
+
+    /**
+     * Computes the shape of op(a) x op(b), where op transposes the last two dimensions of its operand if the
+     * corresponding flag is set. The leading dimensions of both operands are batch dimensions and are
+     * broadcast against each other: they are aligned from the right and a missing or unit dimension is
+     * repeated.
+     * @param a Left operand, of rank 2 or more.
+     * @param transposeA True if the last two dimensions of a are to be swapped.
+     * @param b Right operand, of rank 2 or more.
+     * @param transposeB True if the last two dimensions of b are to be swapped.
+     * @return Shape of the product.
+     */
+    public static int[] resultShape(Tensor a, boolean transposeA, Tensor b, boolean transposeB) {
+        int[] shapeA = a.getShape();
+        int[] shapeB = b.getShape();
+        int rankA = shapeA.length, rankB = shapeB.length;
+        int rows = transposeA ? shapeA[rankA - 1] : shapeA[rankA - 2];
+        int inner = transposeA ? shapeA[rankA - 2] : shapeA[rankA - 1];
+        int innerB = transposeB ? shapeB[rankB - 1] : shapeB[rankB - 2];
+        int columns = transposeB ? shapeB[rankB - 2] : shapeB[rankB - 1];
+        if (inner != innerB) {
+            throw new IllegalArgumentException("Inner dimensions of the operands do not match");
+        }
+        int rank = Math.max(rankA, rankB);
+        int[] shape = new int[rank];
+        for (int i = 0; i < rank - 2; i++) {
+            int dimensionA = batchDimension(shapeA, rank, i);
+            int dimensionB = batchDimension(shapeB, rank, i);
+            if (dimensionA != dimensionB && dimensionA != 1 && dimensionB != 1) {
+                throw new IllegalArgumentException("Batch dimensions of the operands can not be broadcast");
+            }
+            shape[i] = Math.max(dimensionA, dimensionB);
+        }
+        shape[rank - 2] = rows;
+        shape[rank - 1] = columns;
+        return shape;
+    }
+
+    /**
+     * @return Number of elements of op(a) x op(b).
+     */
+    public static int resultLength(Tensor a, boolean transposeA, Tensor b, boolean transposeB) {
+        int length = 1;
+        for (int dimension : resultShape(a, transposeA, b, transposeB)) {
+            length *= dimension;
+        }
+        return length;
+    }
+
+    /**
+     * Size of the i'th batch dimension of a shape, when the shape is aligned from the right to the given rank.
+     */
+    private static int batchDimension(int[] shape, int rank, int i) {
+        int j = i - (rank - shape.length);
+        if (j < 0) {
+            return 1;
+        }
+        return shape[j];
+    }
+
+    public static Tensor multiply(Tensor a, boolean transposeA, Tensor b, boolean transposeB) {
+        return multiply(a, transposeA, b, transposeB, null);
+    }
+
+    /**
+     * Computes op(a) x op(b) for every pair of matrices of the broadcast batch dimensions, without copying
+     * the transposed operands. The output is computed in tiles; large products are split into tiles that are
+     * computed on the common fork join pool. Every element is accumulated over the inner dimension in
+     * increasing order, so the result does not depend on the tiling or on the number of threads.
+     * @param a Left operand.
+     * @param transposeA True if the last two dimensions of a are to be swapped.
+     * @param b Right operand.
+     * @param transposeB True if the last two dimensions of b are to be swapped.
+     * @param values Buffer that receives the product, or null to allocate a new one. Its content is
+     *               overwritten.
+     * @return The product.
+     */
+    public static Tensor multiply(Tensor a, boolean transposeA, Tensor b, boolean transposeB, double[] values) {
+        return multiply(a, transposeA, b, transposeB, values, null, null, null);
+    }
+
+    /**
+     * Computes op(a) x op(b) like {@link #multiply(Tensor, boolean, Tensor, boolean, double[])} and applies an
+     * epilogue to every tile as soon as it is complete, while the tile is still in the cache: the bias is added
+     * to every row and the activation is applied to every element.
+     * @param a Left operand.
+     * @param transposeA True if the last two dimensions of a are to be swapped.
+     * @param b Right operand.
+     * @param transposeB True if the last two dimensions of b are to be swapped.
+     * @param values Buffer that receives the result, or null to allocate a new one.
+     * @param bias Bias with one element per column of the product, or null if no bias is added.
+     * @param activation Activation applied after the bias, or null if no activation is applied.
+     * @param preActivation Buffer that receives the values before the activation, or null if they are not
+     *                      needed.
+     * @return The result.
+     */
+    public static Tensor multiply(Tensor a, boolean transposeA, Tensor b, boolean transposeB, double[] values, double[] bias, ElementwiseFunction activation, double[] preActivation) {
+        int[] shape = resultShape(a, transposeA, b, transposeB);
+        int rank = shape.length;
+        int rows = shape[rank - 2];
+        int columns = shape[rank - 1];
+        int inner = transposeA ? a.getShape()[a.getShape().length - 2] : a.getShape()[a.getShape().length - 1];
+        int batch = 1;
+        for (int i = 0; i < rank - 2; i++) {
+            batch *= shape[i];
+        }
+        if (values == null) {
+            values = new double[batch * rows * columns];
+        }
+        int[] offsetsA = batchOffsets(a.getShape(), shape, (long) rows * inner);
+        int[] offsetsB = batchOffsets(b.getShape(), shape, (long) inner * columns);
+        Product product = new Product(a.getData(), offsetsA, transposeA, b.getData(), offsetsB, transposeB, values, rows, columns, inner);
+        if (bias != null || activation != null) {
+            if (bias != null && bias.length != columns) {
+                throw new IllegalArgumentException("Bias size does not match the columns of the product");
+            }
+            product.setEpilogue(bias, activation, preActivation);
+        }
+        if ((long) batch * rows * columns * inner < PARALLEL_THRESHOLD) {
+            product.compute(0, product.tiles());
+        } else {
+            new Tiles(product, 0, product.tiles()).invoke();
+        }
+        return new Tensor(values, shape);
+    }
+
+    /**
+     * Computes the offset of the matrix of an operand that takes part in each matrix of the product.
+     * @param shape Shape of the operand.
+     * @param resultShape Shape of the product.
+     * @param matrixSize Number of elements of one matrix of the operand.
+     * @return Offset of the operand matrix for every batch index of the product, in row-major order.
+     */
+    private static int[] batchOffsets(int[] shape, int[] resultShape, long matrixSize) {
+        int rank = resultShape.length;
+        int batch = 1;
+        for (int i = 0; i < rank - 2; i++) {
+            batch *= resultShape[i];
+        }
+        int[] offsets = new int[batch];
+        for (int q = 0; q < batch; q++) {
+            int remainder = q;
+            long offset = 0;
+            long stride = matrixSize;
+            for (int i = rank - 3; i >= 0; i--) {
+                int index = remainder % resultShape[i];
+                remainder /= resultShape[i];
+                int dimension = batchDimension(shape, rank, i);
+                if (dimension != 1) {
+                    offset += index * stride;
+                }
+                stride *= dimension;
+            }
+            offsets[q] = (int) offset;
+        }
+        return offsets;
+    }
+
+    /**
+     * A batched product split into tiles of at most ROW_BLOCK rows and COLUMN_BLOCK columns of one output
+     * matrix.
+     */
+    private static class Product {
+
+        private final double[] a;
+        private final int[] offsetsA;
+        private final boolean transposeA;
+        private final double[] b;
+        private final int[] offsetsB;
+        private final boolean transposeB;
+        private final double[] c;
+        private final int rows;
+        private final int columns;
+        private final int inner;
+        private final int rowTiles;
+        private final int columnTiles;
+        private double[] bias;
+        private ElementwiseFunction activation;
+        private double[] preActivation;
+
+        Product(double[] a, int[] offsetsA, boolean transposeA, double[] b, int[] offsetsB, boolean transposeB, double[] c, int rows, int columns, int inner) {
+            this.a = a;
+            this.offsetsA = offsetsA;
+            this.transposeA = transposeA;
+            this.b = b;
+            this.offsetsB = offsetsB;
+            this.transposeB = transposeB;
+            this.c = c;
+            this.rows = rows;
+            this.columns = columns;
+            this.inner = inner;
+            this.rowTiles = (rows + ROW_BLOCK - 1) / ROW_BLOCK;
+            this.columnTiles = (columns + COLUMN_BLOCK - 1) / COLUMN_BLOCK;
+        }
+
+        void setEpilogue(double[] bias, ElementwiseFunction activation, double[] preActivation) {
+            this.bias = bias;
+            this.activation = activation;
+            this.preActivation = preActivation;
+        }
+
+        int tiles() {
+            return offsetsA.length * rowTiles * columnTiles;
+        }
+
+        long work(int tiles) {
+            return (long) tiles * Math.min(rows, ROW_BLOCK) * Math.min(columns, COLUMN_BLOCK) * inner;
+        }
+
+        /**
+         * Computes the tiles in the given range.
+         * @param first Index of the first tile.
+         * @param last Index after the last tile.
+         */
+        void compute(int first, int last) {
+            for (int tile = first; tile < last; tile++) {
+                int q = tile / (rowTiles * columnTiles);
+                int rowTile = (tile / columnTiles) % rowTiles;
+                int columnTile = tile % columnTiles;
+                int rowStart = rowTile * ROW_BLOCK;
+                int rowEnd = Math.min(rows, rowStart + ROW_BLOCK);
+                int columnStart = columnTile * COLUMN_BLOCK;
+                int columnEnd = Math.min(columns, columnStart + COLUMN_BLOCK);
+                int offsetA = offsetsA[q];
+                int offsetB = offsetsB[q];
+                int offsetC = q * rows * columns;
+                if (!transposeB) {
+                    for (int i = rowStart; i < rowEnd; i++) {
+                        for (int j = columnStart; j < columnEnd; j++) {
+                            c[offsetC + i * columns + j] = 0.0;
+                        }
+                    }
+                    for (int innerStart = 0; innerStart < inner; innerStart += INNER_BLOCK) {
+                        int innerEnd = Math.min(inner, innerStart + INNER_BLOCK);
+                        for (int i = rowStart; i < rowEnd; i++) {
+                            int row = offsetC + i * columns;
+                            for (int t = innerStart; t < innerEnd; t++) {
+                                double value = transposeA ? a[offsetA + t * rows + i] : a[offsetA + i * inner + t];
+                                int start = offsetB + t * columns;
+                                for (int j = columnStart; j < columnEnd; j++) {
+                                    c[row + j] += value * b[start + j];
+                                }
+                            }
+                        }
+                    }
+                } else {
+                    for (int i = rowStart; i < rowEnd; i++) {
+                        for (int j = columnStart; j < columnEnd; j++) {
+                            int start = offsetB + j * inner;
+                            double sum = 0.0;
+                            if (transposeA) {
+                                for (int t = 0; t < inner; t++) {
+                                    sum += a[offsetA + t * rows + i] * b[start + t];
+                                }
+                            } else {
+                                int row = offsetA + i * inner;
+                                for (int t = 0; t < inner; t++) {
+                                    sum += a[row + t] * b[start + t];
+                                }
+                            }
+                            c[offsetC + i * columns + j] = sum;
+                        }
+                    }
+                }
+                if (bias != null || activation != null) {
+                    epilogue(offsetC, rowStart, rowEnd, columnStart, columnEnd);
+                }
+            }
+        }
+
+        /**
+         * Adds the bias to a complete tile and applies the activation.
+         */
+        private void epilogue(int offsetC, int rowStart, int rowEnd, int columnStart, int columnEnd) {
+            for (int i = rowStart; i < rowEnd; i++) {
+                int row = offsetC + i * columns;
+                for (int j = columnStart; j < columnEnd; j++) {
+                    double value = c[row + j];
+                    if (bias != null) {
+                        value += bias[j];
+                    }
+                    if (preActivation != null) {
+                        preActivation[row + j] = value;
+                    }
+                    c[row + j] = activation != null ? activation.calculate(value) : value;
+                }
+            }
+        }
+    }
+
+    /**
+     * Splits a range of tiles in halves until each half is small enough to be computed by a single task.
+     */
+    private static class Tiles extends RecursiveAction {
+
+        private final Product product;
+        private final int first;
+        private final int last;
+
+        Tiles(Product product, int first, int last) {
+            this.product = product;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected void compute() {
+            if (last - first <= 1 || product.work(last - first) < PARALLEL_THRESHOLD / 4) {
+                product.compute(first, last);
+            } else {
+                int middle = (first + last) >>> 1;
+                invokeAll(new Tiles(product, first, middle), new Tiles(product, middle, last));
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package ComputationalGraph.Kernel;
+
+import ComputationalGraph.Function.ElementwiseFunction;
+
+import java.util.concurrent.RecursiveAction;
+
+public class QuantizedMatrixMultiplication {
+
+    private static final int ROW_BLOCK = 32;
+    private static final int COLUMN_BLOCK = 256;
+    private static final long PARALLEL_THRESHOLD = 1L << 18;
+
+    private QuantizedMatrixMultiplication() {
+    }
+
+    /**
+     * Computes a x b for int8 matrices, accumulating every element in an int, and dequantizes each tile as soon as
+     * it is complete: every accumulator of column j is multiplied by the scale of the column, the bias is added
+     * and the activation is applied. Large products are split into row tiles that are computed on the common
+     * fork join pool. Since the accumulation is exact, the result does not depend on the tiling. The inner
+     * dimension must be below 2^31 / 127^2, about 133000, for the accumulators not to overflow.
+     * @param a Left operand, rows x inner values in row-major order.
+     * @param b Right operand, inner x columns values in row-major order.
+     * @param rows Number of rows of a.
+     * @param inner Number of columns of a and rows of b.
+     * @param columns Number of columns of b.
+     * @param scales Scale of every column of the product, the product of the scales of a and of the column of b.
+     * @param bias Bias with one element per column, or null if no bias is added.
+     * @param activation Activation applied after the bias, or null if no activation is applied.
+     * @param values Buffer that receives the dequantized result, rows x columns values. Its content is
+     *               overwritten.
+     */
+    public static void multiply(byte[] a, byte[] b, int rows, int inner, int columns, double[] scales, double[] bias, ElementwiseFunction activation, double[] values) {
+        if (inner > Integer.MAX_VALUE / (127 * 127)) {
+            throw new IllegalArgumentException("Inner dimension is too large for int accumulators");
+        }
+        Product product = new Product(a, b, rows, inner, columns, scales, bias, activation, values);
+        int tiles = (rows + ROW_BLOCK - 1) / ROW_BLOCK;
+        if ((long) rows * columns * inner < PARALLEL_THRESHOLD) {
+            product.compute(0, tiles);
+        } else {
+            new Tiles(product, 0, tiles).invoke();
+        }
+    }
+
+    /**
+     * A product split into tiles of at most ROW_BLOCK rows.
+     */
+    private static class Product {
+
+        private final byte[] a;
+        private final byte[] b;
+        private final int rows;
+        private final int inner;
+        private final int columns;
+        private final double[] scales;
+        private final double[] bias;
+        private final ElementwiseFunction activation;
+        private final double[] c;
+
+        Product(byte[] a, byte[] b, int rows, int inner, int columns, double[] scales, double[] bias, ElementwiseFunction activation, double[] c) {
+            this.a = a;
+            this.b = b;
+            this.rows = rows;
+            this.inner = inner;
+            this.columns = columns;
+            this.scales = scales;
+            this.bias = bias;
+            this.activation = activation;
+            this.c = c;
+        }
+
+        long work(int tiles) {
+            return (long) tiles * Math.min(rows, ROW_BLOCK) * columns * inner;
+        }
+
+        /**
+         * Computes the row tiles in the given range, one block of columns at a time, so that the accumulators of
+         * a row stay in the cache.
+         * @param first Index of the first tile.
+         * @param last Index after the last tile.
+         */
+        void compute(int first, int last) {
+            int[] accumulators = new int[Math.min(columns, COLUMN_BLOCK)];
+            for (int tile = first; tile < last; tile++) {
+                int rowEnd = Math.min(rows, (tile + 1) * ROW_BLOCK);
+                for (int i = tile * ROW_BLOCK; i < rowEnd; i++) {
+                    int row = i * inner;
+                    for (int columnStart = 0; columnStart < columns; columnStart += COLUMN_BLOCK) {
+                        int width = Math.min(columns, columnStart + COLUMN_BLOCK) - columnStart;
+                        for (int j = 0; j < width; j++) {
+                            accumulators[j] = 0;
+                        }
+                        for (int t = 0; t < inner; t++) {
+                            int value = a[row + t];
+                            if (value == 0) {
+                                continue;
+                            }
+                            int start = t * columns + columnStart;
+                            for (int j = 0; j < width; j++) {
+                                accumulators[j] += value * b[start + j];
+                            }
+                        }
+                        int output = i * columns + columnStart;
+                        for (int j = 0; j < width; j++) {
+                            double result = accumulators[j] * scales[columnStart + j];
+                            if (bias != null) {
+                                result += bias[columnStart + j];
+                            }
+                            c[output + j] = activation != null ? activation.calculate(result) : result;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Splits a range of tiles in halves until each half is small enough to be computed by a single task.
+     */
+    private static class Tiles extends RecursiveAction {
+
+        private final Product product;
+        private final int first;
+        private final int last;
+
+        Tiles(Product product, int first, int last) {
+            this.product = product;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected void compute() {
+            if (last - first <= 1 || product.work(last - first) < PARALLEL_THRESHOLD / 4) {
+                product.compute(first, last);
+            } else {
+                int middle = (first + last) >>> 1;
+                invokeAll(new Tiles(product, first, middle), new Tiles(product, middle, last));
+            }
+        }
+    }
+}
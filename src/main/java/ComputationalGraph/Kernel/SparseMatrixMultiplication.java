@@ -0,0 +1,287 @@
+package ComputationalGraph.Kernel;
+
+import ComputationalGraph.Function.ElementwiseFunction;
+import ComputationalGraph.Sparse.BlockSparseMatrix;
+import ComputationalGraph.Sparse.CsrMatrix;
+import ComputationalGraph.Sparse.RowSparseMatrix;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+public class SparseMatrixMultiplication {
+
+    private static final int ROW_BLOCK = 32;
+    private static final long PARALLEL_THRESHOLD = 1L << 18;
+
+    private SparseMatrixMultiplication() {
+    }
+
+    /**
+     * Computes a x b for a dense matrix a and a sparse matrix b in compressed sparse row form. Every element of a
+     * row of a scales the non-zeros of the matching row of b into the row of the result, so the work is the
+     * number of rows of a times the number of non-zeros of b. The bias and the activation are applied to every
+     * row as soon as it is complete. Large products are split into row blocks that are computed on the common
+     * fork join pool.
+     * @param a Left operand, rows x b.getRows() values in row-major order.
+     * @param rows Number of rows of a.
+     * @param b Right operand.
+     * @param bias Bias with one element per column, or null if no bias is added.
+     * @param activation Activation applied after the bias, or null if no activation is applied.
+     * @param values Buffer that receives the result, rows x b.getColumns() values. Its content is overwritten.
+     */
+    public static void multiply(double[] a, int rows, CsrMatrix b, double[] bias, ElementwiseFunction activation, double[] values) {
+        int inner = b.getRows();
+        int columns = b.getColumns();
+        int[] rowPointers = b.getRowPointers();
+        int[] columnIndices = b.getColumnIndices();
+        double[] nonZeros = b.getValues();
+        run(rows, (long) b.nonZeros() * rows, (first, last) -> {
+            for (int i = first; i < last; i++) {
+                int output = i * columns;
+                for (int j = 0; j < columns; j++) {
+                    values[output + j] = 0.0;
+                }
+                int row = i * inner;
+                for (int t = 0; t < inner; t++) {
+                    double value = a[row + t];
+                    if (value == 0) {
+                        continue;
+                    }
+                    for (int k = rowPointers[t]; k < rowPointers[t + 1]; k++) {
+                        values[output + columnIndices[k]] += value * nonZeros[k];
+                    }
+                }
+                epilogue(values, output, columns, bias, activation, null);
+            }
+        });
+    }
+
+    /**
+     * Computes a x b for a dense matrix a and a block sparse matrix b. Every element of a row of a scales the row
+     * of each stored block it meets into the row of the result, so the work is the number of rows of a times the
+     * number of stored block values, and the inner loop runs over the dense columns of a block.
+     * @param a Left operand, rows x b.getRows() values in row-major order.
+     * @param rows Number of rows of a.
+     * @param b Right operand.
+     * @param bias Bias with one element per column, or null if no bias is added.
+     * @param activation Activation applied after the bias, or null if no activation is applied.
+     * @param values Buffer that receives the result, rows x b.getColumns() values. Its content is overwritten.
+     */
+    public static void multiply(double[] a, int rows, BlockSparseMatrix b, double[] bias, ElementwiseFunction activation, double[] values) {
+        int inner = b.getRows();
+        int columns = b.getColumns();
+        int blockRows = b.getBlockRows();
+        int blockColumns = b.getBlockColumns();
+        int blockSize = blockRows * blockColumns;
+        int[] blockRowPointers = b.getBlockRowPointers();
+        int[] blockColumnIndices = b.getBlockColumnIndices();
+        double[] blocks = b.getValues();
+        run(rows, (long) b.blockCount() * blockSize * rows, (first, last) -> {
+            for (int i = first; i < last; i++) {
+                int output = i * columns;
+                for (int j = 0; j < columns; j++) {
+                    values[output + j] = 0.0;
+                }
+                int row = i * inner;
+                for (int r = 0; r + 1 < blockRowPointers.length; r++) {
+                    int height = Math.min(blockRows, inner - r * blockRows);
+                    for (int k = blockRowPointers[r]; k < blockRowPointers[r + 1]; k++) {
+                        int start = blockColumnIndices[k] * blockColumns;
+                        int width = Math.min(blockColumns, columns - start);
+                        for (int s = 0; s < height; s++) {
+                            double value = a[row + r * blockRows + s];
+                            if (value == 0) {
+                                continue;
+                            }
+                            int block = k * blockSize + s * blockColumns;
+                            for (int j = 0; j < width; j++) {
+                                values[output + start + j] += value * blocks[block + j];
+                            }
+                        }
+                    }
+                }
+                epilogue(values, output, columns, bias, activation, null);
+            }
+        });
+    }
+
+    /**
+     * Computes a x b for a sparse matrix a in compressed sparse row form and a dense matrix b, such as a batch of
+     * sparse inputs times the weights of the first layer. Every non-zero of a row of a scales the matching row of
+     * b into the row of the result, so the work is the number of non-zeros of a times the number of columns of
+     * b, whatever the number of columns of a.
+     * @param a Left operand.
+     * @param b Right operand, a.getColumns() x columns values in row-major order.
+     * @param columns Number of columns of b.
+     * @param values Buffer that receives the result, a.getRows() x columns values. Its content is overwritten.
+     */
+    public static void multiply(CsrMatrix a, double[] b, int columns, double[] values) {
+        multiply(a, b, columns, null, null, null, values);
+    }
+
+    /**
+     * Computes a x b as above, adding the bias to every row and applying the activation as soon as the row is
+     * complete, such as a dense layer fed with sparse inputs.
+     * @param a Left operand.
+     * @param b Right operand, a.getColumns() x columns values in row-major order.
+     * @param columns Number of columns of b.
+     * @param bias Bias with one element per column, or null if no bias is added.
+     * @param activation Activation applied after the bias, or null if no activation is applied.
+     * @param preActivation Buffer that receives the values before the activation, or null if they are not
+     *                      needed.
+     * @param values Buffer that receives the result, a.getRows() x columns values. Its content is overwritten.
+     */
+    public static void multiply(CsrMatrix a, double[] b, int columns, double[] bias, ElementwiseFunction activation, double[] preActivation, double[] values) {
+        int[] rowPointers = a.getRowPointers();
+        int[] columnIndices = a.getColumnIndices();
+        double[] nonZeros = a.getValues();
+        run(a.getRows(), (long) a.nonZeros() * columns, (first, last) -> {
+            for (int i = first; i < last; i++) {
+                int output = i * columns;
+                for (int j = 0; j < columns; j++) {
+                    values[output + j] = 0.0;
+                }
+                for (int k = rowPointers[i]; k < rowPointers[i + 1]; k++) {
+                    double value = nonZeros[k];
+                    int row = columnIndices[k] * columns;
+                    for (int j = 0; j < columns; j++) {
+                        values[output + j] += value * b[row + j];
+                    }
+                }
+                epilogue(values, output, columns, bias, activation, preActivation);
+            }
+        });
+    }
+
+    /**
+     * Computes a^T x b for a sparse matrix a in compressed sparse row form and a dense matrix b, such as the
+     * gradient of the weights of the first layer for a batch of sparse inputs. Every non-zero a[i][t] adds row i
+     * of b, scaled, to row t of the result, so apart from clearing the result, the work is the number of
+     * non-zeros of a times the number of columns of b. Since different rows of a add to the same rows of the
+     * result, the product is computed on the calling thread.
+     * @param a Left operand, transposed by the product.
+     * @param b Right operand, a.getRows() x columns values in row-major order.
+     * @param columns Number of columns of b.
+     * @param values Buffer that receives the result, a.getColumns() x columns values. Its content is
+     *               overwritten.
+     */
+    public static void multiplyTransposed(CsrMatrix a, double[] b, int columns, double[] values) {
+        int[] rowPointers = a.getRowPointers();
+        int[] columnIndices = a.getColumnIndices();
+        double[] nonZeros = a.getValues();
+        Arrays.fill(values, 0, a.getColumns() * columns, 0.0);
+        for (int i = 0; i < a.getRows(); i++) {
+            int row = i * columns;
+            for (int k = rowPointers[i]; k < rowPointers[i + 1]; k++) {
+                double value = nonZeros[k];
+                int output = columnIndices[k] * columns;
+                for (int j = 0; j < columns; j++) {
+                    values[output + j] += value * b[row + j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes a^T x b as above, but only stores the rows of the result that a non-zero of a adds to, one for every
+     * distinct column index of a, such as the gradient of the first layer weights for a batch of bag-of-words
+     * inputs. The memory and the work are proportional to the non-zeros of a times the number of columns of b,
+     * whatever the number of columns of a, and the rows are summed in the same order as by the dense product.
+     * @param a Left operand, transposed by the product.
+     * @param b Right operand, a.getRows() x columns values in row-major order.
+     * @param columns Number of columns of b.
+     * @return The product, with the rows that are not stored being zero.
+     */
+    public static RowSparseMatrix multiplyTransposedRows(CsrMatrix a, double[] b, int columns) {
+        int[] rowPointers = a.getRowPointers();
+        int[] columnIndices = a.getColumnIndices();
+        double[] nonZeros = a.getValues();
+        int[] sorted = Arrays.copyOf(columnIndices, a.nonZeros());
+        Arrays.sort(sorted);
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[count++] = sorted[i];
+            }
+        }
+        int[] rowIndices = Arrays.copyOf(sorted, count);
+        double[] values = new double[count * columns];
+        for (int i = 0; i < a.getRows(); i++) {
+            int row = i * columns;
+            for (int k = rowPointers[i]; k < rowPointers[i + 1]; k++) {
+                double value = nonZeros[k];
+                int output = Arrays.binarySearch(rowIndices, columnIndices[k]) * columns;
+                for (int j = 0; j < columns; j++) {
+                    values[output + j] += value * b[row + j];
+                }
+            }
+        }
+        return new RowSparseMatrix(a.getColumns(), columns, rowIndices, values);
+    }
+
+    /**
+     * Adds the bias to a complete row of the result and applies the activation, keeping the values before the
+     * activation if a buffer is given.
+     */
+    private static void epilogue(double[] values, int output, int columns, double[] bias, ElementwiseFunction activation, double[] preActivation) {
+        if (bias == null && activation == null) {
+            return;
+        }
+        for (int j = 0; j < columns; j++) {
+            double value = values[output + j];
+            if (bias != null) {
+                value += bias[j];
+            }
+            if (preActivation != null) {
+                preActivation[output + j] = value;
+            }
+            values[output + j] = activation != null ? activation.calculate(value) : value;
+        }
+    }
+
+    /**
+     * Computes the rows of a product, on the common fork join pool if the product is large.
+     * @param rows Number of rows.
+     * @param work Number of multiplications of the product.
+     * @param kernel Kernel computing a range of rows.
+     */
+    private static void run(int rows, long work, RowKernel kernel) {
+        if (work < PARALLEL_THRESHOLD) {
+            kernel.compute(0, rows);
+        } else {
+            new Rows(kernel, 0, rows, Math.max(1, work / Math.max(1, rows))).invoke();
+        }
+    }
+
+    private interface RowKernel {
+        void compute(int first, int last);
+    }
+
+    /**
+     * Splits a range of rows in halves until each half is small enough to be computed by a single task.
+     */
+    private static class Rows extends RecursiveAction {
+
+        private final RowKernel kernel;
+        private final int first;
+        private final int last;
+        private final long rowWork;
+
+        Rows(RowKernel kernel, int first, int last, long rowWork) {
+            this.kernel = kernel;
+            this.first = first;
+            this.last = last;
+            this.rowWork = rowWork;
+        }
+
+        @Override
+        protected void compute() {
+            if (last - first <= ROW_BLOCK || (last - first) * rowWork < PARALLEL_THRESHOLD / 4) {
+                kernel.compute(first, last);
+            } else {
+                int middle = (first + last) >>> 1;
+                invokeAll(new Rows(kernel, first, middle, rowWork), new Rows(kernel, middle, last, rowWork));
+            }
+        }
+    }
+}
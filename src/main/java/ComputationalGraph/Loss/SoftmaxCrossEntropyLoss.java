@@ -0,0 +1,33 @@
+package ComputationalGraph.Loss;
+
+import ComputationalGraph.Function.Softmax;
+import ComputationalGraph.Node.ComputationalNode;
+import ComputationalGraph.Node.FunctionNode;
+import ComputationalGraph.Node.SoftmaxCrossEntropyNode;
+
+import java.io.Serializable;
+
+public class SoftmaxCrossEntropyLoss implements Loss, Serializable {
+
+    /**
+     * Adds a fused softmax and cross-entropy loss to the computational graph. If the input node is an unbiased
+     * softmax node, the loss is computed from the logits below it, so that the softmax node only serves as the
+     * output of inference passes and the backward pass goes through a single node. Otherwise the input node
+     * itself is treated as the logits.
+     * @param inputNode The computational node representing the predicted probabilities or the logits.
+     * @param classLabelNode The computational node representing the true class labels.
+     * @param batchDimension which dimension of the input tensor represents the batch size.
+     * @return A computational node representing the result of the cross-entropy loss computation.
+     */
+    @Override
+    public ComputationalNode addLoss(ComputationalNode inputNode, ComputationalNode classLabelNode, int batchDimension) {
+        ComputationalNode logits = inputNode;
+        if (inputNode instanceof FunctionNode && ((FunctionNode) inputNode).getFunction() instanceof Softmax && !inputNode.isBiased()) {
+            logits = inputNode.getParent(0);
+        }
+        ComputationalNode loss = new SoftmaxCrossEntropyNode(batchDimension);
+        logits.add(loss);
+        classLabelNode.add(loss);
+        return loss;
+    }
+}
@@ -0,0 +1,19 @@
+package ComputationalGraph.Memory;
+
+public class AllocatingArena implements BufferArena {
+
+    /**
+     * Allocates a new buffer on every request, which is the behaviour without a memory plan.
+     * @param slot Slot assigned by the memory plan, ignored.
+     * @param length Number of elements required.
+     * @return A new buffer of the given length.
+     */
+    @Override
+    public double[] acquire(int slot, int length) {
+        return new double[length];
+    }
+
+    @Override
+    public void reset() {
+    }
+}
@@ -0,0 +1,6 @@
+package ComputationalGraph.Memory;
+
+public interface BufferArena {
+    double[] acquire(int slot, int length);
+    void reset();
+}
@@ -0,0 +1,53 @@
+package ComputationalGraph.Memory;
+
+import java.util.ArrayList;
+
+public class HeapArena implements BufferArena {
+
+    private final ArrayList<double[]> buffers;
+
+    public HeapArena() {
+        this.buffers = new ArrayList<>();
+    }
+
+    /**
+     * Returns the buffer of the given slot. The buffer is allocated on the first request and reused by every
+     * later request with the same length, so that a memory plan with stable shapes allocates nothing after its
+     * first step.
+     * @param slot Slot assigned by the memory plan.
+     * @param length Number of elements required.
+     * @return A buffer of exactly the given length. Its content is undefined.
+     */
+    @Override
+    public double[] acquire(int slot, int length) {
+        while (buffers.size() <= slot) {
+            buffers.add(null);
+        }
+        double[] buffer = buffers.get(slot);
+        if (buffer == null || buffer.length != length) {
+            buffer = new double[length];
+            buffers.set(slot, buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * Buffers are kept between steps, the slots are simply handed out again.
+     */
+    @Override
+    public void reset() {
+    }
+
+    /**
+     * @return Number of bytes held by the arena.
+     */
+    public long getAllocatedBytes() {
+        long bytes = 0;
+        for (double[] buffer : buffers) {
+            if (buffer != null) {
+                bytes += 8L * buffer.length;
+            }
+        }
+        return bytes;
+    }
+}
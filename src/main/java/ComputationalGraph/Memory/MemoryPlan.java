@@ -0,0 +1,332 @@
+package ComputationalGraph.Memory;
+
+import ComputationalGraph.ExecutionPlan;
+import ComputationalGraph.Node.BiasAddNode;
+import ComputationalGraph.Node.ComputationalNode;
+import ComputationalGraph.Node.ConcatenatedNode;
+import ComputationalGraph.Node.EmbeddingNode;
+import ComputationalGraph.Node.FunctionNode;
+import ComputationalGraph.Node.LinearNode;
+import ComputationalGraph.Node.MultiplicationNode;
+import ComputationalGraph.Node.SoftmaxCrossEntropyNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+
+public class MemoryPlan {
+
+    private final int[] valueSizes;
+    private final int[] backwardSizes;
+    private final int[] valueSlots;
+    private final int[] backwardSlots;
+    private final boolean isTraining;
+    private final boolean isPacked;
+    private long plannedPeakBytes;
+    private long naivePeakBytes;
+    private int slotCount;
+
+    /**
+     * Assigns every intermediate value and gradient of an execution plan to a slot of a buffer arena. The
+     * lifetime of each tensor is computed on the step timeline, where node i is computed at time i in the
+     * forward pass and its gradient is accumulated at time 2n - 1 - i in the backward pass. Lifetimes are
+     * extended over tensors that may alias them, e.g. a function returning its input as context. Tensors of
+     * the same size whose lifetimes do not overlap share a slot.
+     * @param plan Execution plan of the graph.
+     * @param valueSizes Number of elements of the value of each node, as observed in a previous step.
+     * @param backwardSizes Number of elements of the gradient of each node, as observed in a previous step.
+     * @param isTraining True if the plan is for a training step, false if it is for an inference pass.
+     */
+    public MemoryPlan(ExecutionPlan plan, int[] valueSizes, int[] backwardSizes, boolean isTraining) {
+        this(plan, valueSizes, backwardSizes, isTraining, false);
+    }
+
+    /**
+     * Assigns the tensors of an execution plan to slots of a buffer arena. If the values read by the backward
+     * pass are packed into copies of their own as soon as they are computed, see
+     * {@link #isValueReadInBackward(ExecutionPlan, int)}, the values only live during the forward pass and their
+     * slots are reused by the later nodes.
+     * @param plan Execution plan of the graph.
+     * @param valueSizes Number of elements of the value of each node, as observed in a previous step.
+     * @param backwardSizes Number of elements of the gradient of each node, as observed in a previous step.
+     * @param isTraining True if the plan is for a training step, false if it is for an inference pass.
+     * @param isPacked True if the values read by the backward pass are packed.
+     */
+    public MemoryPlan(ExecutionPlan plan, int[] valueSizes, int[] backwardSizes, boolean isTraining, boolean isPacked) {
+        int n = plan.size();
+        this.valueSizes = valueSizes.clone();
+        this.backwardSizes = backwardSizes.clone();
+        this.isTraining = isTraining;
+        this.isPacked = isTraining && isPacked;
+        int end = 2 * n;
+        int[] valueLast = new int[n];
+        int[] backwardLast = new int[n];
+        boolean[] valuePlanned = new boolean[n];
+        boolean[] backwardPlanned = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            valueLast[i] = i;
+            backwardLast[i] = backwardTime(n, i);
+            valuePlanned[i] = plan.parentsSize(i) > 0 && valueSizes[i] > 0 && !isValueAlias(plan, i);
+            backwardPlanned[i] = isTraining && backwardSizes[i] > 0;
+        }
+        for (int c = 0; c < n; c++) {
+            ComputationalNode child = plan.getNode(c);
+            for (int k = 0; k < plan.parentsSize(c); k++) {
+                int p = plan.getParentIndex(c, k);
+                valueLast[p] = Math.max(valueLast[p], c);
+                if (!isTraining) {
+                    continue;
+                }
+                int time = backwardTime(n, p);
+                backwardLast[c] = Math.max(backwardLast[c], time);
+                if (this.isPacked) {
+                    continue;
+                }
+                if (child instanceof FunctionNode) {
+                    valueLast[c] = Math.max(valueLast[c], time);
+                    valueLast[p] = Math.max(valueLast[p], time);
+                } else if (child instanceof MultiplicationNode || child instanceof LinearNode) {
+                    for (int t = 0; t < plan.parentsSize(c); t++) {
+                        int other = plan.getParentIndex(c, t);
+                        valueLast[other] = Math.max(valueLast[other], time);
+                    }
+                }
+            }
+        }
+        if (isTraining) {
+            for (int i = 0; i < n && !this.isPacked; i++) {
+                if (plan.getNode(i) instanceof LinearNode) {
+                    valueLast[i] = Math.max(valueLast[i], backwardTime(n, i));
+                }
+            }
+            valueLast[plan.getLossIndex()] = end;
+            for (int i = 0; i < plan.learnableSize(); i++) {
+                backwardLast[plan.getLearnableIndex(i)] = end;
+            }
+        }
+        valueLast[plan.getOutputIndex()] = end;
+        for (int c = n - 1; c >= 0; c--) {
+            if (mayAliasParentValue(plan, c)) {
+                int p = plan.getParentIndex(c, 0);
+                valueLast[p] = Math.max(valueLast[p], valueLast[c]);
+            }
+        }
+        if (isTraining) {
+            for (int c = 0; c < n; c++) {
+                if (mayPassBackward(plan, c)) {
+                    for (int k = 0; k < plan.parentsSize(c); k++) {
+                        int p = plan.getParentIndex(c, k);
+                        backwardLast[c] = Math.max(backwardLast[c], backwardLast[p]);
+                    }
+                }
+            }
+        }
+        ArrayList<int[]> tensors = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (valuePlanned[i]) {
+                tensors.add(new int[]{i, valueSizes[i], valueLast[i], 0, i});
+                naivePeakBytes += 8L * valueSizes[i];
+            }
+            if (backwardPlanned[i]) {
+                tensors.add(new int[]{backwardTime(n, i), backwardSizes[i], backwardLast[i], 1, i});
+                naivePeakBytes += 8L * backwardSizes[i];
+            }
+        }
+        this.valueSlots = new int[n];
+        this.backwardSlots = new int[n];
+        Arrays.fill(valueSlots, -1);
+        Arrays.fill(backwardSlots, -1);
+        assignSlots(tensors);
+    }
+
+    /**
+     * Assigns slots with a linear scan over the tensors sorted by their definition time. A slot becomes free
+     * once the last use of its current tensor has passed, and is reused by the next tensor of the same size.
+     * @param tensors Definition time, size, last use time, kind (0 for values, 1 for gradients) and node index
+     *                of every tensor.
+     */
+    private void assignSlots(ArrayList<int[]> tensors) {
+        tensors.sort(Comparator.comparingInt(tensor -> tensor[0]));
+        HashMap<Integer, ArrayList<Integer>> freeSlots = new HashMap<>();
+        ArrayList<int[]> active = new ArrayList<>();
+        ArrayList<Integer> activeSlots = new ArrayList<>();
+        for (int[] tensor : tensors) {
+            for (int i = active.size() - 1; i >= 0; i--) {
+                if (active.get(i)[2] < tensor[0]) {
+                    int size = active.get(i)[1];
+                    if (!freeSlots.containsKey(size)) {
+                        freeSlots.put(size, new ArrayList<>());
+                    }
+                    freeSlots.get(size).add(activeSlots.get(i));
+                    active.remove(i);
+                    activeSlots.remove(i);
+                }
+            }
+            ArrayList<Integer> free = freeSlots.get(tensor[1]);
+            int slot;
+            if (free != null && !free.isEmpty()) {
+                slot = free.remove(free.size() - 1);
+            } else {
+                slot = slotCount++;
+                plannedPeakBytes += 8L * tensor[1];
+            }
+            if (tensor[3] == 0) {
+                valueSlots[tensor[4]] = slot;
+            } else {
+                backwardSlots[tensor[4]] = slot;
+            }
+            active.add(tensor);
+            activeSlots.add(slot);
+        }
+    }
+
+    private static int backwardTime(int n, int index) {
+        return 2 * n - 1 - index;
+    }
+
+    /**
+     * Checks if the backward pass reads the value of a node. Besides the learnable weights, these are the values
+     * of function and dense layer nodes, the operands of products and dense layers, the biases and the labels of
+     * the loss, and the ids of embedding lookups. The backward pass of a function only takes the size of the value
+     * of its parent.
+     * @param plan Execution plan of the graph.
+     * @param index Index of the node in the execution plan.
+     * @return True if the value of the node is read by the backward pass.
+     */
+    public static boolean isValueReadInBackward(ExecutionPlan plan, int index) {
+        ComputationalNode node = plan.getNode(index);
+        if (node instanceof FunctionNode || node instanceof LinearNode) {
+            return true;
+        }
+        for (int t = 0; t < plan.childrenSize(index); t++) {
+            int c = plan.getChildIndex(index, t);
+            ComputationalNode child = plan.getNode(c);
+            if (child instanceof MultiplicationNode || child instanceof LinearNode) {
+                return true;
+            }
+            if ((child instanceof SoftmaxCrossEntropyNode || child instanceof BiasAddNode) && plan.getParentIndex(c, 0) != index) {
+                return true;
+            }
+            if (child instanceof EmbeddingNode && plan.getParentIndex(c, 0) == index) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return True if the value of the node is its parent's tensor itself, so it never needs a buffer.
+     */
+    private boolean isValueAlias(ExecutionPlan plan, int index) {
+        ComputationalNode node = plan.getNode(index);
+        if (node.isBiased()) {
+            return false;
+        }
+        if (node instanceof FunctionNode) {
+            return !isTraining && ((FunctionNode) node).isDropout();
+        }
+        if (node instanceof BiasAddNode) {
+            return plan.isInPlace(index);
+        }
+        return !(node instanceof MultiplicationNode) && !(node instanceof ConcatenatedNode) && plan.parentsSize(index) == 1;
+    }
+
+    /**
+     * @return True if the value or the context of the node may hold the tensor of its first parent.
+     */
+    private boolean mayAliasParentValue(ExecutionPlan plan, int index) {
+        ComputationalNode node = plan.getNode(index);
+        if (plan.parentsSize(index) == 0) {
+            return false;
+        }
+        return node instanceof FunctionNode || isValueAlias(plan, index);
+    }
+
+    /**
+     * @return True if the gradient of the node may be handed to its parents as their gradient.
+     */
+    private boolean mayPassBackward(ExecutionPlan plan, int index) {
+        ComputationalNode node = plan.getNode(index);
+        if (node.isBiased() || node instanceof MultiplicationNode || node instanceof LinearNode || node instanceof ConcatenatedNode) {
+            return false;
+        }
+        return plan.parentsSize(index) > 0;
+    }
+
+    /**
+     * @param valueSizes Observed sizes of the values.
+     * @param backwardSizes Observed sizes of the gradients.
+     * @return True if the plan was computed for the given sizes.
+     */
+    public boolean matches(int[] valueSizes, int[] backwardSizes) {
+        return Arrays.equals(this.valueSizes, valueSizes) && Arrays.equals(this.backwardSizes, backwardSizes);
+    }
+
+    /**
+     * @param index Index of the node in the execution plan.
+     * @return Arena slot of the value of the node, -1 if the value is not planned.
+     */
+    public int getValueSlot(int index) {
+        return valueSlots[index];
+    }
+
+    /**
+     * @param index Index of the node in the execution plan.
+     * @return Arena slot of the gradient of the node, -1 if the gradient is not planned.
+     */
+    public int getBackwardSlot(int index) {
+        return backwardSlots[index];
+    }
+
+    /**
+     * @param index Index of the node in the execution plan.
+     * @return Number of elements of the value of the node, as observed when the plan was computed.
+     */
+    public int getValueSize(int index) {
+        return valueSizes[index];
+    }
+
+    /**
+     * @param index Index of the node in the execution plan.
+     * @return Number of elements of the gradient of the node, as observed when the plan was computed.
+     */
+    public int getBackwardSize(int index) {
+        return backwardSizes[index];
+    }
+
+    public boolean isTraining() {
+        return isTraining;
+    }
+
+    /**
+     * @return True if the plan assumes that the values read by the backward pass are packed.
+     */
+    public boolean isPacked() {
+        return isPacked;
+    }
+
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    /**
+     * @return Number of bytes the planned tensors occupy when every slot holds a single buffer.
+     */
+    public long getPlannedPeakBytes() {
+        return plannedPeakBytes;
+    }
+
+    /**
+     * @return Number of bytes the planned tensors occupy when every tensor has its own buffer that lives until
+     * the end of the step.
+     */
+    public long getNaivePeakBytes() {
+        return naivePeakBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "MemoryPlan(slots: " + slotCount + ", planned peak bytes: " + plannedPeakBytes + ", naive peak bytes: " + naivePeakBytes + ")";
+    }
+}
@@ -0,0 +1,143 @@
+package ComputationalGraph.Memory;
+
+import ComputationalGraph.Precision;
+import Math.Tensor;
+
+public class PackedTensor {
+
+    private final short[] data;
+    private final float[] floatData;
+    private final int[] shape;
+    private final Precision precision;
+
+    /**
+     * Copies a tensor into four or two bytes per value, rounding every value to the nearest value of the given
+     * precision, ties to even. Values out of the range of the precision become infinite.
+     * @param tensor Tensor to pack.
+     * @param precision {@link Precision#FLOAT}, {@link Precision#BFLOAT16} or {@link Precision#HALF}.
+     */
+    public PackedTensor(Tensor tensor, Precision precision) {
+        if (precision == Precision.DOUBLE) {
+            throw new IllegalArgumentException("Tensors are only packed in float or in a two byte precision.");
+        }
+        double[] values = tensor.getData();
+        this.shape = tensor.getShape().clone();
+        this.precision = precision;
+        if (precision == Precision.FLOAT) {
+            this.data = null;
+            this.floatData = new float[values.length];
+            for (int i = 0; i < values.length; i++) {
+                floatData[i] = (float) values[i];
+            }
+        } else {
+            this.data = new short[values.length];
+            this.floatData = null;
+            for (int i = 0; i < values.length; i++) {
+                data[i] = pack(values[i], precision);
+            }
+        }
+    }
+
+    /**
+     * @return A new tensor holding the packed values in double precision.
+     */
+    public Tensor unpack() {
+        double[] values = new double[size()];
+        if (floatData != null) {
+            for (int i = 0; i < floatData.length; i++) {
+                values[i] = floatData[i];
+            }
+        } else {
+            for (int i = 0; i < data.length; i++) {
+                values[i] = unpack(data[i], precision);
+            }
+        }
+        return new Tensor(values, shape.clone());
+    }
+
+    /**
+     * @return Number of values.
+     */
+    public int size() {
+        return floatData != null ? floatData.length : data.length;
+    }
+
+    public Precision getPrecision() {
+        return precision;
+    }
+
+    /**
+     * @return Number of bytes held by the packed values.
+     */
+    public long getMemory() {
+        return (long) precision.getSize() * size();
+    }
+
+    /**
+     * Rounds a value to the given two byte precision. The value is first rounded to float, whose range and
+     * precision contain both.
+     * @param value Value to round.
+     * @param precision {@link Precision#BFLOAT16} or {@link Precision#HALF}.
+     * @return Bits of the rounded value.
+     */
+    public static short pack(double value, Precision precision) {
+        int bits = Float.floatToRawIntBits((float) value);
+        if (precision == Precision.BFLOAT16) {
+            if (Float.isNaN((float) value)) {
+                return (short) ((bits >>> 16) | 0x40);
+            }
+            return (short) ((bits + 0x7FFF + ((bits >>> 16) & 1)) >>> 16);
+        }
+        int sign = (bits >>> 16) & 0x8000;
+        int exponent = ((bits >>> 23) & 0xFF) - 127 + 15;
+        int mantissa = bits & 0x7FFFFF;
+        if (exponent == 0xFF - 127 + 15) {
+            return (short) (sign | 0x7C00 | (mantissa != 0 ? 0x200 : 0));
+        }
+        if (exponent >= 0x1F) {
+            return (short) (sign | 0x7C00);
+        }
+        if (exponent <= 0) {
+            if (exponent < -10) {
+                return (short) sign;
+            }
+            mantissa |= 0x800000;
+            int shift = 14 - exponent;
+            int half = mantissa >> shift;
+            int remainder = mantissa & ((1 << shift) - 1);
+            int middle = 1 << (shift - 1);
+            if (remainder > middle || (remainder == middle && (half & 1) != 0)) {
+                half++;
+            }
+            return (short) (sign | half);
+        }
+        int half = (exponent << 10) | (mantissa >> 13);
+        int remainder = mantissa & 0x1FFF;
+        if (remainder > 0x1000 || (remainder == 0x1000 && (half & 1) != 0)) {
+            half++;
+        }
+        return (short) (sign | half);
+    }
+
+    /**
+     * @param bits Bits of a value in the given two byte precision.
+     * @param precision {@link Precision#BFLOAT16} or {@link Precision#HALF}.
+     * @return The value.
+     */
+    public static double unpack(short bits, Precision precision) {
+        if (precision == Precision.BFLOAT16) {
+            return Float.intBitsToFloat((bits & 0xFFFF) << 16);
+        }
+        int exponent = (bits >>> 10) & 0x1F;
+        int mantissa = bits & 0x3FF;
+        double value;
+        if (exponent == 0) {
+            value = mantissa * 0x1p-24;
+        } else if (exponent == 0x1F) {
+            value = mantissa == 0 ? Double.POSITIVE_INFINITY : Double.NaN;
+        } else {
+            value = Math.scalb((double) (1024 + mantissa), exponent - 25);
+        }
+        return (bits & 0x8000) != 0 ? -value : value;
+    }
+}
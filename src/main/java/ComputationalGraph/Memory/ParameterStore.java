@@ -0,0 +1,397 @@
+package ComputationalGraph.Memory;
+
+import ComputationalGraph.ExecutionPlan;
+import ComputationalGraph.Precision;
+import ComputationalGraph.Node.ComputationalNode;
+import ComputationalGraph.Sparse.RowSparseMatrix;
+import Math.Tensor;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class ParameterStore implements Serializable {
+
+    private final ComputationalNode[] nodes;
+    private final int[] offsets;
+    private final double[] gradients;
+    private final boolean[] hasGradient;
+    private final int[][] rows;
+    private final boolean[] isSparse;
+    private final Precision precision;
+    private final ArrayList<double[]> moments;
+    private final ArrayList<float[]> floatMoments;
+
+    /**
+     * Packs the gradients and the optimizer moments of all learnable nodes of the plan into contiguous arrays.
+     * Every learnable node owns the segment of each array that starts at its offset and is as long as its value,
+     * the segments following each other in the order of the plan, so that a pass over all parameters is a single
+     * linear sweep over memory instead of a lookup per node. The values themselves stay in the tensors of the
+     * nodes, which can not be views into a larger array.
+     * @param plan Execution plan of the graph.
+     */
+    public ParameterStore(ExecutionPlan plan) {
+        this(plan, Precision.DOUBLE);
+    }
+
+    /**
+     * Packs the parameters of the plan, keeping the optimizer moments in the given precision. The gradients are
+     * always kept in double precision, since they are only held during a single step.
+     * @param plan Execution plan of the graph.
+     * @param precision Precision of the moments.
+     */
+    public ParameterStore(ExecutionPlan plan, Precision precision) {
+        int count = plan.learnableSize();
+        this.nodes = new ComputationalNode[count];
+        this.offsets = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            nodes[i] = plan.getLearnableNode(i);
+            long end = (long) offsets[i] + nodes[i].getValue().getData().length;
+            if (end > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Parameters do not fit in a single array.");
+            }
+            offsets[i + 1] = (int) end;
+        }
+        this.gradients = new double[offsets[count]];
+        this.hasGradient = new boolean[count];
+        this.rows = new int[count][];
+        this.isSparse = new boolean[count];
+        this.precision = precision;
+        this.moments = new ArrayList<>();
+        this.floatMoments = new ArrayList<>();
+    }
+
+    /**
+     * Packs the parameters of the plan and carries over the moments of the nodes that were already in the given
+     * store, e.g. after the graph has been compiled again.
+     * @param plan Execution plan of the graph.
+     * @param previous Store of the previous plan.
+     */
+    public ParameterStore(ExecutionPlan plan, ParameterStore previous) {
+        this(plan, previous.precision, previous);
+    }
+
+    /**
+     * Packs the parameters of the plan in the given precision and carries over the moments of the nodes that were
+     * already in the given store, converting them if the precisions differ.
+     * @param plan Execution plan of the graph.
+     * @param precision Precision of the moments.
+     * @param previous Store of the previous plan.
+     */
+    public ParameterStore(ExecutionPlan plan, Precision precision, ParameterStore previous) {
+        this(plan, precision);
+        for (int slot = 0; slot < previous.momentCount(); slot++) {
+            double[] previousMoment = previous.copyMoment(slot);
+            double[] moment = new double[size()];
+            for (int i = 0; i < nodes.length; i++) {
+                int index = previous.indexOf(nodes[i]);
+                if (index != -1 && previous.getLength(index) == getLength(i)) {
+                    System.arraycopy(previousMoment, previous.getOffset(index), moment, getOffset(i), getLength(i));
+                }
+            }
+            setMoment(slot, moment);
+        }
+    }
+
+    /**
+     * @param plan Execution plan of a graph.
+     * @param precision Precision of the moments.
+     * @return True if the store holds exactly the learnable nodes of the plan, in the same order and sizes, in the
+     * given precision.
+     */
+    public boolean isFor(ExecutionPlan plan, Precision precision) {
+        if (plan.learnableSize() != nodes.length || precision != this.precision) {
+            return false;
+        }
+        for (int i = 0; i < nodes.length; i++) {
+            if (plan.getLearnableNode(i) != nodes[i] || nodes[i].getValue().getData().length != getLength(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(ComputationalNode node) {
+        for (int i = 0; i < nodes.length; i++) {
+            if (nodes[i] == node) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return Number of learnable nodes.
+     */
+    public int count() {
+        return nodes.length;
+    }
+
+    /**
+     * @return Total number of parameters.
+     */
+    public int size() {
+        return gradients.length;
+    }
+
+    public ComputationalNode getNode(int index) {
+        return nodes[index];
+    }
+
+    public int getOffset(int index) {
+        return offsets[index];
+    }
+
+    public int getLength(int index) {
+        return offsets[index + 1] - offsets[index];
+    }
+
+    public double[] getGradients() {
+        return gradients;
+    }
+
+    /**
+     * @param index Index of the learnable node.
+     * @return True if a gradient has been gathered for the node since the last {@link #clearGradients()}.
+     */
+    public boolean hasGradient(int index) {
+        return hasGradient[index];
+    }
+
+    /**
+     * @param index Index of the learnable node.
+     * @return Rows of the node held by its gathered gradient, in increasing order, or null if the gradient is
+     * dense. The gradient of the other rows is zero.
+     */
+    public int[] getRows(int index) {
+        return rows[index];
+    }
+
+    /**
+     * @param index Index of the learnable node.
+     * @return Number of values in a row of the node, the size of its last dimension.
+     */
+    public int getRowLength(int index) {
+        int[] shape = nodes[index].getValue().getShape();
+        return shape[shape.length - 1];
+    }
+
+    /**
+     * Returns the ranges of the gradients that hold the gathered gradients: the whole segment of a node with a
+     * dense gradient and the rows held by a row sparse gradient, whose other rows are zero. Adjacent ranges are
+     * merged, so that the ranges only depend on the gathered values and not on how they are split among the nodes.
+     * @return Offsets and lengths of the ranges, in increasing order.
+     */
+    public ArrayList<int[]> getGradientRanges() {
+        ArrayList<int[]> ranges = new ArrayList<>();
+        for (int i = 0; i < nodes.length; i++) {
+            if (!hasGradient[i]) {
+                continue;
+            }
+            if (rows[i] == null) {
+                addRange(ranges, offsets[i], getLength(i));
+            } else {
+                int rowLength = getRowLength(i);
+                for (int row : rows[i]) {
+                    addRange(ranges, offsets[i] + row * rowLength, rowLength);
+                }
+            }
+        }
+        return ranges;
+    }
+
+    private static void addRange(ArrayList<int[]> ranges, int offset, int length) {
+        int[] last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+        if (last != null && last[0] + last[1] == offset) {
+            last[1] += length;
+        } else {
+            ranges.add(new int[]{offset, length});
+        }
+    }
+
+    /**
+     * Marks all gradients as not gathered. The segments of row sparse gradients are cleared at their rows, so that
+     * the next row sparse gradient only has to write its own rows.
+     */
+    public void clearGradients() {
+        Arrays.fill(hasGradient, false);
+        for (int i = 0; i < nodes.length; i++) {
+            if (rows[i] != null) {
+                int rowLength = getRowLength(i);
+                for (int row : rows[i]) {
+                    int start = offsets[i] + row * rowLength;
+                    Arrays.fill(gradients, start, start + rowLength, 0.0);
+                }
+                rows[i] = null;
+            }
+        }
+    }
+
+    public Precision getPrecision() {
+        return precision;
+    }
+
+    /**
+     * @return Number of moments allocated so far.
+     */
+    public int momentCount() {
+        return precision == Precision.FLOAT ? floatMoments.size() : moments.size();
+    }
+
+    /**
+     * Returns an optimizer moment of all parameters, such as the velocity of a momentum optimizer. The moments are
+     * allocated on first use and start at zero.
+     * @param slot Index of the moment, chosen by the optimizer.
+     * @return The moment, as an array of {@link #size()} values.
+     */
+    public double[] getMoment(int slot) {
+        if (precision != Precision.DOUBLE) {
+            throw new IllegalStateException("Moments are not kept in double precision.");
+        }
+        while (moments.size() <= slot) {
+            moments.add(new double[gradients.length]);
+        }
+        return moments.get(slot);
+    }
+
+    /**
+     * Returns an optimizer moment of all parameters of a store in float precision.
+     * @param slot Index of the moment, chosen by the optimizer.
+     * @return The moment, as an array of {@link #size()} values.
+     */
+    public float[] getFloatMoment(int slot) {
+        if (precision != Precision.FLOAT) {
+            throw new IllegalStateException("Moments are not kept in float precision.");
+        }
+        while (floatMoments.size() <= slot) {
+            floatMoments.add(new float[gradients.length]);
+        }
+        return floatMoments.get(slot);
+    }
+
+    /**
+     * @param slot Index of the moment.
+     * @return A copy of the moment in double precision, whatever the precision of the store.
+     */
+    public double[] copyMoment(int slot) {
+        if (precision == Precision.DOUBLE) {
+            return getMoment(slot).clone();
+        }
+        float[] moment = getFloatMoment(slot);
+        double[] copy = new double[moment.length];
+        for (int i = 0; i < moment.length; i++) {
+            copy[i] = moment[i];
+        }
+        return copy;
+    }
+
+    /**
+     * Overwrites a moment, rounding the values if the store is in float precision.
+     * @param slot Index of the moment.
+     * @param values Values of the moment, as an array of {@link #size()} values.
+     */
+    public void setMoment(int slot, double[] values) {
+        if (values.length != gradients.length) {
+            throw new IllegalArgumentException("Moment has " + values.length + " values instead of " + gradients.length + ".");
+        }
+        if (precision == Precision.DOUBLE) {
+            System.arraycopy(values, 0, getMoment(slot), 0, values.length);
+        } else {
+            float[] moment = getFloatMoment(slot);
+            for (int i = 0; i < values.length; i++) {
+                moment[i] = (float) values[i];
+            }
+        }
+    }
+
+    /**
+     * @return Number of bytes held by the gradients and the moments.
+     */
+    public long getMemory() {
+        return 8L * gradients.length + (long) momentCount() * precision.getSize() * gradients.length;
+    }
+
+    /**
+     * Copies the gradient of a learnable node into its segment. If the gradient has been broadcast along a
+     * dimension in which the value has size one, it is summed over that dimension. A row sparse gradient only
+     * writes its rows, the rest of the segment being kept at zero.
+     * @param index Index of the learnable node.
+     */
+    public void gatherGradient(int index) {
+        ComputationalNode node = nodes[index];
+        int offset = offsets[index];
+        int length = getLength(index);
+        if (node.getSparseBackward() != null) {
+            gatherRows(index, node.getSparseBackward());
+            return;
+        }
+        isSparse[index] = false;
+        double[] backward = node.getBackward().getData();
+        int dimension = broadcast(node.getValue(), node.getBackward());
+        if (dimension == -1) {
+            System.arraycopy(backward, 0, gradients, offset, length);
+        } else {
+            int v = 1, b = 1;
+            for (int i = node.getValue().getShape().length - 1; i >= dimension; i--) {
+                v *= node.getValue().getShape()[i];
+                b *= node.getBackward().getShape()[i];
+            }
+            Arrays.fill(gradients, offset, offset + length, 0.0);
+            for (int i = 0; i < backward.length; i += b) {
+                for (int j = i; j < i + b; j++) {
+                    gradients[offset + ((j - i) % v) + v * (j / b)] += backward[j];
+                }
+            }
+        }
+        hasGradient[index] = true;
+    }
+
+    private void gatherRows(int index, RowSparseMatrix backward) {
+        int offset = offsets[index];
+        int rowLength = backward.getColumns();
+        if ((long) backward.getRows() * rowLength != getLength(index)) {
+            throw new IllegalArgumentException("Value and Backward shapes are not compatible");
+        }
+        if (!isSparse[index]) {
+            Arrays.fill(gradients, offset, offset + getLength(index), 0.0);
+            isSparse[index] = true;
+        }
+        int[] rowIndices = backward.getRowIndices();
+        double[] values = backward.getValues();
+        for (int k = 0; k < rowIndices.length; k++) {
+            System.arraycopy(values, k * rowLength, gradients, offset + rowIndices[k] * rowLength, rowLength);
+        }
+        rows[index] = rowIndices;
+        hasGradient[index] = true;
+    }
+
+    /**
+     * Checks if the gradient has been broadcast along a single dimension of the value.
+     * @param value Value of the node.
+     * @param backward Gradient of the node.
+     * @return The index of the broadcast dimension, -1 if the shapes match.
+     * @throws IllegalArgumentException If the shapes differ in a dimension in which the value is not of size one,
+     * or in more than one dimension.
+     */
+    private static int broadcast(Tensor value, Tensor backward) {
+        int[] v = value.getShape();
+        int[] b = backward.getShape();
+        if (v.length != b.length) {
+            throw incompatible(v, b);
+        }
+        int index = -1;
+        for (int i = 0; i < v.length; i++) {
+            if (v[i] != b[i]) {
+                if (v[i] != 1 || index != -1) {
+                    throw incompatible(v, b);
+                }
+                index = i;
+            }
+        }
+        return index;
+    }
+
+    private static IllegalArgumentException incompatible(int[] value, int[] backward) {
+        return new IllegalArgumentException("Value shape " + Arrays.toString(value) + " and Backward shape " + Arrays.toString(backward) + " are not compatible");
+    }
+}
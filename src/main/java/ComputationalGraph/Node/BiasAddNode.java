@@ -0,0 +1,57 @@
+package ComputationalGraph.Node;
+
+import Math.Tensor;
+
+import java.io.Serializable;
+
+public class BiasAddNode extends ComputationalNode implements Serializable {
+
+    /**
+     * Creates a node that adds a bias vector to every row of its first parent. The second parent holds the
+     * bias, whose number of elements must be equal to the size of the last dimension of the first parent.
+     */
+    public BiasAddNode() {
+        super(false, false);
+    }
+
+    /**
+     * Adds the bias to every row of the input.
+     * @param input Value of the first parent.
+     * @param bias Value of the bias parent.
+     * @param values Buffer that receives the sum. It may be the buffer of the input itself.
+     * @return The input with the bias added to each row.
+     */
+    public Tensor calculate(Tensor input, Tensor bias, double[] values) {
+        double[] inputValues = input.getData();
+        double[] biasValues = bias.getData();
+        if (inputValues.length % biasValues.length != 0) {
+            throw new IllegalArgumentException("Bias size does not match the last dimension of the input.");
+        }
+        for (int i = 0; i < inputValues.length; i += biasValues.length) {
+            for (int j = 0; j < biasValues.length; j++) {
+                values[i + j] = inputValues[i + j] + biasValues[j];
+            }
+        }
+        return new Tensor(values, input.getShape());
+    }
+
+    /**
+     * Computes the gradient of the bias by summing the gradient of the node over all rows.
+     * @param backward Gradient of the node.
+     * @param bias Value of the bias parent.
+     * @param values Buffer with as many elements as the bias, which receives the gradient.
+     * @return Gradient of the bias, in the shape of the bias.
+     */
+    public static Tensor biasDerivative(Tensor backward, Tensor bias, double[] values) {
+        double[] backwardValues = backward.getData();
+        for (int j = 0; j < values.length; j++) {
+            values[j] = 0.0;
+        }
+        for (int i = 0; i < backwardValues.length; i += values.length) {
+            for (int j = 0; j < values.length; j++) {
+                values[j] += backwardValues[i + j];
+            }
+        }
+        return new Tensor(values, bias.getShape());
+    }
+}
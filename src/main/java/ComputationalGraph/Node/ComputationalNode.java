@@ -1,5 +1,6 @@
 package ComputationalGraph.Node;
 
+import ComputationalGraph.Sparse.RowSparseMatrix;
 import Math.Tensor;
 
 import java.io.Serializable;
@@ -9,6 +10,7 @@ public class ComputationalNode implements Serializable {
 
     protected Tensor value;
     protected Tensor backward;
+    protected RowSparseMatrix sparseBackward;
     protected final boolean isBiased;
     protected final boolean learnable;
     private final ArrayList<ComputationalNode> children;
@@ -52,6 +54,21 @@ public class ComputationalNode implements Serializable {
         return parents.get(index);
     }
 
+    /**
+     * Replaces a parent of the node with another node. The node takes the place of the given child among the
+     * children of the new parent, so that the order in which the gradients of the new parent are accumulated
+     * does not change.
+     * @param parent Current parent of the node.
+     * @param newParent Node that becomes the parent instead.
+     * @param replacedChild Child of the new parent whose place the node takes.
+     */
+    protected void replaceParent(ComputationalNode parent, ComputationalNode newParent, ComputationalNode replacedChild) {
+        parents.set(parents.indexOf(parent), newParent);
+        parent.children.remove(this);
+        newParent.children.set(newParent.children.indexOf(replacedChild), this);
+        replacedChild.parents.remove(newParent);
+    }
+
     public int childrenSize() {
         return children.size();
     }
@@ -110,6 +127,18 @@ public class ComputationalNode implements Serializable {
         this.backward = backward;
     }
 
+    /**
+     * @return Gradient of a learnable node that only holds the rows of the node that have been used, such as the
+     * gradient of an embedding table, null if the node has a dense gradient or none.
+     */
+    public RowSparseMatrix getSparseBackward() {
+        return sparseBackward;
+    }
+
+    public void setSparseBackward(RowSparseMatrix sparseBackward) {
+        this.sparseBackward = sparseBackward;
+    }
+
     public static Tensor getBiasedPartial(Tensor tensor) {
         int[] endIndexes = new int[tensor.getShape().length];
         for (int i = 0; i < endIndexes.length; i++) {
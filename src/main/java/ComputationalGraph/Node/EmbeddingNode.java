@@ -0,0 +1,89 @@
+package ComputationalGraph.Node;
+
+import ComputationalGraph.Sparse.RowSparseMatrix;
+import Math.Tensor;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+public class EmbeddingNode extends ComputationalNode implements Serializable {
+
+    /**
+     * Creates a node that looks up rows of an embedding table. The first parent holds integer ids, stored as
+     * doubles, and the second parent the table, a matrix with one row per id. Unlike the product of a one-hot
+     * input with the table, the lookup costs the number of ids times the size of a row, and the gradient of the
+     * table only holds the rows that have been looked up.
+     */
+    public EmbeddingNode() {
+        super(false, false);
+    }
+
+    /**
+     * @return The row of the table an id refers to.
+     */
+    private static int row(double id, int rows) {
+        int row = (int) id;
+        if (row != id || row < 0 || row >= rows) {
+            throw new IllegalArgumentException("Id " + id + " is not a row of the embedding table.");
+        }
+        return row;
+    }
+
+    /**
+     * Copies the row of every id.
+     * @param ids Value of the first parent.
+     * @param table Value of the table parent.
+     * @param values Buffer that receives the rows, as many rows as ids.
+     * @return The rows, of the shape of the ids followed by the size of a row.
+     */
+    public Tensor calculate(Tensor ids, Tensor table, double[] values) {
+        if (table.getShape().length != 2) {
+            throw new IllegalArgumentException("Embedding table must be a matrix.");
+        }
+        int rows = table.getShape()[0];
+        int columns = table.getShape()[1];
+        double[] idValues = ids.getData();
+        double[] tableValues = table.getData();
+        for (int i = 0; i < idValues.length; i++) {
+            System.arraycopy(tableValues, row(idValues[i], rows) * columns, values, i * columns, columns);
+        }
+        int[] shape = Arrays.copyOf(ids.getShape(), ids.getShape().length + 1);
+        shape[shape.length - 1] = columns;
+        return new Tensor(values, shape);
+    }
+
+    /**
+     * Computes the gradient of the table, which only holds the rows of the ids. The gradients of the repeated
+     * occurrences of an id are summed in the order of the ids.
+     * @param ids Value of the first parent.
+     * @param backward Gradient of the node.
+     * @param table Value of the table parent.
+     * @return Gradient of the table.
+     */
+    public static RowSparseMatrix derivative(Tensor ids, Tensor backward, Tensor table) {
+        int rows = table.getShape()[0];
+        int columns = table.getShape()[1];
+        double[] idValues = ids.getData();
+        int[] sorted = new int[idValues.length];
+        for (int i = 0; i < idValues.length; i++) {
+            sorted[i] = row(idValues[i], rows);
+        }
+        Arrays.sort(sorted);
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[count++] = sorted[i];
+            }
+        }
+        int[] rowIndices = Arrays.copyOf(sorted, count);
+        double[] values = new double[count * columns];
+        double[] backwardValues = backward.getData();
+        for (int i = 0; i < idValues.length; i++) {
+            int output = Arrays.binarySearch(rowIndices, (int) idValues[i]) * columns;
+            for (int c = 0; c < columns; c++) {
+                values[output + c] += backwardValues[i * columns + c];
+            }
+        }
+        return new RowSparseMatrix(rows, columns, rowIndices, values);
+    }
+}
@@ -1,14 +1,14 @@
 package ComputationalGraph.Node;
 
 import java.io.Serializable;
+import java.util.List;
 
 import ComputationalGraph.Function.*;
 import Math.Tensor;
 
 public class FunctionNode extends ComputationalNode implements Serializable {
 
-    private final Function function;
-    private Tensor context;
+    private Function function;
 
     public FunctionNode(boolean isBiased, Function function) {
         super(false, isBiased);
@@ -40,34 +40,93 @@ public class FunctionNode extends ComputationalNode implements Serializable {
         return "FunctionNode(" + details + ")";
     }
 
+    public Function getFunction() {
+        return function;
+    }
+
     public boolean isDropout() {
         return function instanceof Dropout;
     }
 
-    public void calculate(Tensor input) {
-        FunctionResults results = function.calculate(input);
-        this.setValue(results.output());
-        if (results.context() != null) {
-            this.context = results.context();
-        }
+    /**
+     * Applies the function of the node to the given input.
+     * @param input Value of the parent node.
+     * @return Output of the function and, if the function needs one for its derivative, its context.
+     */
+    public FunctionResults calculate(Tensor input) {
+        return function.calculate(input);
+    }
+
+    /**
+     * Applies the function of the node to the given input, writing the output into a buffer supplied by the
+     * caller.
+     * @param input Value of the parent node.
+     * @param output Buffer with as many elements as the input, which receives the output.
+     * @return Output of the function, backed by the given buffer, and its context if it needs one.
+     */
+    public FunctionResults calculate(Tensor input, double[] output) {
+        Tensor context = function.calculateInto(input, output);
+        return new FunctionResults(new Tensor(output, input.getShape()), context);
     }
 
-    public Tensor derivative() {
-        Tensor backward;
+    /**
+     * Computes the gradient of the node with respect to its parent.
+     * @param value Value of the node.
+     * @param context Context returned by the function in the forward pass, null if there is none.
+     * @param backward Gradient of the node.
+     * @return Gradient value of the parent node.
+     */
+    public Tensor derivative(Tensor value, Tensor context, Tensor backward) {
         if (isBiased) {
-            backward = getBiasedPartial(this.backward);
-        } else {
-            backward = this.backward;
+            backward = getBiasedPartial(backward);
         }
         if (context != null) {
             return function.derivative(context, backward);
         }
-        Tensor value;
         if (isBiased) {
-            value = getBiasedPartial(this.value);
-        } else {
-            value = this.value;
+            value = getBiasedPartial(value);
         }
         return function.derivative(value, backward);
     }
+
+    /**
+     * Computes the gradient of the node with respect to its parent, writing it into a buffer supplied by the
+     * caller.
+     * @param value Value of the node.
+     * @param context Context returned by the function in the forward pass, null if there is none.
+     * @param backward Gradient of the node.
+     * @param gradient Buffer with as many elements as the value of the parent node, which receives the gradient.
+     * @return Gradient value of the parent node, backed by the given buffer.
+     */
+    public Tensor derivative(Tensor value, Tensor context, Tensor backward, double[] gradient) {
+        if (isBiased) {
+            backward = getBiasedPartial(backward);
+        }
+        if (context != null) {
+            function.derivativeInto(context, backward, gradient);
+        } else {
+            if (isBiased) {
+                value = getBiasedPartial(value);
+            }
+            function.derivativeInto(value, backward, gradient);
+        }
+        return new Tensor(gradient, backward.getShape());
+    }
+
+    /**
+     * Replaces the given chain of function nodes and this node with a single node that computes the composed
+     * function. The first node of the chain is detached from its parent, and this node takes its place.
+     * @param chain Function nodes above this node, from the first one to the parent of this node. Each of
+     *              them must have a single parent and a single child, and all functions must be element-wise.
+     */
+    public void fuse(List<FunctionNode> chain) {
+        ElementwiseFunction[] functions = new ElementwiseFunction[chain.size() + 1];
+        for (int i = 0; i < chain.size(); i++) {
+            functions[i] = (ElementwiseFunction) chain.get(i).function;
+        }
+        functions[chain.size()] = (ElementwiseFunction) function;
+        FunctionNode first = chain.get(0);
+        replaceParent(chain.get(chain.size() - 1), first.getParent(0), first);
+        this.function = new FusedFunction(functions);
+    }
 }
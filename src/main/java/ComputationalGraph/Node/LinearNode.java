@@ -0,0 +1,111 @@
+package ComputationalGraph.Node;
+
+import ComputationalGraph.Function.ElementwiseFunction;
+import ComputationalGraph.Function.FunctionResults;
+import ComputationalGraph.Kernel.MatrixMultiplication;
+import ComputationalGraph.Kernel.SparseMatrixMultiplication;
+import ComputationalGraph.Sparse.CsrMatrix;
+import Math.Tensor;
+
+import java.io.Serializable;
+
+public class LinearNode extends ComputationalNode implements Serializable {
+
+    private final ElementwiseFunction activation;
+
+    /**
+     * Creates a dense layer node computing f(x W + b) in a single pass. The first parent is the input x, the
+     * second parent holds the weights W and the optional third parent holds the bias b, with one element per
+     * column of W.
+     * @param isBiased Indicates whether a column of ones is appended to the output.
+     * @param activation Element-wise activation f applied to the output, or null for none.
+     */
+    public LinearNode(boolean isBiased, ElementwiseFunction activation) {
+        super(false, isBiased);
+        this.activation = activation;
+    }
+
+    public ElementwiseFunction getActivation() {
+        return activation;
+    }
+
+    /**
+     * Computes the layer. The bias and the activation are applied by the matrix multiplication kernel to
+     * each tile of the product as soon as the tile is complete.
+     * @param input Value of the input.
+     * @param weights Value of the weights.
+     * @param bias Value of the bias, or null if the layer has no bias.
+     * @param values Buffer that receives the output, or null to allocate a new one.
+     * @return Output of the layer and, if the layer has an activation, the values before the activation.
+     */
+    public FunctionResults calculate(Tensor input, Tensor weights, Tensor bias, double[] values) {
+        double[] preActivation = null;
+        if (activation != null) {
+            preActivation = new double[MatrixMultiplication.resultLength(input, false, weights, false)];
+        }
+        Tensor output = MatrixMultiplication.multiply(input, false, weights, false, values, bias != null ? bias.getData() : null, activation, preActivation);
+        if (preActivation == null) {
+            return new FunctionResults(output);
+        }
+        return new FunctionResults(output, new Tensor(preActivation, output.getShape()));
+    }
+
+    /**
+     * Computes the layer for a sparse input, such as a batch of bag-of-words rows, in time proportional to the
+     * non-zeros of the input.
+     * @param input Sparse value of the input.
+     * @param weights Value of the weights.
+     * @param bias Value of the bias, or null if the layer has no bias.
+     * @param values Buffer that receives the output, or null to allocate a new one.
+     * @return Output of the layer and, if the layer has an activation, the values before the activation.
+     */
+    public FunctionResults calculate(CsrMatrix input, Tensor weights, Tensor bias, double[] values) {
+        int columns = weights.getShape()[weights.getShape().length - 1];
+        if (weights.getData().length != input.getColumns() * columns) {
+            throw new IllegalArgumentException("Inner dimensions of the operands do not match");
+        }
+        if (values == null) {
+            values = new double[input.getRows() * columns];
+        }
+        double[] preActivation = activation != null ? new double[input.getRows() * columns] : null;
+        SparseMatrixMultiplication.multiply(input, weights.getData(), columns, bias != null ? bias.getData() : null, activation, preActivation, values);
+        int[] shape = {input.getRows(), columns};
+        if (preActivation == null) {
+            return new FunctionResults(new Tensor(values, shape));
+        }
+        return new FunctionResults(new Tensor(values, shape), new Tensor(preActivation, shape));
+    }
+
+    /**
+     * Computes the gradient of the layer before the activation, from which the gradients of the input, the
+     * weights and the bias are computed. The gradient is written over the values before the activation, which
+     * are no longer needed afterwards.
+     * @param value Value of the node.
+     * @param preActivation Values before the activation, null if the layer has no activation.
+     * @param backward Gradient of the node.
+     * @return Gradient of x W + b.
+     */
+    public Tensor gradient(Tensor value, Tensor preActivation, Tensor backward) {
+        if (isBiased) {
+            backward = getBiasedPartial(backward);
+        }
+        if (activation == null) {
+            return backward;
+        }
+        double[] values = preActivation.getData();
+        double[] backwardValues = backward.getData();
+        if (activation.isInputContext()) {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = activation.derivative(values[i], backwardValues[i]);
+            }
+        } else {
+            double[] outputValues = value.getData();
+            int columns = backward.getShape()[backward.getShape().length - 1];
+            int stride = isBiased ? columns + 1 : columns;
+            for (int i = 0; i < values.length; i++) {
+                values[i] = activation.derivative(outputValues[(i / columns) * stride + i % columns], backwardValues[i]);
+            }
+        }
+        return preActivation;
+    }
+}
@@ -0,0 +1,129 @@
+package ComputationalGraph.Node;
+
+import ComputationalGraph.Function.FunctionResults;
+import Math.Tensor;
+
+import java.io.Serializable;
+
+public class SoftmaxCrossEntropyNode extends ComputationalNode implements Serializable {
+
+    private final int batchDimension;
+
+    /**
+     * Creates a loss node that computes the softmax of its first parent, the logits, and the cross entropy
+     * with its second parent, the class label distributions, in a single node.
+     * @param batchDimension which dimension of the logits represents the batch size, -1 if there is none.
+     */
+    public SoftmaxCrossEntropyNode(int batchDimension) {
+        super(false, false);
+        this.batchDimension = batchDimension;
+    }
+
+    public int getBatchDimension() {
+        return batchDimension;
+    }
+
+    private double dimensionSize(Tensor logits) {
+        if (batchDimension == -1) {
+            return 1.0;
+        }
+        return logits.getShape()[batchDimension];
+    }
+
+    /**
+     * Computes y * log(softmax(x)) / N for every element, where N is the size of the batch dimension. The
+     * largest logit of each row is subtracted before the exponentials are taken and the logarithm of the
+     * softmax is computed as (x - max) - log(sum), so neither overflow nor probabilities that underflow to
+     * zero produce infinite or undefined values.
+     * @param logits Logits, the last dimension holds the classes.
+     * @param labels Class label distributions of the same shape.
+     * @param values Buffer that receives the loss terms, or null to allocate a new one.
+     * @return Loss terms and the softmax probabilities, which are the context of the backward pass.
+     */
+    public FunctionResults calculate(Tensor logits, Tensor labels, double[] values) {
+        return calculate(logits, labels, values, null);
+    }
+
+    /**
+     * Computes the loss terms like {@link #calculate(Tensor, Tensor, double[])}, writing the softmax
+     * probabilities into the given buffer.
+     * @param logits Logits, the last dimension holds the classes.
+     * @param labels Class label distributions of the same shape.
+     * @param values Buffer that receives the loss terms, or null to allocate a new one.
+     * @param probabilities Buffer that receives the softmax probabilities, or null to allocate a new one.
+     * @return Loss terms and the softmax probabilities, which are the context of the backward pass.
+     */
+    public FunctionResults calculate(Tensor logits, Tensor labels, double[] values, double[] probabilities) {
+        double[] logitValues = logits.getData();
+        double[] labelValues = labels.getData();
+        if (values == null) {
+            values = new double[logitValues.length];
+        }
+        if (probabilities == null) {
+            probabilities = new double[logitValues.length];
+        }
+        int lastDimensionSize = logits.getShape()[logits.getShape().length - 1];
+        double size = dimensionSize(logits);
+        for (int start = 0; start < logitValues.length; start += lastDimensionSize) {
+            int end = start + lastDimensionSize;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = start; i < end; i++) {
+                max = Math.max(max, logitValues[i]);
+            }
+            double sum = 0.0;
+            for (int i = start; i < end; i++) {
+                probabilities[i] = Math.exp(logitValues[i] - max);
+                sum += probabilities[i];
+            }
+            double logSum = Math.log(sum);
+            for (int i = start; i < end; i++) {
+                probabilities[i] /= sum;
+                values[i] = labelValues[i] * (logitValues[i] - max - logSum) / size;
+            }
+        }
+        return new FunctionResults(new Tensor(values, logits.getShape()), new Tensor(probabilities, logits.getShape()));
+    }
+
+    /**
+     * Computes the gradient with respect to the logits in one pass per row. For a backward tensor of ones and
+     * label distributions that sum up to one, this is (y - softmax(x)) / N.
+     * @param probabilities Softmax probabilities computed in the forward pass.
+     * @param labels Class label distributions.
+     * @param backward Gradient of the loss terms.
+     * @return Gradient value of the logits.
+     */
+    public Tensor derivative(Tensor probabilities, Tensor labels, Tensor backward) {
+        return derivative(probabilities, labels, backward, null);
+    }
+
+    /**
+     * Computes the gradient with respect to the logits like {@link #derivative(Tensor, Tensor, Tensor)}, writing
+     * it into the given buffer.
+     * @param probabilities Softmax probabilities computed in the forward pass.
+     * @param labels Class label distributions.
+     * @param backward Gradient of the loss terms.
+     * @param values Buffer that receives the gradient, or null to allocate a new one.
+     * @return Gradient value of the logits.
+     */
+    public Tensor derivative(Tensor probabilities, Tensor labels, Tensor backward, double[] values) {
+        double[] probabilityValues = probabilities.getData();
+        double[] labelValues = labels.getData();
+        double[] backwardValues = backward.getData();
+        if (values == null) {
+            values = new double[probabilityValues.length];
+        }
+        int lastDimensionSize = probabilities.getShape()[probabilities.getShape().length - 1];
+        double size = dimensionSize(probabilities);
+        for (int start = 0; start < probabilityValues.length; start += lastDimensionSize) {
+            int end = start + lastDimensionSize;
+            double total = 0.0;
+            for (int i = start; i < end; i++) {
+                total += backwardValues[i] * labelValues[i];
+            }
+            for (int i = start; i < end; i++) {
+                values[i] = (backwardValues[i] * labelValues[i] - probabilityValues[i] * total) / size;
+            }
+        }
+        return new Tensor(values, probabilities.getShape());
+    }
+}
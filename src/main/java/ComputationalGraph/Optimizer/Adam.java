@@ -1,17 +1,22 @@
 package ComputationalGraph.Optimizer;
 
 import ComputationalGraph.Clipping.GradientClipping;
-import ComputationalGraph.Node.ComputationalNode;
+import ComputationalGraph.ExecutionPlan;
+import ComputationalGraph.Memory.ParameterStore;
+import ComputationalGraph.Precision;
 
 import java.io.Serializable;
 import java.util.*;
 
 import ComputationalGraph.Scheduler.Scheduler;
-import Math.Tensor;
 
 public class Adam extends SGDMomentum implements Serializable {
 
-    private final HashMap<ComputationalNode, double[]> momentumMap;
+    /**
+     * Slot of the first moment among the moments of the parameter store. The second moment is kept in the slot
+     * of the velocity.
+     */
+    protected static final int MOMENTUM = 1;
     private final double beta2;
     private final double epsilon;
     private double currentBeta1;
@@ -19,7 +24,6 @@ public class Adam extends SGDMomentum implements Serializable {
 
     public Adam(Scheduler scheduler, double beta1, double beta2, double epsilon) {
         super(scheduler, beta1);
-        this.momentumMap = new HashMap<>();
         this.beta2 = beta2;
         this.epsilon = epsilon;
         this.currentBeta1 = 1;
@@ -28,7 +32,6 @@ public class Adam extends SGDMomentum implements Serializable {
 
     public Adam(Scheduler scheduler, double beta1, double beta2, double epsilon, GradientClipping gradientClipping) {
         super(scheduler, beta1, gradientClipping);
-        this.momentumMap = new HashMap<>();
         this.beta2 = beta2;
         this.epsilon = epsilon;
         this.currentBeta1 = 1;
@@ -36,72 +39,105 @@ public class Adam extends SGDMomentum implements Serializable {
     }
 
     /**
-     * Calculates the gradient updates using the Adam optimization algorithm.
-     * This implementation follows a multi-pass approach:
-     * <ol>
-     * <li><b>First Pass:</b> Calculates the weighted current gradients for both the first moment (momentum)
-     * and the second moment (velocity/squared gradients).</li>
-     * <li><b>Second Pass (Conditional):</b> If historical data exists, adds the decayed previous
-     * momentum and velocity values to the current ones.</li>
-     * <li><b>State Update:</b> Stores the raw calculated moments into the history maps.</li>
-     * <li><b>Bias Correction:</b> Normalizes the moments by dividing them by <code>(1 - (beta)^t)</code>
-     * to account for initialization bias.</li>
-     * <li><b>Final Pass:</b> Computes the parameter update using the adaptive learning rate formula:
-     * <code>(new_momentum / (sqrt(new_velocity) + epsilon)) * learningRate</code>.</li>
-     * </ol>
+     * Updates the values of the node with the Adam optimization algorithm in a single pass. For every parameter,
+     * the first moment (momentum) and the second moment (velocity of the squared gradients) are decayed and
+     * updated in the parameter store, normalized by <code>(1 - (beta)^t)</code> to account for the
+     * initialization bias, and the update
+     * <code>(new_momentum / (sqrt(new_velocity) + epsilon)) * learningRate + decay * value</code> is added to
+     * the value.
      *
-     * @param node The node whose gradients are to be set.
+     * @param store The parameter store.
+     * @param index Index of the learnable node.
+     * @param values Values of the node, which are updated.
+     * @param learningRate Learning rate of the current step.
+     * @param decay Coefficient of the decoupled weight decay, zero for plain Adam.
+     * @param start Index of the first value of the range.
+     * @param end Index after the last value of the range.
      */
-    protected double[] calculate(ComputationalNode node) {
-        int backwardSize = node.getBackward().getData().length;
-        double[] newValuesMomentum = new double[backwardSize];
-        double[] newValuesVelocity = new double[backwardSize];
-        for (int i = 0; i < backwardSize; i++) {
-            double backwardValue = node.getBackward().getData()[i];
-            newValuesMomentum[i] = (1 - momentum) * backwardValue;
-            newValuesVelocity[i] = (1 - beta2) * (backwardValue * backwardValue);
-        }
-        if (momentumMap.containsKey(node)) {
-            for (int i = 0; i < newValuesVelocity.length; i++) {
-                newValuesVelocity[i] = newValuesVelocity[i] + beta2 * velocityMap.get(node)[i];
-                newValuesMomentum[i] = newValuesMomentum[i] + momentum * momentumMap.get(node)[i];
+    protected void step(ParameterStore store, int index, double[] values, double learningRate, double decay, int start, int end) {
+        double[] gradients = store.getGradients();
+        int offset = store.getOffset(index);
+        double correction1 = 1 - this.currentBeta1;
+        double correction2 = 1 - this.currentBeta2;
+        if (store.getPrecision() == Precision.FLOAT) {
+            float[] velocity = store.getFloatMoment(VELOCITY);
+            float[] momentumValues = store.getFloatMoment(MOMENTUM);
+            for (int i = start; i < end; i++) {
+                int j = offset + i;
+                double gradient = gradients[j];
+                double newMomentum = (1 - momentum) * gradient + momentum * momentumValues[j];
+                double newVelocity = (1 - beta2) * (gradient * gradient) + beta2 * velocity[j];
+                momentumValues[j] = (float) newMomentum;
+                velocity[j] = (float) newVelocity;
+                values[i] = values[i] + update(values[i], newMomentum / correction1, newVelocity / correction2, learningRate, decay);
+            }
+        } else {
+            double[] velocity = store.getMoment(VELOCITY);
+            double[] momentumValues = store.getMoment(MOMENTUM);
+            for (int i = start; i < end; i++) {
+                int j = offset + i;
+                double gradient = gradients[j];
+                double newMomentum = (1 - momentum) * gradient + momentum * momentumValues[j];
+                double newVelocity = (1 - beta2) * (gradient * gradient) + beta2 * velocity[j];
+                momentumValues[j] = newMomentum;
+                velocity[j] = newVelocity;
+                values[i] = values[i] + update(values[i], newMomentum / correction1, newVelocity / correction2, learningRate, decay);
             }
         }
-        double[] momentumValues = new double[backwardSize];
-        double[] velocityValues = new double[backwardSize];
-        for (int i = 0; i < backwardSize; i++) {
-            momentumValues[i] = newValuesMomentum[i];
-            velocityValues[i] = newValuesVelocity[i];
-        }
-        momentumMap.put(node, momentumValues);
-        velocityMap.put(node, velocityValues);
-        for (int i = 0; i < backwardSize; i++) {
-            newValuesMomentum[i] /= (1 - this.currentBeta1);
-            newValuesVelocity[i] /= (1 - this.currentBeta2);
-        }
-        double[] newValues = new double[newValuesMomentum.length];
-        for (int i = 0; i < newValuesMomentum.length; i++) {
-            newValues[i] = (newValuesMomentum[i] / (Math.sqrt(newValuesVelocity[i]) + epsilon)) * getLearningRate();
+    }
+
+    /**
+     * @return The update of a parameter from its bias-corrected moments.
+     */
+    private double update(double value, double momentum, double velocity, double learningRate, double decay) {
+        double update = (momentum / (Math.sqrt(velocity) + epsilon)) * learningRate;
+        if (decay != 0) {
+            update = update + decay * value;
         }
-        return newValues;
+        return update;
     }
 
     /**
-     * Sets the gradients for the given node using the Adam optimization algorithm.
-     * @param node The node whose gradients are to be set.
+     * Updates the values of the node using the Adam optimization algorithm.
+     * @param store The parameter store.
+     * @param index Index of the learnable node.
+     * @param values Values of the node, which are updated.
+     * @param learningRate Learning rate of the current step.
+     * @param start Index of the first value of the range.
+     * @param end Index after the last value of the range.
      */
     @Override
-    protected void setGradients(ComputationalNode node) {
-        node.setBackward(new Tensor(calculate(node), node.getBackward().getShape()));
+    protected void step(ParameterStore store, int index, double[] values, double learningRate, int start, int end) {
+        step(store, index, values, learningRate, 0, start, end);
     }
 
     /**
-     * Updates the values of all learnable nodes and momentum values of the graph.
-     * @param leafNodes input nodes of the graph.
+     * Appends the state of the superclass, the powers of the decay rates and the first moment of all parameters.
+     * @param plan Execution plan of the graph.
+     * @param state List receiving the state.
      */
-    public void updateValues(ArrayList<ComputationalNode> leafNodes) {
+    @Override
+    protected void saveState(ExecutionPlan plan, ArrayList<double[]> state) {
+        super.saveState(plan, state);
+        state.add(new double[]{currentBeta1, currentBeta2});
+        state.add(getParameterStore(plan).copyMoment(MOMENTUM));
+    }
+
+    @Override
+    protected void loadState(ExecutionPlan plan, Iterator<double[]> state) {
+        super.loadState(plan, state);
+        double[] betas = state.next();
+        this.currentBeta1 = betas[0];
+        this.currentBeta2 = betas[1];
+        getParameterStore(plan).setMoment(MOMENTUM, state.next());
+    }
+
+    /**
+     * Advances the powers of the decay rates used by the bias corrections of the step.
+     */
+    @Override
+    protected void beginStep() {
         this.currentBeta1 *= momentum;
         this.currentBeta2 *= beta2;
-        super.updateValues(leafNodes);
     }
 }
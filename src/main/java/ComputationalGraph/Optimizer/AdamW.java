@@ -1,9 +1,8 @@
 package ComputationalGraph.Optimizer;
 
 import ComputationalGraph.Clipping.GradientClipping;
-import ComputationalGraph.Node.ComputationalNode;
+import ComputationalGraph.Memory.ParameterStore;
 import ComputationalGraph.Scheduler.Scheduler;
-import Math.Tensor;
 
 import java.io.Serializable;
 
@@ -22,16 +21,17 @@ public class AdamW extends Adam implements Serializable {
     }
 
     /**
-     * Sets the gradients for the given node using the AdamW optimization algorithm.
-     * @param node The node whose gradients are to be set.
+     * Updates the values of the node using the AdamW optimization algorithm, with the weight decay fused into
+     * the pass of Adam.
+     * @param store The parameter store.
+     * @param index Index of the learnable node.
+     * @param values Values of the node, which are updated.
+     * @param learningRate Learning rate of the current step.
+     * @param start Index of the first value of the range.
+     * @param end Index after the last value of the range.
      */
     @Override
-    protected void setGradients(ComputationalNode node) {
-        double[] gradients = calculate(node);
-        double[] values = node.getValue().getData();
-        for (int i = 0; i < gradients.length; i++) {
-            gradients[i] = gradients[i] + (getLearningRate() * weightDecay * values[i]);
-        }
-        node.setBackward(new Tensor(gradients, node.getBackward().getShape()));
+    protected void step(ParameterStore store, int index, double[] values, double learningRate, int start, int end) {
+        step(store, index, values, learningRate, learningRate * weightDecay, start, end);
     }
 }
@@ -0,0 +1,95 @@
+package ComputationalGraph.Optimizer;
+
+import ComputationalGraph.Memory.ParameterStore;
+
+import java.io.Serializable;
+
+public class LossScaler implements Serializable {
+
+    private final double factor;
+    private final int growthInterval;
+    private double scale;
+    private int goodSteps;
+    private int skippedSteps;
+
+    /**
+     * Creates a dynamic loss scaler starting at 2^16, halving the scale on overflow and doubling it after 2000
+     * steps without one.
+     */
+    public LossScaler() {
+        this(65536.0, 2.0, 2000);
+    }
+
+    /**
+     * Creates a dynamic loss scaler. The gradient of the loss is seeded with the scale instead of one, so that
+     * small gradients of activations kept in {@link ComputationalGraph.Precision#HALF} do not flush to zero, and
+     * the gradients of the weights are divided by the scale before the optimizer step. A step whose gradients
+     * overflow is skipped and the scale is divided by the factor; after the given number of steps without
+     * overflow, the scale is multiplied by it. With a power of two as scale and factor, the scaling itself does
+     * not round any gradient.
+     * @param initialScale Scale of the first step.
+     * @param factor Factor by which the scale shrinks and grows.
+     * @param growthInterval Number of steps without overflow after which the scale grows.
+     */
+    public LossScaler(double initialScale, double factor, int growthInterval) {
+        if (initialScale <= 0 || factor <= 1 || growthInterval <= 0) {
+            throw new IllegalArgumentException("Loss scaler needs a positive scale, a factor above one and a positive growth interval.");
+        }
+        this.scale = initialScale;
+        this.factor = factor;
+        this.growthInterval = growthInterval;
+    }
+
+    public double getScale() {
+        return scale;
+    }
+
+    /**
+     * @return Number of steps skipped because their gradients overflowed.
+     */
+    public int getSkippedSteps() {
+        return skippedSteps;
+    }
+
+    /**
+     * Divides the gathered gradients of the store by the scale and checks that all of them are finite. Only the
+     * rows held by a row sparse gradient are read. If one is not finite, the step must be skipped, and the scale
+     * shrinks.
+     * @param store The parameter store holding the gathered gradients.
+     * @return True if the gradients are finite and the step can be taken.
+     */
+    public boolean unscale(ParameterStore store) {
+        double inverse = 1.0 / scale;
+        double[] gradients = store.getGradients();
+        boolean isFinite = true;
+        for (int[] range : store.getGradientRanges()) {
+            for (int j = range[0]; j < range[0] + range[1]; j++) {
+                gradients[j] *= inverse;
+                isFinite &= Double.isFinite(gradients[j]);
+            }
+        }
+        if (!isFinite) {
+            scale /= factor;
+            goodSteps = 0;
+            skippedSteps++;
+            return false;
+        }
+        if (++goodSteps == growthInterval) {
+            scale *= factor;
+            goodSteps = 0;
+        }
+        return true;
+    }
+
+    /**
+     * @return The scale and the number of steps since the last change of the scale.
+     */
+    double[] getState() {
+        return new double[]{scale, goodSteps};
+    }
+
+    void setState(double scale, double goodSteps) {
+        this.scale = scale;
+        this.goodSteps = (int) goodSteps;
+    }
+}
@@ -1,10 +1,17 @@
 package ComputationalGraph.Optimizer;
 
 import java.io.Serializable;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
 
 import ComputationalGraph.Clipping.GradientClipping;
+import ComputationalGraph.ExecutionPlan;
+import ComputationalGraph.Memory.ParameterStore;
 import ComputationalGraph.Node.ComputationalNode;
+import ComputationalGraph.Precision;
+import ComputationalGraph.Pruning.Pruning;
 import ComputationalGraph.Scheduler.Scheduler;
 import Math.Tensor;
 
@@ -13,6 +20,11 @@ public abstract class Optimizer implements Serializable {
     private final Scheduler scheduler;
     private final GradientClipping gradientClipping;
     private int epoch;
+    private ParameterStore store;
+    private Precision statePrecision = Precision.DOUBLE;
+    private LossScaler lossScaler;
+    private Pruning pruning;
+    private transient ComputationalNode legacyNode;
 
     public Optimizer(Scheduler scheduler, GradientClipping gradientClipping) {
         this.scheduler = scheduler;
@@ -33,86 +45,255 @@ public abstract class Optimizer implements Serializable {
         this.epoch++;
     }
 
+    public Precision getStatePrecision() {
+        return statePrecision;
+    }
+
     /**
-     * Checks if broadcasting be applied to the corresponding node.
-     * @param node The node to check.
-     * @return The index of the dimension where broadcasting is to be applied. -1 if broadcasting is not to be applied.
+     * Sets the precision in which the moments of the optimizer are kept and checkpointed. Only the optimizer state
+     * is affected: the weights, the gradients and the update itself stay in double precision, as every tensor of
+     * the graph. In float precision, the moments take half the memory and are rounded after every step. The
+     * moments kept so far are converted. Two byte precisions are only supported for the activations, see
+     * {@link ComputationalGraph.ComputationalGraph#setActivationPrecision(Precision)}.
+     * @param statePrecision Precision of the optimizer state.
      */
-    private int broadcast(ComputationalNode node) {
-        int[] v = node.getValue().getShape();
-        int[] b = node.getBackward().getShape();
-        int index = -1;
-        for (int i = 0; i < v.length; i++) {
-            if (v[i] != b[i]) {
-                if (v[i] == 1) {
-                    if (index != -1) {
-                        return -1;
-                    }
-                    index = i;
-                } else {
-                    throw new IllegalArgumentException("Value and Backward shapes are not compatible");
-                }
-            }
+    public void setStatePrecision(Precision statePrecision) {
+        if (statePrecision.isHalf()) {
+            throw new IllegalArgumentException("Optimizer state can not be kept in " + statePrecision + " precision.");
         }
-        return index;
+        this.statePrecision = statePrecision;
+    }
+
+    public LossScaler getLossScaler() {
+        return lossScaler;
     }
 
     /**
-     * Recursive helper function to update the values of learnable nodes.
-     * @param visited A set of visited nodes.
-     * @param node The current node being processed.
+     * Sets the loss scaler that scales the gradient of the loss up for the backward pass and the gradients of the
+     * weights back down before each step, skipping the steps whose gradients overflow.
+     * @param lossScaler The loss scaler, null to not scale the loss.
      */
-    private void updateRecursive(HashSet<ComputationalNode> visited, ComputationalNode node) {
-        visited.add(node);
-        if (node.isLearnable()) {
-            int index = broadcast(node);
-            if (index != -1) {
-                int v = 1, b = 1;
-                for (int i = node.getValue().getShape().length - 1; i >= index; i--) {
-                    v *= node.getValue().getShape()[i];
-                    b *= node.getBackward().getShape()[i];
-                }
-                double[] backwardValues = node.getBackward().getData();
-                double[] values = new double[node.getValue().getData().length];
-                for (int i = 0; i < backwardValues.length; i++) {
-                    for (int j = i; j < i + b; j++) {
-                        values[((j - i) % v) + v * (j / b)] += backwardValues[j];
-                    }
-                    i += b - 1;
-                }
-                node.setBackward(new Tensor(values, node.getValue().getShape()));
-            }
-            if (this.gradientClipping != null) {
-                node.setBackward(this.gradientClipping.clip(node.getBackward()));
-            }
+    public void setLossScaler(LossScaler lossScaler) {
+        this.lossScaler = lossScaler;
+    }
+
+    public Pruning getPruning() {
+        return pruning;
+    }
+
+    /**
+     * Sets the pruning that zeroes a fraction of the weights of every weight matrix after each step, so that
+     * the network is trained sparse and the pruned weights do not grow back.
+     * @param pruning The pruning, null to not prune during the training.
+     */
+    public void setPruning(Pruning pruning) {
+        this.pruning = pruning;
+    }
+
+    /**
+     * @return Value the gradient of the loss is seeded with, one if no loss scaler is set.
+     */
+    public double getLossScale() {
+        return lossScaler == null ? 1.0 : lossScaler.getScale();
+    }
+
+    /**
+     * Returns the store that packs the gradients and the moments of the learnable nodes of the plan. The store is
+     * created on first use and created again, keeping the moments of the remaining nodes, if the plan or the
+     * state precision changes.
+     * @param plan Execution plan of the graph.
+     * @return The parameter store of the plan.
+     */
+    public ParameterStore getParameterStore(ExecutionPlan plan) {
+        if (store == null) {
+            store = new ParameterStore(plan, statePrecision);
+        } else if (!store.isFor(plan, statePrecision)) {
+            store = new ParameterStore(plan, statePrecision, store);
+        }
+        return store;
+    }
+
+    /**
+     * Updates a range of the values of a learnable node in place from its gradient, held in its segment of the
+     * gradients of the store, in a single pass that also updates the moments of the optimizer in that range.
+     * The default implementation serves optimizers written against {@link #setGradients(ComputationalNode)}:
+     * once per node and step, the gradient of the node is copied into its backward tensor and turned into the
+     * update by that method, and the range of the update is then added to the values.
+     * @param store The parameter store.
+     * @param index Index of the learnable node.
+     * @param values Values of the node, which are updated.
+     * @param learningRate Learning rate of the current step.
+     * @param start Index of the first value of the range.
+     * @param end Index after the last value of the range.
+     */
+    protected void step(ParameterStore store, int index, double[] values, double learningRate, int start, int end) {
+        ComputationalNode node = store.getNode(index);
+        if (node != legacyNode) {
+            int offset = store.getOffset(index);
+            node.setBackward(new Tensor(Arrays.copyOfRange(store.getGradients(), offset, offset + values.length), node.getValue().getShape()));
             this.setGradients(node);
-            node.updateValue();
+            legacyNode = node;
         }
-        for (int t = 0; t < node.childrenSize(); t++) {
-            ComputationalNode child = node.getChild(t);
-            if (!visited.contains(child)) {
-                updateRecursive(visited, child);
-            }
+        double[] update = node.getBackward().getData();
+        for (int i = start; i < end; i++) {
+            values[i] = values[i] + update[i];
         }
     }
 
     /**
-     * Sets the gradients (backward values) of the node.
+     * Sets the gradients (backward values) of the node to the update that is added to its values. The default
+     * update is the learning rate times the gradient, as in plain stochastic gradient descent. Optimizers that
+     * override {@link #step(ParameterStore, int, double[], double, int, int)} do not use this method.
      * @param node The node whose gradients are to be set.
      */
-    protected abstract void setGradients(ComputationalNode node);
+    protected void setGradients(ComputationalNode node) {
+        double[] backward = node.getBackward().getData();
+        double[] values = new double[backward.length];
+        for (int i = 0; i < backward.length; i++) {
+            values[i] = backward[i] * getLearningRate();
+        }
+        node.setBackward(new Tensor(values, node.getBackward().getShape()));
+    }
 
     /**
-     * Updates the values of all learnable nodes in the graph.
+     * Called once per step, after the gradients have been gathered and before any node is updated. Optimizers
+     * with a state that advances with every step, such as the bias corrections of Adam, advance it here, so that
+     * a step skipped by the loss scaler leaves it untouched.
+     */
+    protected void beginStep() {
+    }
+
+    /**
+     * Updates the values of all learnable nodes in the graph. The gradients of all nodes are first gathered into
+     * the store, unscaled if a loss scaler is set, and clipped, so that a clipping can depend on all of them, and
+     * then each node is updated in place by a single pass of the optimizer. The learning rate is computed once
+     * for the whole step. A node with a row sparse gradient, such as an embedding table, is updated lazily: only
+     * the rows held by the gradient and their moments are updated, while the other rows and their moments are
+     * left as they are instead of decaying. If the loss scaler finds a gradient that overflowed, no node is
+     * updated. If a pruning is set, the pruned weights are zeroed after the update.
+     * @param plan Execution plan of the graph.
+     */
+    public void updateValues(ExecutionPlan plan) {
+        ParameterStore store = getParameterStore(plan);
+        double learningRate = getLearningRate();
+        store.clearGradients();
+        for (int i = 0; i < store.count(); i++) {
+            if (store.getNode(i).getBackward() != null || store.getNode(i).getSparseBackward() != null) {
+                store.gatherGradient(i);
+            }
+        }
+        if (lossScaler != null && !lossScaler.unscale(store)) {
+            return;
+        }
+        beginStep();
+        if (this.gradientClipping != null) {
+            this.gradientClipping.clip(store);
+        }
+        legacyNode = null;
+        for (int i = 0; i < store.count(); i++) {
+            if (!store.hasGradient(i)) {
+                continue;
+            }
+            double[] values = store.getNode(i).getValue().getData();
+            if (store.getRows(i) == null) {
+                this.step(store, i, values, learningRate, 0, values.length);
+            } else {
+                int rowLength = store.getRowLength(i);
+                for (int row : store.getRows(i)) {
+                    this.step(store, i, values, learningRate, row * rowLength, (row + 1) * rowLength);
+                }
+            }
+        }
+        if (pruning != null) {
+            pruning.afterStep(store);
+        }
+    }
+
+    /**
+     * Updates the values of all learnable nodes in the graph that the given leaf nodes lead to, by compiling the
+     * graph into an execution plan and updating the values of that plan.
      * @param leafNodes input nodes of the graph.
+     * @deprecated Use {@link #updateValues(ExecutionPlan)} with the plan of the graph, which is compiled once.
      */
+    @Deprecated
     public void updateValues(ArrayList<ComputationalNode> leafNodes) {
-        HashSet<ComputationalNode> visited = new HashSet<>();
-        for (ComputationalNode node : leafNodes) {
-            if (!visited.contains(node)) {
-                updateRecursive(visited, node);
+        ArrayList<ComputationalNode> sinks = new ArrayList<>();
+        HashSet<ComputationalNode> visited = new HashSet<>(leafNodes);
+        ArrayList<ComputationalNode> stack = new ArrayList<>(visited);
+        while (!stack.isEmpty()) {
+            ComputationalNode node = stack.remove(stack.size() - 1);
+            if (node.childrenSize() == 0) {
+                sinks.add(node);
+            }
+            for (int i = 0; i < node.childrenSize(); i++) {
+                if (visited.add(node.getChild(i))) {
+                    stack.add(node.getChild(i));
+                }
             }
         }
+        if (sinks.isEmpty() || sinks.size() > 2) {
+            throw new IllegalArgumentException("Leaf nodes must lead to a loss node and at most one other output.");
+        }
+        updateValues(new ExecutionPlan(sinks.get(0), sinks.get(sinks.size() - 1)));
+    }
+
+    public int getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Returns a copy of the state of the optimizer, which is enough to continue the training exactly where it
+     * stopped. The state of each learnable node is stored in the order of the execution plan, so that it does
+     * not depend on the identity of the nodes.
+     * @param plan Execution plan of the graph.
+     * @return State of the optimizer as a list of arrays.
+     */
+    public ArrayList<double[]> getState(ExecutionPlan plan) {
+        ArrayList<double[]> state = new ArrayList<>();
+        saveState(plan, state);
+        return state;
+    }
+
+    /**
+     * Restores a state returned by {@link #getState(ExecutionPlan)} of an optimizer of the same type.
+     * @param plan Execution plan of the graph.
+     * @param state State of the optimizer.
+     */
+    public void setState(ExecutionPlan plan, ArrayList<double[]> state) {
+        Iterator<double[]> iterator = state.iterator();
+        loadState(plan, iterator);
+        if (iterator.hasNext()) {
+            throw new IllegalArgumentException("State belongs to a different optimizer.");
+        }
+    }
+
+    /**
+     * Appends copies of the state of the optimizer to the given list. Subclasses with a state of their own
+     * append it after the state of their superclass.
+     * @param plan Execution plan of the graph.
+     * @param state List receiving the state.
+     */
+    protected void saveState(ExecutionPlan plan, ArrayList<double[]> state) {
+        if (lossScaler == null) {
+            state.add(new double[]{epoch});
+        } else {
+            double[] scaler = lossScaler.getState();
+            state.add(new double[]{epoch, scaler[0], scaler[1]});
+        }
+    }
+
+    /**
+     * Restores the state of the optimizer in the order in which {@link #saveState(ExecutionPlan, ArrayList)}
+     * appended it.
+     * @param plan Execution plan of the graph.
+     * @param state Iterator over the state.
+     */
+    protected void loadState(ExecutionPlan plan, Iterator<double[]> state) {
+        double[] values = state.next();
+        this.epoch = (int) values[0];
+        if (lossScaler != null && values.length == 3) {
+            lossScaler.setState(values[1], values[2]);
+        }
     }
 
     protected double getLearningRate() {
@@ -4,52 +4,75 @@ import java.io.Serializable;
 import java.util.*;
 
 import ComputationalGraph.Clipping.GradientClipping;
-import ComputationalGraph.Node.ComputationalNode;
+import ComputationalGraph.ExecutionPlan;
+import ComputationalGraph.Memory.ParameterStore;
+import ComputationalGraph.Precision;
 import ComputationalGraph.Scheduler.Scheduler;
-import Math.Tensor;
 
 public class SGDMomentum extends Optimizer implements Serializable {
 
-    protected final HashMap<ComputationalNode, double[]> velocityMap;
+    /**
+     * Slot of the velocity among the moments of the parameter store.
+     */
+    protected static final int VELOCITY = 0;
     protected final double momentum;
 
     public SGDMomentum(Scheduler scheduler, double momentum) {
         super(scheduler);
-        this.velocityMap = new HashMap<>();
         this.momentum = momentum;
     }
 
     public SGDMomentum(Scheduler scheduler, double momentum, GradientClipping gradientClipping) {
         super(scheduler, gradientClipping);
-        this.velocityMap = new HashMap<>();
         this.momentum = momentum;
     }
 
     /**
-     * Calculates the new gradients by combining the current gradient with the previous velocity.
-     * It updates the internal velocity state and modifies the node's backward tensor
-     * to reflect the momentum-adjusted update step.
+     * Combines the current gradient with the previous velocity, stores the new velocity and adds the
+     * momentum-adjusted update step to the values of the node, in a single pass.
      *
-     * @param node The node whose gradients are to be set.
+     * @param store The parameter store.
+     * @param index Index of the learnable node.
+     * @param values Values of the node, which are updated.
+     * @param learningRate Learning rate of the current step.
+     * @param start Index of the first value of the range.
+     * @param end Index after the last value of the range.
      */
     @Override
-    protected void setGradients(ComputationalNode node) {
-        int backwardSize = node.getBackward().getData().length;
-        double[] newValues = new double[backwardSize];
-        for (int i = 0; i < backwardSize; i++) {
-            newValues[i] = (1 - momentum) * node.getBackward().getData()[i];
-        }
-        if (velocityMap.containsKey(node)) {
-            for (int i = 0; i < backwardSize; i++) {
-                newValues[i] = newValues[i] + (velocityMap.get(node)[i] * momentum);
+    protected void step(ParameterStore store, int index, double[] values, double learningRate, int start, int end) {
+        double[] gradients = store.getGradients();
+        int offset = store.getOffset(index);
+        if (store.getPrecision() == Precision.FLOAT) {
+            float[] velocity = store.getFloatMoment(VELOCITY);
+            for (int i = start; i < end; i++) {
+                double newVelocity = (1 - momentum) * gradients[offset + i] + velocity[offset + i] * momentum;
+                velocity[offset + i] = (float) newVelocity;
+                values[i] = values[i] + newVelocity * learningRate;
+            }
+        } else {
+            double[] velocity = store.getMoment(VELOCITY);
+            for (int i = start; i < end; i++) {
+                double newVelocity = (1 - momentum) * gradients[offset + i] + velocity[offset + i] * momentum;
+                velocity[offset + i] = newVelocity;
+                values[i] = values[i] + newVelocity * learningRate;
             }
         }
-        double[] velocity = new double[backwardSize];
-        System.arraycopy(newValues, 0, velocity, 0, backwardSize);
-        velocityMap.put(node, velocity);
-        for (int i = 0; i < backwardSize; i++) {
-            newValues[i] *= getLearningRate();
-        }
-        node.setBackward(new Tensor(newValues, node.getBackward().getShape()));
+    }
+
+    /**
+     * Appends the epoch and the velocity of all parameters.
+     * @param plan Execution plan of the graph.
+     * @param state List receiving the state.
+     */
+    @Override
+    protected void saveState(ExecutionPlan plan, ArrayList<double[]> state) {
+        super.saveState(plan, state);
+        state.add(getParameterStore(plan).copyMoment(VELOCITY));
+    }
+
+    @Override
+    protected void loadState(ExecutionPlan plan, Iterator<double[]> state) {
+        super.loadState(plan, state);
+        getParameterStore(plan).setMoment(VELOCITY, state.next());
     }
 }
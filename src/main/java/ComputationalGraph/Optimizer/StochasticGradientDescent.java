@@ -3,9 +3,8 @@ package ComputationalGraph.Optimizer;
 import java.io.Serializable;
 
 import ComputationalGraph.Clipping.GradientClipping;
-import ComputationalGraph.Node.ComputationalNode;
+import ComputationalGraph.Memory.ParameterStore;
 import ComputationalGraph.Scheduler.Scheduler;
-import Math.Tensor;
 
 public class StochasticGradientDescent extends Optimizer implements Serializable {
 
@@ -18,16 +17,20 @@ public class StochasticGradientDescent extends Optimizer implements Serializable
     }
 
     /**
-     * Sets the gradients (backward values) of the node to the learning rate times the backward values.
-     * @param node The node whose gradients are to be set.
+     * Adds the learning rate times the gradient to the values of the node.
+     * @param store The parameter store.
+     * @param index Index of the learnable node.
+     * @param values Values of the node, which are updated.
+     * @param learningRate Learning rate of the current step.
+     * @param start Index of the first value of the range.
+     * @param end Index after the last value of the range.
      */
     @Override
-    protected void setGradients(ComputationalNode node) {
-        double[] backward = node.getBackward().getData();
-        double[] values = new double[backward.length];
-        for (int i = 0; i < backward.length; i++) {
-            values[i] = backward[i] * getLearningRate();
+    protected void step(ParameterStore store, int index, double[] values, double learningRate, int start, int end) {
+        double[] gradients = store.getGradients();
+        int offset = store.getOffset(index);
+        for (int i = start; i < end; i++) {
+            values[i] = values[i] + gradients[offset + i] * learningRate;
         }
-        node.setBackward(new Tensor(values, node.getBackward().getShape()));
     }
 }
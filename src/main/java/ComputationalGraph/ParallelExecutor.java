@@ -0,0 +1,246 @@
+package ComputationalGraph;
+
+import ComputationalGraph.Memory.MemoryPlan;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public class ParallelExecutor {
+
+    private final ForkJoinPool pool;
+    private final int minimumWork;
+
+    /**
+     * Creates an executor that runs the nodes of a pass as soon as all of their dependencies are computed, so
+     * that independent branches of the graph are computed at the same time.
+     * @param parallelism Number of worker threads.
+     * @param minimumWork Nodes that touch fewer elements than this threshold run inline on the thread that
+     *                    completed their last dependency instead of being scheduled as a separate task.
+     */
+    public ParallelExecutor(int parallelism, int minimumWork) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        this.pool = new ForkJoinPool(parallelism);
+        this.minimumWork = minimumWork;
+    }
+
+    public ParallelExecutor(int parallelism) {
+        this(parallelism, 4096);
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    public int getMinimumWork() {
+        return minimumWork;
+    }
+
+    /**
+     * Shuts down the worker threads of the executor.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Runs a forward pass. A node becomes ready once all of its parents are computed.
+     * @param graph Graph whose nodes are computed.
+     * @param context Execution context of the pass.
+     * @param isTraining True for a training pass, false for an inference pass.
+     */
+    void forward(ComputationalGraph graph, ExecutionContext context, boolean isTraining) {
+        ExecutionPlan plan = context.getPlan();
+        boolean[] included = new boolean[plan.size()];
+        if (isTraining) {
+            for (int i = 0; i < plan.size(); i++) {
+                included[i] = true;
+            }
+        } else {
+            for (int i = 0; i < plan.inferenceSize(); i++) {
+                included[plan.getInferenceIndex(i)] = true;
+            }
+        }
+        new Pass(graph, context, isTraining, true, included).run();
+    }
+
+    /**
+     * Runs a backward pass. The gradient of the loss node must already be set; every other node that requires
+     * a gradient becomes ready once the gradients of all of its children are computed.
+     * @param graph Graph whose gradients are computed.
+     * @param context Execution context of the pass.
+     */
+    void backward(ComputationalGraph graph, ExecutionContext context) {
+        ExecutionPlan plan = context.getPlan();
+        boolean[] included = new boolean[plan.size()];
+        for (int i = 0; i < plan.getLossIndex(); i++) {
+            included[i] = plan.requiresGradient(i);
+        }
+        included[plan.getLossIndex()] = true;
+        new Pass(graph, context, true, false, included).run();
+    }
+
+    private class Pass {
+
+        private final ComputationalGraph graph;
+        private final ExecutionContext context;
+        private final ExecutionPlan plan;
+        private final boolean isTraining;
+        private final boolean isForward;
+        private final boolean[] included;
+        private final AtomicIntegerArray pending;
+        private final AtomicInteger remaining;
+        private final CompletableFuture<Void> done;
+        private final MemoryPlan memoryPlan;
+
+        Pass(ComputationalGraph graph, ExecutionContext context, boolean isTraining, boolean isForward, boolean[] included) {
+            this.graph = graph;
+            this.context = context;
+            this.plan = context.getPlan();
+            this.isTraining = isTraining;
+            this.isForward = isForward;
+            this.included = included;
+            this.pending = new AtomicIntegerArray(plan.size());
+            this.done = new CompletableFuture<>();
+            this.memoryPlan = context.getMemoryPlan(isTraining);
+            int count = 0;
+            for (int i = 0; i < plan.size(); i++) {
+                if (included[i]) {
+                    count++;
+                    pending.set(i, dependencies(i));
+                }
+            }
+            this.remaining = new AtomicInteger(count);
+        }
+
+        /**
+         * Schedules the nodes without dependencies and waits until every node of the pass is computed. The
+         * initial nodes are collected before any of them is scheduled, since a running node may already have
+         * released one of its successors.
+         */
+        void run() {
+            ArrayList<Integer> ready = new ArrayList<>();
+            for (int i = 0; i < plan.size(); i++) {
+                if (included[i] && pending.get(i) == 0) {
+                    ready.add(i);
+                }
+            }
+            for (int index : ready) {
+                schedule(index, null);
+            }
+            try {
+                done.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the pass to finish.", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        private int dependencies(int index) {
+            int count = 0;
+            if (isForward) {
+                for (int k = 0; k < plan.parentsSize(index); k++) {
+                    if (included[plan.getParentIndex(index, k)]) {
+                        count++;
+                    }
+                }
+            } else {
+                for (int k = 0; k < plan.childrenSize(index); k++) {
+                    if (included[plan.getChildIndex(index, k)]) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Estimates the number of elements a node touches from the sizes observed in the previous pass.
+         * @return Estimated work of the node, Integer.MAX_VALUE if no previous pass has been observed.
+         */
+        private long work(int index) {
+            if (memoryPlan == null) {
+                return Integer.MAX_VALUE;
+            }
+            long work;
+            if (isForward) {
+                work = memoryPlan.getValueSize(index);
+                for (int k = 0; k < plan.parentsSize(index); k++) {
+                    work += memoryPlan.getValueSize(plan.getParentIndex(index, k));
+                }
+            } else {
+                work = memoryPlan.getBackwardSize(index);
+                for (int k = 0; k < plan.childrenSize(index); k++) {
+                    work += memoryPlan.getBackwardSize(plan.getChildIndex(index, k));
+                }
+            }
+            return work;
+        }
+
+        /**
+         * Runs a ready node inline if it is small and the caller is already processing nodes, otherwise submits
+         * it to the pool.
+         */
+        private void schedule(int index, ArrayDeque<Integer> inline) {
+            if (inline != null && work(index) < minimumWork) {
+                inline.add(index);
+            } else {
+                pool.execute(() -> process(index));
+            }
+        }
+
+        /**
+         * Computes the given node and every small node it makes ready.
+         * @param start Index of a ready node.
+         */
+        private void process(int start) {
+            ArrayDeque<Integer> inline = new ArrayDeque<>();
+            inline.add(start);
+            while (!inline.isEmpty() && !done.isDone()) {
+                int index = inline.poll();
+                try {
+                    if (isForward) {
+                        graph.calculateNode(context, index, isTraining);
+                    } else if (index != plan.getLossIndex()) {
+                        graph.calculateBackward(context, index);
+                    }
+                } catch (Throwable e) {
+                    done.completeExceptionally(e);
+                    return;
+                }
+                if (isForward) {
+                    for (int k = 0; k < plan.childrenSize(index); k++) {
+                        int child = plan.getChildIndex(index, k);
+                        if (included[child] && pending.decrementAndGet(child) == 0) {
+                            schedule(child, inline);
+                        }
+                    }
+                } else {
+                    for (int k = 0; k < plan.parentsSize(index); k++) {
+                        int parent = plan.getParentIndex(index, k);
+                        if (included[parent] && pending.decrementAndGet(parent) == 0) {
+                            schedule(parent, inline);
+                        }
+                    }
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    done.complete(null);
+                }
+            }
+        }
+    }
+}
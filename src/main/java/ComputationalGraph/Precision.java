@@ -0,0 +1,29 @@
+package ComputationalGraph;
+
+public enum Precision {
+    DOUBLE(8),
+    FLOAT(4),
+    BFLOAT16(2),
+    HALF(2);
+
+    private final int size;
+
+    Precision(int size) {
+        this.size = size;
+    }
+
+    /**
+     * @return Number of bytes of a single value.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return True if the values are stored in two bytes, which is only supported for the activations kept for
+     * the backward pass.
+     */
+    public boolean isHalf() {
+        return size == 2;
+    }
+}
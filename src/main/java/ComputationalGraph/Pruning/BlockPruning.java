@@ -0,0 +1,51 @@
+package ComputationalGraph.Pruning;
+
+public class BlockPruning extends Pruning {
+
+    private final int blockRows;
+    private final int blockColumns;
+
+    /**
+     * Creates a structured pruning that splits every weight matrix into blocks and zeroes the blocks with the
+     * smallest Euclidean norms, so that the pruned matrix can be stored in block sparse form. Blocks of a single
+     * row and all columns prune whole input units, blocks of all rows and a single column whole output units.
+     * @param sparsity Fraction of the blocks to zero, in [0, 1).
+     * @param interval Number of optimizer steps between two choices of the pruned blocks, 0 to keep the first.
+     * @param blockRows Number of rows of a block.
+     * @param blockColumns Number of columns of a block.
+     */
+    public BlockPruning(double sparsity, int interval, int blockRows, int blockColumns) {
+        super(sparsity, interval);
+        if (blockRows <= 0 || blockColumns <= 0) {
+            throw new IllegalArgumentException("Block sizes must be positive");
+        }
+        this.blockRows = blockRows;
+        this.blockColumns = blockColumns;
+    }
+
+    public BlockPruning(double sparsity, int blockRows, int blockColumns) {
+        this(sparsity, 0, blockRows, blockColumns);
+    }
+
+    @Override
+    protected boolean[] mask(double[] values, int rows, int columns) {
+        int height = Math.min(blockRows, rows);
+        int width = Math.min(blockColumns, columns);
+        int columnBlocks = (columns + width - 1) / width;
+        double[] norms = new double[((rows + height - 1) / height) * columnBlocks];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                double value = values[i * columns + j];
+                norms[(i / height) * columnBlocks + j / width] += value * value;
+            }
+        }
+        boolean[] pruned = lowest(norms, (int) (getSparsity() * norms.length));
+        boolean[] mask = new boolean[values.length];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                mask[i * columns + j] = pruned[(i / height) * columnBlocks + j / width];
+            }
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,26 @@
+package ComputationalGraph.Pruning;
+
+public class MagnitudePruning extends Pruning {
+
+    /**
+     * Creates a pruning that zeroes the weights of every weight matrix with the smallest absolute values.
+     * @param sparsity Fraction of the weights to zero, in [0, 1).
+     * @param interval Number of optimizer steps between two choices of the pruned weights, 0 to keep the first.
+     */
+    public MagnitudePruning(double sparsity, int interval) {
+        super(sparsity, interval);
+    }
+
+    public MagnitudePruning(double sparsity) {
+        this(sparsity, 0);
+    }
+
+    @Override
+    protected boolean[] mask(double[] values, int rows, int columns) {
+        double[] scores = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            scores[i] = Math.abs(values[i]);
+        }
+        return lowest(scores, (int) (getSparsity() * values.length));
+    }
+}
@@ -0,0 +1,188 @@
+package ComputationalGraph.Pruning;
+
+import ComputationalGraph.ExecutionPlan;
+import ComputationalGraph.Memory.ParameterStore;
+import ComputationalGraph.Node.ComputationalNode;
+import ComputationalGraph.Node.LinearNode;
+import ComputationalGraph.Node.MultiplicationNode;
+import Math.Tensor;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+
+public abstract class Pruning implements Serializable {
+
+    private final double sparsity;
+    private final int interval;
+    private final HashMap<ComputationalNode, boolean[]> masks;
+    private long step;
+
+    /**
+     * Creates a pruning that zeroes the given fraction of the weights of every weight matrix.
+     * @param sparsity Fraction of the weights to zero, in [0, 1).
+     * @param interval Number of optimizer steps between two choices of the pruned weights when pruning during
+     *                 the training, 0 to keep the weights chosen at the first step. In between, the pruned
+     *                 weights are zeroed again after every step.
+     */
+    public Pruning(double sparsity, int interval) {
+        if (sparsity < 0 || sparsity >= 1) {
+            throw new IllegalArgumentException("Sparsity must be in [0, 1)");
+        }
+        if (interval < 0) {
+            throw new IllegalArgumentException("Interval must not be negative");
+        }
+        this.sparsity = sparsity;
+        this.interval = interval;
+        this.masks = new HashMap<>();
+    }
+
+    public double getSparsity() {
+        return sparsity;
+    }
+
+    /**
+     * @return Number of optimizer steps seen so far when pruning during the training.
+     */
+    public long getStep() {
+        return step;
+    }
+
+    public void setStep(long step) {
+        this.step = step;
+    }
+
+    /**
+     * @param node Learnable node pruned during the training.
+     * @return The weights of the node that are kept zero, null if they have not been chosen yet.
+     */
+    public boolean[] getMask(ComputationalNode node) {
+        return masks.get(node);
+    }
+
+    /**
+     * Sets the weights of a node that are kept zero, e.g. the ones restored from a checkpoint, so that they are
+     * not chosen again before the interval has passed.
+     * @param node Learnable node pruned during the training.
+     * @param mask True for every weight to zero.
+     */
+    public void setMask(ComputationalNode node, boolean[] mask) {
+        masks.put(node, mask);
+    }
+
+    /**
+     * Chooses the weights of a matrix to prune.
+     * @param values Weights in row-major order.
+     * @param rows Number of rows.
+     * @param columns Number of columns.
+     * @return True for every weight to zero.
+     */
+    protected abstract boolean[] mask(double[] values, int rows, int columns);
+
+    /**
+     * @param scores Score of every candidate.
+     * @param count Number of candidates to choose.
+     * @return True for the given number of candidates with the lowest scores; among equal scores, the first ones.
+     */
+    protected static boolean[] lowest(double[] scores, int count) {
+        boolean[] chosen = new boolean[scores.length];
+        if (count <= 0) {
+            return chosen;
+        }
+        double[] sorted = scores.clone();
+        Arrays.sort(sorted);
+        double threshold = sorted[count - 1];
+        int below = 0;
+        for (double score : scores) {
+            if (score < threshold) {
+                below++;
+            }
+        }
+        int ties = count - below;
+        for (int i = 0; i < scores.length; i++) {
+            if (scores[i] < threshold) {
+                chosen[i] = true;
+            } else if (scores[i] == threshold && ties > 0) {
+                chosen[i] = true;
+                ties--;
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * A node is pruned only if it holds the weight matrix of a matrix multiplication or of a dense layer, that is,
+     * if it is the second parent of a multiplication node that is not a Hadamard product, or of a linear node.
+     * Biases, embedding tables and other learnable matrices are left dense.
+     * @return True if the node holds a matrix of weights that can be pruned.
+     */
+    private static boolean isPrunable(ComputationalNode node) {
+        if (node.getValue() == null || node.getValue().getShape().length != 2) {
+            return false;
+        }
+        for (int i = 0; i < node.childrenSize(); i++) {
+            ComputationalNode child = node.getChild(i);
+            boolean isProduct = child instanceof LinearNode || (child instanceof MultiplicationNode && !((MultiplicationNode) child).isHadamard());
+            if (isProduct && child.parentsSize() > 1 && child.getParent(1) == node) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void apply(double[] values, boolean[] mask) {
+        for (int i = 0; i < values.length; i++) {
+            if (mask[i]) {
+                values[i] = 0.0;
+            }
+        }
+    }
+
+    /**
+     * Zeroes the chosen weights of a matrix in place.
+     * @param weights Matrix of weights.
+     */
+    public void prune(Tensor weights) {
+        if (weights.getShape().length != 2) {
+            throw new IllegalArgumentException("Only matrices of weights can be pruned.");
+        }
+        apply(weights.getData(), mask(weights.getData(), weights.getShape()[0], weights.getShape()[1]));
+    }
+
+    /**
+     * Prunes every weight matrix of a trained graph once.
+     * @param plan Execution plan of the graph.
+     */
+    public void prune(ExecutionPlan plan) {
+        for (int i = 0; i < plan.learnableSize(); i++) {
+            ComputationalNode node = plan.getLearnableNode(i);
+            if (isPrunable(node)) {
+                prune(node.getValue());
+            }
+        }
+    }
+
+    /**
+     * Called by the optimizer after every step. The pruned weights of every weight matrix are chosen at the
+     * first step and again whenever the interval has passed, and zeroed after every step, so that the optimizer
+     * can not grow them back.
+     * @param store Parameter store of the optimizer.
+     */
+    public void afterStep(ParameterStore store) {
+        step++;
+        boolean isChoosing = interval > 0 && step % interval == 0;
+        for (int i = 0; i < store.count(); i++) {
+            ComputationalNode node = store.getNode(i);
+            if (!isPrunable(node)) {
+                continue;
+            }
+            Tensor value = node.getValue();
+            boolean[] mask = masks.get(node);
+            if (mask == null || isChoosing || mask.length != value.getData().length) {
+                mask = mask(value.getData(), value.getShape()[0], value.getShape()[1]);
+                masks.put(node, mask);
+            }
+            apply(value.getData(), mask);
+        }
+    }
+}
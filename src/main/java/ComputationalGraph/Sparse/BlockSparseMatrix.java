@@ -0,0 +1,137 @@
+package ComputationalGraph.Sparse;
+
+import java.io.Serializable;
+
+public class BlockSparseMatrix implements Serializable {
+
+    private final int rows;
+    private final int columns;
+    private final int blockRows;
+    private final int blockColumns;
+    private final int[] blockRowPointers;
+    private final int[] blockColumnIndices;
+    private final double[] values;
+
+    private BlockSparseMatrix(int rows, int columns, int blockRows, int blockColumns, int[] blockRowPointers, int[] blockColumnIndices, double[] values) {
+        this.rows = rows;
+        this.columns = columns;
+        this.blockRows = blockRows;
+        this.blockColumns = blockColumns;
+        this.blockRowPointers = blockRowPointers;
+        this.blockColumnIndices = blockColumnIndices;
+        this.values = values;
+    }
+
+    /**
+     * Stores the blocks of a dense matrix that have a non-zero, in compressed sparse row form over the grid of
+     * blocks. Every stored block is dense, blockRows x blockColumns values in row-major order, so that the
+     * product with a block is a small dense product without an index per value. The blocks at the last rows and
+     * columns are padded with zeros if the sizes of the matrix are not multiples of the sizes of the blocks.
+     * @param dense Values of the matrix in row-major order.
+     * @param rows Number of rows.
+     * @param columns Number of columns.
+     * @param blockRows Number of rows of a block.
+     * @param blockColumns Number of columns of a block.
+     * @return The matrix in block sparse row form.
+     */
+    public static BlockSparseMatrix fromDense(double[] dense, int rows, int columns, int blockRows, int blockColumns) {
+        if (blockRows <= 0 || blockColumns <= 0) {
+            throw new IllegalArgumentException("Block sizes must be positive");
+        }
+        int rowBlocks = (rows + blockRows - 1) / blockRows;
+        int columnBlocks = (columns + blockColumns - 1) / blockColumns;
+        boolean[] isNonZero = new boolean[rowBlocks * columnBlocks];
+        int count = 0;
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                int block = (i / blockRows) * columnBlocks + j / blockColumns;
+                if (dense[i * columns + j] != 0 && !isNonZero[block]) {
+                    isNonZero[block] = true;
+                    count++;
+                }
+            }
+        }
+        int blockSize = blockRows * blockColumns;
+        int[] blockRowPointers = new int[rowBlocks + 1];
+        int[] blockColumnIndices = new int[count];
+        double[] values = new double[count * blockSize];
+        int k = 0;
+        for (int r = 0; r < rowBlocks; r++) {
+            for (int c = 0; c < columnBlocks; c++) {
+                if (!isNonZero[r * columnBlocks + c]) {
+                    continue;
+                }
+                blockColumnIndices[k] = c;
+                for (int a = 0; a < blockRows && r * blockRows + a < rows; a++) {
+                    for (int b = 0; b < blockColumns && c * blockColumns + b < columns; b++) {
+                        values[k * blockSize + a * blockColumns + b] = dense[(r * blockRows + a) * columns + c * blockColumns + b];
+                    }
+                }
+                k++;
+            }
+            blockRowPointers[r + 1] = k;
+        }
+        return new BlockSparseMatrix(rows, columns, blockRows, blockColumns, blockRowPointers, blockColumnIndices, values);
+    }
+
+    /**
+     * @return The matrix as dense values in row-major order.
+     */
+    public double[] toDense() {
+        double[] dense = new double[rows * columns];
+        int blockSize = blockRows * blockColumns;
+        for (int r = 0; r + 1 < blockRowPointers.length; r++) {
+            for (int k = blockRowPointers[r]; k < blockRowPointers[r + 1]; k++) {
+                int c = blockColumnIndices[k];
+                for (int a = 0; a < blockRows && r * blockRows + a < rows; a++) {
+                    for (int b = 0; b < blockColumns && c * blockColumns + b < columns; b++) {
+                        dense[(r * blockRows + a) * columns + c * blockColumns + b] = values[k * blockSize + a * blockColumns + b];
+                    }
+                }
+            }
+        }
+        return dense;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getBlockRows() {
+        return blockRows;
+    }
+
+    public int getBlockColumns() {
+        return blockColumns;
+    }
+
+    public int[] getBlockRowPointers() {
+        return blockRowPointers;
+    }
+
+    public int[] getBlockColumnIndices() {
+        return blockColumnIndices;
+    }
+
+    public double[] getValues() {
+        return values;
+    }
+
+    /**
+     * @return Number of stored blocks.
+     */
+    public int blockCount() {
+        return blockColumnIndices.length;
+    }
+
+    /**
+     * @return Number of bytes held by the block row pointers, the block column indices and the values.
+     */
+    public long getMemory() {
+        return 4L * blockRowPointers.length + 4L * blockColumnIndices.length + 8L * values.length;
+    }
+}
@@ -0,0 +1,143 @@
+package ComputationalGraph.Sparse;
+
+import java.io.Serializable;
+
+public class CsrMatrix implements Serializable {
+
+    private final int rows;
+    private final int columns;
+    private final int[] rowPointers;
+    private final int[] columnIndices;
+    private final double[] values;
+
+    /**
+     * Creates a matrix in compressed sparse row form. The non-zeros of row i are stored at positions
+     * rowPointers[i] to rowPointers[i + 1] - 1 of the column indices and of the values, in increasing column order.
+     * @param rows Number of rows.
+     * @param columns Number of columns.
+     * @param rowPointers Position of the first non-zero of every row, followed by the number of non-zeros.
+     * @param columnIndices Column of every non-zero.
+     * @param values Value of every non-zero.
+     */
+    public CsrMatrix(int rows, int columns, int[] rowPointers, int[] columnIndices, double[] values) {
+        if (rowPointers.length != rows + 1 || rowPointers[0] != 0 || columnIndices.length != values.length || rowPointers[rows] != values.length) {
+            throw new IllegalArgumentException("Row pointers do not match the non-zeros.");
+        }
+        for (int i = 0; i < rows; i++) {
+            if (rowPointers[i] > rowPointers[i + 1]) {
+                throw new IllegalArgumentException("Row pointers must not decrease.");
+            }
+            for (int k = rowPointers[i]; k < rowPointers[i + 1]; k++) {
+                if (columnIndices[k] < 0 || columnIndices[k] >= columns || (k > rowPointers[i] && columnIndices[k] <= columnIndices[k - 1])) {
+                    throw new IllegalArgumentException("Column indices of row " + i + " are out of range or not increasing.");
+                }
+            }
+        }
+        this.rows = rows;
+        this.columns = columns;
+        this.rowPointers = rowPointers;
+        this.columnIndices = columnIndices;
+        this.values = values;
+    }
+
+    /**
+     * Stores the non-zeros of a dense matrix.
+     * @param dense Values of the matrix in row-major order.
+     * @param rows Number of rows.
+     * @param columns Number of columns.
+     * @return The matrix in compressed sparse row form.
+     */
+    public static CsrMatrix fromDense(double[] dense, int rows, int columns) {
+        int count = 0;
+        for (double value : dense) {
+            if (value != 0) {
+                count++;
+            }
+        }
+        int[] rowPointers = new int[rows + 1];
+        int[] columnIndices = new int[count];
+        double[] values = new double[count];
+        int k = 0;
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                if (dense[i * columns + j] != 0) {
+                    columnIndices[k] = j;
+                    values[k] = dense[i * columns + j];
+                    k++;
+                }
+            }
+            rowPointers[i + 1] = k;
+        }
+        return new CsrMatrix(rows, columns, rowPointers, columnIndices, values);
+    }
+
+    /**
+     * @return The matrix as dense values in row-major order.
+     */
+    public double[] toDense() {
+        double[] dense = new double[rows * columns];
+        for (int i = 0; i < rows; i++) {
+            for (int k = rowPointers[i]; k < rowPointers[i + 1]; k++) {
+                dense[i * columns + columnIndices[k]] = values[k];
+            }
+        }
+        return dense;
+    }
+
+    /**
+     * Appends a column holding the same value in every row, such as the column of ones of a biased node.
+     * @param value Value of the appended column, stored in every row even if zero.
+     * @return A new matrix with one more column.
+     */
+    public CsrMatrix appendColumn(double value) {
+        int[] newRowPointers = new int[rows + 1];
+        int[] newColumnIndices = new int[values.length + rows];
+        double[] newValues = new double[values.length + rows];
+        int k = 0;
+        for (int i = 0; i < rows; i++) {
+            int count = rowPointers[i + 1] - rowPointers[i];
+            System.arraycopy(columnIndices, rowPointers[i], newColumnIndices, k, count);
+            System.arraycopy(values, rowPointers[i], newValues, k, count);
+            k += count;
+            newColumnIndices[k] = columns;
+            newValues[k] = value;
+            k++;
+            newRowPointers[i + 1] = k;
+        }
+        return new CsrMatrix(rows, columns + 1, newRowPointers, newColumnIndices, newValues);
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int[] getRowPointers() {
+        return rowPointers;
+    }
+
+    public int[] getColumnIndices() {
+        return columnIndices;
+    }
+
+    public double[] getValues() {
+        return values;
+    }
+
+    /**
+     * @return Number of stored non-zeros.
+     */
+    public int nonZeros() {
+        return values.length;
+    }
+
+    /**
+     * @return Number of bytes held by the row pointers, the column indices and the values.
+     */
+    public long getMemory() {
+        return 4L * rowPointers.length + 12L * values.length;
+    }
+}
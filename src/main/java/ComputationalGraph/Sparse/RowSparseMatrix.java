@@ -0,0 +1,107 @@
+package ComputationalGraph.Sparse;
+
+import java.io.Serializable;
+
+public class RowSparseMatrix implements Serializable {
+
+    private final int rows;
+    private final int columns;
+    private final int[] rowIndices;
+    private final double[] values;
+
+    /**
+     * Creates a matrix of which only a few rows are stored, such as the gradient of an embedding table whose
+     * other rows have not been looked up. The rows that are not stored are zero.
+     * @param rows Number of rows.
+     * @param columns Number of columns.
+     * @param rowIndices Indices of the stored rows, in increasing order.
+     * @param values Values of the stored rows, rowIndices.length x columns values in row-major order.
+     */
+    public RowSparseMatrix(int rows, int columns, int[] rowIndices, double[] values) {
+        if (values.length != (long) rowIndices.length * columns) {
+            throw new IllegalArgumentException("Values do not match the stored rows.");
+        }
+        for (int k = 0; k < rowIndices.length; k++) {
+            if (rowIndices[k] < 0 || rowIndices[k] >= rows || (k > 0 && rowIndices[k] <= rowIndices[k - 1])) {
+                throw new IllegalArgumentException("Row indices are out of range or not increasing.");
+            }
+        }
+        this.rows = rows;
+        this.columns = columns;
+        this.rowIndices = rowIndices;
+        this.values = values;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int[] getRowIndices() {
+        return rowIndices;
+    }
+
+    public double[] getValues() {
+        return values;
+    }
+
+    /**
+     * @param other Matrix of the same size.
+     * @return A new matrix holding the sum, whose stored rows are the rows stored by either matrix.
+     */
+    public RowSparseMatrix add(RowSparseMatrix other) {
+        if (other.rows != rows || other.columns != columns) {
+            throw new IllegalArgumentException("Matrices do not have the same size.");
+        }
+        int[] indices = new int[rowIndices.length + other.rowIndices.length];
+        double[] sum = new double[indices.length * columns];
+        int i = 0, j = 0, k = 0;
+        while (i < rowIndices.length || j < other.rowIndices.length) {
+            boolean isFirst = j == other.rowIndices.length || (i < rowIndices.length && rowIndices[i] <= other.rowIndices[j]);
+            boolean isSecond = i == rowIndices.length || (j < other.rowIndices.length && other.rowIndices[j] <= rowIndices[i]);
+            if (isFirst) {
+                indices[k] = rowIndices[i];
+                System.arraycopy(values, i * columns, sum, k * columns, columns);
+                i++;
+            }
+            if (isSecond) {
+                indices[k] = other.rowIndices[j];
+                for (int c = 0; c < columns; c++) {
+                    sum[k * columns + c] += other.values[j * columns + c];
+                }
+                j++;
+            }
+            k++;
+        }
+        int[] newIndices = new int[k];
+        System.arraycopy(indices, 0, newIndices, 0, k);
+        double[] newValues = new double[k * columns];
+        System.arraycopy(sum, 0, newValues, 0, newValues.length);
+        return new RowSparseMatrix(rows, columns, newIndices, newValues);
+    }
+
+    /**
+     * Adds the stored rows to a dense matrix of the same size in place.
+     * @param dense Values of the dense matrix in row-major order.
+     */
+    public void addTo(double[] dense) {
+        for (int k = 0; k < rowIndices.length; k++) {
+            int row = rowIndices[k] * columns;
+            for (int c = 0; c < columns; c++) {
+                dense[row + c] += values[k * columns + c];
+            }
+        }
+    }
+
+    /**
+     * @return The matrix as dense values in row-major order.
+     */
+    public double[] toDense() {
+        double[] dense = new double[rows * columns];
+        addTo(dense);
+        return dense;
+    }
+}
@@ -0,0 +1,181 @@
+import Classification.Performance.ClassificationPerformance;
+import ComputationalGraph.ComputationalGraph;
+import ComputationalGraph.Function.*;
+import ComputationalGraph.Node.ComputationalNode;
+import ComputationalGraph.Node.MultiplicationNode;
+import ComputationalGraph.Sparse.CsrMatrix;
+import Math.*;
+import ComputationalGraph.*;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * A text classifier over bag-of-words features. Every instance holds the word ids of a document followed by its
+ * class label, and is fed either as a dense count vector over the whole vocabulary or as a sparse row.
+ */
+public class BagOfWordsNet extends ComputationalGraph implements Serializable {
+
+    private final int vocabularySize;
+    private final int classCount;
+    private final boolean isSparse;
+
+    public BagOfWordsNet(NeuralNetworkParameter parameters, int vocabularySize, int hiddenSize, int classCount, boolean isSparse) {
+        this(parameters, vocabularySize, hiddenSize, classCount, isSparse, false);
+    }
+
+    /**
+     * @param hasLinearNodes If true, the first layer is a single dense layer node instead of a multiplication
+     *                       followed by a function node.
+     */
+    public BagOfWordsNet(NeuralNetworkParameter parameters, int vocabularySize, int hiddenSize, int classCount, boolean isSparse, boolean hasLinearNodes) {
+        super(parameters);
+        this.vocabularySize = vocabularySize;
+        this.classCount = classCount;
+        this.isSparse = isSparse;
+        ComputationalNode input = new MultiplicationNode(false, true);
+        this.addInputNode(input);
+        ComputationalNode w1 = new MultiplicationNode(parameters.initializeWeights(new int[]{vocabularySize + 1, hiddenSize}, new Random(parameters.getSeed())));
+        ComputationalNode a1Sigmoid;
+        if (hasLinearNodes) {
+            a1Sigmoid = this.addEdge(input, new Linear(w1, new Sigmoid()), true);
+        } else {
+            a1Sigmoid = this.addEdge(this.addEdge(input, w1), new Sigmoid(), true);
+        }
+        ComputationalNode w2 = new MultiplicationNode(parameters.initializeWeights(new int[]{hiddenSize + 1, classCount}, new Random(parameters.getSeed())));
+        ComputationalNode classLabelNode = this.addLoss(this.addEdge(this.addEdge(a1Sigmoid, w2), new Softmax()));
+        this.addInputNode(classLabelNode);
+    }
+
+    /**
+     * @param instances Documents, each the word ids followed by the class label.
+     * @return Word counts of the documents, one dense row per document.
+     */
+    public Tensor createDenseInput(List<Tensor> instances) {
+        double[] data = new double[instances.size() * vocabularySize];
+        for (int i = 0; i < instances.size(); i++) {
+            double[] words = instances.get(i).getData();
+            for (int k = 0; k < words.length - 1; k++) {
+                data[i * vocabularySize + (int) words[k]]++;
+            }
+        }
+        return new Tensor(data, new int[]{instances.size(), vocabularySize});
+    }
+
+    /**
+     * @param instances Documents, each the word ids followed by the class label.
+     * @return Word counts of the documents, one sparse row per document.
+     */
+    public CsrMatrix createSparseInput(List<Tensor> instances) {
+        int[] rowPointers = new int[instances.size() + 1];
+        ArrayList<Integer> columnIndices = new ArrayList<>();
+        ArrayList<Double> values = new ArrayList<>();
+        for (int i = 0; i < instances.size(); i++) {
+            double[] data = instances.get(i).getData();
+            int[] words = new int[data.length - 1];
+            for (int k = 0; k < words.length; k++) {
+                words[k] = (int) data[k];
+            }
+            Arrays.sort(words);
+            for (int k = 0; k < words.length; k++) {
+                if (k > 0 && words[k] == words[k - 1]) {
+                    values.set(values.size() - 1, values.get(values.size() - 1) + 1);
+                } else {
+                    columnIndices.add(words[k]);
+                    values.add(1.0);
+                }
+            }
+            rowPointers[i + 1] = values.size();
+        }
+        int[] columns = new int[columnIndices.size()];
+        double[] counts = new double[values.size()];
+        for (int k = 0; k < columns.length; k++) {
+            columns[k] = columnIndices.get(k);
+            counts[k] = values.get(k);
+        }
+        return new CsrMatrix(instances.size(), vocabularySize, rowPointers, columns, counts);
+    }
+
+    private Tensor createClassLabel(Tensor instance) {
+        double[] data = new double[classCount];
+        data[(int) instance.getData()[instance.getData().length - 1]] = 1.0;
+        return new Tensor(data, new int[]{1, classCount});
+    }
+
+    @Override
+    public void train(ArrayList<Tensor> trainSet) {
+        for (int i = 0; i < parameters.getEpoch(); i++) {
+            this.shuffle(trainSet, new Random(parameters.getSeed()));
+            for (Tensor instance : trainSet) {
+                if (isSparse) {
+                    this.setSparseValue(this.getInputNode(0), createSparseInput(Collections.singletonList(instance)));
+                } else {
+                    this.getInputNode(0).setValue(createDenseInput(Collections.singletonList(instance)));
+                }
+                this.getInputNode(1).setValue(createClassLabel(instance));
+                this.forwardCalculation();
+                this.backpropagation();
+            }
+            endEpoch();
+        }
+    }
+
+    /**
+     * @param instances Documents, each the word ids followed by the class label.
+     * @return Predicted class of every document.
+     */
+    public ArrayList<ArrayList<Double>> predict(List<Tensor> instances) {
+        if (isSparse) {
+            return this.predictBatch(createSparseInput(instances));
+        }
+        return this.predictBatch(createDenseInput(instances));
+    }
+
+    @Override
+    public ClassificationPerformance test(ArrayList<Tensor> testSet) {
+        int count = 0;
+        ArrayList<ArrayList<Double>> outputs = predict(testSet);
+        for (int i = 0; i < testSet.size(); i++) {
+            double[] data = testSet.get(i).getData();
+            if (outputs.get(i).get(0).intValue() == (int) data[data.length - 1]) {
+                count++;
+            }
+        }
+        return new ClassificationPerformance((count + 0.00) / testSet.size());
+    }
+
+    /**
+     * @return Values of all learnable nodes, in forward order.
+     */
+    public double[] getWeights() {
+        return TestUtils.getWeights(getExecutionPlan());
+    }
+
+    @Override
+    protected ArrayList<Double> getOutputValue(Tensor outputValue) {
+        return TestUtils.classLabel(outputValue);
+    }
+
+    /**
+     * Creates documents whose class is the most frequent of the class keywords they contain.
+     * @param count Number of documents.
+     * @param vocabularySize Number of words.
+     * @param classCount Number of classes; word i is a keyword of class i.
+     * @param length Number of words per document.
+     * @param random Random number generator.
+     * @return The documents, each the word ids followed by the class label.
+     */
+    public static ArrayList<Tensor> createDocuments(int count, int vocabularySize, int classCount, int length, Random random) {
+        ArrayList<Tensor> documents = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            double[] data = new double[length + 1];
+            int label = random.nextInt(classCount);
+            for (int k = 0; k < length; k++) {
+                data[k] = k < 2 ? label : classCount + random.nextInt(vocabularySize - classCount);
+            }
+            data[length] = label;
+            documents.add(new Tensor(data, new int[]{length + 1}));
+        }
+        return documents;
+    }
+}
@@ -0,0 +1,58 @@
+import ComputationalGraph.ComputationalGraph;
+import ComputationalGraph.NeuralNetworkParameter;
+import ComputationalGraph.Optimizer.StochasticGradientDescent;
+import ComputationalGraph.Scheduler.ExponentialLR;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Compares the binary checkpoint format with the Java serialization of {@link ComputationalGraph#save(String)}
+ * on a multi-layer perceptron with several million weights.
+ */
+public class CheckpointBenchmark {
+
+    private static NeuralNetworkParameter parameters() {
+        return new NeuralNetworkParameter(1, 1, new StochasticGradientDescent(new ExponentialLR(0.01, 0.99)));
+    }
+
+    public static void main(String[] args) throws IOException {
+        int layers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int width = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+        int repetitions = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        PerceptronNet graph = new PerceptronNet(parameters(), layers, width);
+        PerceptronNet target = new PerceptronNet(parameters(), layers, width);
+        File serialized = File.createTempFile("benchmark", ".bin");
+        File checkpoint = File.createTempFile("benchmark", ".ckpt");
+        try {
+            double serializationSave = 0, serializationLoad = 0, checkpointSave = 0, checkpointLoad = 0;
+            for (int i = 0; i < repetitions; i++) {
+                long start = System.nanoTime();
+                graph.save(serialized.getPath());
+                serializationSave += TestUtils.milliseconds(start);
+                start = System.nanoTime();
+                ComputationalGraph loaded = ComputationalGraph.loadModel(serialized.getPath());
+                serializationLoad += TestUtils.milliseconds(start);
+                if (loaded == null) {
+                    throw new IOException("Serialized model could not be loaded.");
+                }
+                start = System.nanoTime();
+                graph.saveCheckpoint(checkpoint.getPath());
+                checkpointSave += TestUtils.milliseconds(start);
+                start = System.nanoTime();
+                target.loadCheckpoint(checkpoint.getPath());
+                checkpointLoad += TestUtils.milliseconds(start);
+            }
+            if (!Arrays.equals(target.getWeights(), graph.getWeights())) {
+                throw new IllegalStateException("Checkpoint was not loaded correctly.");
+            }
+            System.out.printf("%-20s %12s %12s %14s%n", "Format", "Save (ms)", "Load (ms)", "Size (bytes)");
+            System.out.printf("%-20s %12.1f %12.1f %14d%n", "Java serialization", serializationSave / repetitions, serializationLoad / repetitions, serialized.length());
+            System.out.printf("%-20s %12.1f %12.1f %14d%n", "Binary checkpoint", checkpointSave / repetitions, checkpointLoad / repetitions, checkpoint.length());
+        } finally {
+            serialized.delete();
+            checkpoint.delete();
+        }
+    }
+}
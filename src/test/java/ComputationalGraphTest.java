@@ -1,16 +1,41 @@
 import Classification.Performance.ClassificationPerformance;
 import ComputationalGraph.*;
+import ComputationalGraph.Checkpoint.Checkpointer;
+import ComputationalGraph.Clipping.ClippingByGlobalNorm;
+import ComputationalGraph.Compression.QuantizedProduct;
+import ComputationalGraph.Compression.SparseProduct;
+import ComputationalGraph.Data.*;
+import ComputationalGraph.Function.*;
+import ComputationalGraph.Initialization.RandomInitialization;
+import ComputationalGraph.Kernel.MatrixMultiplication;
+import ComputationalGraph.Kernel.QuantizedMatrixMultiplication;
+import ComputationalGraph.Kernel.SparseMatrixMultiplication;
 import ComputationalGraph.Loss.CrossEntropyLoss;
 import ComputationalGraph.Loss.Loss;
+import ComputationalGraph.Loss.SoftmaxCrossEntropyLoss;
+import ComputationalGraph.Memory.BufferArena;
+import ComputationalGraph.Memory.HeapArena;
+import ComputationalGraph.Memory.MemoryPlan;
+import ComputationalGraph.Memory.PackedTensor;
+import ComputationalGraph.Memory.ParameterStore;
 import ComputationalGraph.Node.*;
 import ComputationalGraph.Optimizer.*;
+import ComputationalGraph.Pruning.BlockPruning;
+import ComputationalGraph.Pruning.MagnitudePruning;
+import ComputationalGraph.Sparse.BlockSparseMatrix;
+import ComputationalGraph.Sparse.CsrMatrix;
+import ComputationalGraph.Sparse.RowSparseMatrix;
 import ComputationalGraph.Scheduler.ExponentialLR;
 import org.junit.Test;
 import Math.*;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileWriter;
+import java.io.IOException;
 import java.util.*;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Supplier;
 
 import static org.junit.Assert.*;
 
@@ -23,8 +48,7 @@ public class ComputationalGraphTest {
         graph.train(new ArrayList<>());
     }
 
-    @Test
-    public void testNeuralNet() throws FileNotFoundException {
+    private void readIris(ArrayList<Tensor> trainList, ArrayList<Tensor> testList) throws FileNotFoundException {
         HashMap<String, Integer> labelMap = new HashMap<>();
         ArrayList<String[]> dataSet = new ArrayList<>();
         Scanner source = new Scanner(new File("iris.txt"));
@@ -37,8 +61,6 @@ public class ComputationalGraphTest {
         }
         source.close();
         Collections.shuffle(dataSet, new Random(1));
-        ArrayList<Tensor> trainList = new ArrayList<>();
-        ArrayList<Tensor> testList = new ArrayList<>();
         for (int i = 0; i < dataSet.size(); i++) {
             ArrayList<Double> values = new ArrayList<>();
             if (i >= 120) {
@@ -55,6 +77,13 @@ public class ComputationalGraphTest {
                 trainList.add(new Tensor(values, new int[]{values.size()}));
             }
         }
+    }
+
+    @Test
+    public void testNeuralNet() throws FileNotFoundException {
+        ArrayList<Tensor> trainList = new ArrayList<>();
+        ArrayList<Tensor> testList = new ArrayList<>();
+        readIris(trainList, testList);
         NeuralNet graph = new NeuralNet(new NeuralNetworkParameter(1, 4, new AdamW(new ExponentialLR(0.002, 0.99), 0.9, 0.999, 1e-10, 0.5), new CrossEntropyLoss(), 0));
         graph.train(trainList);
         ClassificationPerformance performance = graph.test(testList);
@@ -62,6 +91,1134 @@ public class ComputationalGraphTest {
         assertEquals(1.0, performance.getAccuracy(), 0.01);
     }
 
+    @Test
+    public void testExecutionPlan() {
+        ComputationalNode input = new ComputationalNode();
+        ComputationalNode last = input;
+        for (int i = 1; i <= 100000; i++) {
+            ComputationalNode node = new ComputationalNode();
+            last.add(node);
+            if (i % 1000 == 0) {
+                input.add(node);
+            }
+            last = node;
+        }
+        ExecutionPlan plan = new ExecutionPlan(last, last);
+        assertEquals(100001, plan.size());
+        assertEquals(0, plan.indexOf(input));
+        assertEquals(100000, plan.getLossIndex());
+        for (int i = 0; i < plan.size(); i++) {
+            for (int parent : plan.getParentIndices(i)) {
+                assertTrue(parent < i);
+            }
+        }
+    }
+
+    @Test
+    public void testPredictBatch() throws FileNotFoundException {
+        ArrayList<Tensor> trainList = new ArrayList<>();
+        ArrayList<Tensor> testList = new ArrayList<>();
+        readIris(trainList, testList);
+        NeuralNet graph = new NeuralNet(new NeuralNetworkParameter(1, 2, new AdamW(new ExponentialLR(0.002, 0.99), 0.9, 0.999, 1e-10, 0.5), new CrossEntropyLoss(), 0));
+        graph.train(trainList);
+        ArrayList<Tensor> inputs = graph.createInputs(testList);
+        ArrayList<ArrayList<Double>> outputs = graph.predict(inputs);
+        assertEquals(inputs.size(), outputs.size());
+        for (int i = 0; i < inputs.size(); i++) {
+            assertEquals(graph.predict(inputs.get(i)), outputs.get(i));
+        }
+        NeuralNet stacked = new NeuralNet(new NeuralNetworkParameter(1, 4, new AdamW(new ExponentialLR(0.002, 0.99), 0.9, 0.999, 1e-10, 0.5), new RandomInitialization(), new CrossEntropyLoss(), 0, 1));
+        stacked.train(trainList);
+        ArrayList<Tensor> columns = new ArrayList<>();
+        for (Tensor input : inputs) {
+            columns.add(new Tensor(input.getData(), new int[]{1, 1, input.getShape()[1]}));
+        }
+        outputs = stacked.predict(columns);
+        assertEquals(columns.size(), outputs.size());
+        for (int i = 0; i < columns.size(); i++) {
+            assertEquals(stacked.predict(columns.get(i)), outputs.get(i));
+        }
+        assertTrue(new HashSet<>(outputs).size() > 1);
+        ArrayList<HeapArena> arenas = new ArrayList<>();
+        NeuralNet reused = new NeuralNet(new NeuralNetworkParameter(1, 2, new AdamW(new ExponentialLR(0.002, 0.99), 0.9, 0.999, 1e-10, 0.5), new CrossEntropyLoss(), 0)) {
+            @Override
+            protected BufferArena createBufferArena() {
+                HeapArena arena = new HeapArena();
+                arenas.add(arena);
+                return arena;
+            }
+        };
+        outputs = reused.predict(inputs);
+        assertEquals(outputs, reused.predict(inputs));
+        long allocated = arenas.get(0).getAllocatedBytes();
+        assertTrue(allocated > 0);
+        assertEquals(outputs, reused.predict(inputs));
+        assertEquals(allocated, arenas.get(0).getAllocatedBytes());
+        assertEquals(outputs.subList(0, 5), reused.predict(inputs.subList(0, 5)));
+        assertEquals(outputs.subList(0, 5), reused.predict(inputs.subList(0, 5)));
+        assertEquals(outputs, reused.predict(inputs));
+        assertEquals(1, arenas.size());
+    }
+
+    @Test
+    public void testConcurrentPredict() throws Exception {
+        ArrayList<Tensor> trainList = new ArrayList<>();
+        ArrayList<Tensor> testList = new ArrayList<>();
+        readIris(trainList, testList);
+        NeuralNet graph = new NeuralNet(new NeuralNetworkParameter(1, 4, new AdamW(new ExponentialLR(0.002, 0.99), 0.9, 0.999, 1e-10, 0.5), new CrossEntropyLoss(), 0));
+        graph.train(trainList);
+        double expected = graph.test(testList).getAccuracy();
+        Thread[] threads = new Thread[8];
+        double[] accuracies = new double[threads.length];
+        for (int i = 0; i < threads.length; i++) {
+            int index = i;
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 20; j++) {
+                    accuracies[index] += graph.test(testList).getAccuracy() / 20;
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (double accuracy : accuracies) {
+            assertEquals(expected, accuracy, 1e-9);
+        }
+        ArrayList<Tensor> inputs = graph.createInputs(testList);
+        ArrayList<ArrayList<Double>> labels = new ArrayList<>();
+        for (Tensor input : inputs) {
+            labels.add(graph.predict(input));
+        }
+        int[] correct = new int[threads.length];
+        for (int i = 0; i < threads.length; i++) {
+            int index = i;
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 20; j++) {
+                    for (int k = 0; k < inputs.size(); k++) {
+                        int instance = (k + 3 * index) % inputs.size();
+                        if (labels.get(instance).equals(graph.predict(inputs.get(instance)))) {
+                            correct[index]++;
+                        }
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int count : correct) {
+            assertEquals(20 * inputs.size(), count);
+        }
+    }
+
+    @Test
+    public void testMemoryPlan() throws FileNotFoundException {
+        ArrayList<Tensor> trainList = new ArrayList<>();
+        ArrayList<Tensor> testList = new ArrayList<>();
+        readIris(trainList, testList);
+        NeuralNet graph = new NeuralNet(new NeuralNetworkParameter(1, 2, new AdamW(new ExponentialLR(0.002, 0.99), 0.9, 0.999, 1e-10, 0.5), new CrossEntropyLoss(), 0.2));
+        assertNull(graph.getMemoryPlan());
+        graph.train(trainList);
+        MemoryPlan memoryPlan = graph.getMemoryPlan();
+        assertNotNull(memoryPlan);
+        assertTrue(memoryPlan.getPlannedPeakBytes() > 0);
+        assertTrue(memoryPlan.getPlannedPeakBytes() < memoryPlan.getNaivePeakBytes());
+    }
+
+    @Test
+    public void testParallelExecutor() throws FileNotFoundException {
+        ArrayList<Tensor> trainList = new ArrayList<>();
+        ArrayList<Tensor> testList = new ArrayList<>();
+        readIris(trainList, testList);
+        NeuralNet sequential = new NeuralNet(new NeuralNetworkParameter(1, 2, new AdamW(new ExponentialLR(0.002, 0.99), 0.9, 0.999, 1e-10, 0.5), new CrossEntropyLoss(), 0.2));
+        sequential.train(new ArrayList<>(trainList));
+        NeuralNet parallel = new NeuralNet(new NeuralNetworkParameter(1, 2, new AdamW(new ExponentialLR(0.002, 0.99), 0.9, 0.999, 1e-10, 0.5), new CrossEntropyLoss(), 0.2));
+        ParallelExecutor executor = new ParallelExecutor(4, 0);
+        parallel.setExecutor(executor);
+        parallel.train(new ArrayList<>(trainList));
+        assertArrayEquals(sequential.getWeights(), parallel.getWeights(), 0.0);
+        assertEquals(sequential.test(testList).getAccuracy(), parallel.test(testList).getAccuracy(), 0.0);
+        executor.shutdown();
+    }
+
+    private Tensor randomTensor(int[] shape, Random random) {
+        int size = 1;
+        for (int dimension : shape) {
+            size *= dimension;
+        }
+        double[] values = new double[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = random.nextDouble() - 0.5;
+        }
+        return new Tensor(values, shape);
+    }
+
+    /**
+     * Multiplies the matrices of two tensors, the second of which may be a single matrix shared by all of the
+     * first, accumulating every element over the inner dimension in increasing order.
+     */
+    private Tensor naiveProduct(Tensor a, Tensor b) {
+        int[] shapeA = a.getShape();
+        int[] shapeB = b.getShape();
+        int rows = shapeA[shapeA.length - 2];
+        int inner = shapeA[shapeA.length - 1];
+        int columns = shapeB[shapeB.length - 1];
+        int batch = a.getData().length / (rows * inner);
+        boolean shared = b.getData().length == inner * columns;
+        double[] values = new double[batch * rows * columns];
+        for (int q = 0; q < batch; q++) {
+            int offsetB = shared ? 0 : q * inner * columns;
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < columns; j++) {
+                    double sum = 0.0;
+                    for (int t = 0; t < inner; t++) {
+                        sum += a.getData()[q * rows * inner + i * inner + t] * b.getData()[offsetB + t * columns + j];
+                    }
+                    values[q * rows * columns + i * columns + j] = sum;
+                }
+            }
+        }
+        int[] shape = shapeA.clone();
+        shape[shape.length - 1] = columns;
+        return new Tensor(values, shape);
+    }
+
+    @Test
+    public void testMatrixMultiplication() {
+        Random random = new Random(1);
+        int[][][] shapes = {{{3, 5}, {5, 4}}, {{2, 3, 5}, {5, 4}}, {{2, 3, 5}, {2, 5, 4}}, {{64, 300}, {300, 200}}};
+        for (int[][] shape : shapes) {
+            Tensor a = randomTensor(shape[0], random);
+            Tensor b = randomTensor(shape[1], random);
+            int[] axesA = new int[a.getShape().length];
+            int[] axesB = new int[b.getShape().length];
+            for (int i = 0; i < axesA.length; i++) {
+                axesA[i] = i;
+            }
+            for (int i = 0; i < axesB.length; i++) {
+                axesB[i] = i;
+            }
+            axesA[axesA.length - 1] = axesA.length - 2;
+            axesA[axesA.length - 2] = axesA.length - 1;
+            axesB[axesB.length - 1] = axesB.length - 2;
+            axesB[axesB.length - 2] = axesB.length - 1;
+            Tensor expected = naiveProduct(a, b);
+            assertArrayEquals(expected.getShape(), a.multiply(b).getShape());
+            Tensor[] results = {MatrixMultiplication.multiply(a, false, b, false),
+                    MatrixMultiplication.multiply(a.transpose(axesA), true, b, false),
+                    MatrixMultiplication.multiply(a, false, b.transpose(axesB), true),
+                    MatrixMultiplication.multiply(a.transpose(axesA), true, b.transpose(axesB), true)};
+            for (Tensor result : results) {
+                assertArrayEquals(expected.getShape(), result.getShape());
+                assertArrayEquals(expected.getData(), result.getData(), 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void testFusion() throws FileNotFoundException {
+        ArrayList<Tensor> trainList = new ArrayList<>();
+        ArrayList<Tensor> testList = new ArrayList<>();
+        readIris(trainList, testList);
+        GeluNet unfused = new GeluNet(new NeuralNetworkParameter(1, 2, new StochasticGradientDescent(new ExponentialLR(0.01, 0.99)), new CrossEntropyLoss(), 0), false);
+        GeluNet fused = new GeluNet(new NeuralNetworkParameter(1, 2, new StochasticGradientDescent(new ExponentialLR(0.01, 0.99)), new CrossEntropyLoss(), 0), true);
+        assertEquals(3, fused.getRemovedNodes());
+        assertArrayEquals(unfused.getWeights(), fused.getWeights(), 0.0);
+        unfused.train(trainList);
+        fused.train(trainList);
+        assertArrayEquals(unfused.getWeights(), fused.getWeights(), 0.0);
+        assertEquals(unfused.test(testList).getAccuracy(), fused.test(testList).getAccuracy(), 0.0);
+    }
+
+    @Test
+    public void testFreeze() throws FileNotFoundException {
+        ArrayList<Tensor> trainList = new ArrayList<>();
+        ArrayList<Tensor> testList = new ArrayList<>();
+        readIris(trainList, testList);
+        GeluNet graph = new GeluNet(new NeuralNetworkParameter(1, 2, new StochasticGradientDescent(new ExponentialLR(0.01, 0.99)), new CrossEntropyLoss(), 0), false);
+        double[] initial = graph.getWeights();
+        graph.freezeFirstLayer();
+        graph.train(trainList);
+        double[] trained = graph.getWeights();
+        for (int i = 0; i < 40; i++) {
+            assertEquals(initial[i], trained[i], 0.0);
+        }
+        boolean changed = false;
+        for (int i = 40; i < initial.length; i++) {
+            if (initial[i] != trained[i]) {
+                changed = true;
+            }
+        }
+        assertTrue(changed);
+    }
+
+    @Test
+    public void testSoftmaxCrossEntropyLoss() throws FileNotFoundException {
+        ArrayList<Tensor> trainList = new ArrayList<>();
+        ArrayList<Tensor> testList = new ArrayList<>();
+        readIris(trainList, testList);
+        NeuralNet graph = new NeuralNet(new NeuralNetworkParameter(1, 4, new AdamW(new ExponentialLR(0.002, 0.99), 0.9, 0.999, 1e-10, 0.5), new SoftmaxCrossEntropyLoss(), 0));
+        graph.train(trainList);
+        assertEquals(1.0, graph.test(testList).getAccuracy(), 0.01);
+        SoftmaxCrossEntropyNode node = new SoftmaxCrossEntropyNode(0);
+        Tensor logits = new Tensor(new double[]{1000.0, 0.0, -1000.0, 1.0, 2.0, 3.0}, new int[]{2, 3});
+        Tensor labels = new Tensor(new double[]{0.0, 0.0, 1.0, 0.0, 1.0, 0.0}, new int[]{2, 3});
+        FunctionResults results = node.calculate(logits, labels, null);
+        assertEquals(-2000.0 / 2, results.output().getData()[2], 1e-9);
+        Tensor gradient = node.derivative(results.context(), labels, new Tensor(new double[]{1, 1, 1, 1, 1, 1}, new int[]{2, 3}));
+        double[] probabilities = results.context().getData();
+        for (int i = 0; i < 6; i++) {
+            assertFalse(Double.isNaN(results.output().getData()[i]));
+            assertEquals((labels.getData()[i] - probabilities[i]) / 2, gradient.getData()[i], 1e-15);
+        }
+        ExecutionContext context = new ExecutionContext(graph.getPlan(), new HeapArena());
+        double[] buffer = context.allocateContext(0, 6);
+        assertSame(buffer, context.allocateContext(0, 6));
+        FunctionResults buffered = node.calculate(logits, labels, new double[6], buffer);
+        assertSame(buffer, buffered.context().getData());
+        assertArrayEquals(probabilities, buffer, 0.0);
+        double[] gradientBuffer = new double[6];
+        node.derivative(buffered.context(), labels, new Tensor(new double[]{1, 1, 1, 1, 1, 1}, new int[]{2, 3}), gradientBuffer);
+        assertArrayEquals(gradient.getData(), gradientBuffer, 0.0);
+    }
+
+    /**
+     * Checks calculate and derivative, and their allocation-free counterparts, against the expected output and
+     * gradient. Every check uses a new function from the factory, so that functions with a random number
+     * generator start from the same state.
+     */
+    private void assertFunction(Supplier<Function> factory, Tensor input, Tensor backward, double[] output, double[] gradient) {
+        Function function = factory.get();
+        FunctionResults results = function.calculate(input);
+        assertArrayEquals(output, results.output().getData(), 1e-12);
+        Tensor value = results.context() != null ? results.context() : results.output();
+        assertArrayEquals(gradient, function.derivative(value, backward).getData(), 1e-12);
+        function = factory.get();
+        double[] values = new double[output.length];
+        Tensor context = function.calculateInto(input, values);
+        assertArrayEquals(output, values, 1e-12);
+        double[] gradients = new double[gradient.length];
+        function.derivativeInto(context != null ? context : new Tensor(values, input.getShape()), backward, gradients);
+        assertArrayEquals(gradient, gradients, 1e-12);
+    }
+
+    /**
+     * Checks an element-wise function against its closed form f(x) and the closed form of its derivative f'(x).
+     */
+    private void assertElementwise(Supplier<Function> factory, Tensor input, Tensor backward, DoubleUnaryOperator function, DoubleUnaryOperator derivative) {
+        double[] x = input.getData();
+        double[] b = backward.getData();
+        double[] output = new double[x.length];
+        double[] gradient = new double[x.length];
+        for (int i = 0; i < x.length; i++) {
+            output[i] = function.applyAsDouble(x[i]);
+            gradient[i] = derivative.applyAsDouble(x[i]) * b[i];
+        }
+        assertFunction(factory, input, backward, output, gradient);
+    }
+
+    @Test
+    public void testFunctionInto() {
+        Random random = new Random(1);
+        double[] x = new double[24];
+        double[] positive = new double[24];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = 4 * (random.nextDouble() - 0.5);
+            positive[i] = Math.abs(x[i]) + 0.1;
+        }
+        Tensor input = new Tensor(x, new int[]{4, 6});
+        Tensor backward = randomTensor(new int[]{4, 6}, random);
+        assertElementwise(ReLU::new, input, backward, v -> Math.max(v, 0), v -> v > 0 ? 1 : 0);
+        assertElementwise(Sigmoid::new, input, backward, v -> 1 / (1 + Math.exp(-v)), v -> Math.exp(-v) / ((1 + Math.exp(-v)) * (1 + Math.exp(-v))));
+        assertElementwise(Tanh::new, input, backward, Math::tanh, v -> 1 - Math.tanh(v) * Math.tanh(v));
+        assertElementwise(() -> new ELU(1.5), input, backward, v -> v < 0 ? 1.5 * (Math.exp(v) - 1) : v, v -> v < 0 ? 1.5 * Math.exp(v) : 1);
+        assertElementwise(Softplus::new, input, backward, v -> Math.log(1 + Math.exp(v)), v -> 1 / (1 + Math.exp(-v)));
+        assertElementwise(Logarithm::new, new Tensor(positive, new int[]{4, 6}), backward, Math::log, v -> 1 / v);
+        assertElementwise(() -> new Power(3), input, backward, v -> v * v * v, v -> 3 * v * v);
+        assertElementwise(Negation::new, input, backward, v -> -v, v -> -1);
+        assertElementwise(() -> new DivideByDimensionSize(1), input, backward, v -> v / 6, v -> 1.0 / 6);
+        assertElementwise(() -> new AdditionByConstant(0.5), input, backward, v -> v + 0.5, v -> 1);
+        assertElementwise(() -> new MultiplyByConstant(3), input, backward, v -> 3 * v, v -> 3);
+        assertElementwise(DELU::new, input, backward, v -> v > 1.25643 ? v : (Math.exp(v) - 1) / 2, v -> v > 1.25643 ? 1 : Math.exp(v) / 2);
+        double[] b = backward.getData();
+        double[] output = new double[24];
+        double[] gradient = new double[24];
+        for (int i = 0; i < 4; i++) {
+            double sum = 0.0;
+            for (int j = 0; j < 6; j++) {
+                sum += Math.exp(x[i * 6 + j]);
+            }
+            double product = 0.0;
+            for (int j = 0; j < 6; j++) {
+                output[i * 6 + j] = Math.exp(x[i * 6 + j]) / sum;
+                product += output[i * 6 + j] * b[i * 6 + j];
+            }
+            for (int j = 0; j < 6; j++) {
+                gradient[i * 6 + j] = output[i * 6 + j] * (b[i * 6 + j] - product);
+            }
+        }
+        assertFunction(Softmax::new, input, backward, output, gradient);
+        Random mask = new Random(7);
+        for (int i = 0; i < 24; i++) {
+            double multiplier = mask.nextDouble() > 0.3 ? 1 / 0.7 : 0.0;
+            output[i] = x[i] * multiplier;
+            gradient[i] = b[i] * multiplier;
+        }
+        assertFunction(() -> new Dropout(0.3, new Random(7)), input, backward, output, gradient);
+    }
+
+    @Test
+    public void testBiasAddNode() throws FileNotFoundException {
+        ArrayList<Tensor> trainList = new ArrayList<>();
+        ArrayList<Tensor> testList = new ArrayList<>();
+        readIris(trainList, testList);
+        GeluNet columnBiased = new GeluNet(new NeuralNetworkParameter(1, 3, new Adam(new ExponentialLR(0.01, 0.99), 0.9, 0.999, 1e-8), new CrossEntropyLoss(), 0), false);
+        GeluNet biasNodes = new GeluNet(new NeuralNetworkParameter(1, 3, new Adam(new ExponentialLR(0.01, 0.99), 0.9, 0.999, 1e-8), new CrossEntropyLoss(), 0), false, true);
+        assertArrayEquals(columnBiased.getWeights(), biasNodes.getWeights(), 0.0);
+        columnBiased.train(trainList);
+        biasNodes.train(trainList);
+        assertArrayEquals(columnBiased.getWeights(), biasNodes.getWeights(), 0.0);
+        assertEquals(columnBiased.test(testList).getAccuracy(), biasNodes.test(testList).getAccuracy(), 0.0);
+    }
+
+    @Test
+    public void testLinearNode() throws FileNotFoundException {
+        ArrayList<Tensor> trainList = new ArrayList<>();
+        ArrayList<Tensor> testList = new ArrayList<>();
+        readIris(trainList, testList);
+        NeuralNet separate = new NeuralNet(new NeuralNetworkParameter(1, 2, new AdamW(new ExponentialLR(0.002, 0.99), 0.9, 0.999, 1e-10, 0.5), new CrossEntropyLoss(), 0.2));
+        NeuralNet linear = new NeuralNet(new NeuralNetworkParameter(1, 2, new AdamW(new ExponentialLR(0.002, 0.99), 0.9, 0.999, 1e-10, 0.5), new CrossEntropyLoss(), 0.2), true);
+        separate.train(new ArrayList<>(trainList));
+        linear.train(new ArrayList<>(trainList));
+        assertArrayEquals(separate.getWeights(), linear.getWeights(), 0.0);
+        assertEquals(separate.test(testList).getAccuracy(), linear.test(testList).getAccuracy(), 0.0);
+        Random random = new Random(3);
+        Tensor x = randomTensor(new int[]{5, 7}, random);
+        Tensor w = randomTensor(new int[]{7, 4}, random);
+        Tensor b = randomTensor(new int[]{1, 4}, random);
+        FunctionResults results = new LinearNode(false, new Tanh()).calculate(x, w, b, null);
+        double[] product = MatrixMultiplication.multiply(x, false, w, false).getData();
+        for (int i = 0; i < product.length; i++) {
+            assertEquals(Math.tanh(product[i] + b.getData()[i % 4]), results.output().getData()[i], 0.0);
+        }
+    }
+
+    @Test
+    public void testDataLoader() throws FileNotFoundException {
+        ArrayList<Tensor> trainList = new ArrayList<>();
+        ArrayList<Tensor> testList = new ArrayList<>();
+        readIris(trainList, testList);
+        NeuralNetworkParameter parameters = new NeuralNetworkParameter(1, 4, new AdamW(new ExponentialLR(0.002, 0.99), 0.9, 0.999, 1e-10, 0.5), new CrossEntropyLoss(), 0);
+        DataLoader prefetching = new DataLoader(new TensorDataset(trainList), 16, 3, parameters, 3);
+        DataLoader synchronous = new DataLoader(new TensorDataset(trainList), 16, 3, parameters, 0);
+        for (int epoch = 0; epoch < 2; epoch++) {
+            Iterator<Batch> iterator = synchronous.iterator();
+            ArrayList<String> served = new ArrayList<>();
+            for (Batch batch : prefetching) {
+                Batch expected = iterator.next();
+                assertArrayEquals(expected.getInput().getData(), batch.getInput().getData(), 0.0);
+                assertArrayEquals(expected.getLabels().getData(), batch.getLabels().getData(), 0.0);
+                assertArrayEquals(new int[]{batch.size(), 4}, batch.getInput().getShape());
+                assertArrayEquals(new int[]{batch.size(), 3}, batch.getLabels().getShape());
+                for (int i = 0; i < batch.size(); i++) {
+                    double[] row = Arrays.copyOfRange(batch.getInput().getData(), 4 * i, 4 * i + 5);
+                    for (int k = 0; k < 3; k++) {
+                        if (batch.getLabels().getData()[3 * i + k] == 1.0) {
+                            row[4] = k;
+                        }
+                    }
+                    served.add(Arrays.toString(row));
+                }
+            }
+            assertFalse(iterator.hasNext());
+            ArrayList<String> expected = new ArrayList<>();
+            for (Tensor instance : trainList) {
+                expected.add(Arrays.toString(instance.getData()));
+            }
+            Collections.sort(served);
+            Collections.sort(expected);
+            assertEquals(expected, served);
+        }
+        prefetching.shutdown();
+        NeuralNet graph = new NeuralNet(parameters);
+        DataLoader loader = new DataLoader(new TensorDataset(trainList), 1, 3, parameters, 4);
+        graph.fit(loader);
+        loader.shutdown();
+        assertEquals(1.0, graph.test(testList).getAccuracy(), 0.04);
+    }
+
+    @Test
+    public void testMappedDataset() throws IOException {
+        File text = new File("iris.txt");
+        File doubles = File.createTempFile("iris", ".bin");
+        File floats = File.createTempFile("iris", ".bin");
+        try {
+            HashMap<String, Integer> classMap = DatasetConverter.convert(text.getPath(), ",", doubles.getPath(), MappedDataset.FLOAT64);
+            DatasetConverter.convert(text.getPath(), ",", floats.getPath(), MappedDataset.FLOAT32);
+            assertEquals(3, classMap.size());
+            MappedDataset dataset = new MappedDataset(doubles.getPath());
+            MappedDataset singlePrecision = new MappedDataset(floats.getPath());
+            assertEquals(150, dataset.size());
+            assertEquals(5, dataset.rowLength());
+            assertEquals(MappedDataset.HEADER_SIZE + 150 * 5 * 8, doubles.length());
+            assertEquals(MappedDataset.HEADER_SIZE + 150 * 5 * 4, floats.length());
+            Scanner source = new Scanner(text);
+            double[] row = new double[5];
+            double[] floatRow = new double[5];
+            for (int i = 0; source.hasNextLine(); i++) {
+                String[] instance = source.nextLine().split(",");
+                dataset.readRow(i, row, 0);
+                singlePrecision.readRow(i, floatRow, 0);
+                for (int j = 0; j < 4; j++) {
+                    assertEquals(Double.parseDouble(instance[j]), row[j], 0.0);
+                    assertEquals((float) Double.parseDouble(instance[j]), floatRow[j], 0.0);
+                }
+                assertEquals(classMap.get(instance[4]), row[4], 0.0);
+            }
+            source.close();
+            double[] rows = new double[10];
+            dataset.readRows(148, 2, rows, 0);
+            dataset.readRow(149, row, 0);
+            assertArrayEquals(row, Arrays.copyOfRange(rows, 5, 10), 0.0);
+            DataLoader loader = new DataLoader(dataset, 32, 3, new NeuralNetworkParameter(1, 1, new StochasticGradientDescent(new ExponentialLR(0.01, 0.99))), 2);
+            int instances = 0;
+            for (Batch batch : loader) {
+                instances += batch.size();
+            }
+            loader.shutdown();
+            assertEquals(150, instances);
+            dataset.close();
+            singlePrecision.close();
+            try {
+                dataset.readRow(0, row, 0);
+                fail();
+            } catch (IllegalStateException e) {
+                assertEquals("Dataset is closed.", e.getMessage());
+            }
+        } finally {
+            doubles.delete();
+            floats.delete();
+        }
+        File invalid = File.createTempFile("invalid", ".txt");
+        File binary = File.createTempFile("invalid", ".bin");
+        try {
+            String[] contents = {"1.0,2.0,0\n\n3.0,4.0,setosa\n", "1.0,2.0,setosa\n3.0,x,setosa\n"};
+            String[] messages = {"Line 3 has the value \"setosa\" in column 3, which is not a number.",
+                    "Line 2 has the value \"x\" in column 2, which is not a number."};
+            for (int i = 0; i < contents.length; i++) {
+                try (FileWriter writer = new FileWriter(invalid)) {
+                    writer.write(contents[i]);
+                }
+                try {
+                    DatasetConverter.convert(invalid.getPath(), ",", binary.getPath(), MappedDataset.FLOAT64);
+                    fail();
+                } catch (IOException e) {
+                    assertEquals(messages[i], e.getMessage());
+                }
+            }
+        } finally {
+            invalid.delete();
+            binary.delete();
+        }
+    }
+
+    @Test
+    public void testCheckpoint() throws IOException {
+        ArrayList<Tensor> trainList = new ArrayList<>();
+        ArrayList<Tensor> testList = new ArrayList<>();
+        readIris(trainList, testList);
+        GeluNet trained = new GeluNet(new NeuralNetworkParameter(1, 2, new StochasticGradientDescent(new ExponentialLR(0.01, 0.99)), new CrossEntropyLoss(), 0), false);
+        trained.train(trainList);
+        File file = File.createTempFile("gelu", ".ckpt");
+        try {
+            trained.saveCheckpoint(file.getPath());
+            GeluNet loaded = new GeluNet(new NeuralNetworkParameter(1, 2, new StochasticGradientDescent(new ExponentialLR(0.01, 0.99)), new CrossEntropyLoss(), 0), false);
+            loaded.loadCheckpoint(file.getPath());
+            assertArrayEquals(trained.getWeights(), loaded.getWeights(), 0.0);
+            assertEquals(trained.test(testList).getAccuracy(), loaded.test(testList).getAccuracy(), 0.0);
+            GeluNet other = new GeluNet(new NeuralNetworkParameter(1, 2, new StochasticGradientDescent(new ExponentialLR(0.01, 0.99)), new CrossEntropyLoss(), 0), false, true);
+            try {
+                other.loadCheckpoint(file.getPath());
+                fail();
+            } catch (IOException expected) {
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testResume() throws IOException {
+        ArrayList<Tensor> trainList = new ArrayList<>();
+        ArrayList<Tensor> testList = new ArrayList<>();
+        readIris(trainList, testList);
+        NeuralNet continuous = new NeuralNet(new NeuralNetworkParameter(1, 2, new AdamW(new ExponentialLR(0.002, 0.99), 0.9, 0.999, 1e-10, 0.5), new CrossEntropyLoss(), 0.2));
+        continuous.train(new ArrayList<>(trainList));
+        File file = File.createTempFile("resume", ".ckpt");
+        try {
+            // train(ArrayList) shuffles the list in place, so the resumed run continues on the same list to keep the data order.
+            ArrayList<Tensor> interruptedList = new ArrayList<>(trainList);
+            NeuralNet interrupted = new NeuralNet(new NeuralNetworkParameter(1, 1, new AdamW(new ExponentialLR(0.002, 0.99), 0.9, 0.999, 1e-10, 0.5), new CrossEntropyLoss(), 0.2));
+            Checkpointer checkpointer = new Checkpointer(file.getPath(), 0, 1);
+            interrupted.setCheckpointer(checkpointer);
+            interrupted.train(interruptedList);
+            checkpointer.shutdown();
+            NeuralNet resumed = new NeuralNet(new NeuralNetworkParameter(1, 1, new AdamW(new ExponentialLR(0.002, 0.99), 0.9, 0.999, 1e-10, 0.5), new CrossEntropyLoss(), 0.2));
+            assertEquals(trainList.size(), resumed.resume(file.getPath()));
+            resumed.train(interruptedList);
+            assertArrayEquals(continuous.getWeights(), resumed.getWeights(), 0.0);
+            GeluNet other = new GeluNet(new NeuralNetworkParameter(1, 1, new StochasticGradientDescent(new ExponentialLR(0.01, 0.99)), new CrossEntropyLoss(), 0), false);
+            try {
+                other.resume(file.getPath());
+                fail();
+            } catch (IOException expected) {
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testResumeFit() throws IOException {
+        ArrayList<Tensor> trainList = new ArrayList<>();
+        ArrayList<Tensor> testList = new ArrayList<>();
+        readIris(trainList, testList);
+        AdamW optimizer = new AdamW(new ExponentialLR(0.002, 0.99), 0.9, 0.999, 1e-10, 0.5);
+        optimizer.setPruning(new MagnitudePruning(0.5, 3));
+        NeuralNetworkParameter parameters = new NeuralNetworkParameter(1, 3, optimizer, new CrossEntropyLoss(), 0.2);
+        NeuralNet continuous = new NeuralNet(parameters);
+        continuous.fit(new DataLoader(new TensorDataset(new ArrayList<>(trainList)), 16, 3, parameters, 0));
+        File file = File.createTempFile("resume", ".ckpt");
+        try {
+            optimizer = new AdamW(new ExponentialLR(0.002, 0.99), 0.9, 0.999, 1e-10, 0.5);
+            optimizer.setPruning(new MagnitudePruning(0.5, 3));
+            parameters = new NeuralNetworkParameter(1, 2, optimizer, new CrossEntropyLoss(), 0.2);
+            NeuralNet interrupted = new NeuralNet(parameters);
+            Checkpointer checkpointer = new Checkpointer(file.getPath(), 5, 0);
+            interrupted.setCheckpointer(checkpointer);
+            DataLoader loader = new DataLoader(new TensorDataset(new ArrayList<>(trainList)), 16, 3, parameters, 2);
+            interrupted.fit(loader);
+            loader.shutdown();
+            checkpointer.shutdown();
+            optimizer = new AdamW(new ExponentialLR(0.002, 0.99), 0.9, 0.999, 1e-10, 0.5);
+            optimizer.setPruning(new MagnitudePruning(0.5, 3));
+            parameters = new NeuralNetworkParameter(1, 3, optimizer, new CrossEntropyLoss(), 0.2);
+            NeuralNet resumed = new NeuralNet(parameters);
+            loader = new DataLoader(new TensorDataset(new ArrayList<>(trainList)), 16, 3, parameters, 0);
+            // The last checkpoint is taken in the middle of the second epoch, so only the rest of it and the
+            // third epoch remain.
+            assertEquals(15, resumed.resume(file.getPath(), loader));
+            resumed.fit(loader);
+            assertArrayEquals(continuous.getWeights(), resumed.getWeights(), 0.0);
+            try {
+                resumed.resume(file.getPath(), new DataLoader(new TensorDataset(new ArrayList<>(testList)), 16, 3, parameters, 0));
+                fail();
+            } catch (IOException expected) {
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testLegacyOptimizer() throws FileNotFoundException {
+        ArrayList<Tensor> trainList = new ArrayList<>();
+        ArrayList<Tensor> testList = new ArrayList<>();
+        readIris(trainList, testList);
+        GeluNet fused = new GeluNet(new NeuralNetworkParameter(1, 2, new SGDMomentum(new ExponentialLR(0.01, 0.99), 0.9), new CrossEntropyLoss(), 0), false);
+        GeluNet legacy = new GeluNet(new NeuralNetworkParameter(1, 2, new LegacyMomentum(new ExponentialLR(0.01, 0.99), 0.9), new CrossEntropyLoss(), 0), false);
+        fused.train(new ArrayList<>(trainList));
+        legacy.train(new ArrayList<>(trainList));
+        assertArrayEquals(fused.getWeights(), legacy.getWeights(), 0.0);
+        Optimizer[][] pairs = {
+                {new StochasticGradientDescent(new ExponentialLR(0.01, 0.99)), new Optimizer(new ExponentialLR(0.01, 0.99)) {}},
+                {new Adam(new ExponentialLR(0.01, 0.99), 0.9, 0.999, 1e-8), new LegacyAdam(new ExponentialLR(0.01, 0.99), 0.9, 0.999, 1e-8, 0)},
+                {new AdamW(new ExponentialLR(0.01, 0.99), 0.9, 0.999, 1e-8, 0.5), new LegacyAdam(new ExponentialLR(0.01, 0.99), 0.9, 0.999, 1e-8, 0.5)}};
+        for (Optimizer[] pair : pairs) {
+            GeluNet fusedNet = new GeluNet(new NeuralNetworkParameter(1, 2, pair[0], new CrossEntropyLoss(), 0), false);
+            GeluNet legacyNet = new GeluNet(new NeuralNetworkParameter(1, 2, pair[1], new CrossEntropyLoss(), 0), false);
+            fusedNet.train(new ArrayList<>(trainList));
+            legacyNet.train(new ArrayList<>(trainList));
+            assertArrayEquals(fusedNet.getWeights(), legacyNet.getWeights(), 0.0);
+        }
+        StochasticGradientDescent byPlan = new StochasticGradientDescent(new ExponentialLR(0.01, 0.99));
+        StochasticGradientDescent byLeaves = new StochasticGradientDescent(new ExponentialLR(0.01, 0.99));
+        double[] trained = legacy.getWeights();
+        ExecutionPlan plan = legacy.getPlan();
+        ArrayList<ComputationalNode> leafNodes = new ArrayList<>();
+        for (int index : plan.getLeafIndices()) {
+            leafNodes.add(plan.getNode(index));
+        }
+        for (int i = 0; i < plan.learnableSize(); i++) {
+            Tensor value = plan.getLearnableNode(i).getValue();
+            double[] gradient = new double[value.getData().length];
+            Arrays.fill(gradient, 1.0);
+            plan.getLearnableNode(i).setBackward(new Tensor(gradient, value.getShape()));
+        }
+        byLeaves.updateValues(leafNodes);
+        double[] updated = legacy.getWeights();
+        for (int i = 0; i < trained.length; i++) {
+            trained[i] = trained[i] + 0.01;
+        }
+        assertArrayEquals(trained, updated, 0.0);
+        byPlan.updateValues(plan);
+        for (int i = 0; i < trained.length; i++) {
+            trained[i] = trained[i] + 0.01;
+        }
+        assertArrayEquals(trained, legacy.getWeights(), 0.0);
+    }
+
+    @Test
+    public void testParameterStore() throws FileNotFoundException {
+        ArrayList<Tensor> trainList = new ArrayList<>();
+        ArrayList<Tensor> testList = new ArrayList<>();
+        readIris(trainList, testList);
+        Adam adam = new Adam(new ExponentialLR(0.01, 0.99), 0.9, 0.999, 1e-8);
+        GeluNet graph = new GeluNet(new NeuralNetworkParameter(1, 1, adam, new CrossEntropyLoss(), 0), false, true);
+        graph.train(trainList);
+        ExecutionPlan plan = graph.getPlan();
+        ParameterStore store = adam.getParameterStore(plan);
+        assertEquals(4 * 8 + 8 + 8 * 3 + 3, store.size());
+        int offset = 0;
+        for (int i = 0; i < store.count(); i++) {
+            assertEquals(offset, store.getOffset(i));
+            assertEquals(store.getNode(i).getValue().getData().length, store.getLength(i));
+            offset += store.getLength(i);
+        }
+        assertEquals(4, adam.getState(plan).size());
+        double[] velocity = store.getMoment(0).clone();
+        ParameterStore copy = new ParameterStore(plan, store);
+        assertArrayEquals(velocity, copy.getMoment(0), 0.0);
+        assertArrayEquals(store.getMoment(1), copy.getMoment(1), 0.0);
+        ComputationalNode bias = new ComputationalNode(true, false, new Tensor(new double[3], new int[]{1, 1, 3}));
+        ParameterStore broadcast = new ParameterStore(new ExecutionPlan(bias, bias));
+        bias.setBackward(new Tensor(new double[]{1, 2, 3, 4, 5, 6}, new int[]{1, 2, 3}));
+        broadcast.gatherGradient(0);
+        assertArrayEquals(new double[]{5, 7, 9}, broadcast.getGradients(), 0.0);
+        bias.setBackward(new Tensor(new double[18], new int[]{3, 2, 3}));
+        try {
+            broadcast.gatherGradient(0);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().contains("[1, 1, 3]") && expected.getMessage().contains("[3, 2, 3]"));
+        }
+    }
+
+    @Test
+    public void testGlobalNormClipping() throws FileNotFoundException {
+        ArrayList<Tensor> trainList = new ArrayList<>();
+        ArrayList<Tensor> testList = new ArrayList<>();
+        readIris(trainList, testList);
+        GeluNet graph = new GeluNet(new NeuralNetworkParameter(1, 1, new StochasticGradientDescent(new ExponentialLR(0.01, 0.99), new ClippingByGlobalNorm(1e-3)), new CrossEntropyLoss(), 0), false, true);
+        double[] before = graph.getWeights();
+        graph.train(new ArrayList<>(trainList.subList(0, 1)));
+        double[] after = graph.getWeights();
+        double norm = 0.0;
+        for (int i = 0; i < before.length; i++) {
+            norm += (after[i] - before[i]) * (after[i] - before[i]);
+        }
+        assertEquals(0.01 * 1e-3, Math.sqrt(norm), 1e-12);
+        GeluNet sequential = new GeluNet(new NeuralNetworkParameter(1, 2, new Adam(new ExponentialLR(0.01, 0.99), 0.9, 0.999, 1e-8, new ClippingByGlobalNorm(0.5)), new CrossEntropyLoss(), 0), false);
+        GeluNet parallel = new GeluNet(new NeuralNetworkParameter(1, 2, new Adam(new ExponentialLR(0.01, 0.99), 0.9, 0.999, 1e-8, new ClippingByGlobalNorm(0.5, true)), new CrossEntropyLoss(), 0), false);
+        sequential.train(trainList);
+        parallel.train(trainList);
+        assertArrayEquals(sequential.getWeights(), parallel.getWeights(), 0.0);
+    }
+
+    @Test
+    public void testFloatPrecision() throws IOException {
+        ArrayList<Tensor> trainList = new ArrayList<>();
+        ArrayList<Tensor> testList = new ArrayList<>();
+        readIris(trainList, testList);
+        Adam doubleAdam = new Adam(new ExponentialLR(0.01, 0.99), 0.9, 0.999, 1e-8);
+        GeluNet doubleGraph = new GeluNet(new NeuralNetworkParameter(1, 2, doubleAdam, new CrossEntropyLoss(), 0), false);
+        doubleGraph.train(trainList);
+        Adam floatAdam = new Adam(new ExponentialLR(0.01, 0.99), 0.9, 0.999, 1e-8);
+        floatAdam.setStatePrecision(Precision.FLOAT);
+        GeluNet floatGraph = new GeluNet(new NeuralNetworkParameter(1, 2, floatAdam, new CrossEntropyLoss(), 0), false);
+        floatGraph.train(trainList);
+        assertArrayEquals(doubleGraph.getWeights(), floatGraph.getWeights(), 1e-4);
+        ParameterStore doubleStore = doubleAdam.getParameterStore(doubleGraph.getPlan());
+        ParameterStore floatStore = floatAdam.getParameterStore(floatGraph.getPlan());
+        assertEquals(Precision.FLOAT, floatStore.getPrecision());
+        assertEquals(8L * doubleStore.size(), doubleStore.getMemory() - floatStore.getMemory());
+        File doubles = File.createTempFile("gelu", ".ckpt");
+        File floats = File.createTempFile("gelu", ".ckpt");
+        try {
+            doubleGraph.saveCheckpoint(doubles.getPath());
+            floatGraph.saveCheckpoint(floats.getPath(), Precision.FLOAT);
+            assertTrue(floats.length() < doubles.length());
+            GeluNet exact = new GeluNet(new NeuralNetworkParameter(1, 2, new Adam(new ExponentialLR(0.01, 0.99), 0.9, 0.999, 1e-8), new CrossEntropyLoss(), 0), false);
+            floatGraph.saveCheckpoint(doubles.getPath());
+            exact.loadCheckpoint(doubles.getPath());
+            assertArrayEquals(floatGraph.getWeights(), exact.getWeights(), 0.0);
+            GeluNet loaded = new GeluNet(new NeuralNetworkParameter(1, 2, new Adam(new ExponentialLR(0.01, 0.99), 0.9, 0.999, 1e-8), new CrossEntropyLoss(), 0), false);
+            loaded.loadCheckpoint(floats.getPath());
+            double[] weights = floatGraph.getWeights();
+            for (int i = 0; i < weights.length; i++) {
+                assertEquals((float) weights[i], loaded.getWeights()[i], 0.0);
+            }
+            Checkpointer checkpointer = new Checkpointer(floats.getPath(), 0, 1);
+            Adam interruptedAdam = new Adam(new ExponentialLR(0.01, 0.99), 0.9, 0.999, 1e-8);
+            interruptedAdam.setStatePrecision(Precision.FLOAT);
+            GeluNet interrupted = new GeluNet(new NeuralNetworkParameter(1, 1, interruptedAdam, new CrossEntropyLoss(), 0), false);
+            interrupted.setCheckpointer(checkpointer);
+            interrupted.train(trainList);
+            checkpointer.shutdown();
+            Adam resumedAdam = new Adam(new ExponentialLR(0.01, 0.99), 0.9, 0.999, 1e-8);
+            resumedAdam.setStatePrecision(Precision.FLOAT);
+            GeluNet resumed = new GeluNet(new NeuralNetworkParameter(1, 1, resumedAdam, new CrossEntropyLoss(), 0), false);
+            resumed.resume(floats.getPath());
+            resumed.train(trainList);
+            assertArrayEquals(floatGraph.getWeights(), resumed.getWeights(), 0.0);
+        } finally {
+            doubles.delete();
+            floats.delete();
+        }
+    }
+
+    @Test
+    public void testMixedPrecision() throws FileNotFoundException {
+        assertEquals(1.0, PackedTensor.unpack(PackedTensor.pack(1.0 + 0x1p-8, Precision.BFLOAT16), Precision.BFLOAT16), 0.0);
+        assertEquals(1.0 + 0x1p-6, PackedTensor.unpack(PackedTensor.pack(1.0 + 3 * 0x1p-8, Precision.BFLOAT16), Precision.BFLOAT16), 0.0);
+        assertEquals(0.0999755859375, PackedTensor.unpack(PackedTensor.pack(0.1, Precision.HALF), Precision.HALF), 0.0);
+        assertEquals(65504.0, PackedTensor.unpack(PackedTensor.pack(65504.0, Precision.HALF), Precision.HALF), 0.0);
+        assertEquals(Double.POSITIVE_INFINITY, PackedTensor.unpack(PackedTensor.pack(65520.0, Precision.HALF), Precision.HALF), 0.0);
+        assertEquals(-0x1p-23, PackedTensor.unpack(PackedTensor.pack(-1e-7, Precision.HALF), Precision.HALF), 0.0);
+        assertEquals(0.0, PackedTensor.unpack(PackedTensor.pack(0x1p-25, Precision.HALF), Precision.HALF), 0.0);
+        assertTrue(Double.isNaN(PackedTensor.unpack(PackedTensor.pack(Double.NaN, Precision.HALF), Precision.HALF)));
+        assertTrue(Double.isNaN(PackedTensor.unpack(PackedTensor.pack(Double.NaN, Precision.BFLOAT16), Precision.BFLOAT16)));
+        PackedTensor floats = new PackedTensor(new Tensor(new double[]{0.1, -3.0, 1e-40}, new int[]{3}), Precision.FLOAT);
+        assertArrayEquals(new double[]{0.1f, -3.0, 1e-40f}, floats.unpack().getData(), 0.0);
+        assertEquals(12, floats.getMemory());
+        ArrayList<Tensor> trainList = new ArrayList<>();
+        ArrayList<Tensor> testList = new ArrayList<>();
+        readIris(trainList, testList);
+        for (boolean hasLinearNodes : new boolean[]{false, true}) {
+            NeuralNet graph = new NeuralNet(new NeuralNetworkParameter(1, 2, new AdamW(new ExponentialLR(0.002, 0.99), 0.9, 0.999, 1e-10, 0.5), new CrossEntropyLoss(), 0.2), hasLinearNodes);
+            graph.train(new ArrayList<>(trainList));
+            for (Precision precision : new Precision[]{Precision.FLOAT, Precision.BFLOAT16, Precision.HALF}) {
+                AdamW optimizer = new AdamW(new ExponentialLR(0.002, 0.99), 0.9, 0.999, 1e-10, 0.5);
+                optimizer.setLossScaler(new LossScaler());
+                NeuralNet packed = new NeuralNet(new NeuralNetworkParameter(1, 2, optimizer, new CrossEntropyLoss(), 0.2), hasLinearNodes);
+                packed.setActivationPrecision(precision);
+                packed.train(new ArrayList<>(trainList));
+                assertArrayEquals(graph.getWeights(), packed.getWeights(), precision == Precision.FLOAT ? 1e-4 : 0.05);
+                assertEquals(graph.test(testList).getAccuracy(), packed.test(testList).getAccuracy(), 0.1);
+                assertTrue(packed.getMemoryPlan().isPacked());
+                assertTrue(packed.getMemoryPlan().getPlannedPeakBytes() < graph.getMemoryPlan().getPlannedPeakBytes());
+            }
+        }
+        NeuralNet unscaled = new NeuralNet(new NeuralNetworkParameter(1, 1, new StochasticGradientDescent(new ExponentialLR(0.1, 0.99)), new CrossEntropyLoss(), 0));
+        unscaled.train(new ArrayList<>(trainList));
+        StochasticGradientDescent optimizer = new StochasticGradientDescent(new ExponentialLR(0.1, 0.99));
+        LossScaler scaler = new LossScaler(Double.MAX_VALUE, 2.0, 1000000);
+        optimizer.setLossScaler(scaler);
+        NeuralNet scaled = new NeuralNet(new NeuralNetworkParameter(1, 1, optimizer, new CrossEntropyLoss(), 0));
+        scaled.train(new ArrayList<>(trainList));
+        assertTrue(scaler.getSkippedSteps() > 0);
+        assertEquals(Double.MAX_VALUE / Math.pow(2, scaler.getSkippedSteps()), scaler.getScale(), 0.0);
+        optimizer = new StochasticGradientDescent(new ExponentialLR(0.1, 0.99));
+        optimizer.setLossScaler(new LossScaler(0x1p16, 2.0, 10));
+        scaled = new NeuralNet(new NeuralNetworkParameter(1, 1, optimizer, new CrossEntropyLoss(), 0));
+        scaled.train(new ArrayList<>(trainList));
+        assertArrayEquals(unscaled.getWeights(), scaled.getWeights(), 0.0);
+    }
+
+    @Test
+    public void testQuantization() throws FileNotFoundException {
+        Random random = new Random(5);
+        Tensor x = randomTensor(new int[]{6, 40}, random);
+        Tensor w = randomTensor(new int[]{40, 300}, random);
+        double range = 0;
+        for (double value : x.getData()) {
+            range = Math.max(range, Math.abs(value));
+        }
+        QuantizedProduct product = new QuantizedProduct(w, range, null);
+        double[] expected = MatrixMultiplication.multiply(x, false, w, false).getData();
+        double[] actual = product.multiply(x, null, null).getData();
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i], 0.02 * range * 40);
+        }
+        double[] dequantized = product.dequantizeWeights().getData();
+        for (int i = 0; i < dequantized.length; i++) {
+            assertEquals(w.getData()[i], dequantized[i], 1.0 / 127);
+        }
+        byte[] a = {1, -2, 3, 4, 5, -6};
+        byte[] b = {7, 8, -9, 10, 11, 12};
+        double[] values = new double[4];
+        QuantizedMatrixMultiplication.multiply(a, b, 2, 3, 2, new double[]{1.0, 0.5}, new double[]{0.0, 1.0}, null, values);
+        assertArrayEquals(new double[]{58, 13, -83, 6}, values, 0.0);
+        ArrayList<Tensor> trainList = new ArrayList<>();
+        ArrayList<Tensor> testList = new ArrayList<>();
+        readIris(trainList, testList);
+        for (boolean hasLinearNodes : new boolean[]{false, true}) {
+            NeuralNet graph = new NeuralNet(new NeuralNetworkParameter(1, 4, new AdamW(new ExponentialLR(0.002, 0.99), 0.9, 0.999, 1e-10, 0.5), new CrossEntropyLoss(), 0), hasLinearNodes);
+            graph.train(new ArrayList<>(trainList));
+            double[] weights = graph.getWeights();
+            NeuralNet quantized = (NeuralNet) graph.quantize(graph.createInputs(trainList.subList(0, 30)));
+            assertEquals(3, quantized.getCompressedModel().size());
+            assertNull(graph.getCompressedModel());
+            assertArrayEquals(weights, graph.getWeights(), 0.0);
+            assertEquals(graph.test(testList).getAccuracy(), quantized.test(testList).getAccuracy(), 0.05);
+            try {
+                quantized.train(new ArrayList<>(trainList));
+                fail();
+            } catch (IllegalStateException expectedException) {
+            }
+        }
+    }
+
+    @Test
+    public void testPruning() throws FileNotFoundException {
+        Random random = new Random(6);
+        Tensor x = randomTensor(new int[]{5, 30}, random);
+        Tensor w = randomTensor(new int[]{30, 20}, random);
+        new MagnitudePruning(0.75).prune(w);
+        int zeros = 0;
+        for (double value : w.getData()) {
+            if (value == 0) {
+                zeros++;
+            }
+        }
+        assertEquals(450, zeros);
+        double[] expected = MatrixMultiplication.multiply(x, false, w, false).getData();
+        CsrMatrix matrix = CsrMatrix.fromDense(w.getData(), 30, 20);
+        assertEquals(150, matrix.nonZeros());
+        assertArrayEquals(w.getData(), matrix.toDense(), 0.0);
+        double[] values = new double[100];
+        SparseMatrixMultiplication.multiply(x.getData(), 5, matrix, null, null, values);
+        assertArrayEquals(expected, values, 1e-12);
+        for (int[] block : new int[][]{{1, 1}, {4, 4}, {7, 3}, {1, 20}}) {
+            SparseProduct product = new SparseProduct(w, block[0], block[1], null);
+            assertArrayEquals(w.getData(), product.toDense().getData(), 0.0);
+            assertArrayEquals(expected, product.multiply(x, null, null).getData(), 1e-12);
+        }
+        Tensor v = randomTensor(new int[]{12, 8}, random);
+        new BlockPruning(0.5, 4, 4).prune(v);
+        int zeroBlocks = 0;
+        for (int r = 0; r < 12; r += 4) {
+            for (int c = 0; c < 8; c += 4) {
+                boolean isZero = true;
+                for (int i = r; i < r + 4; i++) {
+                    for (int j = c; j < c + 4; j++) {
+                        isZero &= v.getData()[i * 8 + j] == 0;
+                    }
+                }
+                if (isZero) {
+                    zeroBlocks++;
+                }
+            }
+        }
+        assertEquals(3, zeroBlocks);
+        assertEquals(3, BlockSparseMatrix.fromDense(v.getData(), 12, 8, 4, 4).blockCount());
+        ArrayList<Tensor> trainList = new ArrayList<>();
+        ArrayList<Tensor> testList = new ArrayList<>();
+        readIris(trainList, testList);
+        NeuralNet graph = new NeuralNet(new NeuralNetworkParameter(1, 4, new AdamW(new ExponentialLR(0.002, 0.99), 0.9, 0.999, 1e-10, 0.5), new CrossEntropyLoss(), 0));
+        graph.train(new ArrayList<>(trainList));
+        double accuracy = graph.test(testList).getAccuracy();
+        graph.prune(new MagnitudePruning(0.5));
+        NeuralNet sparse = (NeuralNet) graph.sparsify(0.5);
+        assertEquals(2, sparse.getCompressedModel().size());
+        assertNull(graph.getCompressedModel());
+        assertEquals(graph.test(testList).getAccuracy(), sparse.test(testList).getAccuracy(), 0.0);
+        assertEquals(accuracy, sparse.test(testList).getAccuracy(), 0.2);
+        assertEquals(0, ((NeuralNet) graph.sparsify(0.1)).getCompressedModel().size());
+        AdamW optimizer = new AdamW(new ExponentialLR(0.002, 0.99), 0.9, 0.999, 1e-10, 0.5);
+        optimizer.setPruning(new MagnitudePruning(0.6, 5));
+        NeuralNet pruned = new NeuralNet(new NeuralNetworkParameter(1, 2, optimizer, new CrossEntropyLoss(), 0));
+        pruned.train(new ArrayList<>(trainList));
+        zeros = 0;
+        for (double value : pruned.getWeights()) {
+            if (value == 0) {
+                zeros++;
+            }
+        }
+        assertTrue(zeros >= 0.6 * pruned.getWeights().length - 3);
+        GeluNet biased = new GeluNet(new NeuralNetworkParameter(1, 1, new StochasticGradientDescent(new ExponentialLR(0.01, 0.99)), new CrossEntropyLoss(), 0), false, true);
+        biased.train(new ArrayList<>(trainList));
+        double[] before = biased.getWeights();
+        biased.prune(new MagnitudePruning(0.5));
+        double[] after = biased.getWeights();
+        assertEquals(16 + 12, countZeros(after, 0, 32) + countZeros(after, 40, 64));
+        assertArrayEquals(Arrays.copyOfRange(before, 32, 40), Arrays.copyOfRange(after, 32, 40), 0.0);
+        assertArrayEquals(Arrays.copyOfRange(before, 64, 67), Arrays.copyOfRange(after, 64, 67), 0.0);
+        AdamW embeddingOptimizer = new AdamW(new ExponentialLR(0.01, 0.99), 0.9, 0.999, 1e-10, 0.5);
+        embeddingOptimizer.setPruning(new MagnitudePruning(0.5, 5));
+        EmbeddingNet embedding = new EmbeddingNet(new NeuralNetworkParameter(1, 1, embeddingOptimizer, new CrossEntropyLoss(), 0), 50, 6, 5, 8, false);
+        embedding.train(EmbeddingNet.createWords(400, 50, 5, new Random(1)));
+        assertEquals(0, countZeros(embedding.getTable(), 0, 50 * 6));
+        assertEquals(7 * 5 / 2, countZeros(embedding.getWeights(), 50 * 6, 50 * 6 + 7 * 5));
+    }
+
+    private static int countZeros(double[] values, int start, int end) {
+        int zeros = 0;
+        for (int i = start; i < end; i++) {
+            if (values[i] == 0) {
+                zeros++;
+            }
+        }
+        return zeros;
+    }
+
+    @Test
+    public void testSparseInput() {
+        Random random = new Random(7);
+        double[] dense = new double[7 * 50];
+        for (int i = 0; i < dense.length; i++) {
+            if (random.nextInt(10) == 0) {
+                dense[i] = random.nextGaussian();
+            }
+        }
+        CsrMatrix a = CsrMatrix.fromDense(dense, 7, 50);
+        Tensor b = randomTensor(new int[]{50, 6}, random);
+        double[] values = new double[42];
+        SparseMatrixMultiplication.multiply(a, b.getData(), 6, values);
+        assertArrayEquals(MatrixMultiplication.multiply(new Tensor(dense, new int[]{7, 50}), false, b, false).getData(), values, 1e-12);
+        Tensor c = randomTensor(new int[]{7, 6}, random);
+        values = new double[300];
+        SparseMatrixMultiplication.multiplyTransposed(a, c.getData(), 6, values);
+        assertArrayEquals(MatrixMultiplication.multiply(new Tensor(dense, new int[]{7, 50}), true, c, false).getData(), values, 1e-12);
+        RowSparseMatrix rows = SparseMatrixMultiplication.multiplyTransposedRows(a, c.getData(), 6);
+        assertArrayEquals(values, rows.toDense(), 0.0);
+        for (int row : rows.getRowIndices()) {
+            boolean isUsed = false;
+            for (int i = 0; i < 7; i++) {
+                isUsed |= dense[i * 50 + row] != 0;
+            }
+            assertTrue(isUsed);
+        }
+        assertTrue(rows.getRowIndices().length < 50);
+        double[] bias = randomTensor(new int[]{6}, random).getData();
+        double[] preActivation = new double[42];
+        values = new double[42];
+        SparseMatrixMultiplication.multiply(a, b.getData(), 6, bias, new Sigmoid(), preActivation, values);
+        assertArrayEquals(MatrixMultiplication.multiply(new Tensor(dense, new int[]{7, 50}), false, b, false, null, bias, null, null).getData(), preActivation, 1e-12);
+        for (int i = 0; i < 42; i++) {
+            assertEquals(1 / (1 + Math.exp(-preActivation[i])), values[i], 1e-12);
+        }
+        CsrMatrix biased = a.appendColumn(1.0);
+        assertEquals(51, biased.getColumns());
+        assertEquals(a.nonZeros() + 7, biased.nonZeros());
+        assertEquals(1.0, biased.toDense()[50], 0.0);
+        ArrayList<Tensor> trainList = BagOfWordsNet.createDocuments(200, 300, 3, 6, new Random(1));
+        ArrayList<Tensor> testList = BagOfWordsNet.createDocuments(50, 300, 3, 6, new Random(2));
+        ArrayList<Supplier<Optimizer>> optimizers = new ArrayList<>();
+        optimizers.add(() -> new StochasticGradientDescent(new ExponentialLR(0.1, 0.99)));
+        optimizers.add(() -> new Adam(new ExponentialLR(0.01, 0.99), 0.9, 0.999, 1e-10));
+        optimizers.add(() -> new AdamW(new ExponentialLR(0.01, 0.99), 0.9, 0.999, 1e-10, 0.5));
+        for (boolean hasLinearNodes : new boolean[]{false, true}) {
+            for (Supplier<Optimizer> optimizer : optimizers) {
+                BagOfWordsNet denseNet = new BagOfWordsNet(new NeuralNetworkParameter(1, 3, optimizer.get(), new CrossEntropyLoss(), 0), 300, 8, 3, false, hasLinearNodes);
+                BagOfWordsNet sparseNet = new BagOfWordsNet(new NeuralNetworkParameter(1, 3, optimizer.get(), new CrossEntropyLoss(), 0), 300, 8, 3, true, hasLinearNodes);
+                denseNet.train(new ArrayList<>(trainList));
+                sparseNet.train(new ArrayList<>(trainList));
+                assertArrayEquals(denseNet.getWeights(), sparseNet.getWeights(), 1e-9);
+                assertEquals(denseNet.predict(testList), sparseNet.predict(testList));
+                BagOfWordsNet compressed = (BagOfWordsNet) sparseNet.sparsify(1.0);
+                assertEquals(denseNet.predict(testList), compressed.predict(testList));
+            }
+        }
+        ArrayList<Tensor> frequent = new ArrayList<>();
+        for (Tensor document : trainList) {
+            boolean isFrequent = true;
+            for (int k = 0; k < 6; k++) {
+                isFrequent &= document.getData()[k] < 150;
+            }
+            if (isFrequent) {
+                frequent.add(document);
+            }
+        }
+        BagOfWordsNet lazy = new BagOfWordsNet(new NeuralNetworkParameter(1, 3, new Adam(new ExponentialLR(0.01, 0.99), 0.9, 0.999, 1e-10), new CrossEntropyLoss(), 0), 300, 8, 3, true);
+        lazy.setLazySparseInput(true);
+        double[] initial = lazy.getWeights();
+        lazy.train(frequent);
+        double[] trained = lazy.getWeights();
+        assertArrayEquals(Arrays.copyOfRange(initial, 150 * 8, 300 * 8), Arrays.copyOfRange(trained, 150 * 8, 300 * 8), 0.0);
+        assertTrue(initial[300 * 8] != trained[300 * 8]);
+        // Rows of the first layer only move when their words occur, so the lazy updates take a few more epochs.
+        BagOfWordsNet sparseNet = new BagOfWordsNet(new NeuralNetworkParameter(1, 6, new Adam(new ExponentialLR(0.01, 0.99), 0.9, 0.999, 1e-10), new CrossEntropyLoss(), 0), 300, 8, 3, true);
+        sparseNet.setLazySparseInput(true);
+        sparseNet.train(new ArrayList<>(trainList));
+        assertTrue(sparseNet.test(testList).getAccuracy() > 0.9);
+    }
+
+    @Test
+    public void testEmbedding() {
+        Tensor table = new Tensor(new double[]{0, 1, 2, 3, 4, 5, 6, 7}, new int[]{4, 2});
+        Tensor ids = new Tensor(new double[]{3, 1, 3}, new int[]{3});
+        EmbeddingNode node = new EmbeddingNode();
+        Tensor rows = node.calculate(ids, table, new double[6]);
+        assertArrayEquals(new int[]{3, 2}, rows.getShape());
+        assertArrayEquals(new double[]{6, 7, 2, 3, 6, 7}, rows.getData(), 0.0);
+        RowSparseMatrix gradient = EmbeddingNode.derivative(ids, new Tensor(new double[]{1, 2, 3, 4, 5, 6}, new int[]{3, 2}), table);
+        assertArrayEquals(new int[]{1, 3}, gradient.getRowIndices());
+        assertArrayEquals(new double[]{3, 4, 6, 8}, gradient.getValues(), 0.0);
+        RowSparseMatrix sum = gradient.add(new RowSparseMatrix(4, 2, new int[]{0, 3}, new double[]{1, 1, 1, 1}));
+        assertArrayEquals(new int[]{0, 1, 3}, sum.getRowIndices());
+        assertArrayEquals(new double[]{1, 1, 3, 4, 0, 0, 7, 9}, sum.toDense(), 0.0);
+        try {
+            node.calculate(new Tensor(new double[]{4}, new int[]{1}), table, new double[2]);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        ArrayList<Tensor> trainList = EmbeddingNet.createWords(400, 50, 5, new Random(1));
+        ArrayList<Tensor> testList = EmbeddingNet.createWords(100, 50, 5, new Random(2));
+        EmbeddingNet oneHot = new EmbeddingNet(new NeuralNetworkParameter(1, 2, new StochasticGradientDescent(new ExponentialLR(0.5, 0.99)), new CrossEntropyLoss(), 0), 50, 6, 5, 8, true);
+        EmbeddingNet lookup = new EmbeddingNet(new NeuralNetworkParameter(1, 2, new StochasticGradientDescent(new ExponentialLR(0.5, 0.99)), new CrossEntropyLoss(), 0), 50, 6, 5, 8, false);
+        oneHot.train(new ArrayList<>(trainList));
+        lookup.train(new ArrayList<>(trainList));
+        assertArrayEquals(oneHot.getWeights(), lookup.getWeights(), 1e-12);
+        ArrayList<Tensor> words = new ArrayList<>();
+        for (Tensor word : trainList) {
+            if (word.getData()[0] < 25) {
+                words.add(word);
+            }
+        }
+        EmbeddingNet lazy = new EmbeddingNet(new NeuralNetworkParameter(1, 1, new Adam(new ExponentialLR(0.01, 0.99), 0.9, 0.999, 1e-10), new CrossEntropyLoss(), 0), 50, 6, 5, 8, false);
+        double[] initial = lazy.getTable().clone();
+        lazy.train(words);
+        for (int i = 0; i < initial.length; i++) {
+            if (i < 25 * 6) {
+                assertTrue(initial[i] != lazy.getTable()[i]);
+            } else {
+                assertEquals(initial[i], lazy.getTable()[i], 0.0);
+            }
+        }
+        EmbeddingNet trained = new EmbeddingNet(new NeuralNetworkParameter(1, 20, new Adam(new ExponentialLR(0.02, 0.99), 0.9, 0.999, 1e-10), new CrossEntropyLoss(), 0), 50, 6, 5, 8, false);
+        trained.train(new ArrayList<>(trainList));
+        assertTrue(trained.test(testList).getAccuracy() > 0.9);
+        ComputationalNode embeddings = new ComputationalNode(true, false, new Tensor(new double[24], new int[]{4, 6}));
+        ComputationalNode weights = new ComputationalNode(true, false, new Tensor(new double[4], new int[]{2, 2}));
+        ParameterStore store = new ParameterStore(new ExecutionPlan(embeddings, weights));
+        double[] ones = new double[12];
+        Arrays.fill(ones, 1.0);
+        embeddings.setSparseBackward(new RowSparseMatrix(4, 6, new int[]{1, 3}, ones));
+        weights.setBackward(new Tensor(new double[]{1, 1, 1, 1}, new int[]{2, 2}));
+        store.gatherGradient(0);
+        store.gatherGradient(1);
+        assertEquals(embeddings, store.getNode(0));
+        ArrayList<int[]> ranges = store.getGradientRanges();
+        assertEquals(2, ranges.size());
+        assertArrayEquals(new int[]{6, 6}, ranges.get(0));
+        assertArrayEquals(new int[]{18, 10}, ranges.get(1));
+        double[] gradients = store.getGradients();
+        gradients[0] = Double.NaN;
+        gradients[12] = Double.NaN;
+        assertTrue(new LossScaler(2.0, 2.0, 100).unscale(store));
+        new ClippingByGlobalNorm(1.0).clip(store);
+        for (int[] range : ranges) {
+            for (int i = range[0]; i < range[0] + range[1]; i++) {
+                assertEquals(0.25, gradients[i], 0.0);
+            }
+        }
+        assertTrue(Double.isNaN(gradients[0]) && Double.isNaN(gradients[12]));
+    }
+
     @Test
     public void testFeatures() {
         Loss dummyLoss = (inputNode, classNode, d) -> inputNode;
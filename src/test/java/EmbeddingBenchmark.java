@@ -0,0 +1,40 @@
+import ComputationalGraph.Loss.CrossEntropyLoss;
+import ComputationalGraph.NeuralNetworkParameter;
+import ComputationalGraph.Optimizer.Adam;
+import ComputationalGraph.Scheduler.ExponentialLR;
+import Math.Tensor;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Compares an embedding table multiplied by one-hot rows with the same table looked up by id, on a word
+ * classifier trained with Adam: the time of a training step for growing vocabularies. The lookup computes a row
+ * sparse gradient and updates only the rows of the batch and their moments, so its step time does not grow with
+ * the vocabulary. The first epoch warms up the JIT and is not timed.
+ */
+public class EmbeddingBenchmark {
+
+    private static double stepTime(EmbeddingNet graph, ArrayList<Tensor> words, int batchSize) {
+        graph.train(new ArrayList<>(words));
+        long start = System.nanoTime();
+        graph.train(new ArrayList<>(words));
+        return (System.nanoTime() - start) / 1e6 / ((words.size() + batchSize - 1) / batchSize);
+    }
+
+    public static void main(String[] args) {
+        int embeddingSize = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        int steps = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        System.out.printf("%-12s %16s %16s%n", "Vocabulary", "One-hot (ms)", "Lookup (ms)");
+        for (int vocabularySize : new int[]{1000, 10000, 100000}) {
+            ArrayList<Tensor> words = EmbeddingNet.createWords(steps * batchSize, vocabularySize, 10, new Random(1));
+            double[] times = new double[2];
+            for (int m = 0; m < 2; m++) {
+                EmbeddingNet graph = new EmbeddingNet(new NeuralNetworkParameter(1, 1, new Adam(new ExponentialLR(0.001, 0.99), 0.9, 0.999, 1e-8), new CrossEntropyLoss(), 0), vocabularySize, embeddingSize, 10, batchSize, m == 0);
+                times[m] = stepTime(graph, words, batchSize);
+            }
+            System.out.printf("%-12d %16.3f %16.3f%n", vocabularySize, times[0], times[1]);
+        }
+    }
+}
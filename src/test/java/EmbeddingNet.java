@@ -0,0 +1,135 @@
+import Classification.Performance.ClassificationPerformance;
+import ComputationalGraph.ComputationalGraph;
+import ComputationalGraph.Function.*;
+import ComputationalGraph.Node.ComputationalNode;
+import ComputationalGraph.Node.MultiplicationNode;
+import Math.*;
+import ComputationalGraph.*;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * A word classifier whose first layer is an embedding table. Every instance holds a word id followed by its class
+ * label, and instances are trained in batches. The table is either looked up by id or, for comparison, multiplied
+ * by one-hot rows.
+ */
+public class EmbeddingNet extends ComputationalGraph implements Serializable {
+
+    private final int vocabularySize;
+    private final int classCount;
+    private final int batchSize;
+    private final boolean isOneHot;
+    private final ComputationalNode table;
+
+    public EmbeddingNet(NeuralNetworkParameter parameters, int vocabularySize, int embeddingSize, int classCount, int batchSize, boolean isOneHot) {
+        super(parameters);
+        this.vocabularySize = vocabularySize;
+        this.classCount = classCount;
+        this.batchSize = batchSize;
+        this.isOneHot = isOneHot;
+        Tensor tableValue = parameters.initializeWeights(new int[]{vocabularySize, embeddingSize}, new Random(parameters.getSeed()));
+        ComputationalNode embedding;
+        if (isOneHot) {
+            ComputationalNode input = new MultiplicationNode(false, false);
+            this.addInputNode(input);
+            table = new MultiplicationNode(tableValue);
+            embedding = this.addEdge(input, table);
+        } else {
+            ComputationalNode input = new ComputationalNode();
+            this.addInputNode(input);
+            table = new ComputationalNode(true, false, tableValue);
+            embedding = this.addEmbeddingEdge(input, table);
+        }
+        ComputationalNode a1Sigmoid = this.addEdge(embedding, new Sigmoid(), true);
+        ComputationalNode w2 = new MultiplicationNode(parameters.initializeWeights(new int[]{embeddingSize + 1, classCount}, new Random(parameters.getSeed())));
+        ComputationalNode classLabelNode = this.addLoss(this.addEdge(this.addEdge(a1Sigmoid, w2), new Softmax()));
+        this.addInputNode(classLabelNode);
+    }
+
+    private Tensor createInput(List<Tensor> instances) {
+        if (isOneHot) {
+            double[] data = new double[instances.size() * vocabularySize];
+            for (int i = 0; i < instances.size(); i++) {
+                data[i * vocabularySize + (int) instances.get(i).getData()[0]] = 1.0;
+            }
+            return new Tensor(data, new int[]{instances.size(), vocabularySize});
+        }
+        double[] data = new double[instances.size()];
+        for (int i = 0; i < instances.size(); i++) {
+            data[i] = instances.get(i).getData()[0];
+        }
+        return new Tensor(data, new int[]{instances.size()});
+    }
+
+    private Tensor createClassLabels(List<Tensor> instances) {
+        double[] data = new double[instances.size() * classCount];
+        for (int i = 0; i < instances.size(); i++) {
+            data[i * classCount + (int) instances.get(i).getData()[1]] = 1.0;
+        }
+        return new Tensor(data, new int[]{instances.size(), classCount});
+    }
+
+    @Override
+    public void train(ArrayList<Tensor> trainSet) {
+        for (int i = 0; i < parameters.getEpoch(); i++) {
+            this.shuffle(trainSet, new Random(parameters.getSeed()));
+            for (int start = 0; start < trainSet.size(); start += batchSize) {
+                List<Tensor> batch = trainSet.subList(start, Math.min(trainSet.size(), start + batchSize));
+                this.getInputNode(0).setValue(createInput(batch));
+                this.getInputNode(1).setValue(createClassLabels(batch));
+                this.forwardCalculation();
+                this.backpropagation();
+            }
+            endEpoch();
+        }
+    }
+
+    @Override
+    public ClassificationPerformance test(ArrayList<Tensor> testSet) {
+        int count = 0;
+        ArrayList<ArrayList<Double>> outputs = this.predictBatch(createInput(testSet));
+        for (int i = 0; i < testSet.size(); i++) {
+            if (outputs.get(i).get(0).intValue() == (int) testSet.get(i).getData()[1]) {
+                count++;
+            }
+        }
+        return new ClassificationPerformance((count + 0.00) / testSet.size());
+    }
+
+    /**
+     * @return Values of the embedding table.
+     */
+    public double[] getTable() {
+        return table.getValue().getData();
+    }
+
+    /**
+     * @return Values of all learnable nodes, in forward order.
+     */
+    public double[] getWeights() {
+        return TestUtils.getWeights(getExecutionPlan());
+    }
+
+    @Override
+    protected ArrayList<Double> getOutputValue(Tensor outputValue) {
+        return TestUtils.classLabel(outputValue);
+    }
+
+    /**
+     * Creates words whose class is their id modulo the number of classes.
+     * @param count Number of words.
+     * @param vocabularySize Number of different words.
+     * @param classCount Number of classes.
+     * @param random Random number generator.
+     * @return The words, each the word id followed by the class label.
+     */
+    public static ArrayList<Tensor> createWords(int count, int vocabularySize, int classCount, Random random) {
+        ArrayList<Tensor> words = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int id = random.nextInt(vocabularySize);
+            words.add(new Tensor(new double[]{id, id % classCount}, new int[]{2}));
+        }
+        return words;
+    }
+}
@@ -0,0 +1,132 @@
+import Classification.Performance.ClassificationPerformance;
+import ComputationalGraph.ComputationalGraph;
+import ComputationalGraph.Function.*;
+import ComputationalGraph.Node.ComputationalNode;
+import ComputationalGraph.Node.MultiplicationNode;
+import Math.*;
+import ComputationalGraph.*;
+
+import java.io.Serializable;
+import java.util.*;
+
+public class GeluNet extends ComputationalGraph implements Serializable {
+
+    private final ComputationalNode w1;
+    private final ComputationalNode w2;
+    private final ComputationalNode b1;
+    private final ComputationalNode b2;
+    private final int removedNodes;
+
+    public GeluNet(NeuralNetworkParameter parameters, boolean isFused) {
+        this(parameters, isFused, false);
+    }
+
+    /**
+     * @param hasBiasNodes If true, the biases are kept in bias nodes instead of the last rows of the weight
+     *                     matrices, which are initialized with the same values.
+     */
+    public GeluNet(NeuralNetworkParameter parameters, boolean isFused, boolean hasBiasNodes) {
+        super(parameters);
+        ComputationalNode input = new MultiplicationNode(false, !hasBiasNodes);
+        this.addInputNode(input);
+        Tensor first = parameters.initializeWeights(new int[]{5, 8}, new Random(parameters.getSeed()));
+        Tensor second = parameters.initializeWeights(new int[]{9, 3}, new Random(parameters.getSeed()));
+        ComputationalNode a1, a2;
+        if (hasBiasNodes) {
+            w1 = new MultiplicationNode(first.partial(new int[]{0, 0}, new int[]{4, 8}));
+            b1 = new ComputationalNode(true, false, first.partial(new int[]{4, 0}, new int[]{5, 8}));
+            a1 = this.addBiasEdge(this.addEdge(input, w1), b1);
+        } else {
+            w1 = new MultiplicationNode(first);
+            b1 = null;
+            a1 = this.addEdge(input, w1);
+        }
+        ComputationalNode a1GELU = this.addEdge(a1, new GELU(), !hasBiasNodes);
+        if (hasBiasNodes) {
+            w2 = new MultiplicationNode(second.partial(new int[]{0, 0}, new int[]{8, 3}));
+            b2 = new ComputationalNode(true, false, second.partial(new int[]{8, 0}, new int[]{9, 3}));
+            a2 = this.addBiasEdge(this.addEdge(a1GELU, w2), b2);
+        } else {
+            w2 = new MultiplicationNode(second);
+            b2 = null;
+            a2 = this.addEdge(a1GELU, w2);
+        }
+        ComputationalNode classLabelNode = this.addLoss(this.addEdge(a2, new Softmax()));
+        this.addInputNode(classLabelNode);
+        if (isFused) {
+            removedNodes = this.fuseElementwiseFunctions();
+        } else {
+            removedNodes = 0;
+        }
+    }
+
+    public int getRemovedNodes() {
+        return removedNodes;
+    }
+
+    public ExecutionPlan getPlan() {
+        return getExecutionPlan();
+    }
+
+    public void freezeFirstLayer() {
+        this.freeze(w1);
+    }
+
+    /**
+     * @return Weights of both layers, with the biases in the last rows of the weight matrices.
+     */
+    public double[] getWeights() {
+        return TestUtils.getWeights(new ComputationalNode[]{w1, b1, w2, b2});
+    }
+
+    private Tensor createInputTensor(Tensor instance) {
+        ArrayList<Double> data = new ArrayList<>();
+        for (int i = 0; i < instance.getShape()[0] - 1; i++) {
+            data.add(instance.getValue(new int[]{i}));
+        }
+        return new Tensor(data, new int[]{1, instance.getShape()[0] - 1});
+    }
+
+    private Tensor setClassLabelNode(int classLabel) {
+        ArrayList<Double> data = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            if (i == classLabel) {
+                data.add(1.0);
+            } else {
+                data.add(0.0);
+            }
+        }
+        return new Tensor(data, new int[]{1, 3});
+    }
+
+    @Override
+    public void train(ArrayList<Tensor> trainSet) {
+        for (int i = 0; i < parameters.getEpoch(); i++) {
+            for (Tensor instance : trainSet) {
+                this.getInputNode(0).setValue(createInputTensor(instance));
+                this.getInputNode(1).setValue(setClassLabelNode((int) instance.getValue(new int[]{instance.getShape()[0] - 1})));
+                this.forwardCalculation();
+                this.backpropagation();
+            }
+            endEpoch();
+        }
+    }
+
+    @Override
+    public ClassificationPerformance test(ArrayList<Tensor> testSet) {
+        int count = 0, total = 0;
+        for (Tensor instance : testSet) {
+            int classLabel = this.predictInstance(createInputTensor(instance)).get(0).intValue();
+            if (classLabel == instance.getValue(new int[]{instance.getShape()[0] - 1})) {
+                count++;
+            }
+            total++;
+        }
+        return new ClassificationPerformance((count + 0.00) / total);
+    }
+
+    @Override
+    protected ArrayList<Double> getOutputValue(Tensor outputValue) {
+        return TestUtils.classLabel(outputValue);
+    }
+}
@@ -0,0 +1,74 @@
+import ComputationalGraph.ExecutionPlan;
+import ComputationalGraph.Node.ComputationalNode;
+import ComputationalGraph.Optimizer.Optimizer;
+import ComputationalGraph.Scheduler.Scheduler;
+import Math.Tensor;
+
+import java.io.Serializable;
+import java.util.HashMap;
+
+/**
+ * Adam and, with a non-zero weight decay, AdamW written against the setGradients hook with the update rules of
+ * the optimizers before the fused step.
+ */
+public class LegacyAdam extends Optimizer implements Serializable {
+
+    private final HashMap<ComputationalNode, double[]> momentumMap;
+    private final HashMap<ComputationalNode, double[]> velocityMap;
+    private final double beta1;
+    private final double beta2;
+    private final double epsilon;
+    private final double weightDecay;
+    private double currentBeta1;
+    private double currentBeta2;
+
+    public LegacyAdam(Scheduler scheduler, double beta1, double beta2, double epsilon, double weightDecay) {
+        super(scheduler);
+        this.momentumMap = new HashMap<>();
+        this.velocityMap = new HashMap<>();
+        this.beta1 = beta1;
+        this.beta2 = beta2;
+        this.epsilon = epsilon;
+        this.weightDecay = weightDecay;
+        this.currentBeta1 = 1;
+        this.currentBeta2 = 1;
+    }
+
+    @Override
+    protected void setGradients(ComputationalNode node) {
+        int backwardSize = node.getBackward().getData().length;
+        double[] newValuesMomentum = new double[backwardSize];
+        double[] newValuesVelocity = new double[backwardSize];
+        for (int i = 0; i < backwardSize; i++) {
+            double backwardValue = node.getBackward().getData()[i];
+            newValuesMomentum[i] = (1 - beta1) * backwardValue;
+            newValuesVelocity[i] = (1 - beta2) * (backwardValue * backwardValue);
+        }
+        if (momentumMap.containsKey(node)) {
+            for (int i = 0; i < backwardSize; i++) {
+                newValuesVelocity[i] = newValuesVelocity[i] + beta2 * velocityMap.get(node)[i];
+                newValuesMomentum[i] = newValuesMomentum[i] + beta1 * momentumMap.get(node)[i];
+            }
+        }
+        momentumMap.put(node, newValuesMomentum.clone());
+        velocityMap.put(node, newValuesVelocity.clone());
+        double[] values = node.getValue().getData();
+        double[] newValues = new double[backwardSize];
+        for (int i = 0; i < backwardSize; i++) {
+            newValuesMomentum[i] /= (1 - currentBeta1);
+            newValuesVelocity[i] /= (1 - currentBeta2);
+            newValues[i] = (newValuesMomentum[i] / (Math.sqrt(newValuesVelocity[i]) + epsilon)) * getLearningRate();
+            if (weightDecay != 0) {
+                newValues[i] = newValues[i] + (getLearningRate() * weightDecay * values[i]);
+            }
+        }
+        node.setBackward(new Tensor(newValues, node.getBackward().getShape()));
+    }
+
+    @Override
+    public void updateValues(ExecutionPlan plan) {
+        currentBeta1 *= beta1;
+        currentBeta2 *= beta2;
+        super.updateValues(plan);
+    }
+}
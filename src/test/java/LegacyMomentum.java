@@ -0,0 +1,44 @@
+import ComputationalGraph.Node.ComputationalNode;
+import ComputationalGraph.Optimizer.Optimizer;
+import ComputationalGraph.Scheduler.Scheduler;
+import Math.Tensor;
+
+import java.io.Serializable;
+import java.util.HashMap;
+
+/**
+ * Stochastic gradient descent with momentum written against the setGradients hook, as optimizers were written
+ * before the fused step.
+ */
+public class LegacyMomentum extends Optimizer implements Serializable {
+
+    private final HashMap<ComputationalNode, double[]> velocityMap;
+    private final double momentum;
+
+    public LegacyMomentum(Scheduler scheduler, double momentum) {
+        super(scheduler);
+        this.velocityMap = new HashMap<>();
+        this.momentum = momentum;
+    }
+
+    @Override
+    protected void setGradients(ComputationalNode node) {
+        int backwardSize = node.getBackward().getData().length;
+        double[] newValues = new double[backwardSize];
+        for (int i = 0; i < backwardSize; i++) {
+            newValues[i] = (1 - momentum) * node.getBackward().getData()[i];
+        }
+        if (velocityMap.containsKey(node)) {
+            for (int i = 0; i < backwardSize; i++) {
+                newValues[i] = newValues[i] + (velocityMap.get(node)[i] * momentum);
+            }
+        }
+        double[] velocity = new double[backwardSize];
+        System.arraycopy(newValues, 0, velocity, 0, backwardSize);
+        velocityMap.put(node, velocity);
+        for (int i = 0; i < backwardSize; i++) {
+            newValues[i] *= getLearningRate();
+        }
+        node.setBackward(new Tensor(newValues, node.getBackward().getShape()));
+    }
+}
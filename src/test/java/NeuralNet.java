@@ -2,6 +2,7 @@ import Classification.Performance.ClassificationPerformance;
 import ComputationalGraph.ComputationalGraph;
 
 import ComputationalGraph.Function.*;
+import ComputationalGraph.Memory.MemoryPlan;
 import ComputationalGraph.Node.ComputationalNode;
 import ComputationalGraph.Node.MultiplicationNode;
 import Math.*;
@@ -13,6 +14,13 @@ import java.util.*;
 public class NeuralNet extends ComputationalGraph implements Serializable {
 
     public NeuralNet(NeuralNetworkParameter parameters) {
+        this(parameters, false);
+    }
+
+    /**
+     * @param hasLinearNodes If true, each layer is a single dense layer node with the activation fused into it.
+     */
+    public NeuralNet(NeuralNetworkParameter parameters, boolean hasLinearNodes) {
         super(parameters);
         // Input Node
         ComputationalNode input = new MultiplicationNode();
@@ -21,18 +29,33 @@ public class NeuralNet extends ComputationalGraph implements Serializable {
         int numberOfInputUnitsWithBiased = 5;
         int numberOfHiddenUnitsInLayer1 = 4;
         ComputationalNode w1 = new MultiplicationNode(parameters.initializeWeights(new int[]{numberOfInputUnitsWithBiased, 4}, new Random(parameters.getSeed())));
-        ComputationalNode a1 = this.addEdge(input, w1);
-        ComputationalNode a1Sigmoid = this.addEdge(a1, new Sigmoid());
+        ComputationalNode a1Sigmoid;
+        if (hasLinearNodes) {
+            a1Sigmoid = this.addEdge(input, new Linear(w1, new Sigmoid()));
+        } else {
+            ComputationalNode a1 = this.addEdge(input, w1);
+            a1Sigmoid = this.addEdge(a1, new Sigmoid());
+        }
         ComputationalNode a1SigmoidDropout = this.addEdge(a1Sigmoid, new Dropout(parameters.getDropout(), new Random(parameters.getSeed())), true);
         // Second layer weights
         int numberOfHiddenUnitsInLayer2 = 20;
         ComputationalNode w2 = new MultiplicationNode(parameters.initializeWeights(new int[]{numberOfHiddenUnitsInLayer1 + 1, numberOfHiddenUnitsInLayer2}, new Random(parameters.getSeed())));
-        ComputationalNode a2 = this.addEdge(a1SigmoidDropout, w2);
-        ComputationalNode a2ELU = this.addEdge(a2, new ELU(3.0));
+        ComputationalNode a2ELU;
+        if (hasLinearNodes) {
+            a2ELU = this.addEdge(a1SigmoidDropout, new Linear(w2, new ELU(3.0)));
+        } else {
+            ComputationalNode a2 = this.addEdge(a1SigmoidDropout, w2);
+            a2ELU = this.addEdge(a2, new ELU(3.0));
+        }
         ComputationalNode a2ELUDropout = this.addEdge(a2ELU, new Dropout(parameters.getDropout(), new Random(parameters.getSeed())), true);
         // Output layer weights
         ComputationalNode w3 = new MultiplicationNode(parameters.initializeWeights(new int[]{21, 3}, new Random(parameters.getSeed())));
-        ComputationalNode a3 = this.addEdge(a2ELUDropout, w3);
+        ComputationalNode a3;
+        if (hasLinearNodes) {
+            a3 = this.addEdge(a2ELUDropout, new Linear(w3));
+        } else {
+            a3 = this.addEdge(a2ELUDropout, w3);
+        }
         ComputationalNode classLabelNode = this.addLoss(this.addEdge(a3, new Softmax()));
         this.addInputNode(classLabelNode);
     }
@@ -45,6 +68,18 @@ public class NeuralNet extends ComputationalGraph implements Serializable {
         return new Tensor(data, new int[]{1, instance.getShape()[0] - 1});
     }
 
+    /**
+     * @param instances Instances of a data set.
+     * @return Values of the first input node for the instances, such as a calibration set for quantization.
+     */
+    public ArrayList<Tensor> createInputs(List<Tensor> instances) {
+        ArrayList<Tensor> inputs = new ArrayList<>();
+        for (Tensor instance : instances) {
+            inputs.add(createInputTensor(instance));
+        }
+        return inputs;
+    }
+
     private Tensor setClassLabelNode(int classLabel) {
         ArrayList<Double> data = new ArrayList<>();
         for (int i = 0; i < 3; i++) {
@@ -68,16 +103,33 @@ public class NeuralNet extends ComputationalGraph implements Serializable {
                 this.forwardCalculation();
                 this.backpropagation();
             }
-            parameters.getOptimizer().incrementEpoch();
+            endEpoch();
         }
     }
 
+    /**
+     * @param input Value of the first input node.
+     * @return Output value of the instance, computed in a forward pass of its own.
+     */
+    public ArrayList<Double> predict(Tensor input) {
+        return this.predictInstance(input);
+    }
+
+    /**
+     * @param inputs Values of the first input node, one per instance.
+     * @return Output values of the instances, computed in a single forward pass.
+     */
+    public ArrayList<ArrayList<Double>> predict(List<Tensor> inputs) {
+        return this.predictBatch(inputs);
+    }
+
     @Override
     public ClassificationPerformance test(ArrayList<Tensor> testSet) {
         int count = 0, total = 0;
-        for (Tensor instance : testSet) {
-            this.getInputNode(0).setValue(createInputTensor(instance));
-            int classLabel = this.predict().get(0).intValue();
+        ArrayList<ArrayList<Double>> outputs = this.predictBatch(createInputs(testSet));
+        for (int i = 0; i < testSet.size(); i++) {
+            Tensor instance = testSet.get(i);
+            int classLabel = outputs.get(i).get(0).intValue();
             if (classLabel == instance.getValue(new int[]{instance.getShape()[0] - 1})) {
                 count++;
             }
@@ -86,15 +138,31 @@ public class NeuralNet extends ComputationalGraph implements Serializable {
         return new ClassificationPerformance((count + 0.00) / total);
     }
 
+    @Override
+    public MemoryPlan getMemoryPlan() {
+        return super.getMemoryPlan();
+    }
+
+    public ExecutionPlan getPlan() {
+        return getExecutionPlan();
+    }
+
+    /**
+     * @return Values of all learnable nodes, in forward order.
+     */
+    public double[] getWeights() {
+        return TestUtils.getWeights(getExecutionPlan());
+    }
+
     @Override
     protected ArrayList<Double> getOutputValue(Tensor outputValue) {
         ArrayList<Double> classLabelIndices = new ArrayList<>();
         if (outputValue != null) {
-            int cols = outputValue.getShape()[1];
+            double[] values = outputValue.getData();
             double maxVal = Double.NEGATIVE_INFINITY;
             int labelIndex = -1;
-            for (int j = 0; j < cols; j++) {
-                double val = outputValue.getValue(new int[]{0, j});
+            for (int j = 0; j < values.length; j++) {
+                double val = values[j];
                 if (maxVal < val) {
                     maxVal = val;
                     labelIndex = j;
@@ -0,0 +1,70 @@
+import Classification.Performance.ClassificationPerformance;
+import ComputationalGraph.ComputationalGraph;
+import ComputationalGraph.ExecutionPlan;
+import ComputationalGraph.Function.Sigmoid;
+import ComputationalGraph.Function.Softmax;
+import ComputationalGraph.NeuralNetworkParameter;
+import ComputationalGraph.Node.ComputationalNode;
+import ComputationalGraph.Node.MultiplicationNode;
+import Math.Tensor;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Multi-layer perceptron of square sigmoid layers and a three class softmax output, used by the benchmarks that
+ * need several million weights. It is only run forward, so it does not train or test.
+ */
+public class PerceptronNet extends ComputationalGraph {
+
+    /**
+     * @param parameters Parameters of the network.
+     * @param layers Number of hidden layers.
+     * @param width Number of inputs and of units in each hidden layer.
+     */
+    public PerceptronNet(NeuralNetworkParameter parameters, int layers, int width) {
+        super(parameters);
+        ComputationalNode input = new MultiplicationNode();
+        this.addInputNode(input);
+        ComputationalNode current = input;
+        for (int i = 0; i < layers; i++) {
+            ComputationalNode w = new MultiplicationNode(parameters.initializeWeights(new int[]{width + 1, width}, new Random(parameters.getSeed() + i)));
+            current = this.addEdge(this.addEdge(current, w), new Sigmoid(), true);
+        }
+        ComputationalNode output = new MultiplicationNode(parameters.initializeWeights(new int[]{width + 1, 3}, new Random(parameters.getSeed())));
+        this.addInputNode(this.addLoss(this.addEdge(this.addEdge(current, output), new Softmax())));
+    }
+
+    public ExecutionPlan getPlan() {
+        return getExecutionPlan();
+    }
+
+    /**
+     * @return Values of all learnable nodes, in forward order.
+     */
+    public double[] getWeights() {
+        return TestUtils.getWeights(getExecutionPlan());
+    }
+
+    @Override
+    public void train(ArrayList<Tensor> trainSet) {
+    }
+
+    @Override
+    public ClassificationPerformance test(ArrayList<Tensor> testSet) {
+        return null;
+    }
+
+    @Override
+    protected ArrayList<Double> getOutputValue(Tensor outputValue) {
+        return TestUtils.outputValues(outputValue);
+    }
+
+    /**
+     * @param batch Inputs, one row per instance.
+     * @return Output values of each instance.
+     */
+    public ArrayList<ArrayList<Double>> predict(Tensor batch) {
+        return predictBatch(batch);
+    }
+}
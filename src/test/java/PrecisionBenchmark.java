@@ -0,0 +1,148 @@
+import ComputationalGraph.ExecutionContext;
+import ComputationalGraph.ExecutionPlan;
+import ComputationalGraph.Loss.CrossEntropyLoss;
+import ComputationalGraph.NeuralNetworkParameter;
+import ComputationalGraph.Node.ComputationalNode;
+import ComputationalGraph.Optimizer.Adam;
+import ComputationalGraph.Optimizer.AdamW;
+import ComputationalGraph.Optimizer.LossScaler;
+import ComputationalGraph.Optimizer.Optimizer;
+import ComputationalGraph.Precision;
+import ComputationalGraph.Scheduler.ExponentialLR;
+import Math.Tensor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Compares the double and the float precision of the optimizer state on the test networks: the training time on
+ * the iris data set, the throughput of the optimizer on a multi-layer perceptron with several million weights,
+ * the memory of the optimizer state and the size of the checkpoints. It also compares the precisions of the
+ * activations kept for the backward pass by their training time, the planned peak of the intermediate tensors and
+ * the largest size of their packed copies.
+ * The first training of every configuration warms up the JIT and is not timed.
+ */
+public class PrecisionBenchmark {
+
+    private static final Precision[] STATE_PRECISIONS = {Precision.DOUBLE, Precision.FLOAT};
+    private static final Precision[] ACTIVATION_PRECISIONS = {Precision.DOUBLE, Precision.FLOAT, Precision.BFLOAT16, Precision.HALF};
+
+    private static Optimizer optimizer(Precision precision) {
+        Optimizer optimizer = new AdamW(new ExponentialLR(0.002, 0.99), 0.9, 0.999, 1e-10, 0.5);
+        optimizer.setStatePrecision(precision);
+        return optimizer;
+    }
+
+    private static void trainingTimes(ArrayList<Tensor> trainList, int repetitions) {
+        System.out.printf("%-12s %-10s %14s %18s%n", "Network", "Precision", "Training (ms)", "State (bytes)");
+        for (Precision precision : STATE_PRECISIONS) {
+            double time = 0;
+            long memory = 0;
+            for (int i = 0; i <= repetitions; i++) {
+                Optimizer optimizer = optimizer(precision);
+                NeuralNet graph = new NeuralNet(new NeuralNetworkParameter(1, 4, optimizer, new CrossEntropyLoss(), 0));
+                long start = System.nanoTime();
+                graph.train(new ArrayList<>(trainList));
+                if (i > 0) {
+                    time += TestUtils.milliseconds(start);
+                }
+                memory = optimizer.getParameterStore(graph.getPlan()).getMemory();
+            }
+            System.out.printf("%-12s %-10s %14.1f %18d%n", "NeuralNet", precision, time / repetitions, memory);
+        }
+        for (Precision precision : STATE_PRECISIONS) {
+            double time = 0;
+            long memory = 0;
+            for (int i = 0; i <= repetitions; i++) {
+                Adam optimizer = new Adam(new ExponentialLR(0.01, 0.99), 0.9, 0.999, 1e-8);
+                optimizer.setStatePrecision(precision);
+                GeluNet graph = new GeluNet(new NeuralNetworkParameter(1, 4, optimizer, new CrossEntropyLoss(), 0), false);
+                long start = System.nanoTime();
+                graph.train(trainList);
+                if (i > 0) {
+                    time += TestUtils.milliseconds(start);
+                }
+                memory = optimizer.getParameterStore(graph.getPlan()).getMemory();
+            }
+            System.out.printf("%-12s %-10s %14.1f %18d%n", "GeluNet", precision, time / repetitions, memory);
+        }
+    }
+
+    private static void activationMemory(ArrayList<Tensor> trainList, int repetitions) {
+        System.out.printf("%n%-12s %-10s %14s %18s %18s%n", "Network", "Activation", "Training (ms)", "Planned (bytes)", "Packed (bytes)");
+        for (boolean hasLinearNodes : new boolean[]{false, true}) {
+            for (Precision precision : ACTIVATION_PRECISIONS) {
+                double time = 0;
+                long memory = 0;
+                long[] packed = new long[1];
+                for (int i = 0; i <= repetitions; i++) {
+                    Optimizer optimizer = optimizer(Precision.DOUBLE);
+                    optimizer.setLossScaler(new LossScaler());
+                    NeuralNet graph = new NeuralNet(new NeuralNetworkParameter(1, 4, optimizer, new CrossEntropyLoss(), 0), hasLinearNodes) {
+                        @Override
+                        protected ExecutionContext createExecutionContext() {
+                            return new ExecutionContext(getPlan(), createBufferArena()) {
+                                @Override
+                                public void clear() {
+                                    packed[0] = Math.max(packed[0], getPackedBytes());
+                                    super.clear();
+                                }
+                            };
+                        }
+                    };
+                    graph.setActivationPrecision(precision);
+                    long start = System.nanoTime();
+                    graph.train(new ArrayList<>(trainList));
+                    if (i > 0) {
+                        time += TestUtils.milliseconds(start);
+                    }
+                    memory = graph.getMemoryPlan().getPlannedPeakBytes();
+                }
+                System.out.printf("%-12s %-10s %14.1f %18d %18d%n", hasLinearNodes ? "Linear" : "NeuralNet", precision, time / repetitions, memory, packed[0]);
+            }
+        }
+    }
+
+    private static void optimizerThroughput(int layers, int width, int steps) throws IOException {
+        System.out.printf("%n%-10s %16s %18s %18s%n", "Precision", "Step (ms)", "State (bytes)", "Checkpoint (bytes)");
+        for (Precision precision : STATE_PRECISIONS) {
+            Optimizer optimizer = optimizer(precision);
+            PerceptronNet graph = new PerceptronNet(new NeuralNetworkParameter(1, 1, optimizer), layers, width);
+            ExecutionPlan plan = graph.getPlan();
+            Random random = new Random(1);
+            for (int i = 0; i < plan.learnableSize(); i++) {
+                ComputationalNode node = plan.getLearnableNode(i);
+                double[] gradient = new double[node.getValue().getData().length];
+                for (int j = 0; j < gradient.length; j++) {
+                    gradient[j] = random.nextGaussian() * 1e-3;
+                }
+                node.setBackward(new Tensor(gradient, node.getValue().getShape()));
+            }
+            optimizer.updateValues(plan);
+            long start = System.nanoTime();
+            for (int i = 0; i < steps; i++) {
+                optimizer.updateValues(plan);
+            }
+            double time = TestUtils.milliseconds(start) / steps;
+            File checkpoint = File.createTempFile("precision", ".ckpt");
+            try {
+                graph.saveCheckpoint(checkpoint.getPath(), precision);
+                System.out.printf("%-10s %16.2f %18d %18d%n", precision, time, optimizer.getParameterStore(plan).getMemory(), checkpoint.length());
+            } finally {
+                checkpoint.delete();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int repetitions = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int layers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int width = args.length > 2 ? Integer.parseInt(args[2]) : 1024;
+        ArrayList<Tensor> trainList = TestUtils.readIris();
+        trainingTimes(trainList, repetitions);
+        activationMemory(trainList, repetitions);
+        optimizerThroughput(layers, width, 10 * repetitions);
+    }
+}
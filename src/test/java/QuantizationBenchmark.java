@@ -0,0 +1,124 @@
+import ComputationalGraph.Loss.CrossEntropyLoss;
+import ComputationalGraph.NeuralNetworkParameter;
+import ComputationalGraph.Optimizer.AdamW;
+import ComputationalGraph.Optimizer.StochasticGradientDescent;
+import ComputationalGraph.Scheduler.ExponentialLR;
+import Math.Tensor;
+
+import java.io.File;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Compares the int8 copies made by {@link ComputationalGraph.ComputationalGraph#quantize(java.util.List)} with the
+ * double models they were made from: the accuracy and the inference time of the test networks on the iris data
+ * set, and the inference time, the agreement of the predicted classes and the memory of the weights on a
+ * multi-layer perceptron with several million weights. The first passes of every model warm up the JIT and are
+ * not timed.
+ */
+public class QuantizationBenchmark {
+
+    private static int argmax(ArrayList<Double> values) {
+        int best = 0;
+        for (int i = 1; i < values.size(); i++) {
+            if (values.get(i) > values.get(best)) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private static double testTime(NeuralNet graph, ArrayList<Tensor> testList, int repetitions) {
+        for (int i = 0; i < repetitions; i++) {
+            graph.test(testList);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < repetitions; i++) {
+            graph.test(testList);
+        }
+        return TestUtils.milliseconds(start) / repetitions;
+    }
+
+    private static long modelSize(NeuralNet graph) throws IOException {
+        File file = File.createTempFile("quantization", ".bin");
+        try {
+            graph.save(file.getPath());
+            return file.length();
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static void iris(int repetitions) throws IOException {
+        ArrayList<Tensor> trainList = new ArrayList<>();
+        ArrayList<Tensor> testList = new ArrayList<>();
+        ArrayList<Tensor> instances = TestUtils.readIris();
+        for (int i = 0; i < instances.size(); i++) {
+            (i % 5 == 0 ? testList : trainList).add(instances.get(i));
+        }
+        System.out.printf("%-12s %-8s %10s %14s %14s%n", "Network", "Model", "Accuracy", "Test (ms)", "Size (bytes)");
+        for (boolean hasLinearNodes : new boolean[]{false, true}) {
+            NeuralNet graph = new NeuralNet(new NeuralNetworkParameter(1, 4, new AdamW(new ExponentialLR(0.002, 0.99), 0.9, 0.999, 1e-10, 0.5), new CrossEntropyLoss(), 0), hasLinearNodes);
+            graph.train(new ArrayList<>(trainList));
+            NeuralNet quantized = (NeuralNet) graph.quantize(graph.createInputs(trainList.subList(0, 30)));
+            String name = hasLinearNodes ? "Linear" : "NeuralNet";
+            System.out.printf("%-12s %-8s %10.3f %14.3f %14d%n", name, "double", graph.test(testList).getAccuracy(), testTime(graph, testList, repetitions), modelSize(graph));
+            System.out.printf("%-12s %-8s %10.3f %14.3f %14d%n", name, "int8", quantized.test(testList).getAccuracy(), testTime(quantized, testList, repetitions), modelSize(quantized));
+        }
+    }
+
+    private static void perceptron(int layers, int width, int batchSize, int repetitions) {
+        PerceptronNet graph = new PerceptronNet(new NeuralNetworkParameter(1, 1, new StochasticGradientDescent(new ExponentialLR(0.01, 0.99))), layers, width);
+        Random random = new Random(1);
+        double[] data = new double[batchSize * width];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = random.nextGaussian();
+        }
+        Tensor batch = new Tensor(data, new int[]{batchSize, width});
+        ArrayList<Tensor> calibration = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            double[] row = new double[width];
+            System.arraycopy(data, i * width, row, 0, width);
+            calibration.add(new Tensor(row, new int[]{1, width}));
+        }
+        PerceptronNet quantized = (PerceptronNet) graph.quantize(calibration);
+        long weights = 0;
+        for (int i = 0; i < graph.getPlan().learnableSize(); i++) {
+            weights += 8L * graph.getPlan().getLearnableNode(i).getValue().getData().length;
+        }
+        System.out.printf("%n%-8s %16s %14s %18s%n", "Model", "Batch (ms)", "Agreement", "Weights (bytes)");
+        ArrayList<ArrayList<Double>> expected = graph.predict(batch);
+        ArrayList<ArrayList<Double>> actual = quantized.predict(batch);
+        int agreement = 0;
+        for (int i = 0; i < expected.size(); i++) {
+            if (argmax(expected.get(i)) == argmax(actual.get(i))) {
+                agreement++;
+            }
+        }
+        double[] times = new double[2];
+        PerceptronNet[] models = {graph, quantized};
+        for (int m = 0; m < models.length; m++) {
+            for (int i = 0; i < repetitions; i++) {
+                models[m].predict(batch);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < repetitions; i++) {
+                models[m].predict(batch);
+            }
+            times[m] = TestUtils.milliseconds(start) / repetitions;
+        }
+        System.out.printf("%-8s %16.2f %14.3f %18d%n", "double", times[0], 1.0, weights);
+        System.out.printf("%-8s %16.2f %14.3f %18d%n", "int8", times[1], agreement / (double) expected.size(), quantized.getCompressedModel().getMemory());
+    }
+
+    public static void main(String[] args) throws IOException {
+        int repetitions = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int layers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int width = args.length > 2 ? Integer.parseInt(args[2]) : 1024;
+        int batchSize = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+        iris(repetitions);
+        perceptron(layers, width, batchSize, repetitions);
+    }
+}
@@ -0,0 +1,43 @@
+import ComputationalGraph.Loss.CrossEntropyLoss;
+import ComputationalGraph.NeuralNetworkParameter;
+import ComputationalGraph.Optimizer.StochasticGradientDescent;
+import ComputationalGraph.Scheduler.ExponentialLR;
+import Math.Tensor;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Compares bag-of-words inputs fed as dense count vectors with the same inputs fed as sparse rows, on a text
+ * classifier with a large vocabulary: the time of a training epoch of single document steps and the time of an
+ * inference pass over a batch of documents. Sparse rows are timed twice, with the default dense-equivalent
+ * update and with lazy row updates. The first epoch and the first passes warm up the JIT and are not timed.
+ */
+public class SparseInputBenchmark {
+
+    public static void main(String[] args) {
+        int vocabularySize = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        int hiddenSize = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int documents = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        int length = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+        int repetitions = args.length > 4 ? Integer.parseInt(args[4]) : 5;
+        ArrayList<Tensor> trainList = BagOfWordsNet.createDocuments(documents, vocabularySize, 4, length, new Random(1));
+        System.out.printf("%-8s %16s %16s%n", "Input", "Epoch (ms)", "Batch (ms)");
+        for (String input : new String[]{"dense", "sparse", "lazy"}) {
+            BagOfWordsNet graph = new BagOfWordsNet(new NeuralNetworkParameter(1, 1, new StochasticGradientDescent(new ExponentialLR(0.01, 0.99)), new CrossEntropyLoss(), 0), vocabularySize, hiddenSize, 4, !input.equals("dense"));
+            graph.setLazySparseInput(input.equals("lazy"));
+            graph.train(new ArrayList<>(trainList));
+            long start = System.nanoTime();
+            graph.train(new ArrayList<>(trainList));
+            double epoch = TestUtils.milliseconds(start);
+            for (int i = 0; i < repetitions; i++) {
+                graph.predict(trainList);
+            }
+            start = System.nanoTime();
+            for (int i = 0; i < repetitions; i++) {
+                graph.predict(trainList);
+            }
+            System.out.printf("%-8s %16.1f %16.2f%n", input, epoch, TestUtils.milliseconds(start) / repetitions);
+        }
+    }
+}
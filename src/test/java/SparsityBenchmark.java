@@ -0,0 +1,78 @@
+import ComputationalGraph.NeuralNetworkParameter;
+import ComputationalGraph.Optimizer.StochasticGradientDescent;
+import ComputationalGraph.Pruning.BlockPruning;
+import ComputationalGraph.Pruning.MagnitudePruning;
+import ComputationalGraph.Pruning.Pruning;
+import ComputationalGraph.Scheduler.ExponentialLR;
+import Math.Tensor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Measures how the sparse copies made by {@link ComputationalGraph.ComputationalGraph#sparsify(double, int, int)}
+ * scale with the number of non-zero weights on a multi-layer perceptron with several million weights: the
+ * inference time of a batch, the memory of the stored weights and the size of the saved model, for increasing
+ * fractions of weights pruned by magnitude and stored in compressed sparse row form, and pruned by blocks and
+ * stored in block sparse row form. The first passes of every model warm up the JIT and are not timed.
+ */
+public class SparsityBenchmark {
+
+    private static final double[] SPARSITIES = {0.5, 0.8, 0.9, 0.95, 0.99};
+
+    private static double batchTime(PerceptronNet graph, Tensor batch, int repetitions) {
+        for (int i = 0; i < repetitions; i++) {
+            graph.predict(batch);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < repetitions; i++) {
+            graph.predict(batch);
+        }
+        return TestUtils.milliseconds(start) / repetitions;
+    }
+
+    private static long modelSize(PerceptronNet graph) throws IOException {
+        File file = File.createTempFile("sparsity", ".bin");
+        try {
+            graph.save(file.getPath());
+            return file.length();
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static PerceptronNet graph(int layers, int width) {
+        return new PerceptronNet(new NeuralNetworkParameter(1, 1, new StochasticGradientDescent(new ExponentialLR(0.01, 0.99))), layers, width);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int repetitions = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int layers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int width = args.length > 2 ? Integer.parseInt(args[2]) : 1024;
+        int batchSize = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+        int block = args.length > 4 ? Integer.parseInt(args[4]) : 8;
+        Random random = new Random(1);
+        double[] data = new double[batchSize * width];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = random.nextGaussian();
+        }
+        Tensor batch = new Tensor(data, new int[]{batchSize, width});
+        PerceptronNet dense = graph(layers, width);
+        long weights = 0;
+        for (int i = 0; i < dense.getPlan().learnableSize(); i++) {
+            weights += 8L * dense.getPlan().getLearnableNode(i).getValue().getData().length;
+        }
+        System.out.printf("%-10s %10s %16s %18s %16s%n", "Storage", "Sparsity", "Batch (ms)", "Weights (bytes)", "Size (bytes)");
+        System.out.printf("%-10s %10.2f %16.2f %18d %16d%n", "dense", 0.0, batchTime(dense, batch, repetitions), weights, modelSize(dense));
+        for (int blockSize : new int[]{1, block}) {
+            PerceptronNet graph = graph(layers, width);
+            for (double sparsity : SPARSITIES) {
+                Pruning pruning = blockSize == 1 ? new MagnitudePruning(sparsity) : new BlockPruning(sparsity, blockSize, blockSize);
+                graph.prune(pruning);
+                PerceptronNet sparse = (PerceptronNet) graph.sparsify(1.0, blockSize, blockSize);
+                System.out.printf("%-10s %10.2f %16.2f %18d %16d%n", blockSize == 1 ? "csr" : "bsr " + blockSize + "x" + blockSize, sparsity, batchTime(sparse, batch, repetitions), sparse.getCompressedModel().getMemory(), modelSize(sparse));
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+import ComputationalGraph.ExecutionPlan;
+import ComputationalGraph.Node.ComputationalNode;
+import Math.Tensor;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Scanner;
+
+/**
+ * Helpers shared by the test graphs and the benchmarks.
+ */
+public class TestUtils {
+
+    /**
+     * Reads the iris data set in file order. The classes are numbered in the order they first appear.
+     * @return Instances, each the four features followed by the class label.
+     * @throws FileNotFoundException If iris.txt is not in the working directory.
+     */
+    public static ArrayList<Tensor> readIris() throws FileNotFoundException {
+        HashMap<String, Integer> labelMap = new HashMap<>();
+        ArrayList<Tensor> instances = new ArrayList<>();
+        Scanner source = new Scanner(new File("iris.txt"));
+        while (source.hasNextLine()) {
+            String[] items = source.nextLine().split(",");
+            double[] data = new double[items.length];
+            for (int i = 0; i < items.length - 1; i++) {
+                data[i] = Double.parseDouble(items[i]);
+            }
+            if (!labelMap.containsKey(items[items.length - 1])) {
+                labelMap.put(items[items.length - 1], labelMap.size());
+            }
+            data[items.length - 1] = labelMap.get(items[items.length - 1]);
+            instances.add(new Tensor(data, new int[]{data.length}));
+        }
+        source.close();
+        return instances;
+    }
+
+    /**
+     * @param plan Execution plan of a graph.
+     * @return Values of all learnable nodes of the plan, in forward order.
+     */
+    public static double[] getWeights(ExecutionPlan plan) {
+        ComputationalNode[] nodes = new ComputationalNode[plan.learnableSize()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = plan.getLearnableNode(i);
+        }
+        return getWeights(nodes);
+    }
+
+    /**
+     * @param nodes Nodes to read, null entries are skipped.
+     * @return Values of the nodes, concatenated in the given order.
+     */
+    public static double[] getWeights(ComputationalNode[] nodes) {
+        int total = 0;
+        for (ComputationalNode node : nodes) {
+            if (node != null) {
+                total += node.getValue().getData().length;
+            }
+        }
+        double[] weights = new double[total];
+        int offset = 0;
+        for (ComputationalNode node : nodes) {
+            if (node != null) {
+                double[] values = node.getValue().getData();
+                System.arraycopy(values, 0, weights, offset, values.length);
+                offset += values.length;
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * @param outputValue Output of a classifier for a single instance.
+     * @return Index of the largest output, the first one on ties.
+     */
+    public static ArrayList<Double> classLabel(Tensor outputValue) {
+        ArrayList<Double> classLabelIndices = new ArrayList<>();
+        double[] values = outputValue.getData();
+        int labelIndex = 0;
+        for (int j = 1; j < values.length; j++) {
+            if (values[j] > values[labelIndex]) {
+                labelIndex = j;
+            }
+        }
+        classLabelIndices.add(labelIndex + 0.0);
+        return classLabelIndices;
+    }
+
+    /**
+     * @param outputValue Output of a graph for a single instance.
+     * @return All output values.
+     */
+    public static ArrayList<Double> outputValues(Tensor outputValue) {
+        ArrayList<Double> values = new ArrayList<>();
+        for (double value : outputValue.getData()) {
+            values.add(value);
+        }
+        return values;
+    }
+
+    /**
+     * @param start Value of {@link System#nanoTime()} at the start of the measurement.
+     * @return Milliseconds elapsed since start.
+     */
+    public static double milliseconds(long start) {
+        return (System.nanoTime() - start) / 1e6;
+    }
+}